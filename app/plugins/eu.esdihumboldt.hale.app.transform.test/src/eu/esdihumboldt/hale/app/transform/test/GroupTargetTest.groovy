@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+
+package eu.esdihumboldt.hale.app.transform.test
+
+import eu.esdihumboldt.hale.app.transform.ExecTransformation
+import groovy.transform.CompileStatic
+
+
+/**
+ * Tests naming the targets of source groups that are written to separate
+ * targets.
+ * 
+ * @author Simon Templer
+ */
+@CompileStatic
+class GroupTargetTest extends GroovyTestCase {
+
+	private final File targetDir = new File(System.getProperty('java.io.tmpdir'), 'groups')
+
+	private final File target = new File(targetDir, 'result.gml')
+
+	/**
+	 * Test if the group target is named after the target and the first
+	 * source file of the group.
+	 */
+	void testName() {
+		Set<URI> used = new HashSet<>()
+
+		URI groupTarget = ExecTransformation.getGroupTarget(target,
+				new File('/data/roads.xml').toURI(), used)
+
+		assertEquals new File(targetDir, 'result_roads.gml').toURI(), groupTarget
+		assertTrue used.contains(groupTarget)
+	}
+
+	/**
+	 * Test if groups with source files of the same name are assigned distinct
+	 * targets.
+	 */
+	void testDuplicateName() {
+		Set<URI> used = new HashSet<>()
+
+		URI first = ExecTransformation.getGroupTarget(target,
+				new File('/data/a/roads.xml').toURI(), used)
+		URI second = ExecTransformation.getGroupTarget(target,
+				new File('/data/b/roads.gml').toURI(), used)
+		URI third = ExecTransformation.getGroupTarget(target,
+				new File('/data/c/roads.xml').toURI(), used)
+
+		assertEquals new File(targetDir, 'result_roads.gml').toURI(), first
+		assertEquals new File(targetDir, 'result_roads_2.gml').toURI(), second
+		assertEquals new File(targetDir, 'result_roads_3.gml').toURI(), third
+	}
+
+	/**
+	 * Test the group target if the source location is unknown.
+	 */
+	void testNoSourceLocation() {
+		URI groupTarget = ExecTransformation.getGroupTarget(target, null, new HashSet<URI>())
+
+		assertEquals new File(targetDir, 'result_group.gml').toURI(), groupTarget
+	}
+
+	/**
+	 * Test the group target if the target has no extension and the source
+	 * file has multiple extensions.
+	 */
+	void testExtensions() {
+		URI groupTarget = ExecTransformation.getGroupTarget(new File(targetDir, 'result'),
+				new File('/data/roads.gml.gz').toURI(), new HashSet<URI>())
+
+		assertEquals new File(targetDir, 'result_roads.gml').toURI(), groupTarget
+	}
+
+}
@@ -42,6 +42,7 @@ class ExecApplication extends AbstractApplication<ExecContext> {
 
 	public static final String SETTING_PREFIX = '-S'
 	public static final String XML_SETTING_PREFIX = '-X'
+	public static final String TRANSFORMATION_SETTING_PREFIX = '-T'
 
 	enum Configurable {
 		source,
@@ -140,6 +141,7 @@ $baseCommand
          [-providerId <ID-of-target-writer>]
          [<setting>...]
      [-validate <ID-of-target-validator> [<setting>...]]
+     [${TRANSFORMATION_SETTING_PREFIX}<transformation-setting-name> <value>...]
      [options...]
 
   where setting is
@@ -179,6 +181,30 @@ $baseCommand
     filters is shared for all sources. The filter context can for instance be
     used in groovy: filters.
 
+  Transformation settings
+    Settings controlling the transformation execution can be provided with
+    ${TRANSFORMATION_SETTING_PREFIX}<transformation-setting-name> <value>, for example:
+    ${TRANSFORMATION_SETTING_PREFIX}property.workers 8
+        Number of threads used for property transformations (default 1)
+    ${TRANSFORMATION_SETTING_PREFIX}property.queueSize 1000
+        Maximum number of instances pending for property transformation
+    ${TRANSFORMATION_SETTING_PREFIX}property.order PRESERVE|ANY
+        If transformed instances are written in the order of the source
+        instances (PRESERVE, the default) or as soon as they are ready (ANY)
+    ${TRANSFORMATION_SETTING_PREFIX}source.groupSize 1
+        Number of source files transformed together as an independent group
+        (default 0, i.e. all source files are transformed together)
+    ${TRANSFORMATION_SETTING_PREFIX}source.parallelism 4
+        Number of source file groups transformed concurrently (defaults to
+        the number of available processors)
+    ${TRANSFORMATION_SETTING_PREFIX}source.target MERGED|SEPARATE
+        If the instances transformed from the source file groups are written
+        to the target in the order of the groups (MERGED, the default) or to
+        a separate target file per group (SEPARATE), named after the target
+        and the first file of the group. For MERGED with several groups
+        transformed concurrently, the instances of each group are stored in
+        a temporary database until they are written
+
   Providing arguments as file
     You can also specify the arguments in a file using the -argsFile
     parameter. Each line in the file is interpreted as a separate argument.
@@ -384,6 +410,11 @@ $baseCommand
 				}
 
 			default:
+				if (param.startsWith(TRANSFORMATION_SETTING_PREFIX) && param.length() > TRANSFORMATION_SETTING_PREFIX.length()) {
+					// transformation setting
+					String key = param[TRANSFORMATION_SETTING_PREFIX.length()..-1]
+					executionContext.transformationSettings[key] = value
+				}
 				if (param.startsWith(SETTING_PREFIX) && param.length() > SETTING_PREFIX.length()) {
 					// setting
 					String key = param[SETTING_PREFIX.length()..-1]
@@ -102,6 +102,11 @@ class ExecContext {
 	 */
 	boolean restrictGroovy = true
 
+	/**
+	 * Settings for executing the transformation.
+	 */
+	Map<String, String> transformationSettings = [:]
+
 	/**
 	 * Filters apply on all sources commonly
 	 */
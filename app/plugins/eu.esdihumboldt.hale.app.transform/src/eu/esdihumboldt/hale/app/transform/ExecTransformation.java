@@ -35,15 +35,25 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.content.IContentType;
 
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings;
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings.GroupTarget;
 import eu.esdihumboldt.hale.common.core.io.HaleIO;
 import eu.esdihumboldt.hale.common.core.io.extension.IOProviderDescriptor;
 import eu.esdihumboldt.hale.common.core.io.project.model.IOConfiguration;
@@ -163,6 +173,38 @@ public class ExecTransformation implements ConsoleConstants {
 		}
 	}
 
+	/**
+	 * Aggregated information on the published reports.
+	 */
+	private static final class ReportStatistics {
+
+		private int reports;
+		private int failed;
+		private int errors;
+		private int warnings;
+
+		/**
+		 * Add a report to the statistics.
+		 * 
+		 * @param report the report
+		 */
+		public synchronized void add(Report<?> report) {
+			reports++;
+			if (!report.isSuccess()) {
+				failed++;
+			}
+			errors += report.getErrors().size();
+			warnings += report.getWarnings().size();
+		}
+
+		@Override
+		public synchronized String toString() {
+			return MessageFormat.format(
+					"Reports summary: {0} reports ({1} failed), {2} errors, {3} warnings",
+					reports, failed, errors, warnings);
+		}
+	}
+
 	/**
 	 * ID for the transformation
 	 */
@@ -170,6 +212,10 @@ public class ExecTransformation implements ConsoleConstants {
 
 	private ReportHandler reportHandler = null;
 
+	private final ReportStatistics reportStatistics = new ReportStatistics();
+
+	private TransformationSettings settings;
+
 	private ProjectTransformationEnvironment env;
 
 	private ExecContext context;
@@ -189,6 +235,9 @@ public class ExecTransformation implements ConsoleConstants {
 		// set up report handler
 		setupReportHandler();
 
+		// transformation settings
+		setupSettings();
+
 		// set up transformation environment
 		loadProject();
 
@@ -223,11 +272,21 @@ public class ExecTransformation implements ConsoleConstants {
 			index++;
 		}
 
+		int groupSize = settings.getSourceGroupSize();
+		if (groupSize > 0 && sources.size() > 1
+				&& settings.getSourceTarget() == GroupTarget.SEPARATE) {
+			// trigger transformation of each group to its own target
+			transformSeparate(Lists.partition(sources, groupSize));
+
+			// exit OK
+			return 0;
+		}
+
 		// set up writer for target
-		setupWriter();
+		target = createWriter(context.getTarget());
 
 		// set up the target validators (if any)
-		setupValidators();
+		validators.addAll(createValidators(target, context.getTarget()));
 
 		if (target == null) {
 			// writer could not be created
@@ -236,7 +295,12 @@ public class ExecTransformation implements ConsoleConstants {
 		}
 
 		// trigger transformation
-		transform();
+		if (groupSize > 0 && sources.size() > 1) {
+			transformMerged(Lists.partition(sources, groupSize));
+		}
+		else {
+			transform();
+		}
 
 		// exit OK
 		return 0;
@@ -282,7 +346,8 @@ public class ExecTransformation implements ConsoleConstants {
 		reportHandler = new ReportHandler() {
 
 			@Override
-			public void publishReport(Report<?> report) {
+			public synchronized void publishReport(Report<?> report) {
+				reportStatistics.add(report);
 				ExecUtil.printSummary(report);
 				if (delegateTo != null) {
 					delegateTo.publishReport(report);
@@ -291,6 +356,13 @@ public class ExecTransformation implements ConsoleConstants {
 		};
 	}
 
+	private void setupSettings() {
+		settings = new TransformationSettings();
+		for (Entry<String, String> setting : context.getTransformationSettings().entrySet()) {
+			settings.set(setting.getKey(), setting.getValue());
+		}
+	}
+
 	private void loadProject() throws IOException {
 		status("Loading HALE project...");
 
@@ -329,7 +401,7 @@ public class ExecTransformation implements ConsoleConstants {
 		sources.add(source);
 	}
 
-	private void setupWriter() {
+	private InstanceWriter createWriter(URI targetLocation) {
 		String preset = context.getPreset();
 		String customProvider = context.getTargetProviderId();
 		if (preset == null && customProvider == null) {
@@ -359,9 +431,9 @@ public class ExecTransformation implements ConsoleConstants {
 
 		// create I/O provider
 		String writerId = conf.getProviderId();
-		target = HaleIO.createIOProvider(InstanceWriter.class, null, writerId);
-		target.setTarget(createTargetSupplier(context.getTarget()));
-		target.setTargetSchema(env.getTargetSchema());
+		InstanceWriter writer = HaleIO.createIOProvider(InstanceWriter.class, null, writerId);
+		writer.setTarget(createTargetSupplier(targetLocation));
+		writer.setTargetSchema(env.getTargetSchema());
 
 		// determine content type to use based on file extension
 		IOProviderDescriptor factory = HaleIO.findIOProviderFactory(InstanceWriter.class, null,
@@ -369,7 +441,7 @@ public class ExecTransformation implements ConsoleConstants {
 		if (factory == null) {
 			throw fail("Instance writer with ID " + writerId + " not found");
 		}
-		String path = context.getTarget().getPath();
+		String path = targetLocation.getPath();
 		List<IContentType> cts;
 		if (path != null) {
 			cts = HaleIO.findContentTypesFor(factory.getSupportedTypes(), null, path);
@@ -378,14 +450,18 @@ public class ExecTransformation implements ConsoleConstants {
 			cts = new ArrayList<>(factory.getSupportedTypes());
 		}
 		if (!cts.isEmpty()) {
-			target.setContentType(cts.get(0));
+			writer.setContentType(cts.get(0));
 		}
 
 		// apply configuration (may override content type)
-		target.loadConfiguration(conf.getProviderConfiguration());
+		writer.loadConfiguration(conf.getProviderConfiguration());
+
+		return writer;
 	}
 
-	private void setupValidators() {
+	private Collection<InstanceValidator> createValidators(InstanceWriter writer,
+			URI targetLocation) {
+		Collection<InstanceValidator> validators = new ArrayList<>();
 		if (context.getValidateProviderIds() != null
 				&& !context.getValidateProviderIds().isEmpty()) {
 
@@ -404,19 +480,20 @@ public class ExecTransformation implements ConsoleConstants {
 					validator.loadConfiguration(context.getValidateSettings().get(i));
 
 					// set schemas
-					List<? extends Locatable> schemas = target.getValidationSchemas();
+					List<? extends Locatable> schemas = writer.getValidationSchemas();
 					validator.setSchemas(schemas.toArray(new Locatable[schemas.size()]));
 
 					// set source
-					validator.setSource(new DefaultInputSupplier(context.getTarget()));
+					validator.setSource(new DefaultInputSupplier(targetLocation));
 
 					// apply target content type
-					validator.setContentType(target.getContentType());
+					validator.setContentType(writer.getContentType());
 
-					this.validators.add(validator);
+					validators.add(validator);
 				}
 			}
 		}
+		return validators;
 	}
 
 	private LocatableOutputSupplier<? extends OutputStream> createTargetSupplier(final URI uri) {
@@ -443,21 +520,188 @@ public class ExecTransformation implements ConsoleConstants {
 		}
 	}
 
-	private void transform() throws InterruptedException, ExecutionException {
-		status("Running HALE transformation...");
-
-		// configure transformation environment
+	private void configureEnvironment() {
+		// transformation settings
+		env.addService(TransformationSettings.class, settings);
 
 		// override/set Groovy service
-		GroovyService gs = new DefaultGroovyService();
+		GroovyService gs = new DefaultGroovyService(settings.getGroovyCacheDir());
 		gs.setRestrictionActive(context.isRestrictGroovy());
 		env.addService(GroovyService.class, gs);
+	}
+
+	private void transform() throws InterruptedException, ExecutionException {
+		status("Running HALE transformation...");
+
+		// configure transformation environment
+		configureEnvironment();
 
 		// run transformation
 		ListenableFuture<Boolean> res = Transformation.transform(sources, target, env,
 				reportHandler, id, validators, context.getFilters());
 
-		if (res.get()) {
+		complete(res.get());
+	}
+
+	/**
+	 * Transform groups of source files independently of each other, writing
+	 * the transformed instances to the target in the order of the groups. With
+	 * several groups transformed concurrently, the transformed instances of
+	 * each group are spooled to a temporary database until they are written.
+	 * 
+	 * @param groups the groups of source readers
+	 * @throws InterruptedException if waiting for the transformation is
+	 *             interrupted
+	 * @throws ExecutionException if the transformation fails
+	 */
+	private void transformMerged(List<List<InstanceReader>> groups)
+			throws InterruptedException, ExecutionException {
+		int parallelism = settings.getSourceParallelism();
+		status(MessageFormat.format(
+				"Running HALE transformation for {0} source groups ({1} concurrently)...",
+				groups.size(), parallelism));
+
+		// configure transformation environment
+		configureEnvironment();
+
+		// run transformation
+		ListenableFuture<Boolean> res = Transformation.transform(groups, target, env,
+				reportHandler, id, validators, context.getFilters(), parallelism);
+
+		boolean success = res.get();
+		info(reportStatistics.toString());
+		complete(success);
+	}
+
+	/**
+	 * Transform groups of source files independently of each other, writing
+	 * the transformed instances of each group to a separate target.
+	 * 
+	 * @param groups the groups of source readers
+	 * @throws InterruptedException if waiting for the transformations is
+	 *             interrupted
+	 */
+	private void transformSeparate(List<List<InstanceReader>> groups)
+			throws InterruptedException {
+		int parallelism = settings.getSourceParallelism();
+		status(MessageFormat.format(
+				"Running HALE transformation for {0} source groups ({1} concurrently)...",
+				groups.size(), parallelism));
+
+		// configure transformation environment
+		configureEnvironment();
+
+		final Semaphore running = new Semaphore(parallelism);
+		final AtomicInteger failed = new AtomicInteger();
+		Set<URI> usedTargets = new HashSet<>();
+		for (int i = 0; i < groups.size(); i++) {
+			List<InstanceReader> group = groups.get(i);
+			URI groupTarget = getGroupTarget(group, usedTargets);
+			InstanceWriter writer = createWriter(groupTarget);
+			Collection<InstanceValidator> groupValidators = createValidators(writer,
+					groupTarget);
+
+			running.acquire();
+			final String groupName = MessageFormat.format("Source group {0} ({1})", i + 1,
+					groupTarget);
+			ListenableFuture<Boolean> res = Transformation.transform(group, writer, env,
+					reportHandler, id, groupValidators, context.getFilters());
+			Futures.addCallback(res, new FutureCallback<Boolean>() {
+
+				@Override
+				public void onSuccess(Boolean success) {
+					if (success) {
+						info(groupName + " completed");
+					}
+					else {
+						failed.incrementAndGet();
+						warn(groupName + " failed");
+					}
+					running.release();
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					failed.incrementAndGet();
+					warn(groupName + " failed: " + t.getMessage());
+					running.release();
+				}
+			});
+		}
+
+		// wait for all transformations to complete
+		running.acquire(parallelism);
+
+		info(reportStatistics.toString());
+		if (failed.get() > 0) {
+			warn(MessageFormat.format("Transformation failed for {0} of {1} source groups",
+					failed.get(), groups.size()));
+		}
+		complete(failed.get() == 0);
+	}
+
+	/**
+	 * Determine the target for a group of source files, based on the
+	 * configured target.
+	 * 
+	 * @param group the group of source readers
+	 * @param usedTargets the targets already assigned to other groups
+	 * @return the group target
+	 * @see #getGroupTarget(File, URI, Set)
+	 */
+	private URI getGroupTarget(List<InstanceReader> group, Set<URI> usedTargets) {
+		File targetFile;
+		try {
+			targetFile = new File(context.getTarget());
+		} catch (IllegalArgumentException e) {
+			throw fail("Writing source groups to separate targets is only supported for files");
+		}
+
+		return getGroupTarget(targetFile, group.get(0).getSource().getLocation(), usedTargets);
+	}
+
+	/**
+	 * Determine the target for a group of source files. The target is located
+	 * next to the configured target, its name is composed of the name of the
+	 * configured target and the name of the first source file in the group.
+	 * 
+	 * @param targetFile the configured target file
+	 * @param sourceLocation the location of the first source file in the
+	 *            group, may be <code>null</code>
+	 * @param usedTargets the targets already assigned to other groups, the
+	 *            determined target is added
+	 * @return the group target
+	 */
+	public static URI getGroupTarget(File targetFile, URI sourceLocation, Set<URI> usedTargets) {
+		String targetName = targetFile.getName();
+		String targetExtension = "";
+		int dot = targetName.lastIndexOf('.');
+		if (dot > 0) {
+			targetExtension = targetName.substring(dot);
+			targetName = targetName.substring(0, dot);
+		}
+
+		String sourceName = "group";
+		if (sourceLocation != null && sourceLocation.getPath() != null) {
+			sourceName = new File(sourceLocation.getPath()).getName();
+			dot = sourceName.lastIndexOf('.');
+			if (dot > 0) {
+				sourceName = sourceName.substring(0, dot);
+			}
+		}
+
+		String name = targetName + "_" + sourceName;
+		URI result = new File(targetFile.getParentFile(), name + targetExtension).toURI();
+		for (int i = 2; usedTargets.contains(result); i++) {
+			result = new File(targetFile.getParentFile(), name + "_" + i + targetExtension)
+					.toURI();
+		}
+		usedTargets.add(result);
+		return result;
+	}
+
+	private void complete(boolean success) {
+		if (success) {
 			info("Transformation completed. Please check the reports for more details.");
 		}
 		else {
@@ -35,6 +35,18 @@ import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
  */
 public interface InstanceHandler<E extends TransformationEngine> {
 
+	/**
+	 * Set the execution context for the subsequent call to
+	 * {@link #partitionInstances(InstanceCollection, String, TransformationEngine, ListMultimap, Map, TransformationLog)}
+	 * . The default implementation ignores the context.
+	 * 
+	 * @param executionContext the execution context, e.g. providing access to
+	 *            services such as the transformation settings
+	 */
+	public default void setExecutionContext(ExecutionContext executionContext) {
+		// ignore by default
+	}
+
 	/**
 	 * Partition the given instances.
 	 * 
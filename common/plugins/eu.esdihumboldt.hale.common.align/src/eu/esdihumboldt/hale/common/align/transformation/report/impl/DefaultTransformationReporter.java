@@ -125,7 +125,8 @@ public class DefaultTransformationReporter extends AbstractReporter<Transformati
 	}
 
 	/**
-	 * Organizes transformation messages.
+	 * Organizes transformation messages. Messages may be added concurrently,
+	 * e.g. from property transformation workers.
 	 */
 	public class TMessages {
 
@@ -139,7 +140,7 @@ public class DefaultTransformationReporter extends AbstractReporter<Transformati
 		 * 
 		 * @param message the message to add
 		 */
-		public void add(TransformationMessage message) {
+		public synchronized void add(TransformationMessage message) {
 			String cell = message.getCellId();
 			Multiset<TMessageKey> msgs = messages.get(cell);
 			if (msgs == null) {
@@ -155,7 +156,7 @@ public class DefaultTransformationReporter extends AbstractReporter<Transformati
 		 * 
 		 * @return the messages
 		 */
-		public Collection<TransformationMessage> getMessages() {
+		public synchronized Collection<TransformationMessage> getMessages() {
 			Collection<TransformationMessage> result = new ArrayList<TransformationMessage>();
 
 			for (Multiset<TMessageKey> msgs : messages.values()) {
@@ -184,7 +185,7 @@ public class DefaultTransformationReporter extends AbstractReporter<Transformati
 		 * 
 		 * @return if there are any messages present
 		 */
-		public boolean hasMessages() {
+		public synchronized boolean hasMessages() {
 			return !messages.isEmpty();
 		}
 	}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.align.transformation.report.impl;
+
+import eu.esdihumboldt.hale.common.align.transformation.report.TransformationLog;
+import eu.esdihumboldt.hale.common.core.report.SimpleLog;
+import net.jcip.annotations.Immutable;
+
+/**
+ * Simple log adding messages to a transformation log.
+ * 
+ * @author Simon Templer
+ */
+@Immutable
+public class SimpleTransformationLog implements SimpleLog {
+
+	private final TransformationLog log;
+
+	/**
+	 * Create a simple log based on the given transformation log.
+	 * 
+	 * @param log the transformation log to add the messages to
+	 */
+	public SimpleTransformationLog(TransformationLog log) {
+		super();
+		this.log = log;
+	}
+
+	@Override
+	public void warn(String message, Throwable e) {
+		log.warn(log.createMessage(message, e));
+	}
+
+	@Override
+	public void error(String message, Throwable e) {
+		log.error(log.createMessage(message, e));
+	}
+
+	@Override
+	public void info(String message) {
+		log.info(log.createMessage(message, null));
+	}
+
+}
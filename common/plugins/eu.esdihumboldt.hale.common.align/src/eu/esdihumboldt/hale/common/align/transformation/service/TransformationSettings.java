@@ -0,0 +1,562 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.align.transformation.service;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+import de.fhg.igd.slf4jplus.ALogger;
+import de.fhg.igd.slf4jplus.ALoggerFactory;
+import eu.esdihumboldt.hale.common.core.service.ServiceProvider;
+
+/**
+ * Settings controlling how a transformation is executed, e.g. the number of
+ * worker threads used for property transformations.<br>
+ * <br>
+ * Settings can be provided explicitly by registering an instance as service
+ * with the {@link ServiceProvider} handed to the {@link TransformationService}.
+ * Settings that are not set explicitly are looked up as system property
+ * (prefixed with {@value #PREFIX_SYSTEM_PROPERTY}) or as environment variable
+ * (upper case, prefixed with {@value #PREFIX_ENV}, with dots and camel case
+ * humps replaced by underscores).
+ * 
+ * @author Simon Templer
+ */
+public class TransformationSettings {
+
+	private static final ALogger log = ALoggerFactory.getLogger(TransformationSettings.class);
+
+	/**
+	 * Prefix for transformation settings provided as system property.
+	 */
+	public static final String PREFIX_SYSTEM_PROPERTY = "hale.transformation.";
+
+	/**
+	 * Prefix for transformation settings provided as environment variable.
+	 */
+	public static final String PREFIX_ENV = "HALE_TRANSFORMATION_";
+
+	/**
+	 * Name of the setting specifying the number of worker threads used for
+	 * executing property transformations. A value of <code>1</code> (the
+	 * default) means property transformations are executed in the thread
+	 * publishing the source/target instance pair.
+	 */
+	public static final String SETTING_PROPERTY_WORKERS = "property.workers";
+
+	/**
+	 * Name of the setting specifying the maximum number of pending property
+	 * transformations if multiple workers are used.
+	 */
+	public static final String SETTING_PROPERTY_QUEUE_SIZE = "property.queueSize";
+
+	/**
+	 * Name of the setting specifying the {@link OrderPolicy} for transformed
+	 * instances if multiple workers are used.
+	 */
+	public static final String SETTING_PROPERTY_ORDER = "property.order";
+
+	/**
+	 * Name of the setting specifying the heap memory (in bytes, optionally
+	 * with a <code>k</code>, <code>m</code> or <code>g</code> suffix) the
+	 * index built for a join may occupy before it is spilled to disk.
+	 */
+	public static final String SETTING_JOIN_INDEX_MEMORY = "join.indexMemory";
+
+	/**
+	 * Name of the setting specifying the heap memory (in bytes, optionally
+	 * with a <code>k</code>, <code>m</code> or <code>g</code> suffix) the
+	 * index built for a merge may occupy before it is spilled to disk.
+	 */
+	public static final String SETTING_MERGE_INDEX_MEMORY = "merge.indexMemory";
+
+	/**
+	 * Name of the setting declaring that the source instances are sorted by
+	 * the merge key, i.e. instances to merge are adjacent. If enabled,
+	 * instances are merged while streaming over the source, without building
+	 * an index.
+	 */
+	public static final String SETTING_MERGE_SORTED_INPUT = "merge.sortedInput";
+
+	/**
+	 * Name of the setting specifying the number of instances handed off at
+	 * once between the stages of the transformation pipeline (reading source
+	 * instances, transforming and writing target instances).
+	 */
+	public static final String SETTING_PIPELINE_BATCH_SIZE = "pipeline.batchSize";
+
+	/**
+	 * Name of the setting specifying the maximum number of batches pending
+	 * between two stages of the transformation pipeline.
+	 */
+	public static final String SETTING_PIPELINE_QUEUE_SIZE = "pipeline.queueSize";
+
+	/**
+	 * Name of the setting specifying if source instances are read ahead in a
+	 * separate thread, if the transformation streams over the source.
+	 */
+	public static final String SETTING_PIPELINE_READ_AHEAD = "pipeline.readAhead";
+
+	/**
+	 * Name of the setting specifying the number of worker threads converting
+	 * source instances to documents when loading them into the temporary
+	 * database. With a single worker conversion is done in the loading thread.
+	 */
+	public static final String SETTING_LOAD_WORKERS = "load.workers";
+
+	/**
+	 * Name of the setting specifying the number of instances converted and
+	 * saved together when loading them into the temporary database.
+	 */
+	public static final String SETTING_LOAD_BATCH_SIZE = "load.batchSize";
+
+	/**
+	 * Name of the setting specifying the maximum number of idle read
+	 * connections kept open for reuse per temporary database.
+	 */
+	public static final String SETTING_DATABASE_POOL_SIZE = "database.poolSize";
+
+	/**
+	 * Name of the setting specifying if the temporary database may be read
+	 * while it is written.
+	 */
+	public static final String SETTING_DATABASE_CONCURRENT_READ = "database.concurrentRead";
+
+	/**
+	 * Name of the setting specifying if the temporary database is skipped for
+	 * transformations that resolve instance references (e.g. Join and Merge),
+	 * if the source instances support resolving references efficiently.
+	 */
+	public static final String SETTING_DATABASE_SKIP_FOR_RANDOM_ACCESS = "database.skipForRandomAccess";
+
+	/**
+	 * Name of the setting specifying the directory compiled Groovy scripts
+	 * are stored in, so they can be reused in later transformation runs.
+	 */
+	public static final String SETTING_GROOVY_CACHE_DIR = "groovy.cacheDir";
+
+	/**
+	 * Name of the setting specifying the number of source files transformed
+	 * together as an independent group, if multiple source files are
+	 * provided. A value of <code>0</code> (the default) means all source files
+	 * are transformed together.
+	 */
+	public static final String SETTING_SOURCE_GROUP_SIZE = "source.groupSize";
+
+	/**
+	 * Name of the setting specifying the number of source file groups
+	 * transformed concurrently.
+	 */
+	public static final String SETTING_SOURCE_PARALLELISM = "source.parallelism";
+
+	/**
+	 * Name of the setting specifying the {@link GroupTarget} for source file
+	 * groups.
+	 */
+	public static final String SETTING_SOURCE_TARGET = "source.target";
+
+	/**
+	 * Default number of instances handed off at once between pipeline stages.
+	 */
+	public static final int DEFAULT_PIPELINE_BATCH_SIZE = 1000;
+
+	/**
+	 * Default maximum number of batches pending between pipeline stages.
+	 */
+	public static final int DEFAULT_PIPELINE_QUEUE_SIZE = 4;
+
+	/**
+	 * Default number of instances converted and saved together when loading
+	 * the temporary database.
+	 */
+	public static final int DEFAULT_LOAD_BATCH_SIZE = 500;
+
+	/**
+	 * Default maximum number of pending property transformations.
+	 */
+	public static final int DEFAULT_PROPERTY_QUEUE_SIZE = 1000;
+
+	/**
+	 * Policy on the order in which transformed instances are handed to the
+	 * target sink.
+	 */
+	public enum OrderPolicy {
+		/**
+		 * Transformed instances are added to the target in the order the
+		 * source/target instance pairs were published.
+		 */
+		PRESERVE,
+
+		/**
+		 * Transformed instances are added to the target as soon as their
+		 * transformation is complete.
+		 */
+		ANY
+	}
+
+	/**
+	 * Policy on where the instances transformed from independent source file
+	 * groups are written to.
+	 */
+	public enum GroupTarget {
+		/**
+		 * The transformed instances of all groups are written to the same
+		 * target, in the order of the groups.
+		 */
+		MERGED,
+
+		/**
+		 * The transformed instances of each group are written to a separate
+		 * target.
+		 */
+		SEPARATE
+	}
+
+	private final Map<String, String> settings = new ConcurrentHashMap<>();
+
+	/**
+	 * Get the transformation settings that apply for the given service
+	 * provider.
+	 * 
+	 * @param serviceProvider the service provider, may be <code>null</code>
+	 * @return the transformation settings registered as service or default
+	 *         settings based on system properties and environment variables
+	 */
+	public static TransformationSettings get(@Nullable ServiceProvider serviceProvider) {
+		TransformationSettings settings = null;
+		if (serviceProvider != null) {
+			settings = serviceProvider.getService(TransformationSettings.class);
+		}
+		if (settings == null) {
+			settings = new TransformationSettings();
+		}
+		return settings;
+	}
+
+	/**
+	 * Explicitly set a setting, overriding system properties and environment
+	 * variables.
+	 * 
+	 * @param name the setting name
+	 * @param value the setting value, <code>null</code> to remove an explicit
+	 *            setting
+	 */
+	public void set(String name, @Nullable String value) {
+		if (value == null) {
+			settings.remove(name);
+		}
+		else {
+			settings.put(name, value);
+		}
+	}
+
+	/**
+	 * Get the value of a setting.
+	 * 
+	 * @param name the setting name
+	 * @return the setting value or <code>null</code> if it is not set
+	 */
+	@Nullable
+	public String get(String name) {
+		// 1st priority: explicit setting
+		String value = settings.get(name);
+		if (value != null) {
+			return value;
+		}
+
+		// 2nd priority: system property
+		value = System.getProperty(PREFIX_SYSTEM_PROPERTY + name);
+		if (value != null) {
+			return value;
+		}
+
+		// 3rd priority: environment variable
+		return System.getenv(toEnvName(name));
+	}
+
+	/**
+	 * Get the value of a setting as integer.
+	 * 
+	 * @param name the setting name
+	 * @param defaultValue the default value
+	 * @return the setting value or the default value if the setting is not set
+	 *         or invalid
+	 */
+	public int getInt(String name, int defaultValue) {
+		String value = get(name);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				log.warn("Invalid value for transformation setting " + name + ": " + value);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Get the value of a setting as boolean.
+	 * 
+	 * @param name the setting name
+	 * @param defaultValue the default value
+	 * @return the setting value or the default value if the setting is not set
+	 */
+	public boolean getBoolean(String name, boolean defaultValue) {
+		String value = get(name);
+		if (value != null) {
+			return Boolean.parseBoolean(value.trim());
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Get the value of a setting as enum constant.
+	 * 
+	 * @param name the setting name
+	 * @param enumType the enum type
+	 * @param defaultValue the default value
+	 * @return the setting value or the default value if the setting is not set
+	 *         or invalid
+	 */
+	public <E extends Enum<E>> E getEnum(String name, Class<E> enumType, E defaultValue) {
+		String value = get(name);
+		if (value != null) {
+			try {
+				return Enum.valueOf(enumType, value.trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				log.warn("Invalid value for transformation setting " + name + ": " + value);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Get the value of a setting as size in bytes. The value may have a
+	 * <code>k</code>, <code>m</code> or <code>g</code> suffix (case
+	 * insensitive) denoting kilobytes, megabytes or gigabytes.
+	 * 
+	 * @param name the setting name
+	 * @param defaultValue the default value
+	 * @return the setting value or the default value if the setting is not set
+	 *         or invalid
+	 */
+	public long getSize(String name, long defaultValue) {
+		String value = get(name);
+		if (value != null) {
+			try {
+				return parseSize(value);
+			} catch (NumberFormatException e) {
+				log.warn("Invalid value for transformation setting " + name + ": " + value);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * @return the number of worker threads to use for property
+	 *         transformations, at least <code>1</code>
+	 */
+	public int getPropertyWorkers() {
+		return Math.max(1, getInt(SETTING_PROPERTY_WORKERS, 1));
+	}
+
+	/**
+	 * @return the maximum number of pending property transformations
+	 */
+	public int getPropertyQueueSize() {
+		return Math.max(1, getInt(SETTING_PROPERTY_QUEUE_SIZE, DEFAULT_PROPERTY_QUEUE_SIZE));
+	}
+
+	/**
+	 * @return the policy on the order of transformed instances
+	 */
+	public OrderPolicy getPropertyOrder() {
+		return getEnum(SETTING_PROPERTY_ORDER, OrderPolicy.class, OrderPolicy.PRESERVE);
+	}
+
+	/**
+	 * @return the heap memory in bytes the index for a join may occupy before
+	 *         it is spilled to disk, defaults to a quarter of the maximum heap
+	 *         size
+	 */
+	public long getJoinIndexMemory() {
+		return Math.max(0, getSize(SETTING_JOIN_INDEX_MEMORY, Runtime.getRuntime().maxMemory() / 4));
+	}
+
+	/**
+	 * @return the heap memory in bytes the index for a merge may occupy before
+	 *         it is spilled to disk, defaults to a quarter of the maximum heap
+	 *         size
+	 */
+	public long getMergeIndexMemory() {
+		return Math.max(0,
+				getSize(SETTING_MERGE_INDEX_MEMORY, Runtime.getRuntime().maxMemory() / 4));
+	}
+
+	/**
+	 * @return if the source instances are declared to be sorted by the merge
+	 *         key
+	 */
+	public boolean isMergeSortedInput() {
+		return getBoolean(SETTING_MERGE_SORTED_INPUT, false);
+	}
+
+	/**
+	 * @return the number of instances handed off at once between the stages
+	 *         of the transformation pipeline
+	 */
+	public int getPipelineBatchSize() {
+		return Math.max(1, getInt(SETTING_PIPELINE_BATCH_SIZE, DEFAULT_PIPELINE_BATCH_SIZE));
+	}
+
+	/**
+	 * @return the maximum number of batches pending between two stages of the
+	 *         transformation pipeline
+	 */
+	public int getPipelineQueueSize() {
+		return Math.max(1, getInt(SETTING_PIPELINE_QUEUE_SIZE, DEFAULT_PIPELINE_QUEUE_SIZE));
+	}
+
+	/**
+	 * @return if source instances should be read ahead in a separate thread
+	 */
+	public boolean isPipelineReadAhead() {
+		return getBoolean(SETTING_PIPELINE_READ_AHEAD, true);
+	}
+
+	/**
+	 * @return the number of worker threads converting instances when loading
+	 *         the temporary database, at least <code>1</code>
+	 */
+	public int getLoadWorkers() {
+		return Math.max(1, getInt(SETTING_LOAD_WORKERS, 1));
+	}
+
+	/**
+	 * @return the number of instances converted and saved together when
+	 *         loading the temporary database
+	 */
+	public int getLoadBatchSize() {
+		return Math.max(1, getInt(SETTING_LOAD_BATCH_SIZE, DEFAULT_LOAD_BATCH_SIZE));
+	}
+
+	/**
+	 * @return the maximum number of idle read connections kept open for reuse
+	 *         per temporary database, defaults to the number of available
+	 *         processors
+	 */
+	public int getDatabasePoolSize() {
+		return Math.max(0,
+				getInt(SETTING_DATABASE_POOL_SIZE, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * @return if the temporary database may be read while it is written
+	 */
+	public boolean isDatabaseConcurrentRead() {
+		return getBoolean(SETTING_DATABASE_CONCURRENT_READ, false);
+	}
+
+	/**
+	 * @return if the temporary database should be skipped if the source
+	 *         instances support resolving references efficiently
+	 */
+	public boolean isDatabaseSkipForRandomAccess() {
+		return getBoolean(SETTING_DATABASE_SKIP_FOR_RANDOM_ACCESS, true);
+	}
+
+	/**
+	 * @return the directory to store compiled Groovy scripts in,
+	 *         <code>null</code> if compiled scripts should not be stored
+	 */
+	@Nullable
+	public File getGroovyCacheDir() {
+		String dir = get(SETTING_GROOVY_CACHE_DIR);
+		if (dir == null || dir.trim().isEmpty()) {
+			return null;
+		}
+		return new File(dir.trim());
+	}
+
+	/**
+	 * @return the number of source files transformed together as independent
+	 *         group, <code>0</code> if all source files should be transformed
+	 *         together
+	 */
+	public int getSourceGroupSize() {
+		return Math.max(0, getInt(SETTING_SOURCE_GROUP_SIZE, 0));
+	}
+
+	/**
+	 * @return the number of source file groups transformed concurrently,
+	 *         defaults to the number of available processors
+	 */
+	public int getSourceParallelism() {
+		return Math.max(1,
+				getInt(SETTING_SOURCE_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * @return the policy on where the instances transformed from source file
+	 *         groups are written to
+	 */
+	public GroupTarget getSourceTarget() {
+		return getEnum(SETTING_SOURCE_TARGET, GroupTarget.class, GroupTarget.MERGED);
+	}
+
+	/**
+	 * Parse a size in bytes, optionally with a unit suffix.
+	 * 
+	 * @param value the size string
+	 * @return the size in bytes
+	 * @throws NumberFormatException if the size string is invalid
+	 */
+	static long parseSize(String value) throws NumberFormatException {
+		String size = value.trim().toLowerCase();
+		long factor = 1;
+		if (size.endsWith("b")) {
+			size = size.substring(0, size.length() - 1);
+		}
+		if (size.endsWith("k")) {
+			factor = 1024L;
+		}
+		else if (size.endsWith("m")) {
+			factor = 1024L * 1024;
+		}
+		else if (size.endsWith("g")) {
+			factor = 1024L * 1024 * 1024;
+		}
+		if (factor > 1) {
+			size = size.substring(0, size.length() - 1).trim();
+		}
+		return Long.parseLong(size) * factor;
+	}
+
+	/**
+	 * Determine the name of the environment variable for a setting.
+	 * 
+	 * @param name the setting name
+	 * @return the environment variable name
+	 */
+	static String toEnvName(String name) {
+		return PREFIX_ENV + name.replaceAll("([a-z0-9])([A-Z])", "$1_$2").replace('.', '_')
+				.toUpperCase();
+	}
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.core.report;
+
+/**
+ * Simple log for components that have no knowledge about the report and
+ * message types they contribute to, e.g. instance collections reporting on
+ * how a selection is performed.
+ * 
+ * @author Simon Templer
+ */
+public interface SimpleLog {
+
+	/**
+	 * Log a warning.
+	 * 
+	 * @param message the warning message
+	 * @param e the associated exception, may be <code>null</code>
+	 */
+	public void warn(String message, Throwable e);
+
+	/**
+	 * Log an error.
+	 * 
+	 * @param message the error message
+	 * @param e the associated exception, may be <code>null</code>
+	 */
+	public void error(String message, Throwable e);
+
+	/**
+	 * Log an information message.
+	 * 
+	 * @param message the info message
+	 */
+	public void info(String message);
+
+}
@@ -127,6 +127,46 @@ public class FilterTest {
 		assertTrue(filter2.match(auto));
 	}
 
+	@Test
+	public void nestedFilterDifferentTypesCQL() throws CQLException {
+		DefaultTypeDefinition stringType = new DefaultTypeDefinition(new QName("StringType"));
+		stringType.setConstraint(Binding.get(String.class));
+
+		DefaultTypeDefinition personDef = new DefaultTypeDefinition(new QName("PersonType"));
+		personDef.addChild(new DefaultPropertyDefinition(new QName("Name"), personDef, stringType));
+
+		DefaultTypeDefinition autoDef = new DefaultTypeDefinition(new QName("AutoType"));
+		autoDef.addChild(new DefaultPropertyDefinition(new QName("Besitzer"), autoDef, personDef));
+
+		DefaultTypeDefinition bikeDef = new DefaultTypeDefinition(new QName("BikeType"));
+		bikeDef.addChild(new DefaultPropertyDefinition(new QName("Farbe"), bikeDef, stringType));
+		bikeDef.addChild(new DefaultPropertyDefinition(new QName("Besitzer"), bikeDef, personDef));
+
+		MutableInstance ich = new DefaultInstance(personDef, null);
+		ich.addProperty(new QName("Name"), "Ich");
+		MutableInstance du = new DefaultInstance(personDef, null);
+		du.addProperty(new QName("Name"), "Du");
+
+		MutableInstance auto = new DefaultInstance(autoDef, null);
+		auto.addProperty(new QName("Besitzer"), ich);
+		MutableInstance bike = new DefaultInstance(bikeDef, null);
+		bike.addProperty(new QName("Farbe"), "rot");
+		bike.addProperty(new QName("Besitzer"), du);
+
+		// the same filter is evaluated against different types
+		Filter filter = new FilterGeoCqlImpl("Besitzer.Name = 'Ich'");
+		assertTrue(filter.match(auto));
+		assertFalse(filter.match(bike));
+
+		bike.setProperty(new QName("Besitzer"), ich);
+		assertTrue(filter.match(bike));
+
+		// property not present in one of the types
+		Filter colorFilter = new FilterGeoCqlImpl("Farbe = 'rot'");
+		assertTrue(colorFilter.match(bike));
+		assertFalse(colorFilter.match(auto));
+	}
+
 	@Test
 	public void simpleSchemaTestCQL() throws Exception {
 		ShapeSchemaReader schemaReader = new ShapeSchemaReader();
@@ -21,7 +21,7 @@ import org.opengis.filter.Filter;
 
 import de.fhg.igd.slf4jplus.ALogger;
 import de.fhg.igd.slf4jplus.ALoggerFactory;
-import eu.esdihumboldt.hale.common.instance.helper.PropertyResolver;
+import eu.esdihumboldt.hale.common.filter.internal.BindPropertyNamesVisitor;
 import eu.esdihumboldt.hale.common.instance.model.Instance;
 
 /**
@@ -39,6 +39,12 @@ public abstract class AbstractGeotoolsFilter implements
 	private final String filterTerm;
 	private final Filter internFilter;
 
+	/**
+	 * The filter used for evaluation, with property names that are compiled
+	 * per type
+	 */
+	private final Filter evaluationFilter;
+
 	/**
 	 * Create a Geotools based filter.
 	 * 
@@ -52,6 +58,8 @@ public abstract class AbstractGeotoolsFilter implements
 		if (internFilter == Filter.EXCLUDE) {
 			log.warn("Parsed filter will not match any instance");
 		}
+
+		evaluationFilter = (Filter) internFilter.accept(new BindPropertyNamesVisitor(), null);
 	}
 
 	/**
@@ -65,15 +73,7 @@ public abstract class AbstractGeotoolsFilter implements
 
 	@Override
 	public boolean match(Instance instance) {
-		PropertyResolver.isLastQueryPathUnique(); // reset the information on
-													// the last query
-		try {
-			return internFilter.evaluate(instance);
-		} finally {
-			if (!PropertyResolver.isLastQueryPathUnique()) {
-				log.warn("Evaluated filter with non-unique definition path: " + filterTerm);
-			}
-		}
+		return evaluationFilter.evaluate(instance);
 	}
 
 	/**
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.filter.internal;
+
+import org.geotools.filter.visitor.DuplicatingFilterVisitor;
+import org.opengis.filter.expression.PropertyName;
+
+/**
+ * Copies a filter, replacing all property names by
+ * {@link CompiledPropertyName}s.
+ * 
+ * @author Simon Templer
+ */
+public class BindPropertyNamesVisitor extends DuplicatingFilterVisitor {
+
+	@Override
+	public Object visit(PropertyName expression, Object extraData) {
+		if (expression instanceof CompiledPropertyName) {
+			return expression;
+		}
+		return new CompiledPropertyName(expression.getPropertyName());
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.filter.internal;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.geotools.filter.AttributeExpressionImpl;
+import org.geotools.util.Converters;
+
+import de.fhg.igd.slf4jplus.ALogger;
+import de.fhg.igd.slf4jplus.ALoggerFactory;
+import eu.esdihumboldt.hale.common.instance.helper.CompiledPropertyPath;
+import eu.esdihumboldt.hale.common.instance.helper.PropertyResolver;
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+
+/**
+ * Property name expression that evaluates against instances using property
+ * paths compiled once per type definition. Other objects are evaluated like
+ * with the default property name implementation.
+ * 
+ * @author Simon Templer
+ */
+public class CompiledPropertyName extends AttributeExpressionImpl {
+
+	private static final ALogger log = ALoggerFactory.getLogger(CompiledPropertyName.class);
+
+	/**
+	 * The paths compiled for the types evaluated so far. The map is replaced
+	 * when a path is added, so it can be read without locking.
+	 */
+	private volatile Map<TypeDefinition, CompiledPropertyPath> compiled = Collections
+			.emptyMap();
+
+	/**
+	 * Create a property name expression.
+	 * 
+	 * @param propertyName the property path
+	 */
+	public CompiledPropertyName(String propertyName) {
+		super(propertyName);
+	}
+
+	@Override
+	public Object evaluate(Object object) {
+		return evaluate(object, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> T evaluate(Object object, Class<T> context) {
+		if (!(object instanceof Instance)) {
+			return super.evaluate(object, context);
+		}
+
+		Instance instance = (Instance) object;
+		TypeDefinition type = instance.getDefinition();
+		Collection<Object> values;
+		if (type == null) {
+			// no definition -> resolve based on the instance structure
+			values = PropertyResolver.getValues(instance, getPropertyName());
+		}
+		else {
+			values = getPath(type).getValues(instance, true);
+		}
+
+		if (context == null) {
+			return (T) values;
+		}
+		return Converters.convert(values, context);
+	}
+
+	/**
+	 * Get the property path compiled for the given type.
+	 * 
+	 * @param type the type definition
+	 * @return the compiled property path
+	 */
+	private CompiledPropertyPath getPath(TypeDefinition type) {
+		CompiledPropertyPath path = compiled.get(type);
+		if (path != null) {
+			return path;
+		}
+
+		synchronized (this) {
+			path = compiled.get(type);
+			if (path == null) {
+				path = CompiledPropertyPath.compile(type, getPropertyName());
+				if (!path.isUnique()) {
+					log.warn("Filter property path " + getPropertyName()
+							+ " is not unique for type " + type.getName());
+				}
+
+				// identity based, as different schemas may contain equally
+				// named types
+				Map<TypeDefinition, CompiledPropertyPath> paths = new IdentityHashMap<TypeDefinition, CompiledPropertyPath>(
+						compiled);
+				paths.put(type, path);
+				compiled = paths;
+			}
+			return path;
+		}
+	}
+
+}
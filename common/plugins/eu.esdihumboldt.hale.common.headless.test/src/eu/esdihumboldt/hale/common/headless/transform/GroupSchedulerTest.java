@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+
+package eu.esdihumboldt.hale.common.headless.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings;
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+
+/**
+ * Tests for scheduling the transformations of source groups with
+ * {@link GroupScheduler}.
+ * 
+ * @author Simon Templer
+ */
+public class GroupSchedulerTest {
+
+	/**
+	 * Scheduler recording the started groups, the transformations of the
+	 * groups are completed by the test.
+	 */
+	private static class TestScheduler extends GroupScheduler {
+
+		private final List<Integer> started = new CopyOnWriteArrayList<>();
+
+		private final List<SettableFuture<Boolean>> results = new CopyOnWriteArrayList<>();
+
+		private final int failingGroup;
+
+		public TestScheduler(GroupedTransformationSink targetSink, int parallelism,
+				int failingGroup) {
+			super(targetSink, parallelism);
+			this.failingGroup = failingGroup;
+		}
+
+		@Override
+		protected ListenableFuture<Boolean> transformGroup(int index,
+				TransformationSink groupSink) throws Exception {
+			if (index == failingGroup) {
+				throw new IllegalStateException("Group " + index + " cannot be started");
+			}
+			groupSink.done(false);
+
+			started.add(index);
+			SettableFuture<Boolean> result = SettableFuture.create();
+			results.add(result);
+			return result;
+		}
+
+	}
+
+	/**
+	 * Test if the groups are started in order, with at most the given number
+	 * of groups transformed at the same time.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testOrder() throws Exception {
+		GroupedTransformationSink sink = createSink(4);
+		try {
+			TestScheduler scheduler = new TestScheduler(sink, 2, -1);
+			scheduler.start();
+			assertEquals(Arrays.asList(0, 1), scheduler.started);
+
+			// a completed group makes room for the next group
+			scheduler.results.get(1).set(true);
+			assertEquals(Arrays.asList(0, 1, 2), scheduler.started);
+			scheduler.results.get(0).set(true);
+			assertEquals(Arrays.asList(0, 1, 2, 3), scheduler.started);
+
+			scheduler.results.get(3).set(true);
+			assertFalse(scheduler.getResult().isDone());
+			scheduler.results.get(2).set(true);
+			assertTrue(scheduler.getResult().get());
+		} finally {
+			sink.dispose();
+		}
+	}
+
+	/**
+	 * Test if no further groups are started and the grouped sink is
+	 * cancelled if the transformation of a group fails.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testFailure() throws Exception {
+		GroupedTransformationSink sink = createSink(3);
+		try {
+			TestScheduler scheduler = new TestScheduler(sink, 1, -1);
+			scheduler.start();
+			assertEquals(Arrays.asList(0), scheduler.started);
+
+			scheduler.results.get(0).set(false);
+			assertFalse(scheduler.getResult().get());
+			assertEquals(Arrays.asList(0), scheduler.started);
+
+			// the grouped instances are not waiting for the remaining groups
+			try (ResourceIterator<Instance> it = sink.getInstanceCollection().iterator()) {
+				assertFalse(it.hasNext());
+			}
+		} finally {
+			sink.dispose();
+		}
+	}
+
+	/**
+	 * Test if no further groups are started if the transformation of a group
+	 * cannot be started.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testStartFailure() throws Exception {
+		GroupedTransformationSink sink = createSink(3);
+		try {
+			TestScheduler scheduler = new TestScheduler(sink, 2, 1);
+			scheduler.start();
+			assertEquals(Arrays.asList(0), scheduler.started);
+			assertFalse(scheduler.getResult().get());
+
+			scheduler.results.get(0).set(true);
+			assertEquals(Arrays.asList(0), scheduler.started);
+		} finally {
+			sink.dispose();
+		}
+	}
+
+	/**
+	 * Test if the result is available immediately if there are no groups.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testNoGroups() throws Exception {
+		GroupedTransformationSink sink = createSink(0);
+		try {
+			TestScheduler scheduler = new TestScheduler(sink, 2, -1);
+			scheduler.start();
+			assertTrue(scheduler.getResult().get());
+			assertTrue(scheduler.started.isEmpty());
+		} finally {
+			sink.dispose();
+		}
+	}
+
+	private GroupedTransformationSink createSink(int groupCount) {
+		return new GroupedTransformationSink(groupCount, false, false,
+				new TransformationSettings());
+	}
+
+}
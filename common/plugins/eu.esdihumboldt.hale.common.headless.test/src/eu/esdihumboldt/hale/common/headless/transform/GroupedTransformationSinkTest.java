@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+
+package eu.esdihumboldt.hale.common.headless.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+
+import org.junit.Test;
+
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings;
+import eu.esdihumboldt.hale.common.instance.model.DataSet;
+import eu.esdihumboldt.hale.common.instance.model.Filter;
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstance;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultTypeDefinition;
+
+/**
+ * Tests for {@link GroupedTransformationSink}.
+ * 
+ * @author Simon Templer
+ */
+public class GroupedTransformationSinkTest {
+
+	private static final TypeDefinition TYPE_A = new DefaultTypeDefinition(new QName("A"));
+
+	private static final TypeDefinition TYPE_B = new DefaultTypeDefinition(new QName("B"));
+
+	/**
+	 * Test if the instances are yielded in the order of the groups, even if
+	 * the groups are completed in a different order.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testGroupOrder() throws Exception {
+		GroupedTransformationSink sink = createSink(2);
+		try {
+			Instance first = new DefaultInstance(TYPE_A, DataSet.TRANSFORMED);
+			Instance second = new DefaultInstance(TYPE_B, DataSet.TRANSFORMED);
+
+			TransformationSink group = sink.createGroupSink(1);
+			group.addInstance(second);
+			group.done(false);
+
+			group = sink.createGroupSink(0);
+			group.addInstance(first);
+			group.done(false);
+
+			assertEquals(Arrays.asList(first, second), collect(sink.getInstanceCollection()));
+		} finally {
+			sink.dispose();
+		}
+	}
+
+	/**
+	 * Test if iterating the instances ends when the sink is cancelled while
+	 * waiting for a group that was not started yet.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testCancelWaiting() throws Exception {
+		final GroupedTransformationSink sink = createSink(2);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			TransformationSink group = sink.createGroupSink(0);
+			group.addInstance(new DefaultInstance(TYPE_A, DataSet.TRANSFORMED));
+			group.done(false);
+
+			Future<List<Instance>> consumed = executor.submit(new Callable<List<Instance>>() {
+
+				@Override
+				public List<Instance> call() throws Exception {
+					return collect(sink.getInstanceCollection());
+				}
+			});
+
+			// the consumer waits for the second group
+			Thread.sleep(200);
+			assertFalse(consumed.isDone());
+
+			sink.done(true);
+			assertTrue(consumed.get(10, TimeUnit.SECONDS).size() <= 1);
+		} finally {
+			executor.shutdownNow();
+			sink.dispose();
+		}
+	}
+
+	/**
+	 * Test if a group sink created after the sink was cancelled does not
+	 * yield any instances.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testCancelBeforeCreate() throws Exception {
+		GroupedTransformationSink sink = createSink(1);
+		try {
+			sink.done(true);
+
+			TransformationSink group = sink.createGroupSink(0);
+			group.addInstance(new DefaultInstance(TYPE_A, DataSet.TRANSFORMED));
+
+			assertTrue(collect(sink.getInstanceCollection()).isEmpty());
+		} finally {
+			sink.dispose();
+		}
+	}
+
+	/**
+	 * Test selecting instances from the grouped instances with a filter.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testSelect() throws Exception {
+		GroupedTransformationSink sink = createSink(2);
+		try {
+			Instance a = new DefaultInstance(TYPE_A, DataSet.TRANSFORMED);
+			Instance b = new DefaultInstance(TYPE_B, DataSet.TRANSFORMED);
+
+			TransformationSink group = sink.createGroupSink(0);
+			group.addInstance(a);
+			group.done(false);
+
+			group = sink.createGroupSink(1);
+			group.addInstance(b);
+			group.done(false);
+
+			List<Instance> selected = collect(sink.getInstanceCollection().select(
+					new Filter() {
+
+						@Override
+						public boolean match(Instance instance) {
+							return instance.getDefinition() == TYPE_B;
+						}
+					}));
+			assertEquals(1, selected.size());
+			assertSame(b, selected.get(0));
+		} finally {
+			sink.dispose();
+		}
+	}
+
+	private GroupedTransformationSink createSink(int groupCount) {
+		return new GroupedTransformationSink(groupCount, false, false,
+				new TransformationSettings());
+	}
+
+	private static List<Instance> collect(InstanceCollection instances) {
+		List<Instance> result = new ArrayList<>();
+		try (ResourceIterator<Instance> it = instances.iterator()) {
+			while (it.hasNext()) {
+				result.add(it.next());
+			}
+		}
+		return result;
+	}
+
+}
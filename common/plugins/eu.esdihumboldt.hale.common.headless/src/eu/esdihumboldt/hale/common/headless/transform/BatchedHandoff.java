@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.headless.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded handoff of items from a producing to a consuming thread. Items are
+ * handed off in batches, so the threads only synchronize once per batch
+ * instead of once per item. The producer is blocked if the configured number
+ * of batches is pending.<br>
+ * <br>
+ * The producing side ({@link #put(Object)}, {@link #flush()} and
+ * {@link #finish()}) and the consuming side ({@link #take()}) each must only
+ * be used by one thread at a time.
+ * 
+ * @param <T> the item type
+ * @author Simon Templer
+ */
+class BatchedHandoff<T> {
+
+	/**
+	 * Interval in milliseconds in which a blocked producer checks if the
+	 * handoff was cancelled.
+	 */
+	private static final long CANCEL_CHECK_INTERVAL = 100;
+
+	/**
+	 * Marks the end of the items.
+	 */
+	private final List<T> end = new ArrayList<>(0);
+
+	private final BlockingQueue<List<T>> queue;
+
+	private final int batchSize;
+
+	private final StageMetrics metrics;
+
+	private volatile boolean cancelled = false;
+
+	private List<T> batch;
+
+	private List<T> current;
+
+	private int currentIndex;
+
+	private boolean endReached = false;
+
+	/**
+	 * Create a batched handoff.
+	 * 
+	 * @param batchSize the maximum number of items in a batch
+	 * @param queueSize the maximum number of pending batches
+	 * @param metrics the metrics to record the handoff in
+	 */
+	public BatchedHandoff(int batchSize, int queueSize, StageMetrics metrics) {
+		this.batchSize = Math.max(1, batchSize);
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+		this.metrics = metrics;
+		this.batch = new ArrayList<>(this.batchSize);
+	}
+
+	/**
+	 * Add an item. The item is handed off to the consumer when the current
+	 * batch is full.
+	 * 
+	 * @param item the item to add
+	 * @return <code>false</code> if the handoff was cancelled and the item was
+	 *         discarded, <code>true</code> otherwise
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 *             for the consumer
+	 */
+	public boolean put(T item) throws InterruptedException {
+		if (cancelled) {
+			return false;
+		}
+
+		batch.add(item);
+		if (batch.size() >= batchSize) {
+			flush();
+		}
+		return !cancelled;
+	}
+
+	/**
+	 * Hand off the current batch to the consumer, even if it is not full.
+	 * 
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 *             for the consumer
+	 */
+	public void flush() throws InterruptedException {
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		List<T> full = batch;
+		batch = new ArrayList<>(batchSize);
+		if (queue.offer(full)) {
+			metrics.batchProduced(full.size(), 0);
+			return;
+		}
+
+		// queue is full - the consumer is the bottleneck
+		long start = System.nanoTime();
+		while (!cancelled) {
+			if (queue.offer(full, CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+				metrics.batchProduced(full.size(), System.nanoTime() - start);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Hand off the current batch and signal the consumer that no more items
+	 * will follow.
+	 * 
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 *             for the consumer
+	 */
+	public void finish() throws InterruptedException {
+		flush();
+		while (!cancelled && !queue.offer(end, CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+			// wait for the consumer
+		}
+	}
+
+	/**
+	 * Cancel the handoff. Pending items are discarded, a producer waiting for
+	 * the consumer and a consumer waiting for the producer are released.
+	 */
+	public void cancel() {
+		cancelled = true;
+		queue.clear();
+		// release a waiting consumer (if the offer fails, the consumer will
+		// receive a batch and notice the cancellation)
+		queue.offer(end);
+	}
+
+	/**
+	 * @return if the handoff was cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Get the next item, waiting for the producer if necessary.
+	 * 
+	 * @return the next item or <code>null</code> if there are no more items or
+	 *         the handoff was cancelled
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 *             for the producer
+	 */
+	public T take() throws InterruptedException {
+		while (true) {
+			if (cancelled || endReached) {
+				return null;
+			}
+
+			if (current != null && currentIndex < current.size()) {
+				T item = current.get(currentIndex);
+				// release the reference for garbage collection
+				current.set(currentIndex, null);
+				currentIndex++;
+				return item;
+			}
+
+			List<T> next = queue.poll();
+			if (next == null) {
+				// queue is empty - the producer is the bottleneck
+				long start = System.nanoTime();
+				next = queue.take();
+				metrics.batchConsumed(System.nanoTime() - start);
+			}
+
+			if (next == end) {
+				endReached = true;
+				current = null;
+				metrics.completed();
+			}
+			else {
+				current = next;
+				currentIndex = 0;
+			}
+		}
+	}
+
+}
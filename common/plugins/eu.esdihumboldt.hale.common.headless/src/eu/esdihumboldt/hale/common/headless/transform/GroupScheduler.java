@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+
+package eu.esdihumboldt.hale.common.headless.transform;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import de.fhg.igd.slf4jplus.ALogger;
+import de.fhg.igd.slf4jplus.ALoggerFactory;
+
+/**
+ * Schedules the transformations of source groups, so that at most a given
+ * number of transformations run at the same time. The transformations are
+ * started in the order of the groups, as the transformed instances are
+ * consumed in that order.
+ * 
+ * @author Simon Templer
+ */
+abstract class GroupScheduler {
+
+	private static final ALogger log = ALoggerFactory.getLogger(GroupScheduler.class);
+
+	private final int groupCount;
+	private final GroupedTransformationSink targetSink;
+	private final int parallelism;
+
+	private final AtomicInteger nextGroup = new AtomicInteger();
+	private final AtomicInteger completedGroups = new AtomicInteger();
+	private final AtomicBoolean failed = new AtomicBoolean();
+	private final SettableFuture<Boolean> result = SettableFuture.create();
+
+	/**
+	 * Create a scheduler for the transformations of the groups of the given
+	 * sink.
+	 * 
+	 * @param targetSink the grouped target sink
+	 * @param parallelism the maximum number of groups transformed
+	 *            concurrently
+	 */
+	public GroupScheduler(GroupedTransformationSink targetSink, int parallelism) {
+		this.groupCount = targetSink.getGroupCount();
+		this.targetSink = targetSink;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Start the transformation of a group.
+	 * 
+	 * @param index the group index
+	 * @param groupSink the sink for the transformed instances of the group
+	 * @return the future representing the successful completion of the
+	 *         transformation of the group
+	 * @throws Exception if the transformation cannot be started
+	 */
+	protected abstract ListenableFuture<Boolean> transformGroup(int index,
+			TransformationSink groupSink) throws Exception;
+
+	/**
+	 * Start the transformations of the first groups.
+	 */
+	public void start() {
+		if (groupCount == 0) {
+			result.set(true);
+			return;
+		}
+		for (int i = 0; i < parallelism; i++) {
+			startNext();
+		}
+	}
+
+	/**
+	 * @return the future representing the completion of the transformations
+	 *         of all groups, yields <code>false</code> if the transformation
+	 *         of any group failed
+	 */
+	public ListenableFuture<Boolean> getResult() {
+		return result;
+	}
+
+	/**
+	 * Cancel the transformations of all groups.
+	 */
+	public void cancel() {
+		failed.set(true);
+		result.set(false);
+		targetSink.done(true);
+	}
+
+	private void startNext() {
+		if (failed.get()) {
+			return;
+		}
+		final int index = nextGroup.getAndIncrement();
+		if (index >= groupCount) {
+			return;
+		}
+
+		ListenableFuture<Boolean> groupResult;
+		try {
+			groupResult = transformGroup(index, targetSink.createGroupSink(index));
+		} catch (Exception e) {
+			log.error("Failed to start transformation of source group " + (index + 1), e);
+			cancel();
+			return;
+		}
+
+		Futures.addCallback(groupResult, new FutureCallback<Boolean>() {
+
+			@Override
+			public void onSuccess(Boolean success) {
+				if (success != null && success) {
+					if (completedGroups.incrementAndGet() == groupCount) {
+						result.set(true);
+					}
+					else {
+						startNext();
+					}
+				}
+				else {
+					log.error("Transformation of source group " + (index + 1) + " failed");
+					cancel();
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				log.error("Transformation of source group " + (index + 1) + " failed", t);
+				cancel();
+			}
+		});
+	}
+
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.headless.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings;
+import eu.esdihumboldt.hale.common.headless.transform.extension.TransformationSinkExtension;
+import eu.esdihumboldt.hale.common.headless.transform.validate.TransformedInstanceValidator;
+import eu.esdihumboldt.hale.common.instance.model.Filter;
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.common.instance.model.impl.FilteredInstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.impl.PseudoInstanceReference;
+import eu.esdihumboldt.hale.common.schema.model.TypeIndex;
+
+/**
+ * Transformation sink combining the sinks of several independent
+ * transformations. Each transformation adds its instances to its own group
+ * sink, the instance collection of this sink yields the instances of the
+ * groups one after another in the order of the groups.<br>
+ * <br>
+ * Group sinks are created only once the transformation of the respective
+ * group is started (see {@link #createGroupSink(int)}). If the sink is not
+ * reiterable, a group sink is disposed as soon as its instances have been
+ * consumed.<br>
+ * <br>
+ * As the group sinks are consumed in order, a transformation would block
+ * until the instances of the preceding groups have been consumed, once the
+ * instances it handed to its group sink exceed the sink's buffer. If groups
+ * are transformed concurrently, the sink should therefore be configured to
+ * spool the instances of each group to a temporary database instead
+ * (see {@link SpoolingTransformationSink}).
+ * 
+ * @author Simon Templer
+ */
+public class GroupedTransformationSink implements TransformationSink {
+
+	private final TransformationSink[] groupSinks;
+
+	private final boolean[] released;
+
+	private final boolean[] disposed;
+
+	private final boolean reiterable;
+
+	private final boolean spool;
+
+	private final TransformationSettings settings;
+
+	private final List<TransformedInstanceValidator> validators = new CopyOnWriteArrayList<>();
+
+	private volatile TypeIndex types;
+
+	private boolean cancelled;
+
+	private final InstanceCollection collection = new GroupedInstanceCollection();
+
+	/**
+	 * Create a grouped transformation sink.
+	 * 
+	 * @param groupCount the number of groups
+	 * @param reiterable if the transformation sink should be reiterable
+	 * @param spool if the instances of each group should be spooled to a
+	 *            temporary database, so the transformations of the groups
+	 *            never wait for the instances to be consumed
+	 * @param settings the transformation settings, used to configure the
+	 *            temporary databases if spooling
+	 */
+	public GroupedTransformationSink(int groupCount, boolean reiterable, boolean spool,
+			TransformationSettings settings) {
+		this.groupSinks = new TransformationSink[groupCount];
+		this.released = new boolean[groupCount];
+		this.disposed = new boolean[groupCount];
+		this.reiterable = reiterable;
+		this.spool = spool;
+		this.settings = settings;
+	}
+
+	/**
+	 * Create the sink for the transformation of a group. Must be called once
+	 * for each group, when the transformation of the group is started.
+	 * 
+	 * @param index the group index
+	 * @return the group sink
+	 * @throws Exception if no applicable transformation sink can be created
+	 */
+	public TransformationSink createGroupSink(int index) throws Exception {
+		TransformationSink sink;
+		if (spool) {
+			sink = new SpoolingTransformationSink(settings);
+		}
+		else {
+			sink = TransformationSinkExtension.getInstance().createSink(reiterable);
+		}
+		TypeIndex typeIndex = this.types;
+		if (typeIndex != null) {
+			sink.setTypes(typeIndex);
+		}
+		for (TransformedInstanceValidator validator : validators) {
+			sink.addValidator(validator);
+		}
+
+		synchronized (this) {
+			if (groupSinks[index] != null) {
+				sink.dispose();
+				throw new IllegalStateException("Sink for group " + index + " already created");
+			}
+			if (cancelled || released[index]) {
+				sink.done(true);
+			}
+			groupSinks[index] = sink;
+			notifyAll();
+		}
+		return sink;
+	}
+
+	/**
+	 * @return the number of groups
+	 */
+	public int getGroupCount() {
+		return groupSinks.length;
+	}
+
+	/**
+	 * Wait for the sink of the given group to be created.
+	 * 
+	 * @param index the group index
+	 * @return the group sink or <code>null</code> if the sink was cancelled
+	 *         before the group sink was created
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	private synchronized TransformationSink awaitGroupSink(int index)
+			throws InterruptedException {
+		while (groupSinks[index] == null && !cancelled) {
+			wait();
+		}
+		return groupSinks[index];
+	}
+
+	/**
+	 * Dispose the sink of a group whose instances have been consumed, if the
+	 * sink is not reiterable.
+	 * 
+	 * @param index the group index
+	 */
+	private void releaseGroupSink(int index) {
+		if (reiterable) {
+			return;
+		}
+		TransformationSink sink;
+		synchronized (this) {
+			released[index] = true;
+			sink = disposed[index] ? null : groupSinks[index];
+			disposed[index] = true;
+		}
+		if (sink != null) {
+			sink.dispose();
+		}
+	}
+
+	/**
+	 * Cancel the group sinks starting with the given group, as their
+	 * instances will not be consumed.
+	 * 
+	 * @param fromIndex the index of the first group to cancel
+	 */
+	private void cancelGroupSinks(int fromIndex) {
+		List<TransformationSink> sinks = new ArrayList<>();
+		synchronized (this) {
+			for (int i = fromIndex; i < groupSinks.length; i++) {
+				released[i] = true;
+				if (groupSinks[i] != null && !disposed[i]) {
+					sinks.add(groupSinks[i]);
+				}
+			}
+		}
+		for (TransformationSink sink : sinks) {
+			sink.done(true);
+		}
+	}
+
+	/**
+	 * Adding instances directly is not supported, instances have to be added
+	 * to the group sinks.
+	 * 
+	 * @see #createGroupSink(int)
+	 */
+	@Override
+	public void addInstance(Instance instance) {
+		throw new UnsupportedOperationException(
+				"Instances must be added to the sink of the respective group");
+	}
+
+	@Override
+	public void setTypes(TypeIndex types) {
+		this.types = types;
+		for (TransformationSink sink : getCreatedSinks()) {
+			sink.setTypes(types);
+		}
+	}
+
+	/**
+	 * Only cancelling is forwarded to the group sinks, they are completed
+	 * individually by the transformations of the groups.
+	 */
+	@Override
+	public void done(boolean cancel) {
+		if (cancel) {
+			synchronized (this) {
+				cancelled = true;
+				notifyAll();
+			}
+			for (TransformationSink sink : getCreatedSinks()) {
+				sink.done(true);
+			}
+		}
+	}
+
+	@Override
+	public InstanceCollection getInstanceCollection() {
+		return collection;
+	}
+
+	@Override
+	public void dispose() {
+		for (int i = 0; i < groupSinks.length; i++) {
+			TransformationSink sink;
+			synchronized (this) {
+				sink = disposed[i] ? null : groupSinks[i];
+				disposed[i] = true;
+			}
+			if (sink != null) {
+				sink.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Adds the validator to all group sinks, i.e. validation is done for each
+	 * group separately.
+	 */
+	@Override
+	public void addValidator(TransformedInstanceValidator validator) {
+		validators.add(validator);
+		for (TransformationSink sink : getCreatedSinks()) {
+			sink.addValidator(validator);
+		}
+	}
+
+	/**
+	 * @return the group sinks created so far that have not been disposed
+	 */
+	private synchronized List<TransformationSink> getCreatedSinks() {
+		List<TransformationSink> sinks = new ArrayList<>();
+		for (int i = 0; i < groupSinks.length; i++) {
+			if (groupSinks[i] != null && !disposed[i]) {
+				sinks.add(groupSinks[i]);
+			}
+		}
+		return sinks;
+	}
+
+	/**
+	 * Iterator yielding the instances of the group sinks one after another.
+	 */
+	private class GroupedResourceIterator implements ResourceIterator<Instance> {
+
+		private int groupIndex = -1;
+
+		private ResourceIterator<Instance> current;
+
+		@Override
+		public boolean hasNext() {
+			while (current == null || !current.hasNext()) {
+				if (current != null) {
+					current.close();
+					current = null;
+					releaseGroupSink(groupIndex);
+				}
+				if (groupIndex + 1 >= groupSinks.length) {
+					return false;
+				}
+				groupIndex++;
+
+				TransformationSink sink;
+				try {
+					sink = awaitGroupSink(groupIndex);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					sink = null;
+				}
+				if (sink == null) {
+					// cancelled before the group was started
+					groupIndex = groupSinks.length;
+					return false;
+				}
+				current = sink.getInstanceCollection().iterator();
+			}
+			return true;
+		}
+
+		@Override
+		public Instance next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return current.next();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			if (current != null) {
+				current.close();
+				current = null;
+			}
+			if (!reiterable) {
+				// instances can't be retrieved again, so prevent blocking of
+				// the transformations of the remaining groups
+				cancelGroupSinks(Math.max(groupIndex, 0));
+			}
+			groupIndex = groupSinks.length;
+		}
+
+	}
+
+	/**
+	 * Instance collection yielding the instances of the group sinks.
+	 */
+	private class GroupedInstanceCollection implements InstanceCollection {
+
+		@Override
+		public InstanceReference getReference(Instance instance) {
+			return new PseudoInstanceReference(instance);
+		}
+
+		@Override
+		public Instance getInstance(InstanceReference reference) {
+			return ((PseudoInstanceReference) reference).getInstance();
+		}
+
+		@Override
+		public ResourceIterator<Instance> iterator() {
+			return new GroupedResourceIterator();
+		}
+
+		@Override
+		public boolean hasSize() {
+			return false;
+		}
+
+		@Override
+		public int size() {
+			return UNKNOWN_SIZE;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			// XXX have to return false, even if it actually may be empty
+			return false;
+		}
+
+		@Override
+		public InstanceCollection select(Filter filter) {
+			return FilteredInstanceCollection.applyFilter(this, filter);
+		}
+
+	}
+
+}
@@ -17,34 +17,65 @@
 package eu.esdihumboldt.hale.common.headless.transform;
 
 import java.util.NoSuchElementException;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
 
+import de.fhg.igd.slf4jplus.ALogger;
+import de.fhg.igd.slf4jplus.ALoggerFactory;
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings;
 import eu.esdihumboldt.hale.common.instance.model.Filter;
 import eu.esdihumboldt.hale.common.instance.model.Instance;
 import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
 import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
 import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
-import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstance;
 import eu.esdihumboldt.hale.common.instance.model.impl.PseudoInstanceReference;
 import eu.esdihumboldt.hale.common.schema.model.TypeIndex;
 
 /**
  * Sink that holds instances in a limbo, to be collected through the offered
- * instance collection.
+ * instance collection.<br>
+ * <br>
+ * Instances are handed to the collecting thread in batches through a bounded
+ * queue, the batch and queue size can be adapted with
+ * {@link #configure(TransformationSettings)}.
  * 
  * @author Kai Schwierczek
  */
 public class LimboInstanceSink extends AbstractTransformationSink {
 
-	private static final Instance END = new DefaultInstance(null, null);
+	private static final ALogger log = ALoggerFactory.getLogger(LimboInstanceSink.class);
 
 	private final TargetInstanceCollection collection = new TargetInstanceCollection();
 	private TargetResourceIterator iterator = null;
-	private boolean cancelled;
+	private volatile boolean cancelled;
 
-	// XXX use a maximum number of entries?
-	private final BlockingDeque<Instance> queue = new LinkedBlockingDeque<Instance>(50);
+	private final StageMetrics metrics = new StageMetrics("Write target instances");
+
+	private volatile BatchedHandoff<Instance> handoff;
+
+	/**
+	 * Create a sink with the batch and queue size configured in the default
+	 * transformation settings.
+	 */
+	public LimboInstanceSink() {
+		configure(new TransformationSettings());
+	}
+
+	/**
+	 * Configure the batch and queue size used for handing off instances to
+	 * the collecting thread. Must be called before any instances are added.
+	 * 
+	 * @param settings the transformation settings
+	 */
+	public synchronized void configure(TransformationSettings settings) {
+		handoff = new BatchedHandoff<>(settings.getPipelineBatchSize(),
+				settings.getPipelineQueueSize(), metrics);
+	}
+
+	/**
+	 * @return the metrics of handing off instances to the collecting thread
+	 */
+	public StageMetrics getMetrics() {
+		return metrics;
+	}
 
 	@Override
 	protected synchronized void internalAddInstance(Instance instance) {
@@ -52,7 +83,7 @@ public class LimboInstanceSink extends AbstractTransformationSink {
 		if (cancelled)
 			return;
 		try {
-			queue.put(instance);
+			handoff.put(instance);
 		} catch (InterruptedException e) {
 			// ignore
 		}
@@ -60,19 +91,20 @@ public class LimboInstanceSink extends AbstractTransformationSink {
 
 	@Override
 	protected void internalDone(boolean cancel) {
-		try {
-			if (cancel) {
-				cancelled = true;
-				// ensure that the iterator doesn't block anymore
-				if (queue.remainingCapacity() > 10)
-					queue.putFirst(END);
-				// ensure that addInstance doesn't block anymore
-				queue.clear();
+		if (cancel) {
+			cancelled = true;
+			// ensure that neither the iterator nor addInstance block anymore
+			handoff.cancel();
+		}
+		else {
+			synchronized (this) {
+				try {
+					// hand off the last batch and the end indicator
+					handoff.finish();
+				} catch (InterruptedException e) {
+					// ignore
+				}
 			}
-			// in either case add another end indicator
-			queue.put(END);
-		} catch (InterruptedException e) {
-			// ignore
 		}
 	}
 
@@ -88,7 +120,7 @@ public class LimboInstanceSink extends AbstractTransformationSink {
 
 	@Override
 	public void dispose() {
-		queue.clear();
+		handoff.cancel();
 
 		super.dispose();
 	}
@@ -117,13 +149,16 @@ public class LimboInstanceSink extends AbstractTransformationSink {
 				// transformation is done, or more instances are coming
 				Instance result;
 				try {
-					result = queue.take();
+					result = handoff.take();
 				} catch (InterruptedException e) {
 					// shouldn't happen
 					return false;
 				}
-				if (result == END) {
+				if (result == null) {
 					endRead = true;
+					if (!cancelled) {
+						log.info(metrics.toString());
+					}
 					return false;
 				}
 				else {
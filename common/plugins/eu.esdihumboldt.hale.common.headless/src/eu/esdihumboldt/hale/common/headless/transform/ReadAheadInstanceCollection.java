@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.headless.transform;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import de.fhg.igd.slf4jplus.ALogger;
+import de.fhg.igd.slf4jplus.ALoggerFactory;
+import eu.esdihumboldt.hale.common.instance.model.Filter;
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.common.instance.model.ext.helper.InstanceCollectionDecorator;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+
+/**
+ * Instance collection decorator that reads the instances of the decorated
+ * collection ahead in a separate thread. This way reading (e.g. parsing) the
+ * source instances and transforming them are executed concurrently. Instances
+ * are handed from the reading to the consuming thread in batches through a
+ * bounded queue.<br>
+ * <br>
+ * The iterator of the decorated collection is created, used and closed
+ * exclusively in the reading thread, so the decorated collection must not
+ * rely on being accessed from a specific thread.
+ * 
+ * @author Simon Templer
+ */
+public class ReadAheadInstanceCollection extends InstanceCollectionDecorator {
+
+	private static final ALogger log = ALoggerFactory.getLogger(ReadAheadInstanceCollection.class);
+
+	private final int batchSize;
+
+	private final int queueSize;
+
+	/**
+	 * Create a read-ahead instance collection.
+	 * 
+	 * @param decoratee the instance collection to read ahead
+	 * @param batchSize the maximum number of instances handed off at once
+	 * @param queueSize the maximum number of batches read ahead
+	 */
+	public ReadAheadInstanceCollection(InstanceCollection decoratee, int batchSize,
+			int queueSize) {
+		super(decoratee);
+		this.batchSize = batchSize;
+		this.queueSize = queueSize;
+	}
+
+	@Override
+	public ResourceIterator<Instance> iterator() {
+		return new ReadAheadIterator();
+	}
+
+	@Override
+	public InstanceCollection select(Filter filter) {
+		return new ReadAheadInstanceCollection(decoratee.select(filter), batchSize, queueSize);
+	}
+
+	@Override
+	public InstanceCollection getInstances(Collection<? extends InstanceReference> references) {
+		// references are resolved by the decorated collection
+		return decoratee.getInstances(references);
+	}
+
+	@Override
+	public Map<TypeDefinition, InstanceCollection> fanout() {
+		Map<TypeDefinition, InstanceCollection> fanout = super.fanout();
+		if (fanout == null) {
+			return null;
+		}
+
+		Map<TypeDefinition, InstanceCollection> result = new HashMap<>();
+		for (Entry<TypeDefinition, InstanceCollection> entry : fanout.entrySet()) {
+			result.put(entry.getKey(), new ReadAheadInstanceCollection(entry.getValue(),
+					batchSize, queueSize));
+		}
+		return result;
+	}
+
+	/**
+	 * Iterator starting a thread that reads the instances of the decorated
+	 * collection.
+	 */
+	private class ReadAheadIterator implements ResourceIterator<Instance> {
+
+		private final StageMetrics metrics = new StageMetrics("Read source instances");
+
+		private final BatchedHandoff<Instance> handoff = new BatchedHandoff<>(batchSize,
+				queueSize, metrics);
+
+		private volatile Throwable failure;
+
+		private Instance next;
+
+		private boolean done = false;
+
+		public ReadAheadIterator() {
+			Thread reader = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					read();
+				}
+			}, "Read-ahead " + decoratee.getClass().getSimpleName());
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		private void read() {
+			try (ResourceIterator<Instance> it = decoratee.iterator()) {
+				while (it.hasNext()) {
+					if (!handoff.put(it.next())) {
+						// cancelled
+						return;
+					}
+				}
+			} catch (Throwable e) {
+				failure = e;
+			} finally {
+				try {
+					handoff.finish();
+				} catch (InterruptedException e) {
+					handoff.cancel();
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next != null) {
+				return true;
+			}
+			if (done) {
+				return false;
+			}
+
+			try {
+				next = handoff.take();
+			} catch (InterruptedException e) {
+				handoff.cancel();
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while reading source instances", e);
+			}
+
+			if (next == null) {
+				done = true;
+				if (!handoff.isCancelled()) {
+					log.info(metrics.toString());
+				}
+				if (failure != null) {
+					throw new IllegalStateException("Reading the source instances failed",
+							failure);
+				}
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public Instance next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Instance result = next;
+			next = null;
+			return result;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			done = true;
+			next = null;
+			handoff.cancel();
+		}
+
+	}
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.headless.transform;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import de.fhg.igd.slf4jplus.ALogger;
+import de.fhg.igd.slf4jplus.ALoggerFactory;
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings;
+import eu.esdihumboldt.hale.common.instance.model.DataSet;
+import eu.esdihumboldt.hale.common.instance.model.Filter;
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.common.instance.model.ext.helper.EmptyInstanceCollection;
+import eu.esdihumboldt.hale.common.instance.orient.storage.BrowseOrientInstanceCollection;
+import eu.esdihumboldt.hale.common.instance.orient.storage.LocalOrientDB;
+import eu.esdihumboldt.hale.common.instance.orient.storage.OrientInstanceReference;
+import eu.esdihumboldt.hale.common.instance.orient.storage.OrientInstanceSink;
+import eu.esdihumboldt.hale.common.schema.model.TypeIndex;
+
+/**
+ * Transformation sink that spools the added instances to a temporary
+ * database. Adding instances never blocks on the consumer, the instance
+ * collection of the sink only yields instances once the transformation is
+ * done. The collection can be iterated multiple times until the sink is
+ * disposed.<br>
+ * <br>
+ * The instances are handed to the thread writing to the database in batches
+ * through a bounded queue, the batch and queue size are configured in the
+ * transformation settings.
+ * 
+ * @author Simon Templer
+ */
+public class SpoolingTransformationSink extends AbstractTransformationSink {
+
+	private static final ALogger log = ALoggerFactory.getLogger(SpoolingTransformationSink.class);
+
+	private final Path tmpLocation;
+
+	private final LocalOrientDB database;
+
+	private final OrientInstanceSink orientSink;
+
+	/**
+	 * Thread writing to the database, the database locks are bound to the
+	 * thread that acquired them.
+	 */
+	private final ExecutorService dbThread = Executors.newSingleThreadExecutor();
+
+	private final StageMetrics metrics = new StageMetrics("Spool transformed instances");
+
+	private final BatchedHandoff<Instance> handoff;
+
+	private final CountDownLatch complete = new CountDownLatch(1);
+
+	private volatile boolean cancelled;
+
+	private volatile TypeIndex types;
+
+	private final InstanceCollection collection = new SpooledInstanceCollection();
+
+	/**
+	 * Create a sink spooling to a new temporary database.
+	 * 
+	 * @param settings the transformation settings to configure the database
+	 *            and the handoff to the database thread
+	 */
+	public SpoolingTransformationSink(TransformationSettings settings) {
+		super();
+
+		try {
+			this.tmpLocation = Files.createTempDirectory("transformationSpool");
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot create temporary database location", e);
+		}
+		this.database = new LocalOrientDB(tmpLocation.toFile(), settings);
+		this.orientSink = new OrientInstanceSink(database, false);
+		this.handoff = new BatchedHandoff<>(settings.getPipelineBatchSize(),
+				settings.getPipelineQueueSize(), metrics);
+
+		dbThread.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				spool();
+			}
+		});
+	}
+
+	/**
+	 * Write the instances handed off to the database, until the
+	 * transformation is done or cancelled. Called from the database thread.
+	 */
+	private void spool() {
+		try {
+			Instance instance;
+			while ((instance = handoff.take()) != null) {
+				orientSink.addInstance(instance);
+			}
+			if (!cancelled) {
+				log.info(metrics.toString());
+			}
+		} catch (InterruptedException e) {
+			log.warn("Spooling instances to the database interrupted", e);
+		} finally {
+			try {
+				orientSink.close();
+			} catch (IOException e) {
+				log.error("Failed to close OrientDB instance sink", e);
+			} finally {
+				complete.countDown();
+			}
+		}
+	}
+
+	@Override
+	public void setTypes(TypeIndex types) {
+		this.types = types;
+	}
+
+	@Override
+	protected synchronized void internalAddInstance(Instance instance) {
+		if (cancelled) {
+			return;
+		}
+		try {
+			handoff.put(instance);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	protected void internalDone(boolean cancel) {
+		if (cancel) {
+			cancelled = true;
+			// neither adding instances nor the database thread block anymore
+			handoff.cancel();
+			complete.countDown();
+		}
+		else {
+			synchronized (this) {
+				try {
+					// hand off the last batch and the end indicator
+					handoff.finish();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		dbThread.shutdown();
+	}
+
+	@Override
+	public InstanceCollection getInstanceCollection() {
+		return collection;
+	}
+
+	@Override
+	public void dispose() {
+		cancelled = true;
+		handoff.cancel();
+		complete.countDown();
+		dbThread.shutdown();
+		try {
+			dbThread.awaitTermination(60, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			log.warn("Waiting for termination of database thread interupted", e);
+		}
+		database.delete();
+		try {
+			Files.deleteIfExists(tmpLocation);
+		} catch (IOException e) {
+			log.warn("Could not delete database directory", e);
+		}
+
+		super.dispose();
+	}
+
+	/**
+	 * Wait until all instances are stored in the database.
+	 * 
+	 * @return the collection of the stored instances, an empty collection if
+	 *         the sink was cancelled
+	 */
+	private InstanceCollection getSpooledInstances() {
+		try {
+			complete.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return EmptyInstanceCollection.INSTANCE;
+		}
+		if (cancelled) {
+			return EmptyInstanceCollection.INSTANCE;
+		}
+		return new BrowseOrientInstanceCollection(database, types, DataSet.TRANSFORMED);
+	}
+
+	/**
+	 * Collection of the spooled instances, available once the transformation
+	 * is done.
+	 */
+	private class SpooledInstanceCollection implements InstanceCollection {
+
+		@Override
+		public InstanceReference getReference(Instance instance) {
+			return OrientInstanceReference.createReference(instance);
+		}
+
+		@Override
+		public Instance getInstance(InstanceReference reference) {
+			return ((OrientInstanceReference) reference).load(database, this);
+		}
+
+		@Override
+		public ResourceIterator<Instance> iterator() {
+			return getSpooledInstances().iterator();
+		}
+
+		@Override
+		public boolean hasSize() {
+			return false;
+		}
+
+		@Override
+		public int size() {
+			return UNKNOWN_SIZE;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			// XXX have to return false, even if it actually may be empty
+			return false;
+		}
+
+		@Override
+		public InstanceCollection select(Filter filter) {
+			return getSpooledInstances().select(filter);
+		}
+
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.headless.transform;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the handoff between two stages of the transformation pipeline,
+ * e.g. reading and transforming or transforming and writing. Records the
+ * throughput and how long the stages were blocked by each other: the
+ * producing stage is blocked if the queue is full (backpressure), the
+ * consuming stage is blocked if the queue is empty (starvation).
+ * 
+ * @author Simon Templer
+ */
+public class StageMetrics {
+
+	private final String name;
+
+	private final AtomicLong items = new AtomicLong();
+
+	private final AtomicLong batches = new AtomicLong();
+
+	private final AtomicLong producerBlocked = new AtomicLong();
+
+	private final AtomicLong consumerBlocked = new AtomicLong();
+
+	private final long start = System.nanoTime();
+
+	private volatile long end = -1;
+
+	/**
+	 * Create metrics for a pipeline stage handoff.
+	 * 
+	 * @param name the name of the handoff, e.g. <code>read</code>
+	 */
+	public StageMetrics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Record a batch handed to the consuming stage.
+	 * 
+	 * @param size the number of items in the batch
+	 * @param blockedNanos the time the producing stage was blocked because
+	 *            the queue was full, in nanoseconds
+	 */
+	void batchProduced(int size, long blockedNanos) {
+		items.addAndGet(size);
+		batches.incrementAndGet();
+		if (blockedNanos > 0) {
+			producerBlocked.addAndGet(blockedNanos);
+		}
+	}
+
+	/**
+	 * Record the consuming stage waiting for a batch.
+	 * 
+	 * @param blockedNanos the time the consuming stage was blocked because the
+	 *            queue was empty, in nanoseconds
+	 */
+	void batchConsumed(long blockedNanos) {
+		if (blockedNanos > 0) {
+			consumerBlocked.addAndGet(blockedNanos);
+		}
+	}
+
+	/**
+	 * Mark the handoff as completed.
+	 */
+	void completed() {
+		if (end < 0) {
+			end = System.nanoTime();
+		}
+	}
+
+	/**
+	 * @return the name of the handoff
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the number of items handed off
+	 */
+	public long getItems() {
+		return items.get();
+	}
+
+	/**
+	 * @return the number of batches handed off
+	 */
+	public long getBatches() {
+		return batches.get();
+	}
+
+	/**
+	 * @return the time in milliseconds the producing stage was blocked because
+	 *         the queue was full
+	 */
+	public long getProducerBlockedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(producerBlocked.get());
+	}
+
+	/**
+	 * @return the time in milliseconds the consuming stage was blocked because
+	 *         the queue was empty
+	 */
+	public long getConsumerBlockedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(consumerBlocked.get());
+	}
+
+	/**
+	 * @return the time in milliseconds since the handoff was created, until it
+	 *         was completed if it is already completed
+	 */
+	public long getElapsedMillis() {
+		long last = end;
+		if (last < 0) {
+			last = System.nanoTime();
+		}
+		return TimeUnit.NANOSECONDS.toMillis(last - start);
+	}
+
+	/**
+	 * @return the number of items handed off per second
+	 */
+	public double getThroughput() {
+		long elapsed = getElapsedMillis();
+		if (elapsed <= 0) {
+			return 0;
+		}
+		return getItems() * 1000.0 / elapsed;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%s: %d instances in %d batches, %.1f s (%.0f instances/s), producer blocked %.1f s, consumer blocked %.1f s",
+				name, getItems(), getBatches(), getElapsedMillis() / 1000.0, getThroughput(),
+				getProducerBlockedMillis() / 1000.0, getConsumerBlockedMillis() / 1000.0);
+	}
+
+}
@@ -27,21 +27,25 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.IJobChangeEvent;
-import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.jobs.JobChangeAdapter;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
+import de.fhg.igd.slf4jplus.ALogger;
+import de.fhg.igd.slf4jplus.ALoggerFactory;
 import eu.esdihumboldt.hale.common.align.model.Alignment;
 import eu.esdihumboldt.hale.common.align.model.Cell;
 import eu.esdihumboldt.hale.common.align.model.functions.CreateFunction;
 import eu.esdihumboldt.hale.common.align.model.functions.RetypeFunction;
 import eu.esdihumboldt.hale.common.align.transformation.report.TransformationReport;
 import eu.esdihumboldt.hale.common.align.transformation.service.TransformationService;
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings;
 import eu.esdihumboldt.hale.common.core.HalePlatform;
 import eu.esdihumboldt.hale.common.core.io.IOAdvisor;
 import eu.esdihumboldt.hale.common.core.io.IOProvider;
@@ -62,6 +66,7 @@ import eu.esdihumboldt.hale.common.instance.model.DataSet;
 import eu.esdihumboldt.hale.common.instance.model.Filter;
 import eu.esdihumboldt.hale.common.instance.model.Instance;
 import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.ext.RandomAccessInstanceCollection;
 import eu.esdihumboldt.hale.common.instance.model.impl.FilteredInstanceCollection;
 import eu.esdihumboldt.hale.common.instance.model.impl.MultiInstanceCollection;
 import eu.esdihumboldt.hale.common.instance.orient.OInstance;
@@ -79,6 +84,8 @@ import eu.esdihumboldt.hale.common.schema.model.SchemaSpace;
  */
 public class Transformation {
 
+	private static final ALogger log = ALoggerFactory.getLogger(Transformation.class);
+
 	/**
 	 * Transform the instances provided through the given instance readers and
 	 * supply the result to the given instance writer.
@@ -148,6 +155,174 @@ public class Transformation {
 			InstanceWriter target, final TransformationEnvironment environment,
 			final ReportHandler reportHandler, Object processId,
 			Collection<InstanceValidator> validators, InstanceFilterDefinition filterDefinition) {
+		// Apply Filter
+		InstanceCollection sourceCollection = applyFilter(
+				loadSources(sources, environment, reportHandler), filterDefinition);
+
+		final TransformationSink targetSink;
+		try {
+			targetSink = TransformationSinkExtension.getInstance()
+					.createSink(!target.isPassthrough());
+		} catch (Exception e) {
+			throw new IllegalStateException("Error creating target sink", e);
+		}
+		configureSink(targetSink, environment, reportHandler);
+
+		ExportJob exportJob = createExportJob(targetSink, target, environment, reportHandler);
+		ValidationJob validationJob = null; // no validation
+		if (validators != null && !validators.isEmpty()) {
+			validationJob = new ValidationJob(validators, reportHandler, target, environment);
+		}
+		return transform(sourceCollection, targetSink, exportJob, validationJob,
+				environment.getAlignment(), environment.getSourceSchema(), reportHandler,
+				environment, processId);
+	}
+
+	/**
+	 * Transform the instances provided through the given groups of instance
+	 * readers and supply the result to the given instance writer. The groups
+	 * are transformed independently of each other, with the given number of
+	 * group transformations running concurrently. The transformed instances
+	 * are written in the order of the groups. If groups are transformed
+	 * concurrently, the transformed instances of each group are spooled to a
+	 * temporary database until they are written, so the transformations don't
+	 * have to wait for the instances of preceding groups to be written.
+	 * 
+	 * @param sourceGroups the groups of instance readers
+	 * @param target the target instance writer
+	 * @param environment the transformation environment
+	 * @param reportHandler the report handler
+	 * @param processId the identifier for the transformation process, may be
+	 *            <code>null</code> if grouping the jobs to a job family is not
+	 *            necessary
+	 * @param validators the instance validators, may be <code>null</code> or
+	 *            empty
+	 * @param filterDefinition {@link InstanceFilterDefinition} object as a
+	 *            filter may be <code>null</code>
+	 * @param parallelism the maximum number of groups transformed concurrently
+	 * @return the future representing the successful completion of the
+	 *         transformation (note that a successful completion doesn't
+	 *         necessary mean there weren't any internal transformation errors)
+	 */
+	public static ListenableFuture<Boolean> transform(
+			final List<List<InstanceReader>> sourceGroups,
+			InstanceWriter target, final TransformationEnvironment environment,
+			final ReportHandler reportHandler, final Object processId,
+			Collection<InstanceValidator> validators,
+			final InstanceFilterDefinition filterDefinition, int parallelism) {
+		final SettableFuture<Boolean> result = SettableFuture.create();
+
+		final GroupedTransformationSink targetSink = new GroupedTransformationSink(
+				sourceGroups.size(), !target.isPassthrough(),
+				parallelism > 1 && sourceGroups.size() > 1,
+				TransformationSettings.get(environment));
+		configureSink(targetSink, environment, reportHandler);
+
+		final ExportJob exportJob = createExportJob(targetSink, target, environment,
+				reportHandler);
+		final ValidationJob validationJob;
+		if (validators != null && !validators.isEmpty()) {
+			validationJob = new ValidationJob(validators, reportHandler, target, environment);
+		}
+		else {
+			validationJob = null;
+		}
+		if (processId != null) {
+			exportJob.setProcessId(processId);
+			if (validationJob != null) {
+				validationJob.setProcessId(processId);
+			}
+		}
+		exportJob.setUser(true);
+
+		final GroupScheduler groups = new GroupScheduler(targetSink, parallelism) {
+
+			@Override
+			protected ListenableFuture<Boolean> transformGroup(int index,
+					TransformationSink groupSink) throws Exception {
+				InstanceCollection sourceCollection = applyFilter(
+						loadSources(sourceGroups.get(index), environment, reportHandler),
+						filterDefinition);
+				return transform(sourceCollection, groupSink, null, null,
+						environment.getAlignment(), environment.getSourceSchema(),
+						reportHandler, environment, processId);
+			}
+		};
+
+		// after export is done, validation should run
+		exportJob.addJobChangeListener(new JobChangeAdapter() {
+
+			@Override
+			public void done(IJobChangeEvent event) {
+				if (!event.getResult().isOK()) {
+					groups.cancel();
+
+					// failure
+					failure(result, event);
+					return;
+				}
+
+				// the export is only complete if all groups were transformed
+				Futures.addCallback(groups.getResult(), new FutureCallback<Boolean>() {
+
+					@Override
+					public void onSuccess(Boolean success) {
+						if (!success) {
+							result.set(false);
+						}
+						else if (validationJob == null) {
+							// success
+							result.set(true);
+						}
+						else {
+							// schedule the validation job
+							validationJob.schedule();
+						}
+					}
+
+					@Override
+					public void onFailure(Throwable t) {
+						result.setException(t);
+					}
+				});
+			}
+		});
+		// validation ends the process
+		if (validationJob != null) {
+			validationJob.addJobChangeListener(new JobChangeAdapter() {
+
+				@Override
+				public void done(IJobChangeEvent event) {
+					if (!event.getResult().isOK()) {
+						// failure
+						failure(result, event);
+					}
+					else {
+						// success
+						result.set(true);
+					}
+				}
+
+			});
+		}
+
+		exportJob.schedule();
+		groups.start();
+
+		return result;
+	}
+
+	/**
+	 * Create a list of instance collections that load the instances from the
+	 * given instance readers when they are accessed.
+	 * 
+	 * @param sources the instance readers
+	 * @param environment the transformation environment
+	 * @param reportHandler the report handler
+	 * @return the list of instance collections
+	 */
+	private static List<InstanceCollection> loadSources(List<InstanceReader> sources,
+			final TransformationEnvironment environment, final ReportHandler reportHandler) {
 		final IOAdvisor<InstanceReader> loadDataAdvisor = new AbstractIOAdvisor<InstanceReader>() {
 
 			/**
@@ -179,28 +354,31 @@ public class Transformation {
 			}
 		};
 
-		List<InstanceCollection> sourceList = Lists.transform(sources,
-				new Function<InstanceReader, InstanceCollection>() {
-
-					@Override
-					public InstanceCollection apply(@Nullable InstanceReader input) {
-						try {
-							HeadlessIO.executeProvider(input, loadDataAdvisor, null, reportHandler);
-							// XXX progress?!
-						} catch (IOException e) {
-							throw new IllegalStateException("Failed to load source data", e);
-						}
-						return input.getInstances();
-					}
-				});
+		return Lists.transform(sources, new Function<InstanceReader, InstanceCollection>() {
 
-		// Apply Filter
-		InstanceCollection sourceCollection = applyFilter(sourceList, filterDefinition);
+			@Override
+			public InstanceCollection apply(@Nullable InstanceReader input) {
+				try {
+					HeadlessIO.executeProvider(input, loadDataAdvisor, null, reportHandler);
+					// XXX progress?!
+				} catch (IOException e) {
+					throw new IllegalStateException("Failed to load source data", e);
+				}
+				return input.getInstances();
+			}
+		});
+	}
 
-		final TransformationSink targetSink;
+	/**
+	 * Configure the target sink for the given transformation environment.
+	 * 
+	 * @param targetSink the target sink
+	 * @param environment the transformation environment
+	 * @param reportHandler the report handler
+	 */
+	private static void configureSink(TransformationSink targetSink,
+			TransformationEnvironment environment, ReportHandler reportHandler) {
 		try {
-			targetSink = TransformationSinkExtension.getInstance()
-					.createSink(!target.isPassthrough());
 			targetSink.setTypes(environment.getTargetSchema());
 
 			// add validation to sink
@@ -213,7 +391,21 @@ public class Transformation {
 		} catch (Exception e) {
 			throw new IllegalStateException("Error creating target sink", e);
 		}
+	}
 
+	/**
+	 * Create the job writing the instances of the target sink with the given
+	 * instance writer.
+	 * 
+	 * @param targetSink the target sink
+	 * @param target the target instance writer
+	 * @param environment the transformation environment
+	 * @param reportHandler the report handler
+	 * @return the export job
+	 */
+	private static ExportJob createExportJob(final TransformationSink targetSink,
+			InstanceWriter target, final TransformationEnvironment environment,
+			ReportHandler reportHandler) {
 		IOAdvisor<InstanceWriter> saveDataAdvisor = new AbstractIOAdvisor<InstanceWriter>() {
 
 			/**
@@ -235,14 +427,7 @@ public class Transformation {
 		saveDataAdvisor.prepareProvider(target);
 		saveDataAdvisor.updateConfiguration(target);
 
-		ExportJob exportJob = new ExportJob(targetSink, target, saveDataAdvisor, reportHandler);
-		ValidationJob validationJob = null; // no validation
-		if (validators != null && !validators.isEmpty()) {
-			validationJob = new ValidationJob(validators, reportHandler, target, environment);
-		}
-		return transform(sourceCollection, targetSink, exportJob, validationJob,
-				environment.getAlignment(), environment.getSourceSchema(), reportHandler,
-				environment, processId);
+		return new ExportJob(targetSink, target, saveDataAdvisor, reportHandler);
 	}
 
 	/**
@@ -250,8 +435,10 @@ public class Transformation {
 	 * 
 	 * @param sources the collection of source instances
 	 * @param targetSink the target sink
-	 * @param exportJob the export job
-	 * @param validationJob the validation job, may be <code>null</code>
+	 * @param exportJob the export job, may be <code>null</code> if the
+	 *            instances of the target sink are exported separately
+	 * @param validationJob the validation job, may be <code>null</code>, must
+	 *            be <code>null</code> if there is no export job
 	 * @param alignment the alignment, may not be changed outside this method
 	 * @param sourceSchema the source schema
 	 * @param reportHandler the report handler
@@ -272,6 +459,11 @@ public class Transformation {
 
 		final InstanceCollection sourceToUse;
 
+		TransformationSettings settings = TransformationSettings.get(serviceProvider);
+		if (targetSink instanceof LimboInstanceSink) {
+			((LimboInstanceSink) targetSink).configure(settings);
+		}
+
 		// Check whether to create a temporary database or not.
 		// Currently do not create a temporary DB is there are Retypes/Creates
 		// only.
@@ -282,12 +474,19 @@ public class Transformation {
 				useTempDatabase = true;
 				break;
 			}
+		if (useTempDatabase && settings.isDatabaseSkipForRandomAccess()
+				&& RandomAccessInstanceCollection.supportsRandomAccess(sources)) {
+			// references can be resolved efficiently on the source itself
+			log.info(
+					"Source instances support random access, transforming without temporary database");
+			useTempDatabase = false;
+		}
 
 		// Create temporary database if necessary.
 		if (useTempDatabase) {
 			// create db
 			File tmpDir = Files.createTempDir();
-			db = new LocalOrientDB(tmpDir);
+			db = new LocalOrientDB(tmpDir, settings);
 			tmpDir.deleteOnExit();
 
 			// get instance collection
@@ -309,6 +508,12 @@ public class Transformation {
 
 					});
 		}
+		else if (settings.isPipelineReadAhead()) {
+			// read source instances concurrently to the transformation
+			sourceToUse = new ReadAheadInstanceCollection(sources,
+					settings.getPipelineBatchSize(), settings.getPipelineQueueSize());
+			db = null;
+		}
 		else {
 			sourceToUse = sources;
 			db = null;
@@ -357,49 +562,63 @@ public class Transformation {
 		// set process IDs to group jobs in a job family
 		if (processId != null) {
 			transformJob.setProcessId(processId);
-			exportJob.setProcessId(processId);
+			if (exportJob != null) {
+				exportJob.setProcessId(processId);
+			}
 			if (validationJob != null) {
 				validationJob.setProcessId(processId);
 			}
 		}
 
-		exportJob.setUser(true);
-
 		// the jobs should cancel each other
 		transformJob.addJobChangeListener(new JobChangeAdapter() {
 
 			@Override
 			public void done(IJobChangeEvent event) {
-				if (!event.getResult().isOK())
+				if (!event.getResult().isOK() && exportJob != null)
 					exportJob.cancel();
 
 				if (db != null)
 					db.delete();
-			}
-		});
-		// after export is done, validation should run
-		exportJob.addJobChangeListener(new JobChangeAdapter() {
-
-			@Override
-			public void done(IJobChangeEvent event) {
-				if (!event.getResult().isOK()) {
-					transformJob.cancel();
 
-					// failure
-					failure(result, event);
-				}
-				else {
-					if (validationJob == null) {
-						// success
+				if (exportJob == null) {
+					// the transformation ends the process
+					if (event.getResult().isOK()) {
 						result.set(true);
 					}
 					else {
-						// schedule the validation job
-						validationJob.schedule();
+						failure(result, event);
 					}
 				}
 			}
 		});
+		if (exportJob != null) {
+			exportJob.setUser(true);
+
+			// after export is done, validation should run
+			exportJob.addJobChangeListener(new JobChangeAdapter() {
+
+				@Override
+				public void done(IJobChangeEvent event) {
+					if (!event.getResult().isOK()) {
+						transformJob.cancel();
+
+						// failure
+						failure(result, event);
+					}
+					else {
+						if (validationJob == null) {
+							// success
+							result.set(true);
+						}
+						else {
+							// schedule the validation job
+							validationJob.schedule();
+						}
+					}
+				}
+			});
+		}
 		// validation ends the process
 		if (validationJob != null) {
 			validationJob.addJobChangeListener(new JobChangeAdapter() {
@@ -421,7 +640,8 @@ public class Transformation {
 
 		if (useTempDatabase) {
 			// run store instance job first...
-			Job storeJob = new StoreInstancesJob("Load source instances into temporary database",
+			StoreInstancesJob storeJob = new StoreInstancesJob(
+					"Load source instances into temporary database",
 					db, sources, reportHandler) {
 
 				@Override
@@ -439,13 +659,16 @@ public class Transformation {
 				}
 
 			};
+			storeJob.configure(settings);
 			// and schedule jobs on successful completion
 			storeJob.addJobChangeListener(new JobChangeAdapter() {
 
 				@Override
 				public void done(IJobChangeEvent event) {
 					if (event.getResult().isOK()) {
-						exportJob.schedule();
+						if (exportJob != null) {
+							exportJob.schedule();
+						}
 						transformJob.schedule();
 					}
 					else {
@@ -458,7 +681,9 @@ public class Transformation {
 		}
 		else {
 			// otherwise schedule jobs directly
-			exportJob.schedule();
+			if (exportJob != null) {
+				exportJob.schedule();
+			}
 			transformJob.schedule();
 		}
 
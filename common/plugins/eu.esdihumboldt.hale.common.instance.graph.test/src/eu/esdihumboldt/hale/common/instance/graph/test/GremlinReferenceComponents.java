@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.instance.graph.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.gremlin.java.GremlinPipeline;
+import com.tinkerpop.pipes.PipeFunction;
+import com.tinkerpop.pipes.branch.LoopPipe.LoopBundle;
+
+import eu.esdihumboldt.hale.common.instance.graph.reference.IdentityReferenceInspector;
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+
+/**
+ * Determines the sets of associated instances the way the reference graph did
+ * before it was based on a union-find structure, i.e. with a TinkerGraph and a
+ * Gremlin loop starting from an arbitrary vertex. Serves as baseline for
+ * {@link ReferenceGraphBenchmarkTest}.
+ * 
+ * @author Simon Templer
+ */
+public class GremlinReferenceComponents {
+
+	private static final String P_INSTANCE = "instance";
+
+	private static final String E_REFERENCE = "refs";
+
+	/**
+	 * Determine the sets of associated instances.
+	 * 
+	 * @param inspector the instance inspector
+	 * @param instances the instances
+	 * @return the identities of the instances in each set, sets w/o instances
+	 *         are omitted
+	 */
+	public static <T> List<Set<T>> getComponents(IdentityReferenceInspector<T> inspector,
+			InstanceCollection instances) {
+		TinkerGraph graph = new TinkerGraph();
+		Map<T, Vertex> identifiedVertices = new HashMap<>();
+
+		try (ResourceIterator<Instance> it = instances.iterator()) {
+			while (it.hasNext()) {
+				Instance instance = it.next();
+				T id = inspector.getIdentity(instance);
+				Vertex vertex = getVertex(graph, identifiedVertices, id);
+				vertex.setProperty(P_INSTANCE, id);
+
+				for (T idRef : inspector.getReferencedIdentities(instance)) {
+					Vertex assoc = getVertex(graph, identifiedVertices, idRef);
+					graph.addEdge(null, vertex, assoc, E_REFERENCE);
+				}
+			}
+		}
+		identifiedVertices.clear();
+
+		List<Set<T>> result = new ArrayList<>();
+		while (graph.getVertices().iterator().hasNext()) {
+			Vertex vtx = graph.getVertices().iterator().next();
+
+			final Set<Vertex> visited = new LinkedHashSet<>();
+			GremlinPipeline<Vertex, Vertex> pipe = new GremlinPipeline<>();
+			pipe.start(vtx).as("ref").aggregate(visited).both()
+					.loop("ref", new PipeFunction<LoopBundle<Vertex>, Boolean>() {
+
+						@Override
+						public Boolean compute(LoopBundle<Vertex> loop) {
+							return !visited.contains(loop.getObject());
+						}
+					}).iterate();
+
+			Set<T> component = new LinkedHashSet<>();
+			for (Vertex associated : visited) {
+				T id = associated.getProperty(P_INSTANCE);
+				if (id != null) {
+					component.add(id);
+				}
+				graph.removeVertex(associated);
+			}
+			if (!component.isEmpty()) {
+				result.add(component);
+			}
+		}
+
+		return result;
+	}
+
+	private static <T> Vertex getVertex(TinkerGraph graph, Map<T, Vertex> identifiedVertices,
+			T id) {
+		Vertex vertex = identifiedVertices.get(id);
+		if (vertex == null) {
+			vertex = graph.addVertex(id);
+			identifiedVertices.put(id, vertex);
+		}
+		return vertex;
+	}
+
+}
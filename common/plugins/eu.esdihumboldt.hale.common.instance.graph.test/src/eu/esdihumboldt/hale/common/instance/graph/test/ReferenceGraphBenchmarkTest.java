@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.instance.graph.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import eu.esdihumboldt.hale.common.instance.graph.reference.IdentityReferenceInspector;
+import eu.esdihumboldt.hale.common.instance.graph.reference.ReferenceGraph;
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstance;
+import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstanceCollection;
+
+/**
+ * Compares the union-find based {@link ReferenceGraph} to the TinkerGraph and
+ * Gremlin based determination of associated instances used before, see
+ * {@link GremlinReferenceComponents}.
+ * 
+ * @author Simon Templer
+ */
+public class ReferenceGraphBenchmarkTest {
+
+	private static final int INSTANCES = 20000;
+
+	private static final QName REF = new QName("ref");
+
+	/**
+	 * Inspector for the test instances, the instance value is the identity,
+	 * the values of the <code>ref</code> property are the references.
+	 */
+	private static final IdentityReferenceInspector<String> INSPECTOR = new IdentityReferenceInspector<String>() {
+
+		@Override
+		public String getIdentity(Instance instance) {
+			return (String) instance.getValue();
+		}
+
+		@Override
+		public Set<String> getReferencedIdentities(Instance instance) {
+			Set<String> result = new HashSet<>();
+			Object[] refs = instance.getProperty(REF);
+			if (refs != null) {
+				for (Object ref : refs) {
+					result.add((String) ref);
+				}
+			}
+			return result;
+		}
+	};
+
+	/**
+	 * Compare the time needed to determine the sets of associated instances
+	 * and check that both approaches yield the same sets.
+	 */
+	@Ignore
+	// benchmark, run manually
+	@Test
+	public void testBenchmark() {
+		InstanceCollection instances = createInstances(INSTANCES, 42);
+
+		// warm up
+		GremlinReferenceComponents.getComponents(INSPECTOR, createInstances(1000, 1));
+		getComponents(createInstances(1000, 1), false);
+
+		long start = System.nanoTime();
+		List<Set<String>> gremlin = GremlinReferenceComponents.getComponents(INSPECTOR,
+				instances);
+		long gremlinTime = (System.nanoTime() - start) / 1000000;
+
+		start = System.nanoTime();
+		List<Set<String>> unionFind = getComponents(instances, false);
+		long unionFindTime = (System.nanoTime() - start) / 1000000;
+
+		System.out.println(String.format(
+				"%d instances in %d inseparable sets%nGremlin:    %d ms%nUnion-find: %d ms",
+				INSTANCES, unionFind.size(), gremlinTime, unionFindTime));
+
+		assertEquals(new HashSet<>(gremlin), new HashSet<>(unionFind));
+		assertEquals(gremlin.size(), unionFind.size());
+	}
+
+	/**
+	 * Test if partitioning in streaming mode yields the same parts as
+	 * partitioning with collected instance references.
+	 */
+	@Test
+	public void testStreaming() {
+		InstanceCollection instances = createInstances(5000, 7);
+
+		assertEquals(getComponents(instances, false), getComponents(instances, true));
+		assertEquals(getParts(instances, 100, false), getParts(instances, 100, true));
+	}
+
+	/**
+	 * Test if all instances are retained if several instances have the same
+	 * identity.
+	 */
+	@Test
+	public void testDuplicateIdentity() {
+		List<Instance> list = new ArrayList<>();
+		list.add(createInstance("a", "b"));
+		list.add(createInstance("b"));
+		list.add(createInstance("a"));
+		list.add(createInstance("c"));
+		InstanceCollection instances = new DefaultInstanceCollection(list);
+
+		List<List<String>> parts = getParts(instances, 10, false);
+		assertEquals(1, parts.size());
+		assertEquals(Arrays.asList("a", "b", "a", "c"), parts.get(0));
+	}
+
+	/**
+	 * Determine the sets of associated instances by partitioning with a single
+	 * object per part.
+	 * 
+	 * @param instances the instances
+	 * @param streaming if the reference graph should use streaming mode
+	 * @return the identities of the instances in each set
+	 */
+	private List<Set<String>> getComponents(InstanceCollection instances, boolean streaming) {
+		List<Set<String>> result = new ArrayList<>();
+		for (List<String> part : getParts(instances, 1, streaming)) {
+			result.add(new LinkedHashSet<>(part));
+		}
+		return result;
+	}
+
+	private List<List<String>> getParts(InstanceCollection instances, int maxObjects,
+			boolean streaming) {
+		ReferenceGraph<String> graph = new ReferenceGraph<String>(INSPECTOR, instances,
+				streaming);
+		List<List<String>> result = new ArrayList<>();
+		Iterator<InstanceCollection> parts = graph.partition(maxObjects);
+		while (parts.hasNext()) {
+			List<String> ids = new ArrayList<>();
+			try (ResourceIterator<Instance> it = parts.next().iterator()) {
+				while (it.hasNext()) {
+					ids.add(INSPECTOR.getIdentity(it.next()));
+				}
+			}
+			result.add(ids);
+		}
+		return result;
+	}
+
+	/**
+	 * Create instances that reference up to three random other instances
+	 * nearby, some references are not resolved.
+	 * 
+	 * @param count the number of instances
+	 * @param seed the random seed
+	 * @return the instance collection
+	 */
+	private static InstanceCollection createInstances(int count, long seed) {
+		Random random = new Random(seed);
+		List<Instance> list = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int refCount = random.nextInt(4);
+			String[] refs = new String[refCount];
+			for (int j = 0; j < refCount; j++) {
+				int ref = i + random.nextInt(20) - 10;
+				refs[j] = (ref >= 0 && random.nextInt(50) > 0) ? ("i" + ref) : ("missing" + i);
+			}
+			list.add(createInstance("i" + i, refs));
+		}
+		return new DefaultInstanceCollection(list);
+	}
+
+	private static Instance createInstance(String id, String... refs) {
+		DefaultInstance instance = new DefaultInstance(null, null);
+		instance.setValue(id);
+		for (String ref : refs) {
+			instance.addProperty(REF, ref);
+		}
+		return instance;
+	}
+
+}
@@ -16,28 +16,17 @@
 package eu.esdihumboldt.hale.common.instance.graph.reference;
 
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Queue;
-import java.util.Set;
-import java.util.stream.Collectors;
-
-import javax.annotation.Nullable;
-
-import com.tinkerpop.blueprints.Direction;
-import com.tinkerpop.blueprints.Vertex;
-import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
-import com.tinkerpop.gremlin.java.GremlinPipeline;
-import com.tinkerpop.pipes.PipeFunction;
-import com.tinkerpop.pipes.branch.LoopPipe.LoopBundle;
 
 import de.fhg.igd.slf4jplus.ALogger;
 import de.fhg.igd.slf4jplus.ALoggerFactory;
@@ -48,43 +37,24 @@ import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
 import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
 
 /**
- * Graph with associations between instances.
+ * Graph with associations between instances.<br>
+ * <br>
+ * The identities of the instances and the identities they reference are
+ * interned as consecutive node numbers, and the sets of associated nodes are
+ * tracked in a union-find structure based on primitive arrays. The sets are
+ * the inseparable parts of the instances when partitioning.<br>
+ * <br>
+ * In streaming mode the instance references are not collected while the
+ * identities are inspected. Instead the instances are iterated a second time
+ * when partitioning, once it is known to which part each instance belongs.
+ * This requires that the instance collection yields the instances in the same
+ * order on each iteration.
  * 
  * @author Simon Templer
  * @param <T> the identifier type, must have a sensible equals implementation
  */
 public class ReferenceGraph<T> {
 
-	/**
-	 * Custom tinker graph that allows fast access to a random contained vertex
-	 * and to the information if the graph has any vertices.
-	 * 
-	 * This class was created because the call to
-	 * {@link TinkerGraph#getVertices()} is very expensive for large graphs.
-	 */
-	public class CustomTinkerGraph extends TinkerGraph {
-
-		private static final long serialVersionUID = -6470218605426839887L;
-
-		/**
-		 * @return a vertex in the graph
-		 */
-		@Nullable
-		public Vertex someVertex() {
-			if (isEmpty())
-				return null;
-			return vertices.values().iterator().next();
-		}
-
-		/**
-		 * @return if the graph is empty
-		 */
-		public boolean isEmpty() {
-			return vertices.isEmpty();
-		}
-
-	}
-
 	private static final ALogger log = ALoggerFactory.getLogger(ReferenceGraph.class);
 
 	/**
@@ -92,181 +62,106 @@ public class ReferenceGraph<T> {
 	 */
 	public class PartitionIterator implements Iterator<InstanceCollection> {
 
-		private final Queue<List<InstanceReference>> candidates = new LinkedList<>();
-		private final int maxObjects;
-		private int partCount = 0;
+		private final List<List<InstanceReference>> parts;
+		private int partIndex = 0;
 		private int partSum = 0;
-		private int biggestAtom = 0;
+		private final int biggestAtom;
 
 		/**
 		 * @param maxObjects the guiding value for the maximum number of objects
 		 *            in a part
 		 */
 		public PartitionIterator(int maxObjects) {
-			this.maxObjects = maxObjects;
-		}
-
-		@Override
-		public boolean hasNext() {
-			/*
-			 * There are additional parts if there are candidates in the queue
-			 * and/or vertices left in the graph.
-			 */
-			return !candidates.isEmpty() || verticesLeft();
-		}
-
-		private boolean verticesLeft() {
-			return !graph.isEmpty();
-		}
-
-		@Override
-		public InstanceCollection next() {
-			List<InstanceReference> part = candidates.poll();
-			if (part == null) {
-				part = new ArrayList<>(maxObjects);
+			maxObjects = Math.max(1, maxObjects);
+
+			// determine the atomic parts and their sizes
+			int[] componentOfRoot = new int[nodeCount];
+			Arrays.fill(componentOfRoot, -1);
+			int[] componentSizes = new int[Math.max(1, nodeCount)];
+			int componentCount = 0;
+			for (int node = 0; node < nodeCount; node++) {
+				int root = find(node);
+				int component = componentOfRoot[root];
+				if (component < 0) {
+					component = componentCount++;
+					componentOfRoot[root] = component;
+				}
+				if (resolved.get(node)) {
+					componentSizes[component]++;
+				}
 			}
 
-			Queue<List<InstanceReference>> nextCandidates = new LinkedList<>();
+			int[] partOfComponent = new int[componentCount];
+			int[] partSizes = assignParts(componentSizes, componentCount, maxObjects,
+					partOfComponent);
+			biggestAtom = max(componentSizes, componentCount);
 
-			while (verticesLeft() && part.size() < maxObjects) {
-				// add to part
-				List<InstanceReference> instances = getNextAtomicPart();
-				biggestAtom = Math.max(biggestAtom, instances.size());
+			parts = new ArrayList<>(partSizes.length);
+			for (int size : partSizes) {
+				parts.add(new ArrayList<InstanceReference>(size));
+			}
 
-				if (part.size() + instances.size() > maxObjects) {
-					// add to part candidates for later use
-					nextCandidates.add(instances);
-					if (!verticesLeft()) {
-						// we added everything to candidates and need to
-						// terminate the loop
-						break;
+			if (streaming) {
+				// second pass over the instances
+				int index = 0;
+				try (ResourceIterator<Instance> it = originalCollection.iterator()) {
+					while (it.hasNext()) {
+						Instance instance = it.next();
+						if (index >= instanceCount) {
+							throw new IllegalStateException(
+									"Instance collection yields more instances than when building the reference graph");
+						}
+						int node = instanceNodes[index++];
+						parts.get(partOfComponent[componentOfRoot[find(node)]])
+								.add(originalCollection.getReference(instance));
 					}
 				}
-				else {
-					// add to current part
-					part.addAll(instances);
+				if (index < instanceCount) {
+					throw new IllegalStateException(
+							"Instance collection yields fewer instances than when building the reference graph");
 				}
 			}
-
-			// try to add parts from previous candidates
-			while (!candidates.isEmpty() && part.size() < maxObjects) {
-				List<InstanceReference> instances = candidates.poll();
-
-				if (part.size() + instances.size() > maxObjects) {
-					// add to part candidates for later use
-					nextCandidates.add(instances);
-				}
-				else {
-					// add to current part
-					part.addAll(instances);
+			else {
+				for (int index = 0; index < instanceCount; index++) {
+					int node = instanceNodes[index];
+					parts.get(partOfComponent[componentOfRoot[find(node)]])
+							.add(references.get(index));
 				}
 			}
 
-			// collected candidates for next attempt
-			candidates.addAll(nextCandidates);
+			// the graph is no longer needed
+			releaseGraph();
+		}
 
-			if (part.isEmpty()) {
-				// no vertices left
-				if (!candidates.isEmpty()) {
-					// yield a previously stored candidate that was to big
-					// to fit into a request
-					part = candidates.poll();
-				}
-				else {
-					throw new NoSuchElementException("All parts were retrieved");
-				}
+		@Override
+		public boolean hasNext() {
+			return partIndex < parts.size();
+		}
+
+		@Override
+		public InstanceCollection next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException("All parts were retrieved");
 			}
 
-			partCount++;
+			List<InstanceReference> part = parts.get(partIndex);
+			// release the part
+			parts.set(partIndex, null);
+			partIndex++;
+
 			partSum += part.size();
-			log.debug("Reference based partitioning - Part {} - {} instances", partCount,
+			log.debug("Reference based partitioning - Part {} - {} instances", partIndex,
 					part.size());
 
 			if (!hasNext()) {
 				log.info(MessageFormat.format(
 						"Completed partitioning of {1} instances in {0} parts, biggest inseparable set of instances was of size {2}.",
-						partCount, partSum, biggestAtom));
+						partIndex, partSum, biggestAtom));
 			}
 
 			return new ReferencesInstanceCollection(part, originalCollection);
 		}
 
-		/**
-		 * @return the next atomic part from the graph as instance references
-		 */
-		private List<InstanceReference> getNextAtomicPart() {
-			// select an arbitrary vertex
-			Vertex vtx = graph.someVertex();
-			if (vtx != null) {
-				// get all vertices associated with that vertex
-				final Set<Vertex> visited = new LinkedHashSet<>();
-				if (!vtx.getEdges(Direction.BOTH).iterator().hasNext()) {
-					// no edges associated - no need to use gremlin
-					// does not speed up the process by much though
-					visited.add(vtx);
-				}
-				else {
-					/**
-					 * Example for the Groovy console - getting all associated
-					 * vertices. <code>
-					 * g = TinkerGraphFactory.createTinkerGraph()
-					 * x = new LinkedHashSet()
-					 * g.v(1).as('ref').aggregate(x).both.loop('ref', { !x.contains(it.object) })
-					 * x
-					 * </code>
-					 */
-					GremlinPipeline<Vertex, Vertex> pipe = new GremlinPipeline<>();
-					pipe.start(vtx).as("ref").aggregate(visited).both()
-							.loop("ref", new PipeFunction<LoopBundle<Vertex>, Boolean>() {
-
-								@Override
-								public Boolean compute(LoopBundle<Vertex> loop) {
-									return !visited.contains(loop.getObject());
-								}
-							}).iterate();
-				}
-
-				List<InstanceReference> result = new ArrayList<>();
-				for (Vertex associated : visited) {
-					InstanceReference ref = associated.getProperty(P_INSTANCE_REFERENCE);
-					if (ref != null) {
-						result.add(ref);
-					}
-					else {
-						Iterable<Vertex> referers = associated.getVertices(Direction.IN);
-						Set<String> ids = new HashSet<>();
-						if (referers != null) {
-							for (Vertex referer : referers) {
-								Object ident = referer.getId();
-								if (ident != null) {
-									ids.add(ident.toString());
-								}
-							}
-						}
-						if (ids.isEmpty()) {
-							log.warn("Encountered referenced object w/o associated instance: "
-									+ associated.getId());
-						}
-						else {
-							String enumIds = ids.stream().collect(Collectors.joining(", "));
-							log.warn("Encountered referenced object w/o associated instance: "
-									+ associated.getId() + " - referenced from " + enumIds);
-						}
-					}
-				}
-
-				// remove vertices from graph
-				for (Vertex v : visited) {
-					graph.removeVertex(v);
-				}
-
-				return result;
-			}
-			else {
-				return Collections.emptyList();
-			}
-		}
-
 		@Override
 		public void remove() {
 			throw new UnsupportedOperationException();
@@ -274,20 +169,54 @@ public class ReferenceGraph<T> {
 
 	}
 
-	private static final String P_INSTANCE_REFERENCE = "instanceRef";
+	private final IdentityReferenceInspector<T> inspector;
 
-	private static final String E_REFERENCE = "refs";
+	private final InstanceCollection originalCollection;
 
-	private final CustomTinkerGraph graph;
+	private final boolean streaming;
 
-	private final IdentityReferenceInspector<T> inspector;
+	/**
+	 * Index for fast retrieval of nodes by identifier, only needed while the
+	 * graph is populated.
+	 */
+	private Map<T, Integer> identifiedNodes = new HashMap<>();
 
 	/**
-	 * Index for fast retrieval of vertices by identifier.
+	 * Parent nodes in the union-find structure, a node is the root of its set
+	 * if it is its own parent.
 	 */
-	private final Map<T, Vertex> identifiedVertices = new HashMap<>();
+	private int[] parents = new int[1024];
 
-	private final InstanceCollection originalCollection;
+	/**
+	 * Sizes of the sets, only valid for the root nodes.
+	 */
+	private int[] setSizes = new int[1024];
+
+	/**
+	 * A node referencing the node, only set for nodes that were not
+	 * associated to an instance (yet), <code>-1</code> if none.
+	 */
+	private int[] referers = new int[1024];
+
+	private int nodeCount = 0;
+
+	/**
+	 * Nodes that are associated to an instance.
+	 */
+	private BitSet resolved = new BitSet();
+
+	/**
+	 * The instance references in the order the instances were added, not
+	 * used in streaming mode.
+	 */
+	private List<InstanceReference> references;
+
+	/**
+	 * The nodes of the instances in the order they were added.
+	 */
+	private int[] instanceNodes = new int[1024];
+
+	private int instanceCount = 0;
 
 	private boolean partitioned = false;
 
@@ -298,14 +227,33 @@ public class ReferenceGraph<T> {
 	 * @param instances the
 	 */
 	public ReferenceGraph(IdentityReferenceInspector<T> inspector, InstanceCollection instances) {
-		this.graph = new CustomTinkerGraph();
+		this(inspector, instances, false);
+	}
+
+	/**
+	 * Create a new reference graph from the given instance collection.
+	 * 
+	 * @param inspector the instance inspector to use
+	 * @param instances the instances
+	 * @param streaming if the instance references should be retrieved in a
+	 *            second pass over the instances when partitioning, instead of
+	 *            being collected while populating the graph
+	 */
+	public ReferenceGraph(IdentityReferenceInspector<T> inspector, InstanceCollection instances,
+			boolean streaming) {
 		this.inspector = inspector;
 		this.originalCollection = instances;
+		this.streaming = streaming;
+		if (!streaming) {
+			references = new ArrayList<>();
+		}
 
 		populate(instances);
 
-		// identified vertices no longer needed after populate
-		identifiedVertices.clear();
+		warnUnresolved();
+
+		// identified nodes no longer needed after populate
+		identifiedNodes = null;
 	}
 
 	/**
@@ -317,7 +265,7 @@ public class ReferenceGraph<T> {
 		try (ResourceIterator<Instance> it = instances.iterator()) {
 			while (it.hasNext()) {
 				Instance instance = it.next();
-				addInstance(instance, instances.getReference(instance));
+				addInstance(instance, (streaming) ? (null) : (instances.getReference(instance)));
 			}
 		}
 	}
@@ -326,21 +274,37 @@ public class ReferenceGraph<T> {
 	 * Add an instance to the reference graph.
 	 * 
 	 * @param instance the instance to add
-	 * @param ref the reference that can be used to retrieve the instance
+	 * @param ref the reference that can be used to retrieve the instance, is
+	 *            ignored in streaming mode
 	 */
 	protected void addInstance(Instance instance, InstanceReference ref) {
-		// retrieve / create vertex
+		// retrieve / create node
 		T id = inspector.getIdentity(instance);
-		Vertex vertex = getVertex(id);
+		int node = getNode(id);
+		if (resolved.get(node)) {
+			// another instance with the same identity, keep both together
+			int duplicate = createNode();
+			union(node, duplicate);
+			node = duplicate;
+		}
+		resolved.set(node);
+
 		// store instance reference
-		vertex.setProperty(P_INSTANCE_REFERENCE, ref);
-
-		// create references
-		Set<T> associations = inspector.getReferencedIdentities(instance);
-		for (T idRef : associations) {
-			Vertex assoc = getVertex(idRef);
-			// add edge between vertices
-			graph.addEdge(null, vertex, assoc, E_REFERENCE);
+		if (instanceCount == instanceNodes.length) {
+			instanceNodes = Arrays.copyOf(instanceNodes, instanceCount * 2);
+		}
+		instanceNodes[instanceCount++] = node;
+		if (references != null) {
+			references.add(ref);
+		}
+
+		// associate referenced nodes
+		for (T idRef : inspector.getReferencedIdentities(instance)) {
+			int assoc = getNode(idRef);
+			union(node, assoc);
+			if (!resolved.get(assoc) && referers[assoc] < 0) {
+				referers[assoc] = node;
+			}
 		}
 	}
 
@@ -362,16 +326,222 @@ public class ReferenceGraph<T> {
 				"Partitioning the instance collection can only be done once");
 	}
 
-	private Vertex getVertex(T id) {
-		Vertex vertex = null;
-		if (id != null) {
-			vertex = identifiedVertices.get(id);
+	/**
+	 * Assign the atomic parts to parts. Atomic parts are added to a part in
+	 * order, as long as they fit. Atomic parts that don't fit are kept as
+	 * candidates for the following parts. Atomic parts that are bigger than
+	 * the maximum number of objects form a part of their own.
+	 * 
+	 * @param sizes the sizes of the atomic parts
+	 * @param count the number of atomic parts
+	 * @param maxObjects the guiding value for the maximum number of objects in
+	 *            a part
+	 * @param partOf array to populate with the part index for each atomic
+	 *            part
+	 * @return the sizes of the parts
+	 */
+	static int[] assignParts(int[] sizes, int count, int maxObjects, int[] partOf) {
+		int[] partSizes = new int[16];
+		int partCount = 0;
+
+		Queue<Integer> candidates = new ArrayDeque<>();
+		int next = 0;
+		while (true) {
+			// skip atomic parts w/o instances
+			while (next < count && sizes[next] == 0) {
+				partOf[next++] = -1;
+			}
+			if (candidates.isEmpty() && next >= count) {
+				break;
+			}
+
+			List<Integer> part = new ArrayList<>();
+			int partSize = 0;
+			Integer first = candidates.poll();
+			if (first != null) {
+				part.add(first);
+				partSize = sizes[first];
+			}
+
+			Queue<Integer> nextCandidates = new ArrayDeque<>();
+
+			while (next < count && partSize < maxObjects) {
+				int atom = next++;
+				if (sizes[atom] == 0) {
+					partOf[atom] = -1;
+				}
+				else if (partSize + sizes[atom] > maxObjects) {
+					// add to part candidates for later use
+					nextCandidates.add(atom);
+				}
+				else {
+					// add to current part
+					part.add(atom);
+					partSize += sizes[atom];
+				}
+			}
+
+			// try to add parts from previous candidates
+			while (!candidates.isEmpty() && partSize < maxObjects) {
+				int atom = candidates.poll();
+				if (partSize + sizes[atom] > maxObjects) {
+					// add to part candidates for later use
+					nextCandidates.add(atom);
+				}
+				else {
+					// add to current part
+					part.add(atom);
+					partSize += sizes[atom];
+				}
+			}
+
+			// collected candidates for next attempt
+			candidates.addAll(nextCandidates);
+
+			if (part.isEmpty()) {
+				if (candidates.isEmpty()) {
+					break;
+				}
+				// yield a previously stored candidate that was to big to fit
+				// into a request
+				int atom = candidates.poll();
+				part.add(atom);
+				partSize = sizes[atom];
+			}
+
+			if (partCount == partSizes.length) {
+				partSizes = Arrays.copyOf(partSizes, partCount * 2);
+			}
+			for (int atom : part) {
+				partOf[atom] = partCount;
+			}
+			partSizes[partCount++] = partSize;
+		}
+
+		return Arrays.copyOf(partSizes, partCount);
+	}
+
+	private static int max(int[] values, int count) {
+		int max = 0;
+		for (int i = 0; i < count; i++) {
+			max = Math.max(max, values[i]);
+		}
+		return max;
+	}
+
+	/**
+	 * Log a warning for each referenced identity that is not associated to an
+	 * instance.
+	 */
+	private void warnUnresolved() {
+		Map<Integer, T> referringIds = new HashMap<>();
+		for (Entry<T, Integer> entry : identifiedNodes.entrySet()) {
+			int node = entry.getValue();
+			if (!resolved.get(node) && referers[node] >= 0) {
+				referringIds.put(referers[node], null);
+			}
+		}
+		if (referringIds.isEmpty()) {
+			return;
+		}
+		for (Entry<T, Integer> entry : identifiedNodes.entrySet()) {
+			if (referringIds.containsKey(entry.getValue())) {
+				referringIds.put(entry.getValue(), entry.getKey());
+			}
+		}
+
+		for (Entry<T, Integer> entry : identifiedNodes.entrySet()) {
+			int node = entry.getValue();
+			if (!resolved.get(node)) {
+				T referer = (referers[node] >= 0) ? (referringIds.get(referers[node])) : (null);
+				if (referer == null) {
+					log.warn("Encountered referenced object w/o associated instance: "
+							+ entry.getKey());
+				}
+				else {
+					log.warn("Encountered referenced object w/o associated instance: "
+							+ entry.getKey() + " - referenced from " + referer);
+				}
+			}
+		}
+	}
+
+	private void releaseGraph() {
+		parents = null;
+		setSizes = null;
+		referers = null;
+		resolved = null;
+		references = null;
+		instanceNodes = null;
+	}
+
+	private int getNode(T id) {
+		if (id == null) {
+			// instances w/o identity can't be referenced
+			return createNode();
+		}
+		Integer node = identifiedNodes.get(id);
+		if (node == null) {
+			node = createNode();
+			identifiedNodes.put(id, node);
+		}
+		return node;
+	}
+
+	private int createNode() {
+		if (nodeCount == parents.length) {
+			int capacity = nodeCount * 2;
+			parents = Arrays.copyOf(parents, capacity);
+			setSizes = Arrays.copyOf(setSizes, capacity);
+			referers = Arrays.copyOf(referers, capacity);
+		}
+		int node = nodeCount++;
+		parents[node] = node;
+		setSizes[node] = 1;
+		referers[node] = -1;
+		return node;
+	}
+
+	/**
+	 * Find the root of the set a node belongs to, compressing the path on the
+	 * way.
+	 * 
+	 * @param node the node
+	 * @return the root node
+	 */
+	private int find(int node) {
+		int root = node;
+		while (parents[root] != root) {
+			root = parents[root];
+		}
+		while (parents[node] != root) {
+			int parent = parents[node];
+			parents[node] = root;
+			node = parent;
+		}
+		return root;
+	}
+
+	/**
+	 * Merge the sets of two nodes.
+	 * 
+	 * @param a the first node
+	 * @param b the second node
+	 */
+	private void union(int a, int b) {
+		int rootA = find(a);
+		int rootB = find(b);
+		if (rootA == rootB) {
+			return;
 		}
-		if (vertex == null) {
-			vertex = graph.addVertex(id);
-			identifiedVertices.put(id, vertex);
+		// attach the smaller set to the bigger one
+		if (setSizes[rootA] < setSizes[rootB]) {
+			int tmp = rootA;
+			rootA = rootB;
+			rootB = tmp;
 		}
-		return vertex;
+		parents[rootB] = rootA;
+		setSizes[rootA] += setSizes[rootB];
 	}
 
 }
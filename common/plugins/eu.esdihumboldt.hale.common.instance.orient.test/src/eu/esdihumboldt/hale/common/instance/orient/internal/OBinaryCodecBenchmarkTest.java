@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.instance.orient.internal;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+
+import eu.esdihumboldt.hale.common.instance.geometry.DefaultGeometryProperty;
+import eu.esdihumboldt.hale.common.instance.geometry.impl.CodeDefinition;
+import eu.esdihumboldt.hale.common.schema.geometry.CRSDefinition;
+import eu.esdihumboldt.hale.common.schema.geometry.GeometryProperty;
+import eu.esdihumboldt.util.Identifiers;
+
+/**
+ * Compares the {@link OBinaryCodec} to the encoding used before by
+ * {@link OSerializationHelper}: Java serialization for values like dates and
+ * decimals, WKB plus a string CRS identifier for geometry properties. Only the
+ * encoded payload is compared, not the documents wrapping it in the database
+ * (which were additionally reduced, as the payload no longer is a separate
+ * record).
+ * 
+ * @author Simon Templer
+ */
+public class OBinaryCodecBenchmarkTest {
+
+	private static final int ROUNDS = 20000;
+
+	private static final Identifiers<CRSDefinition> CRS_IDS = new Identifiers<CRSDefinition>(
+			"crs", true);
+
+	/**
+	 * Compare size and encoding/decoding time for typical values.
+	 */
+	@Ignore
+	// benchmark, run manually
+	@Test
+	public void testBenchmark() {
+		CRSDefinition crs = new CodeDefinition("EPSG:25832");
+
+		List<Object> values = new ArrayList<>();
+		values.add(new Date(1234567890123L));
+		Timestamp timestamp = new Timestamp(1234567890123L);
+		timestamp.setNanos(5000);
+		values.add(timestamp);
+		values.add(new BigDecimal("123456.789"));
+		values.add(new ArrayList<>(Arrays.asList(new BigDecimal("1.5"), new BigDecimal("2.25"))));
+		values.add(new DefaultGeometryProperty<Geometry>(crs, OBinaryCodecTest.createLine(2)));
+		values.add(new DefaultGeometryProperty<Geometry>(crs, OBinaryCodecTest.createLine(50)));
+
+		// warm up
+		measure(values, ROUNDS / 10, false);
+		measure(values, ROUNDS / 10, true);
+
+		long[] legacy = measure(values, ROUNDS, false);
+		long[] binary = measure(values, ROUNDS, true);
+
+		System.out.println(String.format(
+				"Legacy encoding: %d bytes, %d ms%nBinary codec:    %d bytes, %d ms", legacy[0],
+				legacy[1], binary[0], binary[1]));
+
+		assertTrue("Binary encoding should be smaller", binary[0] < legacy[0]);
+	}
+
+	/**
+	 * Encode and decode the given values.
+	 * 
+	 * @param values the values
+	 * @param rounds the number of rounds
+	 * @param binary if the binary codec or the legacy encoding should be used
+	 * @return the encoded size of the values in bytes and the time taken in
+	 *         milliseconds
+	 */
+	private long[] measure(List<Object> values, int rounds, boolean binary) {
+		long size = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			for (Object value : values) {
+				if (binary) {
+					byte[] encoded = OBinaryCodec.encode(value);
+					OBinaryCodec.decode(encoded);
+					if (i == 0) {
+						size += encoded.length;
+					}
+				}
+				else {
+					int encoded = legacyRoundTrip(value);
+					if (i == 0) {
+						size += encoded;
+					}
+				}
+			}
+		}
+		return new long[] { size, (System.nanoTime() - start) / 1000000 };
+	}
+
+	private int legacyRoundTrip(Object value) {
+		try {
+			if (value instanceof GeometryProperty<?>) {
+				GeometryProperty<?> property = (GeometryProperty<?>) value;
+				String crsId = CRS_IDS.getId(property.getCRSDefinition());
+				Geometry geometry = property.getGeometry();
+				Coordinate sample = geometry.getCoordinate();
+				int dimension = (sample != null && !Double.isNaN(sample.z)) ? (3) : (2);
+				byte[] wkb = new ExtendedWKBWriter(dimension).write(geometry);
+
+				new DefaultGeometryProperty<Geometry>(CRS_IDS.getObject(crsId),
+						new ExtendedWKBReader().read(wkb));
+				return wkb.length + crsId.length();
+			}
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+				out.writeObject(value);
+			}
+			try (ObjectInputStream in = new ObjectInputStream(
+					new ByteArrayInputStream(bytes.toByteArray()))) {
+				in.readObject();
+			}
+			return bytes.size();
+		} catch (IOException | ClassNotFoundException | ParseException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
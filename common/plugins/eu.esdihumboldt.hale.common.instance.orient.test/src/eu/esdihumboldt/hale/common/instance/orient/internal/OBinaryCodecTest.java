@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.instance.orient.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import eu.esdihumboldt.hale.common.instance.geometry.DefaultGeometryProperty;
+import eu.esdihumboldt.hale.common.instance.geometry.impl.CodeDefinition;
+import eu.esdihumboldt.hale.common.schema.geometry.CRSDefinition;
+import eu.esdihumboldt.hale.common.schema.geometry.GeometryProperty;
+
+/**
+ * Tests for {@link OBinaryCodec}.
+ * 
+ * @author Simon Templer
+ */
+public class OBinaryCodecTest {
+
+	private static final GeometryFactory factory = new GeometryFactory();
+
+	/**
+	 * Test encoding and decoding simple values.
+	 */
+	@Test
+	public void testSimpleValues() {
+		List<Object> values = Arrays.<Object> asList("Test", "", "äöü €", 0,
+				-1, Integer.MAX_VALUE, Integer.MIN_VALUE, 42L, (short) 7, (byte) -3, 1.5d, 2.5f,
+				true, false, 'x', new BigInteger("123456789012345678901234567890"),
+				new BigDecimal("-12345.6789"), new BigDecimal("1E+10"), new Date(1234567890123L),
+				new java.sql.Date(1234567890123L), new java.sql.Time(1234567890123L),
+				URI.create("http://www.esdi-humboldt.eu/hale"));
+
+		for (Object value : values) {
+			Object result = roundTrip(value);
+			assertEquals(value, result);
+			assertSame(value.getClass(), result.getClass());
+		}
+
+		assertNull(roundTrip(null));
+	}
+
+	/**
+	 * Test encoding and decoding a timestamp with nanoseconds.
+	 */
+	@Test
+	public void testTimestamp() {
+		Timestamp timestamp = new Timestamp(1234567890123L);
+		timestamp.setNanos(123456789);
+
+		Object result = roundTrip(timestamp);
+		assertEquals(timestamp, result);
+		assertEquals(123456789, ((Timestamp) result).getNanos());
+	}
+
+	/**
+	 * Test encoding and decoding a byte array.
+	 */
+	@Test
+	public void testBytes() {
+		byte[] bytes = new byte[] { 1, 2, 3, -128, 127 };
+		assertArrayEquals(bytes, (byte[]) roundTrip(bytes));
+	}
+
+	/**
+	 * Test encoding and decoding geometries and geometry properties.
+	 */
+	@Test
+	public void testGeometries() {
+		Geometry point = factory.createPoint(new Coordinate(8.5, 49.8));
+		assertTrue(point.equalsExact((Geometry) roundTrip(point)));
+
+		Geometry point3d = factory.createPoint(new Coordinate(8.5, 49.8, 120.0));
+		Geometry result3d = (Geometry) roundTrip(point3d);
+		assertEquals(120.0, result3d.getCoordinate().z, 0.0);
+
+		CRSDefinition crs = new CodeDefinition("EPSG:4326");
+		GeometryProperty<?> property = new DefaultGeometryProperty<Geometry>(crs,
+				createLine(10));
+		GeometryProperty<?> result = (GeometryProperty<?>) roundTrip(property);
+		assertEquals(crs, result.getCRSDefinition());
+		assertTrue(property.getGeometry().equalsExact(result.getGeometry()));
+
+		// CRS is interned
+		GeometryProperty<?> other = new DefaultGeometryProperty<Geometry>(
+				new CodeDefinition("EPSG:4326"), point);
+		assertSame(result.getCRSDefinition(),
+				((GeometryProperty<?>) roundTrip(other)).getCRSDefinition());
+
+		// without CRS
+		GeometryProperty<?> noCrs = (GeometryProperty<?>) roundTrip(
+				new DefaultGeometryProperty<Geometry>(null, point));
+		assertNull(noCrs.getCRSDefinition());
+		assertTrue(point.equalsExact(noCrs.getGeometry()));
+	}
+
+	/**
+	 * Test encoding and decoding lists and sets.
+	 */
+	@Test
+	public void testCollections() {
+		List<Object> list = new ArrayList<Object>(Arrays.<Object> asList("a", 1, null,
+				new BigDecimal("1.5"), new ArrayList<Object>(Arrays.asList("nested", 2L)),
+				new Date(0)));
+		Object result = roundTrip(list);
+		assertEquals(ArrayList.class, result.getClass());
+		assertEquals(list, result);
+
+		Set<Object> set = new HashSet<Object>(Arrays.<Object> asList("a", "b", 3));
+		result = roundTrip(set);
+		assertEquals(HashSet.class, result.getClass());
+		assertEquals(set, result);
+
+		Set<Object> ordered = new LinkedHashSet<Object>(Arrays.<Object> asList("c", "a", "b"));
+		result = roundTrip(ordered);
+		assertEquals(LinkedHashSet.class, result.getClass());
+		assertEquals(new ArrayList<Object>(ordered), new ArrayList<Object>((Set<?>) result));
+
+		assertEquals(Collections.emptyList(), roundTrip(new ArrayList<Object>()));
+	}
+
+	/**
+	 * Test that collection types that would not be restored as they were are
+	 * rejected.
+	 */
+	@Test
+	public void testOtherCollections() {
+		assertNull(OBinaryCodec.encode(Arrays.asList("a", "b")));
+		assertNull(OBinaryCodec.encode(new TreeSet<String>(Arrays.asList("a", "b"))));
+		assertNull(OBinaryCodec.encode(new LinkedList<String>(Arrays.asList("a", "b"))));
+		assertNull(OBinaryCodec.encode(Collections.emptyList()));
+	}
+
+	/**
+	 * Test that values that are not supported are rejected.
+	 */
+	@Test
+	public void testUnsupported() {
+		assertNull(OBinaryCodec.encode(new Object()));
+		assertNull(OBinaryCodec.encode(new ArrayList<Object>(Arrays.asList("a", new Object()))));
+		// sub-classes of supported types may hold additional state
+		assertNull(OBinaryCodec.encode(new Date(0) {
+
+			private static final long serialVersionUID = 1L;
+
+		}));
+		// geometry property without geometry
+		assertNull(OBinaryCodec.encode(new DefaultGeometryProperty<Geometry>(null, null)));
+	}
+
+	/**
+	 * Test that values encoded with a different version are rejected.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testVersion() {
+		byte[] encoded = OBinaryCodec.encode("Test");
+		assertNotNull(encoded);
+		encoded[0] = (byte) (OBinaryCodec.VERSION + 1);
+		OBinaryCodec.decode(encoded);
+	}
+
+	/**
+	 * Create a line string.
+	 * 
+	 * @param points the number of points
+	 * @return the line string
+	 */
+	static Geometry createLine(int points) {
+		Coordinate[] coordinates = new Coordinate[points];
+		for (int i = 0; i < points; i++) {
+			coordinates[i] = new Coordinate(3500000 + i * 1.25, 5500000 - i * 0.75);
+		}
+		return factory.createLineString(coordinates);
+	}
+
+	private static Object roundTrip(Object value) {
+		byte[] encoded = OBinaryCodec.encode(value);
+		assertNotNull("Value could not be encoded: " + value, encoded);
+		return OBinaryCodec.decode(encoded);
+	}
+
+}
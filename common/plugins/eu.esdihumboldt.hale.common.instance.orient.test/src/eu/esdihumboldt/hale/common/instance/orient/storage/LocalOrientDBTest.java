@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.instance.orient.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings;
+
+/**
+ * Tests for the connection pool and locking of {@link LocalOrientDB}.
+ * 
+ * @author Simon Templer
+ */
+public class LocalOrientDBTest {
+
+	/**
+	 * Temporary folder for the databases
+	 */
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	/**
+	 * Test that a released read connection is reused.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testReuseConnection() throws Exception {
+		LocalOrientDB lodb = createDatabase(2, false);
+		try {
+			DatabaseReference<ODatabaseDocumentTx> ref = lodb.openRead();
+			ODatabaseDocumentTx db = ref.getDatabase();
+			ref.dispose();
+
+			// disposing twice must not release the connection again
+			ref.dispose();
+
+			DatabaseReference<ODatabaseDocumentTx> other = lodb.openRead();
+			assertSame(db, other.getDatabase());
+			assertTrue(!other.getDatabase().isClosed());
+			other.dispose();
+
+			assertEquals(1, lodb.getMetrics().getOpened());
+			assertEquals(1, lodb.getMetrics().getBorrowed());
+		} finally {
+			lodb.delete();
+		}
+	}
+
+	/**
+	 * Test that a connection is only used by one reference at a time.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testExclusiveConnections() throws Exception {
+		LocalOrientDB lodb = createDatabase(2, false);
+		try {
+			DatabaseReference<ODatabaseDocumentTx> ref1 = lodb.openRead();
+			DatabaseReference<ODatabaseDocumentTx> ref2 = lodb.openRead();
+			try {
+				assertNotSame(ref1.getDatabase(), ref2.getDatabase());
+			} finally {
+				ref1.dispose();
+				ref2.dispose();
+			}
+
+			assertEquals(2, lodb.getMetrics().getOpened());
+		} finally {
+			lodb.delete();
+		}
+	}
+
+	/**
+	 * Test that connections are closed if the pool is disabled.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testNoPool() throws Exception {
+		LocalOrientDB lodb = createDatabase(0, false);
+		try {
+			DatabaseReference<ODatabaseDocumentTx> ref = lodb.openRead();
+			ODatabaseDocumentTx db = ref.getDatabase();
+			ref.dispose();
+			assertTrue(db.isClosed());
+
+			ref = lodb.openRead();
+			assertNotSame(db, ref.getDatabase());
+			ref.dispose();
+
+			assertEquals(2, lodb.getMetrics().getOpened());
+			assertEquals(0, lodb.getMetrics().getBorrowed());
+		} finally {
+			lodb.delete();
+		}
+	}
+
+	/**
+	 * Test that pooled connections are not reused after clearing the
+	 * database.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testClear() throws Exception {
+		LocalOrientDB lodb = createDatabase(2, false);
+		try {
+			DatabaseReference<ODatabaseDocumentTx> ref = lodb.openRead();
+			ODatabaseDocumentTx db = ref.getDatabase();
+			ref.dispose();
+
+			lodb.clear();
+			assertTrue(db.isClosed());
+
+			ref = lodb.openRead();
+			assertNotSame(db, ref.getDatabase());
+			ref.dispose();
+		} finally {
+			lodb.delete();
+		}
+	}
+
+	/**
+	 * Test reading the database while it is written, with concurrent reads
+	 * enabled.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testConcurrentRead() throws Exception {
+		final LocalOrientDB lodb = createDatabase(2, true);
+		try {
+			DatabaseReference<ODatabaseDocumentTx> write = lodb.openWrite();
+			write.getDatabase();
+			try {
+				final CountDownLatch read = new CountDownLatch(1);
+				Thread reader = new Thread() {
+
+					@Override
+					public void run() {
+						DatabaseReference<ODatabaseDocumentTx> ref = lodb.openRead();
+						try {
+							ref.getDatabase();
+							read.countDown();
+						} finally {
+							ref.dispose();
+						}
+					}
+				};
+				reader.start();
+
+				assertTrue("Reader was blocked by the writer", read.await(30, TimeUnit.SECONDS));
+			} finally {
+				write.dispose();
+			}
+		} finally {
+			lodb.delete();
+		}
+	}
+
+	private LocalOrientDB createDatabase(int poolSize, boolean concurrentRead)
+			throws Exception {
+		TransformationSettings settings = new TransformationSettings();
+		settings.set(TransformationSettings.SETTING_DATABASE_POOL_SIZE, String.valueOf(poolSize));
+		settings.set(TransformationSettings.SETTING_DATABASE_CONCURRENT_READ,
+				String.valueOf(concurrentRead));
+		return new LocalOrientDB(tmp.newFolder("db"), settings);
+	}
+
+}
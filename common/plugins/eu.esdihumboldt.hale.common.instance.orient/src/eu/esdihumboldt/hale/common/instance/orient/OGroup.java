@@ -69,6 +69,7 @@ public class OGroup implements MutableGroup {
 		SPECIAL_FIELDS.add(OSerializationHelper.FIELD_STRING_VALUE);
 		SPECIAL_FIELDS.add(OSerializationHelper.FIELD_COLLECTION_TYPE);
 		SPECIAL_FIELDS.add(OSerializationHelper.FIELD_VALUES);
+		SPECIAL_FIELDS.add(OSerializationHelper.FIELD_BINARY_VALUE);
 	}
 
 	/**
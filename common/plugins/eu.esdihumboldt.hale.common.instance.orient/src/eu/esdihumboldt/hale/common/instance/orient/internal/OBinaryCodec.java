@@ -0,0 +1,449 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.instance.orient.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+
+import eu.esdihumboldt.hale.common.instance.geometry.DefaultGeometryProperty;
+import eu.esdihumboldt.hale.common.schema.geometry.CRSDefinition;
+import eu.esdihumboldt.hale.common.schema.geometry.GeometryProperty;
+
+/**
+ * Compact binary encoding for values that are not supported as field values
+ * by OrientDB. Values are written as tagged primitives, geometries as WKB
+ * with the runtime CRS identifier of {@link OSerializationHelper} and array
+ * lists and hash sets as sequence of their encoded elements, so they are
+ * restored with the same collection type. Values that cannot be encoded (e.g.
+ * instances, other collection types or arbitrary objects) are rejected, so
+ * they can be handled otherwise.<br>
+ * <br>
+ * The encoding starts with a version byte, so encoded values from a previous
+ * version of the codec can be detected. CRS identifiers are only valid at
+ * runtime, as the database is only used as temporary storage.
+ * 
+ * @author Simon Templer
+ */
+public class OBinaryCodec {
+
+	/**
+	 * The current version of the encoding.
+	 */
+	public static final int VERSION = 1;
+
+	private static final int TAG_NULL = 0;
+	private static final int TAG_STRING = 1;
+	private static final int TAG_INT = 2;
+	private static final int TAG_LONG = 3;
+	private static final int TAG_SHORT = 4;
+	private static final int TAG_BYTE = 5;
+	private static final int TAG_DOUBLE = 6;
+	private static final int TAG_FLOAT = 7;
+	private static final int TAG_BOOLEAN = 8;
+	private static final int TAG_CHAR = 9;
+	private static final int TAG_BIG_INTEGER = 10;
+	private static final int TAG_BIG_DECIMAL = 11;
+	private static final int TAG_DATE = 12;
+	private static final int TAG_SQL_TIMESTAMP = 13;
+	private static final int TAG_SQL_DATE = 14;
+	private static final int TAG_SQL_TIME = 15;
+	private static final int TAG_BYTES = 16;
+	private static final int TAG_URI = 17;
+	private static final int TAG_GEOMETRY = 18;
+	private static final int TAG_GEOMETRY_PROPERTY = 19;
+	private static final int TAG_ARRAY_LIST = 20;
+	private static final int TAG_LINKED_HASH_SET = 21;
+	private static final int TAG_HASH_SET = 22;
+
+	/**
+	 * Encode the given value.
+	 * 
+	 * @param value the value to encode
+	 * @return the encoded value or <code>null</code> if the value (or a value
+	 *         contained in it) cannot be encoded
+	 */
+	public static byte[] encode(Object value) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeByte(VERSION);
+			if (!write(out, value)) {
+				return null;
+			}
+			out.flush();
+		} catch (IOException e) {
+			// not expected when writing to a byte array
+			throw new IllegalStateException("Failed to encode value", e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decode a value encoded with {@link #encode(Object)}.
+	 * 
+	 * @param encoded the encoded value
+	 * @return the decoded value
+	 * @throws IllegalStateException if the value cannot be decoded
+	 */
+	public static Object decode(byte[] encoded) {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+		try {
+			int version = in.readUnsignedByte();
+			if (version != VERSION) {
+				throw new IllegalStateException(
+						"Unsupported version of encoded value: " + version);
+			}
+			return read(in);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to decode value", e);
+		}
+	}
+
+	/**
+	 * Get the tag for a value that is not a collection or geometry property.
+	 * 
+	 * @param value the value
+	 * @return the tag or <code>-1</code> if the value is not supported
+	 */
+	private static int getTag(Object value) {
+		/*
+		 * Compare the exact classes, as sub-classes may hold additional state
+		 * that would get lost.
+		 */
+		Class<?> type = value.getClass();
+		if (type == String.class) {
+			return TAG_STRING;
+		}
+		else if (type == Integer.class) {
+			return TAG_INT;
+		}
+		else if (type == Long.class) {
+			return TAG_LONG;
+		}
+		else if (type == Double.class) {
+			return TAG_DOUBLE;
+		}
+		else if (type == Boolean.class) {
+			return TAG_BOOLEAN;
+		}
+		else if (type == BigDecimal.class) {
+			return TAG_BIG_DECIMAL;
+		}
+		else if (type == BigInteger.class) {
+			return TAG_BIG_INTEGER;
+		}
+		else if (type == Date.class) {
+			return TAG_DATE;
+		}
+		else if (type == java.sql.Timestamp.class) {
+			return TAG_SQL_TIMESTAMP;
+		}
+		else if (type == java.sql.Date.class) {
+			return TAG_SQL_DATE;
+		}
+		else if (type == java.sql.Time.class) {
+			return TAG_SQL_TIME;
+		}
+		else if (type == Float.class) {
+			return TAG_FLOAT;
+		}
+		else if (type == Short.class) {
+			return TAG_SHORT;
+		}
+		else if (type == Byte.class) {
+			return TAG_BYTE;
+		}
+		else if (type == Character.class) {
+			return TAG_CHAR;
+		}
+		else if (type == byte[].class) {
+			return TAG_BYTES;
+		}
+		else if (type == URI.class) {
+			return TAG_URI;
+		}
+		else if (value instanceof Geometry) {
+			return TAG_GEOMETRY;
+		}
+		return -1;
+	}
+
+	private static boolean write(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(TAG_NULL);
+			return true;
+		}
+
+		if (value instanceof Collection<?>) {
+			// only collection types that are restored as they were
+			int tag;
+			if (value.getClass() == ArrayList.class) {
+				tag = TAG_ARRAY_LIST;
+			}
+			else if (value.getClass() == LinkedHashSet.class) {
+				tag = TAG_LINKED_HASH_SET;
+			}
+			else if (value.getClass() == HashSet.class) {
+				tag = TAG_HASH_SET;
+			}
+			else {
+				return false;
+			}
+			Collection<?> elements = (Collection<?>) value;
+			out.writeByte(tag);
+			writeVarInt(out, elements.size());
+			for (Object element : elements) {
+				if (!write(out, element)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		if (value instanceof GeometryProperty<?>) {
+			GeometryProperty<?> property = (GeometryProperty<?>) value;
+			if (property.getGeometry() == null) {
+				return false;
+			}
+			out.writeByte(TAG_GEOMETRY_PROPERTY);
+			writeString(out, OSerializationHelper.getCRSId(property.getCRSDefinition()));
+			writeGeometry(out, property.getGeometry());
+			return true;
+		}
+
+		int tag = getTag(value);
+		if (tag < 0) {
+			return false;
+		}
+		out.writeByte(tag);
+		switch (tag) {
+		case TAG_STRING:
+			writeString(out, (String) value);
+			break;
+		case TAG_INT:
+			writeVarInt(out, zigZag((Integer) value));
+			break;
+		case TAG_LONG:
+			out.writeLong((Long) value);
+			break;
+		case TAG_SHORT:
+			out.writeShort((Short) value);
+			break;
+		case TAG_BYTE:
+			out.writeByte((Byte) value);
+			break;
+		case TAG_DOUBLE:
+			out.writeDouble((Double) value);
+			break;
+		case TAG_FLOAT:
+			out.writeFloat((Float) value);
+			break;
+		case TAG_BOOLEAN:
+			out.writeBoolean((Boolean) value);
+			break;
+		case TAG_CHAR:
+			out.writeChar((Character) value);
+			break;
+		case TAG_BIG_INTEGER:
+			writeBytes(out, ((BigInteger) value).toByteArray());
+			break;
+		case TAG_BIG_DECIMAL:
+			BigDecimal decimal = (BigDecimal) value;
+			writeVarInt(out, zigZag(decimal.scale()));
+			writeBytes(out, decimal.unscaledValue().toByteArray());
+			break;
+		case TAG_DATE:
+		case TAG_SQL_DATE:
+		case TAG_SQL_TIME:
+			out.writeLong(((Date) value).getTime());
+			break;
+		case TAG_SQL_TIMESTAMP:
+			java.sql.Timestamp timestamp = (java.sql.Timestamp) value;
+			out.writeLong(timestamp.getTime());
+			writeVarInt(out, timestamp.getNanos());
+			break;
+		case TAG_BYTES:
+			writeBytes(out, (byte[]) value);
+			break;
+		case TAG_URI:
+			writeString(out, value.toString());
+			break;
+		case TAG_GEOMETRY:
+			writeGeometry(out, (Geometry) value);
+			break;
+		}
+		return true;
+	}
+
+	private static Object read(DataInputStream in) throws IOException {
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+		case TAG_NULL:
+			return null;
+		case TAG_STRING:
+			return readString(in);
+		case TAG_INT:
+			return unZigZag(readVarInt(in));
+		case TAG_LONG:
+			return in.readLong();
+		case TAG_SHORT:
+			return in.readShort();
+		case TAG_BYTE:
+			return in.readByte();
+		case TAG_DOUBLE:
+			return in.readDouble();
+		case TAG_FLOAT:
+			return in.readFloat();
+		case TAG_BOOLEAN:
+			return in.readBoolean();
+		case TAG_CHAR:
+			return in.readChar();
+		case TAG_BIG_INTEGER:
+			return new BigInteger(readBytes(in));
+		case TAG_BIG_DECIMAL:
+			int scale = unZigZag(readVarInt(in));
+			return new BigDecimal(new BigInteger(readBytes(in)), scale);
+		case TAG_DATE:
+			return new Date(in.readLong());
+		case TAG_SQL_DATE:
+			return new java.sql.Date(in.readLong());
+		case TAG_SQL_TIME:
+			return new java.sql.Time(in.readLong());
+		case TAG_SQL_TIMESTAMP:
+			java.sql.Timestamp timestamp = new java.sql.Timestamp(in.readLong());
+			timestamp.setNanos(readVarInt(in));
+			return timestamp;
+		case TAG_BYTES:
+			return readBytes(in);
+		case TAG_URI:
+			return URI.create(readString(in));
+		case TAG_GEOMETRY:
+			return readGeometry(in);
+		case TAG_GEOMETRY_PROPERTY:
+			CRSDefinition crs = OSerializationHelper.getCRS(readString(in));
+			return new DefaultGeometryProperty<Geometry>(crs, readGeometry(in));
+		case TAG_ARRAY_LIST:
+			return readElements(in, new ArrayList<Object>());
+		case TAG_LINKED_HASH_SET:
+			return readElements(in, new LinkedHashSet<Object>());
+		case TAG_HASH_SET:
+			return readElements(in, new HashSet<Object>());
+		default:
+			throw new IllegalStateException("Unknown value tag: " + tag);
+		}
+	}
+
+	private static Collection<Object> readElements(DataInputStream in,
+			Collection<Object> collection) throws IOException {
+		int size = readVarInt(in);
+		for (int i = 0; i < size; i++) {
+			collection.add(read(in));
+		}
+		return collection;
+	}
+
+	private static void writeGeometry(DataOutputStream out, Geometry geometry)
+			throws IOException {
+		Coordinate sample = geometry.getCoordinate();
+		int dimension = (sample != null && !Double.isNaN(sample.z)) ? (3) : (2);
+		writeBytes(out, new ExtendedWKBWriter(dimension).write(geometry));
+	}
+
+	private static Geometry readGeometry(DataInputStream in) throws IOException {
+		try {
+			return new ExtendedWKBReader().read(readBytes(in));
+		} catch (ParseException e) {
+			throw new IllegalStateException("Unable to parse WKB to restore geometry", e);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return new String(readBytes(in), StandardCharsets.UTF_8);
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[readVarInt(in)];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Write a non-negative integer with a variable number of bytes, seven
+	 * bits per byte.
+	 * 
+	 * @param out the output stream
+	 * @param value the value to write
+	 * @throws IOException if writing the value fails
+	 */
+	private static void writeVarInt(OutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static int readVarInt(InputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new IOException("Unexpected end of encoded value");
+			}
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length integer");
+	}
+
+	private static int zigZag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int unZigZag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+}
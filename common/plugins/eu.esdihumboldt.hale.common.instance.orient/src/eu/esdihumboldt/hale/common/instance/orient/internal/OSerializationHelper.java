@@ -57,8 +57,10 @@ import eu.esdihumboldt.hale.common.schema.model.ChildDefinition;
 import eu.esdihumboldt.util.Identifiers;
 
 /**
- * Serialization helper for storing values not support by OrientDB. Serializes
- * geometries as WKB and holds a runtime cache for CRSs.
+ * Serialization helper for storing values not support by OrientDB. Values are
+ * encoded with the {@link OBinaryCodec} where possible, other values are
+ * wrapped in documents or serialized as Java objects. Serializes geometries as
+ * WKB and holds a runtime cache for CRSs.
  * 
  * @author Simon Templer
  */
@@ -184,6 +186,11 @@ public abstract class OSerializationHelper {
 	 */
 	private static final int SERIALIZATION_TYPE_BYTEARRAY = 5;
 
+	/**
+	 * Value encoded with {@link OBinaryCodec}
+	 */
+	private static final int SERIALIZATION_TYPE_BINARY = 6;
+
 	/**
 	 * Field specifying the CRS ID
 	 */
@@ -209,6 +216,11 @@ public abstract class OSerializationHelper {
 	 */
 	public static final String FIELD_VALUES = "___vls___";
 
+	/**
+	 * Field holding a value encoded with {@link OBinaryCodec}
+	 */
+	public static final String FIELD_BINARY_VALUE = "___bcv___";
+
 	/**
 	 * Runtime identifiers for CRSs
 	 */
@@ -318,7 +330,15 @@ public abstract class OSerializationHelper {
 		 */
 		ODocument doc = new ODocument();
 
-		// try conversion to string first
+		// try the compact binary encoding first
+		byte[] encoded = OBinaryCodec.encode(value);
+		if (encoded != null) {
+			doc.field(FIELD_BINARY_VALUE, encoded, OType.BINARY);
+			doc.field(FIELD_SERIALIZATION_TYPE, SERIALIZATION_TYPE_BINARY);
+			return doc;
+		}
+
+		// try conversion to string
 		final ConversionService cs = HalePlatform.getService(ConversionService.class);
 		if (cs != null) {
 			// check if conversion allowed and possible
@@ -371,7 +391,7 @@ public abstract class OSerializationHelper {
 			GeometryProperty<?> geomProp = (GeometryProperty<?>) value;
 
 			// store (runtime) CRS ID (XXX OK as storage is temporary)
-			doc.field(FIELD_CRS_ID, CRS_IDS.getId(geomProp.getCRSDefinition()));
+			doc.field(FIELD_CRS_ID, getCRSId(geomProp.getCRSDefinition()));
 
 			// extract geometry
 			value = geomProp.getGeometry();
@@ -509,6 +529,8 @@ public abstract class OSerializationHelper {
 		int serType = doc.field(FIELD_SERIALIZATION_TYPE);
 
 		switch (serType) {
+		case SERIALIZATION_TYPE_BINARY:
+			return OBinaryCodec.decode((byte[]) doc.field(FIELD_BINARY_VALUE));
 		case SERIALIZATION_TYPE_STRING: {
 			// convert a string value back to its original form
 
@@ -598,7 +620,7 @@ public abstract class OSerializationHelper {
 			CRSDefinition crs = null;
 			Object crsId = doc.field(FIELD_CRS_ID);
 			if (crsId != null) {
-				crs = CRS_IDS.getObject(crsId.toString());
+				crs = getCRS(crsId.toString());
 			}
 
 			// create geometry property
@@ -610,6 +632,30 @@ public abstract class OSerializationHelper {
 		return result;
 	}
 
+	/**
+	 * Get the runtime identifier for a CRS definition.
+	 * 
+	 * @param crs the CRS definition, may be <code>null</code>
+	 * @return the CRS identifier
+	 */
+	static String getCRSId(CRSDefinition crs) {
+		synchronized (CRS_IDS) {
+			return CRS_IDS.getId(crs);
+		}
+	}
+
+	/**
+	 * Get the CRS definition for a runtime identifier.
+	 * 
+	 * @param id the CRS identifier
+	 * @return the CRS definition, may be <code>null</code>
+	 */
+	static CRSDefinition getCRS(String id) {
+		synchronized (CRS_IDS) {
+			return CRS_IDS.getObject(id);
+		}
+	}
+
 	private static Collection<Object> createCollection(CollectionType type) {
 		switch (type) {
 		case SET:
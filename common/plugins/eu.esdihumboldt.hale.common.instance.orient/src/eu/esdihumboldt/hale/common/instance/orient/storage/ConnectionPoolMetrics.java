@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.instance.orient.storage;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the database connections of a {@link LocalOrientDB}. Records how
+ * many connections were opened and how many were borrowed from the pool, how
+ * long that took and how long callers waited for the database lock.
+ * 
+ * @author Simon Templer
+ */
+public class ConnectionPoolMetrics {
+
+	private final AtomicLong opened = new AtomicLong();
+
+	private final AtomicLong openNanos = new AtomicLong();
+
+	private final AtomicLong borrowed = new AtomicLong();
+
+	private final AtomicLong borrowNanos = new AtomicLong();
+
+	private final AtomicLong lockWaitNanos = new AtomicLong();
+
+	/**
+	 * Record a newly opened connection.
+	 * 
+	 * @param nanos the time it took to open the connection, in nanoseconds
+	 */
+	void connectionOpened(long nanos) {
+		opened.incrementAndGet();
+		openNanos.addAndGet(nanos);
+	}
+
+	/**
+	 * Record a connection borrowed from the pool.
+	 * 
+	 * @param nanos the time it took to borrow the connection, in nanoseconds
+	 */
+	void connectionBorrowed(long nanos) {
+		borrowed.incrementAndGet();
+		borrowNanos.addAndGet(nanos);
+	}
+
+	/**
+	 * Record waiting for the database lock.
+	 * 
+	 * @param nanos the time waited for the lock, in nanoseconds
+	 */
+	void lockAcquired(long nanos) {
+		lockWaitNanos.addAndGet(nanos);
+	}
+
+	/**
+	 * @return the number of connections that were opened
+	 */
+	public long getOpened() {
+		return opened.get();
+	}
+
+	/**
+	 * @return the total time in milliseconds spent opening connections
+	 */
+	public long getOpenMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(openNanos.get());
+	}
+
+	/**
+	 * @return the number of connections that were borrowed from the pool
+	 *         instead of being opened
+	 */
+	public long getBorrowed() {
+		return borrowed.get();
+	}
+
+	/**
+	 * @return the total time in milliseconds spent borrowing connections from
+	 *         the pool
+	 */
+	public long getBorrowMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(borrowNanos.get());
+	}
+
+	/**
+	 * @return the total time in milliseconds spent waiting for the database
+	 *         lock
+	 */
+	public long getLockWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(lockWaitNanos.get());
+	}
+
+	@Override
+	public String toString() {
+		long openCount = getOpened();
+		double averageOpen = (openCount > 0) ? ((double) openNanos.get() / openCount / 1000000)
+				: (0);
+		long borrowCount = getBorrowed();
+		double averageBorrow = (borrowCount > 0)
+				? ((double) borrowNanos.get() / borrowCount / 1000000) : (0);
+		return String.format(
+				"Database connections: %d opened (%d ms, avg %.2f ms), %d borrowed from pool (%d ms, avg %.3f ms), waited %d ms for the database lock",
+				openCount, getOpenMillis(), averageOpen, borrowCount, getBorrowMillis(),
+				averageBorrow, getLockWaitMillis());
+	}
+
+}
@@ -19,6 +19,7 @@ package eu.esdihumboldt.hale.common.instance.orient.storage;
 import java.lang.ref.Reference;
 import java.util.Arrays;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.xml.namespace.QName;
 
@@ -77,6 +78,12 @@ public class DatabaseHandle {
 
 	private long count = 0;
 
+	/**
+	 * If the connection was closed. The connection must only be closed once,
+	 * as a pooled connection may already be used elsewhere afterwards.
+	 */
+	private final AtomicBoolean closed = new AtomicBoolean();
+
 	private static final FinalizableReferenceQueue referenceQueue = new FinalizableReferenceQueue();
 
 	private final Set<Reference<?>> references = Sets.newConcurrentHashSet();
@@ -94,6 +101,7 @@ public class DatabaseHandle {
 		super();
 
 		this.database = database;
+		final AtomicBoolean closed = this.closed;
 
 		handleReferences.add(new FinalizablePhantomReference<DatabaseHandle>(this, referenceQueue) {
 
@@ -101,7 +109,7 @@ public class DatabaseHandle {
 			public void finalizeReferent() {
 				handleReferences.remove(this);
 				try {
-					if (!database.isClosed()) {
+					if (closed.compareAndSet(false, true) && !database.isClosed()) {
 						database.close();
 					}
 				} catch (Exception e) {
@@ -200,12 +208,19 @@ public class DatabaseHandle {
 	 * Try closing the database connection
 	 */
 	public synchronized void tryClose() {
-		if (count <= 0) {
+		if (count <= 0 && closed.compareAndSet(false, true)) {
 			database.close();
 			onClose();
 		}
 	}
 
+	/**
+	 * @return if the database connection was closed by the handle
+	 */
+	public boolean isClosed() {
+		return closed.get();
+	}
+
 	/**
 	 * Called when the database connection was closed.
 	 */
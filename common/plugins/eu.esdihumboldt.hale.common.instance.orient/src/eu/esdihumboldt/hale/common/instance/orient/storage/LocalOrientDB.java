@@ -17,18 +17,37 @@
 package eu.esdihumboldt.hale.common.instance.orient.storage;
 
 import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 
+import de.fhg.igd.slf4jplus.ALogger;
+import de.fhg.igd.slf4jplus.ALoggerFactory;
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings;
+
 /**
- * Represents a local Orient database
+ * Represents a local Orient database.<br>
+ * <br>
+ * Read connections are pooled, a connection returned to the pool is reused
+ * for the next read reference instead of opening a new connection. By default
+ * a write reference blocks all readers. If concurrent reads are enabled,
+ * readers may access the database while it is written, only writers exclude
+ * each other.
  * 
  * @author Simon Templer
  */
 public class LocalOrientDB {
 
+	private static final ALogger log = ALoggerFactory.getLogger(LocalOrientDB.class);
+
 	/**
 	 * Database reference for reading holding a lock
 	 */
@@ -36,6 +55,7 @@ public class LocalOrientDB {
 
 		private ODatabaseDocumentTx database;
 		private final boolean createLock;
+		private boolean disposed = false;
 
 		/**
 		 * Create a new read reference.
@@ -53,10 +73,16 @@ public class LocalOrientDB {
 		public ODatabaseDocumentTx getDatabase() {
 			if (database == null) {
 				if (createLock) {
-					dbLock.readLock().lock();
+					lock(dbLock.readLock());
+				}
+				try {
+					database = acquireReader();
+				} catch (RuntimeException e) {
+					if (createLock) {
+						dbLock.readLock().unlock();
+					}
+					throw e;
 				}
-//				database = pool.acquire(dbURI, "reader", "reader");
-				database = new ODatabaseDocumentTx(dbURI).open("reader", "reader");
 			}
 			return database;
 		}
@@ -66,9 +92,10 @@ public class LocalOrientDB {
 		 */
 		@Override
 		public void dispose(boolean closeConnection) {
-			if (database != null) {
+			if (database != null && !disposed) {
+				disposed = true;
 				if (closeConnection) {
-//					pool.release(database)
+					// returns the connection to the pool
 					database.close();
 				}
 				if (createLock) {
@@ -94,35 +121,61 @@ public class LocalOrientDB {
 
 		private ODatabaseDocumentTx database;
 
+		private boolean shared;
+
+		private boolean disposed = false;
+
 		/**
 		 * @see DatabaseReference#getDatabase()
 		 */
 		@Override
 		public ODatabaseDocumentTx getDatabase() {
 			if (database == null) {
-				// XXX could eventually use read lock
-				dbLock.writeLock().lock();
+				shared = concurrentRead;
+				if (shared) {
+					// only exclude other writers
+					lock(writerLock);
+					lock(dbLock.readLock());
+				}
+				else {
+					lock(dbLock.writeLock());
+				}
 //				database = new ODatabaseDocumentTx(dbURI).open("writer", "writer");
 				// writer use doesn't seem to be supported any more (as of
 				// 1.0rc8)
-//				database = pool.acquire(dbURI, "admin", "admin");
-				database = new ODatabaseDocumentTx(dbURI).open("admin", "admin");
+				long start = System.nanoTime();
+				try {
+					database = new ODatabaseDocumentTx(dbURI).open("admin", "admin");
+				} catch (RuntimeException e) {
+					unlock();
+					throw e;
+				}
+				metrics.connectionOpened(System.nanoTime() - start);
 			}
 			return database;
 		}
 
+		private void unlock() {
+			if (shared) {
+				dbLock.readLock().unlock();
+				writerLock.unlock();
+			}
+			else {
+				dbLock.writeLock().unlock();
+			}
+		}
+
 		/**
 		 * @see DatabaseReference#dispose(boolean)
 		 */
 		@Override
 		public void dispose(boolean closeConnection) {
-			if (database != null) {
+			if (database != null && !disposed) {
+				disposed = true;
 				if (closeConnection) {
-//					pool.release(database)
 					database.close();
 				}
-				// XXX could eventually use read lock
-				dbLock.writeLock().unlock();
+				unlock();
 			}
 		}
 
@@ -138,24 +191,55 @@ public class LocalOrientDB {
 
 	private final ReadWriteLock dbLock = new ReentrantReadWriteLock();
 
+	/**
+	 * Lock for writers if concurrent reads are enabled.
+	 */
+	private final Lock writerLock = new ReentrantLock();
+
 	private final String dbURI;
 
-//	private final ODatabaseDocumentPool pool;
+	/**
+	 * Idle read connections, the most recently used connection first.
+	 */
+	private final Deque<PooledDatabase> idleReaders = new ArrayDeque<>();
+
+	/**
+	 * The database generation, incremented when the database is cleared or
+	 * deleted. Pooled connections of a previous generation are discarded.
+	 */
+	private volatile int generation = 0;
+
+	private final int poolSize;
+
+	private final boolean concurrentRead;
+
+	private final ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
 
 	/**
 	 * Create a local Orient database. It will delete database that exists
-	 * previously at the same location.
+	 * previously at the same location. The connection pool is configured
+	 * based on the default transformation settings.
 	 * 
 	 * @param location the data base location
 	 */
 	public LocalOrientDB(File location) {
+		this(location, new TransformationSettings());
+	}
+
+	/**
+	 * Create a local Orient database. It will delete database that exists
+	 * previously at the same location.
+	 * 
+	 * @param location the data base location
+	 * @param settings the transformation settings to configure the connection
+	 *            pool and if concurrent reads are allowed
+	 */
+	public LocalOrientDB(File location, TransformationSettings settings) {
 		super();
 
 		dbURI = "local:" + location.getAbsolutePath();
-
-//		pool = new ODatabaseDocumentPool();
-//		pool.setup(1,10);
-		// XXX close pool? when?
+		poolSize = settings.getDatabasePoolSize();
+		concurrentRead = settings.isDatabaseConcurrentRead();
 
 		ODatabaseDocumentTx db = new ODatabaseDocumentTx(dbURI);
 		try {
@@ -169,6 +253,108 @@ public class LocalOrientDB {
 		db.close();
 	}
 
+	/**
+	 * Acquire a read connection, either from the pool or by opening a new
+	 * connection.
+	 * 
+	 * @return the database connection, associated with the current thread
+	 */
+	private ODatabaseDocumentTx acquireReader() {
+		long start = System.nanoTime();
+		while (true) {
+			PooledDatabase database;
+			synchronized (idleReaders) {
+				database = idleReaders.pollFirst();
+			}
+			if (database == null) {
+				break;
+			}
+
+			if (database.getGeneration() == generation && !database.isClosed()
+					&& database.lease()) {
+				ODatabaseRecordThreadLocal.INSTANCE.set(database);
+				// don't serve records cached before the connection was idle
+				database.getLevel1Cache().clear();
+				metrics.connectionBorrowed(System.nanoTime() - start);
+				return database;
+			}
+			database.closeConnection();
+		}
+
+		PooledDatabase database = new PooledDatabase(dbURI, this, generation);
+		database.open("reader", "reader");
+		database.lease();
+		metrics.connectionOpened(System.nanoTime() - start);
+		return database;
+	}
+
+	/**
+	 * Return a read connection to the pool. The connection is closed if the
+	 * pool is full or the connection belongs to a previous generation of the
+	 * database.
+	 * 
+	 * @param database the database connection
+	 */
+	void release(PooledDatabase database) {
+		boolean pooled = false;
+		if (database.getGeneration() == generation && !database.isClosed()) {
+			synchronized (idleReaders) {
+				if (idleReaders.size() < poolSize) {
+					idleReaders.addFirst(database);
+					pooled = true;
+				}
+			}
+		}
+
+		if (!pooled) {
+			database.closeConnection();
+		}
+	}
+
+	/**
+	 * Close all idle connections in the pool and discard connections that are
+	 * still in use once they are released. Must be called with the write lock
+	 * held.
+	 */
+	private void closePool() {
+		generation++;
+
+		List<PooledDatabase> idle;
+		synchronized (idleReaders) {
+			idle = new ArrayList<>(idleReaders);
+			idleReaders.clear();
+		}
+		for (PooledDatabase database : idle) {
+			try {
+				database.closeConnection();
+			} catch (Exception e) {
+				log.warn("Error closing pooled database connection", e);
+			}
+		}
+	}
+
+	/**
+	 * Lock the given lock and record the time waited for it.
+	 * 
+	 * @param lock the lock
+	 */
+	private void lock(Lock lock) {
+		if (lock.tryLock()) {
+			return;
+		}
+
+		long start = System.nanoTime();
+		lock.lock();
+		metrics.lockAcquired(System.nanoTime() - start);
+	}
+
+	/**
+	 * @return the metrics of the database connections
+	 */
+	public ConnectionPoolMetrics getMetrics() {
+		return metrics;
+	}
+
 	/**
 	 * Get a database reference with read access.<br>
 	 * <br>
@@ -197,7 +383,8 @@ public class LocalOrientDB {
 	/**
 	 * Get a database reference with write access.<br>
 	 * <br>
-	 * NOTE: Getting the database reference locks a write lock on the database.
+	 * NOTE: Getting the database reference locks a write lock on the database,
+	 * or, if concurrent reads are enabled, a lock excluding other writers.
 	 * {@link DatabaseReference#dispose()} must be called when the database
 	 * reference isn't needed any more.
 	 * 
@@ -213,6 +400,8 @@ public class LocalOrientDB {
 	public void clear() {
 		dbLock.writeLock().lock();
 		try {
+			closePool();
+
 			@SuppressWarnings("resource")
 			ODatabaseDocumentTx db = new ODatabaseDocumentTx(dbURI).open("admin", "admin");
 			// delete the database if it already exists
@@ -231,6 +420,9 @@ public class LocalOrientDB {
 	public void delete() {
 		dbLock.writeLock().lock();
 		try {
+			closePool();
+			log.info(metrics.toString());
+
 			@SuppressWarnings("resource")
 			ODatabaseDocumentTx db = new ODatabaseDocumentTx(dbURI).open("admin", "admin");
 			// delete the database if it already exists
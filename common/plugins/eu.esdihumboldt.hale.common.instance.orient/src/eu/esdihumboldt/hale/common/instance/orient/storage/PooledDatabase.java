@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.instance.orient.storage;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+
+/**
+ * Database connection managed by the connection pool of a
+ * {@link LocalOrientDB}. Closing the connection returns it to the pool instead
+ * of closing it. A connection is only leased to one user at a time.
+ * 
+ * @author Simon Templer
+ */
+class PooledDatabase extends ODatabaseDocumentTx {
+
+	private final LocalOrientDB pool;
+
+	private final int generation;
+
+	private final AtomicBoolean leased = new AtomicBoolean();
+
+	/**
+	 * Create a pooled database connection.
+	 * 
+	 * @param url the database URL
+	 * @param pool the database owning the connection pool
+	 * @param generation the generation of the database the connection was
+	 *            created for, it is incremented when the database is cleared
+	 *            or deleted
+	 */
+	public PooledDatabase(String url, LocalOrientDB pool, int generation) {
+		super(url);
+
+		this.pool = pool;
+		this.generation = generation;
+	}
+
+	/**
+	 * Mark the connection as leased.
+	 * 
+	 * @return if the connection was available and now is leased
+	 */
+	boolean lease() {
+		return leased.compareAndSet(false, true);
+	}
+
+	/**
+	 * @return the generation of the database the connection was created for
+	 */
+	int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Returns the connection to the pool. Closing a connection that is not
+	 * leased has no effect, so a connection cannot be released twice.
+	 */
+	@Override
+	public void close() {
+		if (leased.compareAndSet(true, false)) {
+			pool.release(this);
+		}
+	}
+
+	/**
+	 * Actually close the database connection.
+	 */
+	void closeConnection() {
+		leased.set(false);
+		if (!isClosed()) {
+			super.close();
+		}
+	}
+
+}
@@ -55,7 +55,8 @@ public class SharedDatabaseConnection {
 
 		SharedDatabaseConnection connection = cachedConnections.get().get(ref);
 
-		if (connection == null || connection.getDb().getDatabase().isClosed()) {
+		if (connection == null || connection.getHandle().isClosed()
+				|| connection.getDb().getDatabase().isClosed()) {
 			DatabaseReference<ODatabaseDocumentTx> db = lodb.openRead(false);
 			DatabaseHandle handle = new DatabaseHandle(db.getDatabase()) {
 
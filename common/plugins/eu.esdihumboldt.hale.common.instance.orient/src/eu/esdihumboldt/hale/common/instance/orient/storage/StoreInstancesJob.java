@@ -17,7 +17,22 @@
 package eu.esdihumboldt.hale.common.instance.orient.storage;
 
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.namespace.QName;
 
@@ -26,6 +41,7 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 
+import com.google.common.base.Throwables;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
@@ -34,6 +50,7 @@ import com.orientechnologies.orient.core.record.impl.ODocument;
 import de.fhg.igd.slf4jplus.ALogger;
 import de.fhg.igd.slf4jplus.ALoggerFactory;
 import de.fhg.igd.slf4jplus.ATransaction;
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings;
 import eu.esdihumboldt.hale.common.core.report.Message;
 import eu.esdihumboldt.hale.common.core.report.ReportHandler;
 import eu.esdihumboldt.hale.common.core.report.Reporter;
@@ -67,6 +84,10 @@ public abstract class StoreInstancesJob extends Job {
 
 	private final ReportHandler reportHandler;
 
+	private int workers;
+
+	private int batchSize;
+
 	/**
 	 * Create a job that stores instances in a database
 	 * 
@@ -92,6 +113,20 @@ public abstract class StoreInstancesJob extends Job {
 		else {
 			report = null;
 		}
+
+		configure(new TransformationSettings());
+	}
+
+	/**
+	 * Configure the number of worker threads converting instances and the
+	 * number of instances converted and saved together based on the given
+	 * transformation settings. Must be called before the job is scheduled.
+	 * 
+	 * @param settings the transformation settings
+	 */
+	public void configure(TransformationSettings settings) {
+		workers = settings.getLoadWorkers();
+		batchSize = settings.getLoadBatchSize();
 	}
 
 	/**
@@ -116,61 +151,68 @@ public abstract class StoreInstancesJob extends Job {
 		ODatabaseDocumentTx db = ref.getDatabase();
 
 		ATransaction trans = log.begin("Store instances in database");
+		ExecutorService executor = null;
 		try {
 			// use intent
 			db.declareIntent(new OIntentMassiveInsert());
 
-			// TODO decouple next() and save()?
-
-			long lastUpdate = 0; // last count update
-
 			ResourceIterator<Instance> it = instances.iterator();
 			int size = instances.size();
+			BatchWriter writer = new BatchWriter(db, monitor, size, exactProgress, typeCount);
+			if (workers > 1) {
+				executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+
+					private final AtomicInteger number = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r,
+								"Convert instances " + number.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+
+			/*
+			 * Instances are read and saved in the job thread, as the database
+			 * connection is bound to it. Only the conversion to documents is
+			 * done by the workers, which convert batches ahead while the job
+			 * thread saves the previous ones.
+			 */
+			Deque<Future<List<OInstance>>> pending = new ArrayDeque<>();
 			try {
+				List<Instance> batch = new ArrayList<>(batchSize);
 				while (it.hasNext() && !monitor.isCanceled()) {
 					Instance instance = it.next();
 
 					// further processing before storing
 					processInstance(instance);
 
-					// get/create OInstance
-					OInstance conv = ((instance instanceof OInstance) ? ((OInstance) instance)
-							: (new OInstance(instance)));
-
-					conv.setInserted(true);
-
-					// update the instance to store, e.g. generating metadata
-					updateInstance(conv);
-
-					ODatabaseRecordThreadLocal.INSTANCE.set(db);
-					// configure the document
-					ODocument doc = conv.configureDocument(db);
-					// and save it
-					doc.save();
-
-					count++;
-
-					TypeDefinition type = instance.getDefinition();
-					if (type != null) {
-						typeCount.adjustOrPutValue(type.getName(), 1, 1);
-					}
+					batch.add(instance);
+					if (batch.size() >= batchSize) {
+						submit(batch, executor, pending);
+						batch = new ArrayList<>(batchSize);
 
-					if (exactProgress) {
-						monitor.worked(1);
+						while (pending.size() > workers && !monitor.isCanceled()) {
+							writer.write(getResult(pending.poll()));
+						}
 					}
+				}
 
-					long now = System.currentTimeMillis();
-					if (now - lastUpdate > 100) { // only update every 100
-													// milliseconds
-						monitor.subTask(MessageFormat.format("{0}{1} instances processed",
-								String.valueOf(count), size != InstanceCollection.UNKNOWN_SIZE
-										? "/" + String.valueOf(size) : ""));
-						lastUpdate = now;
-					}
+				if (!monitor.isCanceled()) {
+					submit(batch, executor, pending);
+				}
+				while (!pending.isEmpty() && !monitor.isCanceled()) {
+					writer.write(getResult(pending.poll()));
 				}
 			} finally {
+				for (Future<List<OInstance>> future : pending) {
+					future.cancel(true);
+				}
 				it.close();
 			}
+			count = writer.getCount();
 
 			db.declareIntent(null);
 		} catch (RuntimeException e) {
@@ -182,6 +224,9 @@ public abstract class StoreInstancesJob extends Job {
 			}
 			throw e;
 		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
 			ref.dispose();
 			trans.end();
 
@@ -235,6 +280,168 @@ public abstract class StoreInstancesJob extends Job {
 				"eu.esdihumboldt.hale.common.instance.orient", message);
 	}
 
+	/**
+	 * Convert a batch of instances, either directly or by the given executor.
+	 * 
+	 * @param batch the batch of instances
+	 * @param executor the executor, <code>null</code> for converting the
+	 *            instances in the current thread
+	 * @param pending the pending conversion results to add the result to
+	 */
+	private void submit(final List<Instance> batch, ExecutorService executor,
+			Deque<Future<List<OInstance>>> pending) {
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		Callable<List<OInstance>> conversion = new Callable<List<OInstance>>() {
+
+			@Override
+			public List<OInstance> call() throws Exception {
+				List<OInstance> result = new ArrayList<>(batch.size());
+				for (Instance instance : batch) {
+					result.add(convert(instance));
+				}
+				return result;
+			}
+		};
+
+		if (executor == null) {
+			FutureTask<List<OInstance>> task = new FutureTask<>(conversion);
+			task.run();
+			pending.add(task);
+		}
+		else {
+			pending.add(executor.submit(conversion));
+		}
+	}
+
+	/**
+	 * Get the result of a batch conversion.
+	 * 
+	 * @param future the conversion result
+	 * @return the converted instances
+	 */
+	private List<OInstance> getResult(Future<List<OInstance>> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while converting instances", e);
+		} catch (ExecutionException e) {
+			Throwables.propagateIfPossible(e.getCause());
+			throw new IllegalStateException("Error converting instances", e.getCause());
+		}
+	}
+
+	/**
+	 * Convert an instance for storing it in the database.
+	 * 
+	 * @param instance the instance
+	 * @return the instance to store
+	 */
+	private OInstance convert(Instance instance) {
+		// get/create OInstance
+		OInstance conv = ((instance instanceof OInstance) ? ((OInstance) instance)
+				: (new OInstance(instance)));
+
+		conv.setInserted(true);
+
+		// update the instance to store, e.g. generating metadata
+		updateInstance(conv);
+
+		return conv;
+	}
+
+	/**
+	 * Saves converted instances in the database, grouped by type, and tracks
+	 * the progress.
+	 */
+	private class BatchWriter {
+
+		private final ODatabaseDocumentTx db;
+
+		private final IProgressMonitor monitor;
+
+		private final int size;
+
+		private final boolean exactProgress;
+
+		private final TObjectIntHashMap<QName> typeCount;
+
+		private int count = 0;
+
+		private long lastUpdate = 0; // last count update
+
+		public BatchWriter(ODatabaseDocumentTx db, IProgressMonitor monitor, int size,
+				boolean exactProgress, TObjectIntHashMap<QName> typeCount) {
+			this.db = db;
+			this.monitor = monitor;
+			this.size = size;
+			this.exactProgress = exactProgress;
+			this.typeCount = typeCount;
+		}
+
+		/**
+		 * Save a batch of instances. Instances of the same type are saved
+		 * together, so the same cluster is written consecutively.
+		 * 
+		 * @param batch the converted instances
+		 */
+		public void write(List<OInstance> batch) {
+			Map<TypeDefinition, List<OInstance>> types = new LinkedHashMap<>();
+			for (OInstance instance : batch) {
+				List<OInstance> list = types.get(instance.getDefinition());
+				if (list == null) {
+					list = new ArrayList<>();
+					types.put(instance.getDefinition(), list);
+				}
+				list.add(instance);
+			}
+
+			ODatabaseRecordThreadLocal.INSTANCE.set(db);
+			for (Entry<TypeDefinition, List<OInstance>> entry : types.entrySet()) {
+				if (monitor.isCanceled()) {
+					return;
+				}
+
+				for (OInstance instance : entry.getValue()) {
+					// configure the document
+					ODocument doc = instance.configureDocument(db);
+					// and save it
+					doc.save();
+				}
+
+				int saved = entry.getValue().size();
+				count += saved;
+				TypeDefinition type = entry.getKey();
+				if (type != null) {
+					typeCount.adjustOrPutValue(type.getName(), saved, saved);
+				}
+				if (exactProgress) {
+					monitor.worked(saved);
+				}
+			}
+
+			long now = System.currentTimeMillis();
+			if (now - lastUpdate > 100) { // only update every 100 milliseconds
+				monitor.subTask(MessageFormat.format("{0}{1} instances processed",
+						String.valueOf(count),
+						size != InstanceCollection.UNKNOWN_SIZE ? "/" + String.valueOf(size)
+								: ""));
+				lastUpdate = now;
+			}
+		}
+
+		/**
+		 * @return the number of saved instances
+		 */
+		public int getCount() {
+			return count;
+		}
+
+	}
+
 	private void reportTypeCount(Reporter<Message> report, TObjectIntHashMap<QName> typeCount) {
 		typeCount.forEachEntry(new TObjectIntProcedure<QName>() {
 
@@ -261,6 +468,8 @@ public abstract class StoreInstancesJob extends Job {
 	/**
 	 * Update an instance before it is converted and saved, e.g. adding
 	 * metadata. The default implementation does nothing and may be overridden.
+	 * If multiple workers are configured, the method is called concurrently
+	 * from the worker threads.
 	 * 
 	 * @param instance the instance
 	 */
@@ -19,10 +19,12 @@ package eu.esdihumboldt.hale.common.instance.helper;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.Arrays;
 
 import javax.xml.namespace.QName;
 
@@ -117,6 +119,48 @@ public class PropertyResolverTest {
 		}
 	}
 
+	/**
+	 * Test retrieving values with a compiled property path.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testCompiledPathShiporder() throws Exception {
+		InstanceCollection instances = loadXMLInstances(
+				getClass().getResource("/data/shiporder/shiporder.xsd").toURI(), getClass()
+						.getResource("/data/shiporder/shiporder.xml").toURI());
+
+		ResourceIterator<Instance> it = instances.iterator();
+		try {
+			assertTrue(it.hasNext());
+
+			Instance instance = it.next();
+			assertNotNull(instance);
+
+			CompiledPropertyPath path = CompiledPropertyPath.compile(instance.getDefinition(),
+					"shipto.city");
+			assertTrue(path.isUnique());
+			assertFalse(path.isEmpty());
+			assertEquals(Arrays.asList(new QName("http://www.example.com", "shipto"),
+					new QName("http://www.example.com", "city")), path.getPaths().get(0));
+			assertEquals(PropertyResolver.getValues(instance, "shipto.city"),
+					path.getValues(instance, true));
+			assertEquals("4000 Stavanger", path.getValues(instance, true).iterator().next());
+
+			// instances instead of values
+			Object shipto = CompiledPropertyPath.compile(instance.getDefinition(), "shipto")
+					.getValues(instance, false).iterator().next();
+			assertTrue(shipto instanceof Instance);
+
+			CompiledPropertyPath unknown = CompiledPropertyPath.compile(instance.getDefinition(),
+					"shipto.street");
+			assertTrue(unknown.isEmpty());
+			assertNull(unknown.getValues(instance, true));
+		} finally {
+			it.close();
+		}
+	}
+
 	/**
 	 * Test with a wrapper instance that has no definition itself.
 	 * 
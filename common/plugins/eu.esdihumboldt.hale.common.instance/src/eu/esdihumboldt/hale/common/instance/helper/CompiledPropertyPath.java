@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.instance.helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import eu.esdihumboldt.hale.common.instance.model.Group;
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+
+/**
+ * Property path query bound to a specific type definition. The fully qualified
+ * paths matching the query are determined once when the path is compiled,
+ * retrieving values from instances of the type then only needs direct
+ * {@link Group#getProperty(QName)} calls. A compiled path is immutable and
+ * can be used concurrently.
+ * 
+ * @author Simon Templer
+ * @see PropertyResolver
+ */
+public final class CompiledPropertyPath {
+
+	private final String query;
+
+	private final TypeDefinition type;
+
+	private final QName[][] paths;
+
+	/**
+	 * Compile a property path query for the given type definition.
+	 * 
+	 * @param type the type definition
+	 * @param query the property path, e.g. <code>shipto.city</code>, names may
+	 *            be qualified with a namespace in curly braces
+	 * @return the compiled property path
+	 */
+	public static CompiledPropertyPath compile(TypeDefinition type, String query) {
+		List<List<QName>> resolved = PropertyResolver.resolvePaths(type,
+				PropertyResolver.getQNamesFromPath(query));
+
+		QName[][] paths = new QName[resolved.size()][];
+		for (int i = 0; i < paths.length; i++) {
+			List<QName> path = resolved.get(i);
+			paths[i] = path.toArray(new QName[path.size()]);
+		}
+
+		return new CompiledPropertyPath(query, type, paths);
+	}
+
+	private CompiledPropertyPath(String query, TypeDefinition type, QName[][] paths) {
+		super();
+		this.query = query;
+		this.type = type;
+		this.paths = paths;
+	}
+
+	/**
+	 * @return the property path query the path was compiled from
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * @return the type definition the path was compiled for
+	 */
+	public TypeDefinition getType() {
+		return type;
+	}
+
+	/**
+	 * @return the fully qualified paths matching the query
+	 */
+	public List<List<QName>> getPaths() {
+		List<List<QName>> result = new ArrayList<List<QName>>(paths.length);
+		for (QName[] path : paths) {
+			result.add(Arrays.asList(path));
+		}
+		return result;
+	}
+
+	/**
+	 * @return if there is no path in the type definition matching the query
+	 */
+	public boolean isEmpty() {
+		return paths.length == 0;
+	}
+
+	/**
+	 * @return if there is at most one path in the type definition matching the
+	 *         query
+	 */
+	public boolean isUnique() {
+		return paths.length <= 1;
+	}
+
+	/**
+	 * Retrieve the values matching the compiled paths from the given
+	 * instance. The instance is expected to be of the type the path was
+	 * compiled for.
+	 * 
+	 * @param instance the instance
+	 * @param forceValue if this is <code>true</code>, when the object at the
+	 *            end of a path is an instance, its value will be returned
+	 * @return the values or instances contained in the instance matching the
+	 *         paths, <code>null</code> if there are none
+	 * @see PropertyResolver#getValues(Instance, String, boolean)
+	 */
+	public Collection<Object> getValues(Instance instance, boolean forceValue) {
+		List<Object> result = null;
+		for (QName[] path : paths) {
+			result = collect(instance, path, 0, forceValue, result);
+		}
+		return result;
+	}
+
+	private static List<Object> collect(Group parent, QName[] path, int index,
+			boolean forceValue, List<Object> result) {
+		Object[] values = parent.getProperty(path[index]);
+		if (values == null) {
+			return result;
+		}
+
+		boolean last = index == path.length - 1;
+		for (Object value : values) {
+			if (!last) {
+				if (value instanceof Group) {
+					result = collect((Group) value, path, index + 1, forceValue, result);
+				}
+			}
+			else {
+				Object item;
+				if (value instanceof Instance) {
+					item = (forceValue) ? (((Instance) value).getValue()) : (value);
+				}
+				else if (value instanceof Group && forceValue) {
+					// group has no value
+					continue;
+				}
+				else {
+					item = value;
+				}
+
+				if (result == null) {
+					result = new ArrayList<Object>(values.length);
+				}
+				result.add(item);
+			}
+		}
+		return result;
+	}
+
+}
@@ -328,8 +328,12 @@ public class PropertyResolver {
 		 * else {
 		 */
 
-		analyzeSpecialQueryChildDefinition(instance.getDefinition().getChildren(), qnames, qdi);
-		return !definitioncache.get(qdi).isEmpty();
+		LinkedList<String> paths = definitioncache.get(qdi);
+		for (QueueDefinitionItem item : analyzeSpecialQueryChildDefinition(
+				instance.getDefinition().getChildren(), qnames)) {
+			paths.add(item.qNamesToString());
+		}
+		return !paths.isEmpty();
 		// }
 
 	}
@@ -377,6 +381,32 @@ public class PropertyResolver {
 		return Collections.unmodifiableList(result);
 	}
 
+	/**
+	 * Determine all fully qualified paths in the given type definition
+	 * matching the given query. In contrast to
+	 * {@link #getQueryPaths(TypeDefinition, DataSet, String)} the result is
+	 * not cached.
+	 * 
+	 * @param typeDef the type definition
+	 * @param query the property path split into its names, names without
+	 *            namespace match properties with any namespace
+	 * @return a list of all possible paths matching the query (which may be
+	 *         empty)
+	 */
+	public static List<List<QName>> resolvePaths(TypeDefinition typeDef, List<QName> query) {
+		if (query.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		List<QueueDefinitionItem> items = analyzeSpecialQueryChildDefinition(
+				typeDef.getChildren(), query);
+		List<List<QName>> result = new ArrayList<List<QName>>(items.size());
+		for (QueueDefinitionItem item : items) {
+			result.add(Collections.unmodifiableList(new ArrayList<QName>(item.getQnames())));
+		}
+		return Collections.unmodifiableList(result);
+	}
+
 	/**
 	 * this method can be used to search a single index over the whole
 	 * instance-definition-tree (for example "*" queries) the method writes the
@@ -572,12 +602,12 @@ public class PropertyResolver {
 	 * @param children a list of Childdefinitions from the rootdefinition of the
 	 *            instance-definition-tree
 	 * @param path the list of QNames split up from the original querypath
-	 * @param qdi the cacheindex produced from the instance root definition and
-	 *            the querypath
+	 * @return the queue items representing the found paths
 	 */
-	private static void analyzeSpecialQueryChildDefinition(
-			Collection<? extends ChildDefinition<?>> children, List<QName> path,
-			QueryDefinitionIndex qdi) {
+	private static List<QueueDefinitionItem> analyzeSpecialQueryChildDefinition(
+			Collection<? extends ChildDefinition<?>> children, List<QName> path) {
+
+		List<QueueDefinitionItem> result = new ArrayList<QueueDefinitionItem>();
 
 		QName current = path.get(0);
 
@@ -608,7 +638,7 @@ public class PropertyResolver {
 
 				if (currentItem != null) {
 
-					definitioncache.get(qdi).add(currentItem.qNamesToString());
+					result.add(currentItem);
 				}
 
 			}
@@ -657,6 +687,7 @@ public class PropertyResolver {
 
 		}
 
+		return result;
 	}
 
 	private static boolean isGroup(ChildDefinition<?> def) {
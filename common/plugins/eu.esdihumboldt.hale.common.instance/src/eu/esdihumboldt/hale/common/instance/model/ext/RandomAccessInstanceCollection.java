@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.instance.model.ext;
+
+import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
+
+/**
+ * Extended instance collection that can state if it resolves
+ * {@link InstanceReference}s efficiently, i.e. without iterating over the
+ * collection up to the referenced instance. Transformations that resolve
+ * references (e.g. Join and Merge) may use such a collection directly instead
+ * of copying it to a store that supports random access first.
+ * 
+ * @author Simon Templer
+ */
+public interface RandomAccessInstanceCollection extends InstanceCollection {
+
+	/**
+	 * States if the collection resolves instance references efficiently. For
+	 * collections that build an index while they are iterated, this states
+	 * that references will be resolved efficiently after the collection was
+	 * iterated once.
+	 * 
+	 * @return if random access to instances via references is supported
+	 */
+	public boolean supportsRandomAccess();
+
+	/**
+	 * Determine if the given instance collection resolves instance references
+	 * efficiently.
+	 * 
+	 * @param instances the instance collection
+	 * @return if the collection is a {@link RandomAccessInstanceCollection}
+	 *         supporting random access
+	 */
+	public static boolean supportsRandomAccess(InstanceCollection instances) {
+		return instances instanceof RandomAccessInstanceCollection
+				&& ((RandomAccessInstanceCollection) instances).supportsRandomAccess();
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.instance.model.ext;
+
+import eu.esdihumboldt.hale.common.core.report.SimpleLog;
+import eu.esdihumboldt.hale.common.instance.model.Filter;
+import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+
+/**
+ * Extended instance collection that can report how a selection is performed,
+ * e.g. which parts of a filter are evaluated by a database and which are
+ * applied to the retrieved instances.
+ * 
+ * @author Simon Templer
+ */
+public interface ReportingInstanceCollection extends InstanceCollection {
+
+	/**
+	 * Select the instances matching the given filter, as
+	 * {@link #select(Filter)}, and report on how the selection is performed.
+	 * 
+	 * @param filter the filter
+	 * @param log the log to report to
+	 * @return the instance collection of the instances matching the filter
+	 */
+	public InstanceCollection select(Filter filter, SimpleLog log);
+
+	/**
+	 * Select the instances matching the given filter from an instance
+	 * collection, reporting on the selection if the collection supports it.
+	 * 
+	 * @param instances the instance collection
+	 * @param filter the filter
+	 * @param log the log to report to
+	 * @return the instance collection of the instances matching the filter
+	 */
+	public static InstanceCollection select(InstanceCollection instances, Filter filter,
+			SimpleLog log) {
+		if (instances instanceof ReportingInstanceCollection) {
+			return ((ReportingInstanceCollection) instances).select(filter, log);
+		}
+		return instances.select(filter);
+	}
+
+}
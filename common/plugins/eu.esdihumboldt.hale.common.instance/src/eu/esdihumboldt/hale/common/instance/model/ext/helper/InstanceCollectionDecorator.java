@@ -16,6 +16,7 @@
 
 package eu.esdihumboldt.hale.common.instance.model.ext.helper;
 
+import java.util.Collection;
 import java.util.Map;
 
 import eu.esdihumboldt.hale.common.instance.model.Filter;
@@ -24,6 +25,7 @@ import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
 import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
 import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
 import eu.esdihumboldt.hale.common.instance.model.ext.InstanceCollection2;
+import eu.esdihumboldt.hale.common.instance.model.ext.RandomAccessInstanceCollection;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
 
 /**
@@ -31,7 +33,8 @@ import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
  * 
  * @author Simon Templer
  */
-public abstract class InstanceCollectionDecorator implements InstanceCollection2 {
+public abstract class InstanceCollectionDecorator
+		implements InstanceCollection2, RandomAccessInstanceCollection {
 
 	/**
 	 * The decorated instance collection.
@@ -83,6 +86,11 @@ public abstract class InstanceCollectionDecorator implements InstanceCollection2
 		return decoratee.getInstance(reference);
 	}
 
+	@Override
+	public InstanceCollection getInstances(Collection<? extends InstanceReference> references) {
+		return decoratee.getInstances(references);
+	}
+
 	@Override
 	public boolean supportsFanout() {
 		return decoratee instanceof InstanceCollection2
@@ -97,4 +105,9 @@ public abstract class InstanceCollectionDecorator implements InstanceCollection2
 		return null;
 	}
 
+	@Override
+	public boolean supportsRandomAccess() {
+		return RandomAccessInstanceCollection.supportsRandomAccess(decoratee);
+	}
+
 }
@@ -27,13 +27,14 @@ import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
 import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
 import eu.esdihumboldt.hale.common.instance.model.InstanceResolver;
 import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.common.instance.model.ext.RandomAccessInstanceCollection;
 
 /**
  * Default instance collection implementation backed by a collection.
  * 
  * @author Simon Templer
  */
-public class DefaultInstanceCollection implements InstanceCollection {
+public class DefaultInstanceCollection implements RandomAccessInstanceCollection {
 
 	private final List<Instance> collection;
 
@@ -146,6 +147,17 @@ public class DefaultInstanceCollection implements InstanceCollection {
 		return null;
 	}
 
+	/**
+	 * References hold the referenced instance, so resolving them is
+	 * efficient.
+	 * 
+	 * @see RandomAccessInstanceCollection#supportsRandomAccess()
+	 */
+	@Override
+	public boolean supportsRandomAccess() {
+		return true;
+	}
+
 	/**
 	 * @return a list of the contained instances
 	 */
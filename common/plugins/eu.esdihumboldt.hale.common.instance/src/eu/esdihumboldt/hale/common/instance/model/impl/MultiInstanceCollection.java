@@ -17,6 +17,7 @@
 package eu.esdihumboldt.hale.common.instance.model.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -26,6 +27,7 @@ import eu.esdihumboldt.hale.common.instance.model.Instance;
 import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
 import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
 import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.common.instance.model.ext.RandomAccessInstanceCollection;
 
 /**
  * An instance collection which consists of multiple instance collections. For
@@ -36,7 +38,7 @@ import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
  * 
  * @author Kai Schwierczek
  */
-public class MultiInstanceCollection implements InstanceCollection {
+public class MultiInstanceCollection implements RandomAccessInstanceCollection {
 
 	private final List<InstanceCollection> collections;
 
@@ -69,6 +71,54 @@ public class MultiInstanceCollection implements InstanceCollection {
 				ref.reference), ref.listIndex);
 	}
 
+	/**
+	 * Resolves the references of each underlying instance collection together
+	 * through that collection. The instances are grouped by the collection
+	 * they originate from.
+	 * 
+	 * @see InstanceCollection#getInstances(Collection)
+	 */
+	@Override
+	public InstanceCollection getInstances(Collection<? extends InstanceReference> references) {
+		List<List<InstanceReference>> grouped = new ArrayList<>(collections.size());
+		for (int i = 0; i < collections.size(); i++) {
+			grouped.add(new ArrayList<InstanceReference>());
+		}
+		for (InstanceReference reference : references) {
+			if (!(reference instanceof MultiInstanceCollectionReference)) {
+				return RandomAccessInstanceCollection.super.getInstances(references);
+			}
+			MultiInstanceCollectionReference ref = (MultiInstanceCollectionReference) reference;
+			grouped.get(ref.listIndex).add(ref.reference);
+		}
+
+		// keep the list indexes, so references can be retrieved from the
+		// resolved instances
+		List<InstanceCollection> resolved = new ArrayList<>(collections.size());
+		for (int i = 0; i < collections.size(); i++) {
+			List<InstanceReference> group = grouped.get(i);
+			resolved.add((group.isEmpty()) ? (new DefaultInstanceCollection())
+					: (collections.get(i).getInstances(group)));
+		}
+		return new MultiInstanceCollection(resolved);
+	}
+
+	/**
+	 * States that random access is supported if it is supported by all
+	 * underlying instance collections.
+	 * 
+	 * @see RandomAccessInstanceCollection#supportsRandomAccess()
+	 */
+	@Override
+	public boolean supportsRandomAccess() {
+		for (InstanceCollection collection : collections) {
+			if (!RandomAccessInstanceCollection.supportsRandomAccess(collection)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * @see eu.esdihumboldt.hale.common.instance.model.InstanceCollection#iterator()
 	 */
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.common.schema.model.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.xml.namespace.QName;
+
+import org.junit.Test;
+
+import eu.esdihumboldt.hale.common.schema.model.constraint.property.Reference;
+
+/**
+ * Tests for constraint handling in {@link AbstractDefinition}.
+ * 
+ * @author Simon Templer
+ */
+public class AbstractDefinitionTest {
+
+	/**
+	 * Test that a default constraint is resolved only once, also if it is
+	 * requested concurrently.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testConcurrentDefaultConstraint() throws Exception {
+		final DefaultPropertyDefinition property = createProperty();
+		assertFalse(property.hasConstraint(Reference.class));
+
+		int threads = 16;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final AtomicReferenceArray<Reference> results = new AtomicReferenceArray<Reference>(
+				threads);
+		for (int i = 0; i < threads; i++) {
+			final int index = i;
+			Thread thread = new Thread() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+						results.set(index, property.getConstraint(Reference.class));
+					} catch (InterruptedException e) {
+						// ignore
+					} finally {
+						done.countDown();
+					}
+				}
+			};
+			thread.start();
+		}
+
+		start.countDown();
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+
+		// the mutable default constraint must be the same for all threads
+		Reference reference = property.getConstraint(Reference.class);
+		assertNotNull(reference);
+		for (int i = 0; i < threads; i++) {
+			assertSame(reference, results.get(i));
+		}
+	}
+
+	/**
+	 * Test that an explicitly set constraint replaces a resolved default
+	 * constraint.
+	 */
+	@Test
+	public void testSetConstraint() {
+		DefaultPropertyDefinition property = createProperty();
+		Reference def = property.getConstraint(Reference.class);
+
+		Reference reference = new Reference(true);
+		property.setConstraint(reference);
+		assertSame(reference, property.getConstraint(Reference.class));
+
+		property.setConstraintIfNotSet(def);
+		assertSame(reference, property.getConstraint(Reference.class));
+	}
+
+	private DefaultPropertyDefinition createProperty() {
+		DefaultTypeDefinition type = new DefaultTypeDefinition(new QName("Test"));
+		DefaultTypeDefinition propertyType = new DefaultTypeDefinition(new QName("Value"));
+		return new DefaultPropertyDefinition(new QName("value"), type, propertyType);
+	}
+
+}
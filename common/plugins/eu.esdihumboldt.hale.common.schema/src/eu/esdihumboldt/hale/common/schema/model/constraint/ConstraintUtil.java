@@ -17,10 +17,10 @@
 package eu.esdihumboldt.hale.common.schema.model.constraint;
 
 import java.lang.reflect.Constructor;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.fhg.igd.slf4jplus.ALogger;
 import de.fhg.igd.slf4jplus.ALoggerFactory;
@@ -41,7 +41,7 @@ public abstract class ConstraintUtil {
 
 	private static final ALogger log = ALoggerFactory.getLogger(ConstraintUtil.class);
 
-	private static final Map<Class<?>, Object> cachedDefaults = new HashMap<Class<?>, Object>();
+	private static final Map<Class<?>, Object> cachedDefaults = new ConcurrentHashMap<Class<?>, Object>();
 
 	/**
 	 * Get the default constraint for the given constraint type.
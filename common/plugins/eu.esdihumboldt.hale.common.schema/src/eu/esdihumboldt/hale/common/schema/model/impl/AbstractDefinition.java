@@ -17,8 +17,8 @@
 package eu.esdihumboldt.hale.common.schema.model.impl;
 
 import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.namespace.QName;
 
@@ -45,9 +45,11 @@ public abstract class AbstractDefinition<C> implements Definition<C> {
 	protected final QName name;
 
 	/**
-	 * The constraints set on the definition
+	 * The constraints set on the definition, including inherited and default
+	 * constraints that have been resolved. Lookups don't need to lock, as
+	 * definitions are read concurrently once the schema is loaded.
 	 */
-	private final Map<Class<? extends C>, C> constraints = new HashMap<Class<? extends C>, C>();
+	private final ConcurrentMap<Class<? extends C>, C> constraints = new ConcurrentHashMap<Class<? extends C>, C>();
 
 	/**
 	 * The definition description
@@ -77,24 +79,27 @@ public abstract class AbstractDefinition<C> implements Definition<C> {
 	@SuppressWarnings("unchecked")
 	@Override
 	public <T extends C> T getConstraint(Class<T> constraintType) {
-		synchronized (constraints) {
-			C constraint = constraints.get(constraintType);
-			if (constraint != null) {
-				return (T) constraint;
-			}
-
-			// support for inherited constraints
-			T inheritedConstraint = getInheritedConstraint(constraintType);
-			if (inheritedConstraint != null) {
-				constraints.put(constraintType, inheritedConstraint);
-				return inheritedConstraint;
-			}
+		C constraint = constraints.get(constraintType);
+		if (constraint != null) {
+			return (T) constraint;
+		}
 
+		// support for inherited constraints
+		T resolved = getInheritedConstraint(constraintType);
+		if (resolved == null) {
 			// get default constraint and remember it
-			T defConstraint = ConstraintUtil.getDefaultConstraint(constraintType, this);
-			constraints.put(constraintType, defConstraint);
-			return defConstraint;
+			resolved = ConstraintUtil.getDefaultConstraint(constraintType, this);
 		}
+
+		/*
+		 * If another thread resolved the constraint in the meantime, use that
+		 * one, so mutable constraints are not replaced.
+		 */
+		C existing = constraints.putIfAbsent(constraintType, resolved);
+		if (existing != null) {
+			return (T) existing;
+		}
+		return resolved;
 	}
 
 	/**
@@ -119,9 +124,7 @@ public abstract class AbstractDefinition<C> implements Definition<C> {
 	 * @return if the constraint is set explicitly
 	 */
 	public boolean hasConstraint(Class<? extends C> constraintType) {
-		synchronized (constraints) {
-			return constraints.get(constraintType) != null;
-		}
+		return constraints.containsKey(constraintType);
 	}
 
 	/**
@@ -131,11 +134,9 @@ public abstract class AbstractDefinition<C> implements Definition<C> {
 	 */
 	@SuppressWarnings("unchecked")
 	public void setConstraint(C constraint) {
-		synchronized (constraints) {
-			// determine constraint type for constraint object
-			Class<?> constraintType = ConstraintUtil.getConstraintType(constraint.getClass());
-			constraints.put((Class<? extends C>) constraintType, constraint);
-		}
+		// determine constraint type for constraint object
+		Class<?> constraintType = ConstraintUtil.getConstraintType(constraint.getClass());
+		constraints.put((Class<? extends C>) constraintType, constraint);
 	}
 
 	/**
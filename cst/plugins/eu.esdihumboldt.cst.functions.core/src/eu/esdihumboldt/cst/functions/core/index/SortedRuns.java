@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.cst.functions.core.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorted runs of string keys associated to integer values, stored in temporary
+ * files. Used for external sorting of indexes that exceed the available
+ * memory: entries are written as runs that are each sorted by key, the runs
+ * are then merged and read in key order, grouping the values per key.<br>
+ * <br>
+ * For equal keys, entries are read in the order of the runs they were written
+ * to, and in the order they were written within a run.
+ * 
+ * @author Simon Templer
+ */
+public class SortedRuns {
+
+	/**
+	 * Maximum number of runs merged at once.
+	 */
+	private static final int MERGE_FAN_IN = 64;
+
+	/**
+	 * Minimum estimated heap memory in bytes of the entries buffered for a
+	 * single run. Smaller memory budgets should still switch to writing runs,
+	 * but buffer up to this amount per run, as a budget of zero would
+	 * otherwise result in a run per entry.
+	 */
+	public static final long MIN_RUN_MEMORY = 1024 * 1024;
+
+	private final String prefix;
+
+	private final List<File> runs = new ArrayList<>();
+
+	/**
+	 * Create a new empty set of runs.
+	 * 
+	 * @param prefix the prefix for the names of the temporary files
+	 */
+	public SortedRuns(String prefix) {
+		this.prefix = prefix;
+	}
+
+	/**
+	 * @return if no run has been written
+	 */
+	public boolean isEmpty() {
+		return runs.isEmpty();
+	}
+
+	/**
+	 * Create a new run. The entries must be written to the run in ascending
+	 * order of their keys. The run is added when the writer is closed.
+	 * 
+	 * @return the writer for the run
+	 * @throws IOException if creating the run file fails
+	 */
+	public RunWriter createRun() throws IOException {
+		return new RunWriter(createTempFile());
+	}
+
+	/**
+	 * Read the groups of values with equal keys from all runs, in ascending
+	 * order of the keys. The runs are consumed by the reader, i.e. no runs are
+	 * left after calling this method.
+	 * 
+	 * @return the group reader, must be closed after use
+	 * @throws IOException if merging the runs fails
+	 */
+	public GroupReader readGroups() throws IOException {
+		// reduce the number of runs level by level, so they can be merged at
+		// once - each entry is read and written once per level
+		while (runs.size() > MERGE_FAN_IN) {
+			List<File> level = new ArrayList<>(runs);
+			runs.clear();
+			int index = 0;
+			try {
+				while (index < level.size()) {
+					int end = Math.min(index + MERGE_FAN_IN, level.size());
+					List<File> inputs = new ArrayList<>(level.subList(index, end));
+					if (inputs.size() == 1) {
+						runs.add(inputs.get(0));
+					}
+					else {
+						// merged runs are added in the order of their inputs
+						// to preserve the order of entries with equal keys
+						merge(inputs);
+					}
+					index = end;
+				}
+			} finally {
+				// runs that were not merged are disposed with the others
+				runs.addAll(level.subList(index, level.size()));
+			}
+		}
+
+		List<File> inputs = new ArrayList<>(runs);
+		runs.clear();
+		EntryReader entries = new EntryReader(inputs);
+		try {
+			return new GroupReader(entries);
+		} catch (IOException e) {
+			entries.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Merge the given runs into a new run. The input runs are deleted.
+	 * 
+	 * @param inputs the runs to merge
+	 * @throws IOException if merging the runs fails
+	 */
+	private void merge(List<File> inputs) throws IOException {
+		try (RunWriter writer = createRun(); EntryReader reader = new EntryReader(inputs)) {
+			while (reader.next()) {
+				writer.write(reader.key, reader.value);
+			}
+		}
+	}
+
+	/**
+	 * Delete all runs.
+	 */
+	public void dispose() {
+		for (File run : runs) {
+			delete(run);
+		}
+		runs.clear();
+	}
+
+	/**
+	 * Create a temporary file, that is deleted on exit, if not deleted before.
+	 * 
+	 * @return the temporary file
+	 * @throws IOException if creating the file fails
+	 */
+	public File createTempFile() throws IOException {
+		File file = File.createTempFile(prefix, ".run");
+		file.deleteOnExit();
+		return file;
+	}
+
+	/**
+	 * Delete a file, if that fails, the file is deleted on exit.
+	 * 
+	 * @param file the file to delete
+	 */
+	public static void delete(File file) {
+		if (!file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+
+	/**
+	 * Write a string to a data output.
+	 * 
+	 * @param out the data output
+	 * @param value the string to write
+	 * @return the number of bytes written
+	 * @throws IOException if writing the string fails
+	 */
+	public static int writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+		return 4 + bytes.length;
+	}
+
+	/**
+	 * Read a string written with {@link #writeString(DataOutputStream, String)}
+	 * .
+	 * 
+	 * @param in the data input
+	 * @return the string
+	 * @throws IOException if reading the string fails
+	 */
+	public static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writer for a single run.
+	 */
+	public class RunWriter implements Closeable {
+
+		private final File file;
+
+		private final DataOutputStream out;
+
+		private RunWriter(File file) throws IOException {
+			this.file = file;
+			this.out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file)));
+		}
+
+		/**
+		 * Write an entry to the run.
+		 * 
+		 * @param key the entry key
+		 * @param value the entry value
+		 * @throws IOException if writing the entry fails
+		 */
+		public void write(String key, int value) throws IOException {
+			writeString(out, key);
+			out.writeInt(value);
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				out.close();
+			} catch (IOException e) {
+				delete(file);
+				throw e;
+			}
+			runs.add(file);
+		}
+
+	}
+
+	/**
+	 * Reads the groups of values with equal keys from the merged runs.
+	 */
+	public static class GroupReader implements Closeable {
+
+		private final EntryReader entries;
+
+		private boolean pending;
+
+		private String key;
+
+		private int[] values = new int[16];
+
+		private int size;
+
+		private GroupReader(EntryReader entries) throws IOException {
+			this.entries = entries;
+			this.pending = entries.next();
+		}
+
+		/**
+		 * Advance to the next group.
+		 * 
+		 * @return if there was a next group
+		 * @throws IOException if reading the runs fails
+		 */
+		public boolean next() throws IOException {
+			if (!pending) {
+				key = null;
+				size = 0;
+				return false;
+			}
+
+			key = entries.key;
+			size = 0;
+			do {
+				if (size == values.length) {
+					values = Arrays.copyOf(values, size * 2);
+				}
+				values[size++] = entries.value;
+				pending = entries.next();
+			} while (pending && entries.key.equals(key));
+
+			return true;
+		}
+
+		/**
+		 * @return the key of the current group
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * @return the values of the current group
+		 */
+		public int[] getValues() {
+			return Arrays.copyOf(values, size);
+		}
+
+		@Override
+		public void close() {
+			entries.close();
+		}
+
+	}
+
+	/**
+	 * Reads the entries of multiple runs in key order, deleting the run files
+	 * when closed.
+	 */
+	private static class EntryReader implements Closeable {
+
+		private final List<File> files;
+
+		private final List<RunReader> readers = new ArrayList<>();
+
+		private final PriorityQueue<RunReader> queue = new PriorityQueue<>();
+
+		private String key;
+
+		private int value;
+
+		public EntryReader(List<File> files) throws IOException {
+			this.files = files;
+			try {
+				for (int i = 0; i < files.size(); i++) {
+					RunReader reader = new RunReader(files.get(i), i);
+					readers.add(reader);
+					if (reader.advance()) {
+						queue.add(reader);
+					}
+				}
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+		}
+
+		public boolean next() throws IOException {
+			RunReader reader = queue.poll();
+			if (reader == null) {
+				return false;
+			}
+
+			key = reader.key;
+			value = reader.value;
+			if (reader.advance()) {
+				queue.add(reader);
+			}
+			return true;
+		}
+
+		@Override
+		public void close() {
+			for (RunReader reader : readers) {
+				reader.close();
+			}
+			for (File file : files) {
+				delete(file);
+			}
+		}
+
+	}
+
+	/**
+	 * Sequential reader for a run file.
+	 */
+	private static class RunReader implements Comparable<RunReader> {
+
+		private final DataInputStream in;
+
+		private final int order;
+
+		private String key;
+
+		private int value;
+
+		public RunReader(File run, int order) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run)));
+			this.order = order;
+		}
+
+		public boolean advance() throws IOException {
+			int length;
+			try {
+				length = in.readInt();
+			} catch (EOFException e) {
+				key = null;
+				return false;
+			}
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			key = new String(bytes, StandardCharsets.UTF_8);
+			value = in.readInt();
+			return true;
+		}
+
+		@Override
+		public int compareTo(RunReader o) {
+			int result = key.compareTo(o.key);
+			if (result == 0) {
+				result = Integer.compare(order, o.order);
+			}
+			return result;
+		}
+
+		public void close() {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+
+	}
+
+}
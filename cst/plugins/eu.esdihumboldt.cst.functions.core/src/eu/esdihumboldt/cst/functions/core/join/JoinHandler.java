@@ -16,16 +16,17 @@
 
 package eu.esdihumboldt.cst.functions.core.join;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URI;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -43,10 +44,12 @@ import eu.esdihumboldt.hale.common.align.model.functions.join.JoinParameter.Join
 import eu.esdihumboldt.hale.common.align.model.impl.PropertyEntityDefinition;
 import eu.esdihumboldt.hale.common.align.model.impl.TypeEntityDefinition;
 import eu.esdihumboldt.hale.common.align.transformation.engine.TransformationEngine;
+import eu.esdihumboldt.hale.common.align.transformation.function.ExecutionContext;
 import eu.esdihumboldt.hale.common.align.transformation.function.InstanceHandler;
 import eu.esdihumboldt.hale.common.align.transformation.function.TransformationException;
 import eu.esdihumboldt.hale.common.align.transformation.function.impl.FamilyInstanceImpl;
 import eu.esdihumboldt.hale.common.align.transformation.report.TransformationLog;
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings;
 import eu.esdihumboldt.hale.common.instance.model.FamilyInstance;
 import eu.esdihumboldt.hale.common.instance.model.Instance;
 import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
@@ -63,6 +66,13 @@ import eu.esdihumboldt.hale.common.schema.model.constraint.property.Reference;
  */
 public class JoinHandler implements InstanceHandler<TransformationEngine>, JoinFunction {
 
+	private ExecutionContext executionContext;
+
+	@Override
+	public void setExecutionContext(ExecutionContext executionContext) {
+		this.executionContext = executionContext;
+	}
+
 	// For now no support for using the same type more than once in a join.
 	/**
 	 * @see eu.esdihumboldt.hale.common.align.transformation.function.InstanceHandler#partitionInstances(eu.esdihumboldt.hale.common.instance.model.InstanceCollection,
@@ -116,12 +126,11 @@ public class JoinHandler implements InstanceHandler<TransformationEngine>, JoinF
 		}
 
 		// JoinProperty -> (Value -> Collection<Reference>)
-		Map<PropertyEntityDefinition, Multimap<Object, InstanceReference>> index = new HashMap<>();
-		for (PropertyEntityDefinition property : properties.values())
-			index.put(property, ArrayListMultimap.<Object, InstanceReference> create());
+		JoinIndex index = new JoinIndex(properties.values(),
+				TransformationSettings.get(executionContext).getJoinIndexMemory());
 
 		// remember instances of first type to start join afterwards
-		Collection<InstanceReference> startInstances = new LinkedList<InstanceReference>();
+		List<Integer> startInstances = new ArrayList<>();
 
 		// iterate once over all instances
 		ResourceIterator<Instance> iterator = instances.iterator();
@@ -129,28 +138,47 @@ public class JoinHandler implements InstanceHandler<TransformationEngine>, JoinF
 			while (iterator.hasNext()) {
 				Instance next = iterator.next();
 
+				boolean start = next.getDefinition().equals(types.get(0).getDefinition());
+				Collection<PropertyEntityDefinition> nextProperties = properties
+						.get(next.getDefinition());
+				if (!start && nextProperties.isEmpty()) {
+					continue;
+				}
+
+				int ordinal = index.addReference(instances.getReference(next));
+
 				// remember instances of first type
-				if (next.getDefinition().equals(types.get(0).getDefinition())) {
-					startInstances.add(instances.getReference(next));
+				if (start) {
+					startInstances.add(ordinal);
 				}
 
 				// fill index over needed properties
-				for (PropertyEntityDefinition property : properties.get(next.getDefinition())) {
+				for (PropertyEntityDefinition property : nextProperties) {
 					// XXX what about null? for now ignore null values
 					// XXX how to treat multiple values? must all be equal (in
 					// order?) or only one?
 					Collection<Object> values = AlignmentUtil.getValues(next, property, true);
 					if (values != null && !values.isEmpty()) {
 						// XXX take only first value for now
-						index.get(property).put(processValue(values.iterator().next(), property),
-								instances.getReference(next));
+						index.put(property, processValue(values.iterator().next(), property),
+								ordinal);
 					}
 				}
 			}
+
+			index.finish();
+		} catch (IOException e) {
+			index.dispose();
+			throw new TransformationException("Failed to build join index", e);
 		} finally {
 			iterator.close();
 		}
 
+		if (index.isSpilled()) {
+			log.info(log.createMessage(
+					"Join index exceeded the configured memory and was spilled to disk", null));
+		}
+
 		return new JoinIterator(instances, startInstances, directParent, index, joinTable);
 	}
 
@@ -200,22 +228,38 @@ public class JoinHandler implements InstanceHandler<TransformationEngine>, JoinF
 		return value;
 	}
 
-	private class JoinIterator
-			extends GenericResourceIteratorAdapter<InstanceReference, FamilyInstance> {
+	/**
+	 * Get the references for the given ordinals.
+	 * 
+	 * @param ordinals the reference ordinals
+	 * @param index the join index holding the references
+	 * @return the instance references
+	 */
+	private static List<InstanceReference> getReferences(Collection<Integer> ordinals,
+			JoinIndex index) {
+		List<InstanceReference> references = new ArrayList<>(ordinals.size());
+		for (Integer ordinal : ordinals) {
+			references.add(index.getReference(ordinal));
+		}
+		return references;
+	}
+
+	private class JoinIterator extends GenericResourceIteratorAdapter<Instance, FamilyInstance> {
 
 		private final InstanceCollection instances;
 		// type -> direct-parent
 		private final int[] parent;
 		// TypeProp -> (Value -> Collection<Reference>)
-		private final Map<PropertyEntityDefinition, Multimap<Object, InstanceReference>> index;
+		private final JoinIndex index;
 		// ChildType -> (ParentType -> Collection<JoinCondition>)
 		private final Map<Integer, Multimap<Integer, JoinCondition>> joinTable;
 
 		protected JoinIterator(InstanceCollection instances,
-				Collection<InstanceReference> startInstances, int[] parent,
-				Map<PropertyEntityDefinition, Multimap<Object, InstanceReference>> index,
+				Collection<Integer> startInstances, int[] parent, JoinIndex index,
 				Map<Integer, Multimap<Integer, JoinCondition>> joinTable) {
-			super(startInstances.iterator());
+			// resolve the start instances together, which may be done in
+			// batches by the instance collection
+			super(instances.getInstances(getReferences(startInstances, index)).iterator());
 			this.instances = instances;
 			this.parent = parent;
 			this.index = index;
@@ -226,8 +270,8 @@ public class JoinHandler implements InstanceHandler<TransformationEngine>, JoinF
 		 * @see eu.esdihumboldt.hale.common.instance.model.impl.GenericResourceIteratorAdapter#convert(java.lang.Object)
 		 */
 		@Override
-		protected FamilyInstance convert(InstanceReference next) {
-			FamilyInstance base = new FamilyInstanceImpl(instances.getInstance(next));
+		protected FamilyInstance convert(Instance next) {
+			FamilyInstance base = new FamilyInstanceImpl(next);
 			FamilyInstance[] currentInstances = new FamilyInstance[parent.length];
 			currentInstances[0] = base;
 
@@ -261,8 +305,8 @@ public class JoinHandler implements InstanceHandler<TransformationEngine>, JoinF
 						// Allow targets with any of the property values.
 						HashSet<InstanceReference> matches = new HashSet<InstanceReference>();
 						for (Object currentValue : currentValues) {
-							matches.addAll(index.get(joinCondition.getValue().joinProperty)
-									.get(processValue(currentValue,
+							matches.addAll(index.get(joinCondition.getValue().joinProperty,
+									processValue(currentValue,
 											joinCondition.getValue().baseProperty)));
 						}
 						if (possibleInstances == null)
@@ -284,12 +328,18 @@ public class JoinHandler implements InstanceHandler<TransformationEngine>, JoinF
 
 					if (possibleInstances != null && !possibleInstances.isEmpty()) {
 						FamilyInstance parent = currentInstances[currentType];
-						for (InstanceReference ref : possibleInstances) {
-							FamilyInstance child = new FamilyInstanceImpl(
-									instances.getInstance(ref));
-							parent.addChild(child);
-							currentInstances[i] = child;
-							join(currentInstances, i);
+						// resolve the joined instances together
+						ResourceIterator<Instance> it = instances.getInstances(possibleInstances)
+								.iterator();
+						try {
+							while (it.hasNext()) {
+								FamilyInstance child = new FamilyInstanceImpl(it.next());
+								parent.addChild(child);
+								currentInstances[i] = child;
+								join(currentInstances, i);
+							}
+						} finally {
+							it.close();
 						}
 						currentInstances[i] = null;
 					}
@@ -304,5 +354,14 @@ public class JoinHandler implements InstanceHandler<TransformationEngine>, JoinF
 		public void remove() {
 			throw new UnsupportedOperationException();
 		}
+
+		@Override
+		public void close() {
+			try {
+				super.close();
+			} finally {
+				index.dispose();
+			}
+		}
 	}
 }
@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.cst.functions.core.join;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+
+import eu.esdihumboldt.cst.functions.core.index.SortedRuns;
+import eu.esdihumboldt.cst.functions.core.index.SortedRuns.GroupReader;
+import eu.esdihumboldt.cst.functions.core.index.SortedRuns.RunWriter;
+import eu.esdihumboldt.hale.common.align.model.impl.PropertyEntityDefinition;
+import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
+
+/**
+ * Index of join property values to the references of the instances having
+ * these values.<br>
+ * <br>
+ * As long as the estimated heap memory occupied by the index stays below the
+ * configured budget, the index is held completely in memory. If the budget is
+ * exceeded, the buffered string values are written to disk as a sorted run.
+ * When the index is {@link #finish() finished}, the runs are merged into a
+ * single sorted file, grouping the instances per value, that is accessed
+ * through a sparse in-memory index of its blocks. Values that are not strings
+ * (after being processed by the join handler) are always held in memory.<br>
+ * <br>
+ * The instance references themselves are held in memory, the index only
+ * stores their ordinals.
+ * 
+ * @author Simon Templer
+ */
+public class JoinIndex {
+
+	/**
+	 * Estimated heap memory occupied by a single entry in the in-memory index,
+	 * not including the value.
+	 */
+	private static final int ENTRY_MEMORY = 64;
+
+	/**
+	 * Number of value groups in a block of the merged index file, a block is
+	 * the unit that is read from disk for a lookup.
+	 */
+	private static final int BLOCK_SIZE = 128;
+
+	private final long memoryBudget;
+
+	/**
+	 * Estimated heap memory of the buffered values written to a single run.
+	 */
+	private final long runMemory;
+
+	private boolean spilled = false;
+
+	private final Map<PropertyEntityDefinition, Integer> propertyIds = new HashMap<>();
+
+	private final List<InstanceReference> references = new ArrayList<>();
+
+	/**
+	 * Property ID -> (Value -> reference ordinals) for string values that
+	 * were not yet spilled to disk.
+	 */
+	private final List<ListMultimap<String, Integer>> buffer = new ArrayList<>();
+
+	/**
+	 * Property ID -> (Value -> reference ordinals) for other values, that are
+	 * always held in memory.
+	 */
+	private final List<ListMultimap<Object, Integer>> pinned = new ArrayList<>();
+
+	private long bufferMemory = 0;
+
+	private final SortedRuns runs = new SortedRuns("hale-join");
+
+	private File indexFile;
+
+	private RandomAccessFile indexAccess;
+
+	/**
+	 * Key of the first group in each block of the index file.
+	 */
+	private final List<String> blockKeys = new ArrayList<>();
+
+	/**
+	 * Offset of each block in the index file, with an additional entry for
+	 * the file length.
+	 */
+	private long[] blockOffsets;
+
+	private boolean finished = false;
+
+	/**
+	 * Create a new join index.
+	 * 
+	 * @param properties the join properties to index
+	 * @param memoryBudget the estimated heap memory in bytes the index may
+	 *            occupy before it is spilled to disk
+	 */
+	public JoinIndex(Collection<PropertyEntityDefinition> properties, long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+		this.runMemory = Math.max(memoryBudget, SortedRuns.MIN_RUN_MEMORY);
+		for (PropertyEntityDefinition property : properties) {
+			if (!propertyIds.containsKey(property)) {
+				propertyIds.put(property, propertyIds.size());
+				buffer.add(ArrayListMultimap.<String, Integer> create());
+				pinned.add(ArrayListMultimap.<Object, Integer> create());
+			}
+		}
+	}
+
+	/**
+	 * Add an instance reference to the index.
+	 * 
+	 * @param reference the instance reference
+	 * @return the ordinal of the reference to use when adding values with
+	 *         {@link #put(PropertyEntityDefinition, Object, int)}
+	 */
+	public int addReference(InstanceReference reference) {
+		references.add(reference);
+		return references.size() - 1;
+	}
+
+	/**
+	 * Get the reference with the given ordinal.
+	 * 
+	 * @param ordinal the reference ordinal
+	 * @return the instance reference
+	 */
+	public InstanceReference getReference(int ordinal) {
+		return references.get(ordinal);
+	}
+
+	/**
+	 * Add a property value of an instance to the index.
+	 * 
+	 * @param property the join property
+	 * @param value the processed property value
+	 * @param ordinal the ordinal of the instance reference
+	 * @throws IOException if spilling the index to disk fails
+	 */
+	public void put(PropertyEntityDefinition property, Object value, int ordinal)
+			throws IOException {
+		if (finished) {
+			throw new IllegalStateException("Join index is already finished");
+		}
+		int id = propertyIds.get(property);
+
+		if (value instanceof String) {
+			String key = (String) value;
+			buffer.get(id).put(key, ordinal);
+			bufferMemory += ENTRY_MEMORY + 40 + 2 * key.length();
+
+			if (bufferMemory > memoryBudget) {
+				spilled = true;
+			}
+			if (spilled && bufferMemory > runMemory) {
+				spill();
+			}
+		}
+		else {
+			pinned.get(id).put(value, ordinal);
+		}
+	}
+
+	/**
+	 * @return if the index was spilled to disk
+	 */
+	public boolean isSpilled() {
+		return spilled;
+	}
+
+	/**
+	 * Finish the index. Must be called after all values were added and before
+	 * the index is queried.
+	 * 
+	 * @throws IOException if merging the runs on disk fails
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		finished = true;
+
+		if (!spilled) {
+			// fast path - everything in memory
+			return;
+		}
+
+		spill();
+
+		indexFile = runs.createTempFile();
+		List<Long> offsets = new ArrayList<>();
+		long offset = 0;
+		int groups = 0;
+		try (GroupReader reader = runs.readGroups();
+				DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+			while (reader.next()) {
+				if (groups % BLOCK_SIZE == 0) {
+					blockKeys.add(reader.getKey());
+					offsets.add(offset);
+				}
+				offset += writeGroup(out, reader.getKey(), reader.getValues());
+				groups++;
+			}
+		}
+		offsets.add(offset);
+
+		blockOffsets = new long[offsets.size()];
+		for (int i = 0; i < blockOffsets.length; i++) {
+			blockOffsets[i] = offsets.get(i);
+		}
+
+		indexAccess = new RandomAccessFile(indexFile, "r");
+	}
+
+	/**
+	 * Get the references of the instances that have the given value for the
+	 * given property.
+	 * 
+	 * @param property the join property
+	 * @param value the processed property value
+	 * @return the instance references
+	 */
+	public Collection<InstanceReference> get(PropertyEntityDefinition property, Object value) {
+		if (!finished) {
+			throw new IllegalStateException("Join index must be finished before it is queried");
+		}
+		Integer id = propertyIds.get(property);
+		if (id == null) {
+			return Collections.emptyList();
+		}
+
+		List<Integer> ordinals;
+		if (value instanceof String) {
+			if (indexFile != null) {
+				try {
+					ordinals = lookup(toKey(id, (String) value));
+				} catch (IOException e) {
+					throw new IllegalStateException("Failed to read from join index", e);
+				}
+			}
+			else {
+				ordinals = buffer.get(id).get((String) value);
+			}
+		}
+		else {
+			ordinals = pinned.get(id).get(value);
+		}
+
+		if (ordinals.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Set<InstanceReference> result = new LinkedHashSet<>();
+		for (Integer ordinal : ordinals) {
+			result.add(references.get(ordinal));
+		}
+		return result;
+	}
+
+	/**
+	 * Dispose the index, deleting any files created on disk.
+	 */
+	public void dispose() {
+		if (indexAccess != null) {
+			try {
+				indexAccess.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			indexAccess = null;
+		}
+		if (indexFile != null) {
+			SortedRuns.delete(indexFile);
+			indexFile = null;
+		}
+		runs.dispose();
+	}
+
+	/**
+	 * Write the buffered string values to disk as a sorted run.
+	 * 
+	 * @throws IOException if writing the run fails
+	 */
+	private void spill() throws IOException {
+		if (bufferMemory == 0) {
+			return;
+		}
+
+		try (RunWriter run = runs.createRun()) {
+			for (int id = 0; id < buffer.size(); id++) {
+				ListMultimap<String, Integer> values = buffer.get(id);
+				String[] keys = values.keySet().toArray(new String[values.keySet().size()]);
+				Arrays.sort(keys);
+				for (String key : keys) {
+					String runKey = toKey(id, key);
+					for (Integer ordinal : values.get(key)) {
+						run.write(runKey, ordinal);
+					}
+				}
+				values.clear();
+			}
+		}
+		bufferMemory = 0;
+	}
+
+	/**
+	 * Create the key for a value in the runs and the index file. The key is
+	 * prefixed with the property ID as character, so the keys are ordered by
+	 * property and value.
+	 * 
+	 * @param id the property ID
+	 * @param value the value
+	 * @return the key
+	 */
+	private static String toKey(int id, String value) {
+		return ((char) id) + value;
+	}
+
+	/**
+	 * Write a group of reference ordinals to the index file.
+	 * 
+	 * @param out the output stream
+	 * @param key the group key
+	 * @param ordinals the reference ordinals
+	 * @return the number of bytes written
+	 * @throws IOException if writing the group fails
+	 */
+	private static long writeGroup(DataOutputStream out, String key, int[] ordinals)
+			throws IOException {
+		long size = SortedRuns.writeString(out, key);
+		out.writeInt(ordinals.length);
+		for (int ordinal : ordinals) {
+			out.writeInt(ordinal);
+		}
+		return size + 4 + 4L * ordinals.length;
+	}
+
+	/**
+	 * Look up the reference ordinals for a key in the index file.
+	 * 
+	 * @param key the key
+	 * @return the reference ordinals
+	 * @throws IOException if reading the index file fails
+	 */
+	private List<Integer> lookup(String key) throws IOException {
+		// find the block that may contain the key
+		int block = Collections.binarySearch(blockKeys, key);
+		if (block < 0) {
+			block = -block - 2;
+			if (block < 0) {
+				// key is smaller than the first key in the index
+				return Collections.emptyList();
+			}
+		}
+
+		byte[] data = new byte[(int) (blockOffsets[block + 1] - blockOffsets[block])];
+		synchronized (indexAccess) {
+			indexAccess.seek(blockOffsets[block]);
+			indexAccess.readFully(data);
+		}
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		while (in.available() > 0) {
+			String candidate = SortedRuns.readString(in);
+			int count = in.readInt();
+			int comparison = candidate.compareTo(key);
+			if (comparison == 0) {
+				List<Integer> result = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					result.add(in.readInt());
+				}
+				return result;
+			}
+			else if (comparison > 0) {
+				break;
+			}
+			in.skipBytes(count * 4);
+		}
+		return Collections.emptyList();
+	}
+
+}
@@ -16,32 +16,36 @@
 
 package eu.esdihumboldt.cst.functions.core.merge;
 
-import java.util.Collection;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ListMultimap;
-import com.google.common.collect.Multimap;
 
 import eu.esdihumboldt.hale.common.align.model.ParameterValue;
 import eu.esdihumboldt.hale.common.align.transformation.engine.TransformationEngine;
+import eu.esdihumboldt.hale.common.align.transformation.function.ExecutionContext;
 import eu.esdihumboldt.hale.common.align.transformation.function.InstanceHandler;
 import eu.esdihumboldt.hale.common.align.transformation.function.TransformationException;
 import eu.esdihumboldt.hale.common.align.transformation.function.impl.FamilyInstanceImpl;
 import eu.esdihumboldt.hale.common.align.transformation.report.TransformationLog;
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings;
 import eu.esdihumboldt.hale.common.core.HalePlatform;
 import eu.esdihumboldt.hale.common.instance.model.FamilyInstance;
 import eu.esdihumboldt.hale.common.instance.model.Instance;
 import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
 import eu.esdihumboldt.hale.common.instance.model.InstanceFactory;
-import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
 import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
-import eu.esdihumboldt.hale.common.instance.model.impl.GenericResourceIteratorAdapter;
+import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstanceCollection;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
 
 /**
  * Abstract merge handler implementation based on a merge index of instance
- * references.
+ * references. If the source instances are declared to be sorted by the merge
+ * key (see {@link TransformationSettings#SETTING_MERGE_SORTED_INPUT}), the
+ * instances are merged while streaming over the source instead.
  * 
  * @param <T> the merge configuration type
  * @param <K> the merge key type
@@ -57,11 +61,14 @@ public abstract class AbstractMergeHandler<T, K> implements InstanceHandler<Tran
 	/**
 	 * Resource iterator over the merged instances
 	 */
-	public class MergedIterator extends GenericResourceIteratorAdapter<K, FamilyInstance> {
+	public class MergedIterator implements ResourceIterator<FamilyInstance> {
 
-		private final Multimap<K, InstanceReference> index;
+		private final MergeIndex<K> index;
 		private final InstanceCollection originalInstances;
 		private final T mergeConfig;
+		private boolean mergeAll;
+		private boolean advanced = false;
+		private boolean available = false;
 
 		/**
 		 * Create a collection of merged instances.
@@ -69,39 +76,148 @@ public abstract class AbstractMergeHandler<T, K> implements InstanceHandler<Tran
 		 * @param index the merge index
 		 * @param instances the original instance collection
 		 * @param mergeConfig the merge configuration
+		 * @param mergeAll if all instances should be merged, in addition to
+		 *            the groups in the merge index (see {@link #KEY_ALL})
 		 */
-		public MergedIterator(Multimap<K, InstanceReference> index, InstanceCollection instances,
-				T mergeConfig) {
-			super(index.keySet().iterator());
+		public MergedIterator(MergeIndex<K> index, InstanceCollection instances, T mergeConfig,
+				boolean mergeAll) {
 			this.index = index;
 			this.originalInstances = instances;
 			this.mergeConfig = mergeConfig;
+			this.mergeAll = mergeAll;
 		}
 
 		@Override
-		protected FamilyInstance convert(K next) {
-			// next is the merge key
+		public boolean hasNext() {
+			if (mergeAll) {
+				return true;
+			}
+			if (!advanced) {
+				try {
+					available = index.nextGroup();
+				} catch (IOException e) {
+					throw new IllegalStateException("Failed to read merge index", e);
+				}
+				advanced = true;
+			}
+			return available;
+		}
 
-			// get the instances to merge
-			InstanceCollection instances;
-			if (next == KEY_ALL) {
+		@SuppressWarnings("unchecked")
+		@Override
+		public FamilyInstance next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			if (mergeAll) {
 				// special case: merge all
-				instances = originalInstances;
+				mergeAll = false;
+
+				// determine type based on sample instance type
+				TypeDefinition type = null;
+				try (ResourceIterator<Instance> it = originalInstances.iterator()) {
+					if (it.hasNext()) {
+						type = it.next().getDefinition();
+					}
+				}
+
+				return new FamilyInstanceImpl(
+						merge(originalInstances, type, (K) KEY_ALL, mergeConfig));
+			}
+
+			advanced = false;
+
+			// resolve the instances to merge once, the group is held in memory
+			List<Instance> group = new ArrayList<>();
+			try (ResourceIterator<Instance> it = originalInstances
+					.getInstances(index.getGroupReferences()).iterator()) {
+				while (it.hasNext()) {
+					group.add(it.next());
+				}
+			}
+
+			return mergeGroup(group, index.getGroupKey(), mergeConfig);
+		}
+
+		@Override
+		public void remove() {
+			// prohibit remove
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			index.dispose();
+		}
+	}
+
+	/**
+	 * Resource iterator merging adjacent instances with equal merge keys while
+	 * streaming over the source instances. Only the instances of a single
+	 * group are held in memory at a time.
+	 */
+	public class StreamingMergedIterator implements ResourceIterator<FamilyInstance> {
+
+		private final InstanceCollection originalInstances;
+		private final T mergeConfig;
+		private final ResourceIterator<Instance> source;
+		private Instance pending;
+		private K pendingKey;
+
+		/**
+		 * Create a collection of merged instances.
+		 * 
+		 * @param instances the original instance collection, instances with
+		 *            equal merge keys must be adjacent
+		 * @param mergeConfig the merge configuration
+		 */
+		public StreamingMergedIterator(InstanceCollection instances, T mergeConfig) {
+			this.originalInstances = instances;
+			this.mergeConfig = mergeConfig;
+			this.source = instances.iterator();
+			advance();
+		}
+
+		private void advance() {
+			if (source.hasNext()) {
+				pending = source.next();
+				pendingKey = getMergeKey(pending, mergeConfig);
 			}
 			else {
-				Collection<InstanceReference> references = index.get(next);
-				instances = originalInstances.getInstances(references);
+				pending = null;
+				pendingKey = null;
 			}
+		}
 
-			// determine type based on sample instance type
-			TypeDefinition type = null;
-			try (ResourceIterator<Instance> it = instances.iterator()) {
-				if (it.hasNext()) {
-					type = it.next().getDefinition();
-				}
+		@Override
+		public boolean hasNext() {
+			return pending != null;
+		}
+
+		@Override
+		public FamilyInstance next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			K key = pendingKey;
+			if (key == KEY_ALL) {
+				// special case: merge all
+				TypeDefinition type = pending.getDefinition();
+				pending = null;
+				pendingKey = null;
+				return new FamilyInstanceImpl(
+						merge(originalInstances, type, key, mergeConfig));
 			}
 
-			return new FamilyInstanceImpl(merge(instances, type, next, mergeConfig));
+			List<Instance> group = new ArrayList<>();
+			do {
+				group.add(pending);
+				advance();
+			} while (pending != null && key.equals(pendingKey));
+
+			return mergeGroup(group, key, mergeConfig);
 		}
 
 		@Override
@@ -109,6 +225,18 @@ public abstract class AbstractMergeHandler<T, K> implements InstanceHandler<Tran
 			// prohibit remove
 			throw new UnsupportedOperationException();
 		}
+
+		@Override
+		public void close() {
+			source.close();
+		}
+	}
+
+	private ExecutionContext executionContext;
+
+	@Override
+	public void setExecutionContext(ExecutionContext executionContext) {
+		this.executionContext = executionContext;
 	}
 
 	/**
@@ -124,21 +252,86 @@ public abstract class AbstractMergeHandler<T, K> implements InstanceHandler<Tran
 		T mergeConfig = createMergeConfiguration(transformationIdentifier, transformationParameters,
 				executionParameters, log);
 
+		TransformationSettings settings = TransformationSettings.get(executionContext);
+		if (settings.isMergeSortedInput()) {
+			// source is declared to be sorted by the merge key
+			return new StreamingMergedIterator(instances, mergeConfig);
+		}
+
 		// create merge index over all instances (references)
-		Multimap<K, InstanceReference> index = HashMultimap.create();
+		MergeIndex<K> index = new MergeIndex<>(settings.getMergeIndexMemory());
+		boolean mergeAll = false;
 
 		ResourceIterator<Instance> it = instances.iterator();
 		try {
 			while (it.hasNext()) {
 				Instance instance = it.next();
 				K key = getMergeKey(instance, mergeConfig);
-				index.put(key, instances.getReference(instance));
+				if (key == KEY_ALL) {
+					// all instances are merged, no need to remember them
+					mergeAll = true;
+				}
+				else {
+					index.add(key, encodeMergeKey(key), instances.getReference(instance));
+				}
 			}
+		} catch (IOException e) {
+			index.dispose();
+			throw new TransformationException("Failed to build merge index", e);
 		} finally {
 			it.close();
 		}
 
-		return new MergedIterator(index, instances, mergeConfig);
+		if (index.isSpilled()) {
+			log.info(log.createMessage(
+					"Merge index exceeded the configured memory and was spilled to disk", null));
+		}
+		if (!mergeAll && index.isSorted()) {
+			log.info(log.createMessage(
+					"Source instances are sorted by the merge key, enable the transformation setting "
+							+ TransformationSettings.SETTING_MERGE_SORTED_INPUT
+							+ " to merge them without building an index",
+					null));
+		}
+
+		return new MergedIterator(index, instances, mergeConfig, mergeAll);
+	}
+
+	/**
+	 * Merge a group of instances with equal merge keys.
+	 * 
+	 * @param group the instances to merge
+	 * @param key the merge key, <code>null</code> if it should be determined
+	 *            from the first instance
+	 * @param mergeConfig the merge configuration
+	 * @return the merged instance
+	 */
+	private FamilyInstance mergeGroup(List<Instance> group, K key, T mergeConfig) {
+		// determine type based on sample instance type
+		TypeDefinition type = null;
+		if (!group.isEmpty()) {
+			type = group.get(0).getDefinition();
+			if (key == null) {
+				key = getMergeKey(group.get(0), mergeConfig);
+			}
+		}
+
+		return new FamilyInstanceImpl(
+				merge(new DefaultInstanceCollection(group), type, key, mergeConfig));
+	}
+
+	/**
+	 * Encode a merge key as string, e.g. to allow sorting the instances to
+	 * merge on disk. Two merge keys must be equal if and only if their
+	 * encodings are equal. The default implementation returns
+	 * <code>null</code>.
+	 * 
+	 * @param key the merge key
+	 * @return the encoded merge key or <code>null</code> if the key cannot be
+	 *         encoded
+	 */
+	protected String encodeMergeKey(K key) {
+		return null;
 	}
 
 	/**
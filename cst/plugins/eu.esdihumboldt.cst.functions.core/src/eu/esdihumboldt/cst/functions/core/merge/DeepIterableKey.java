@@ -16,6 +16,8 @@
 
 package eu.esdihumboldt.cst.functions.core.merge;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -100,4 +102,94 @@ public class DeepIterableKey {
 		return se.deepIterableHashCode(key);
 	}
 
+	/**
+	 * Encode the key as string. Two keys are equal if and only if their
+	 * encodings are equal. Only keys consisting of <code>null</code>, strings,
+	 * numbers, booleans and characters, or arrays and iterables of these, can
+	 * be encoded.
+	 * 
+	 * @return the encoded key or <code>null</code> if the key cannot be
+	 *         encoded
+	 */
+	public String encode() {
+		StringBuilder result = new StringBuilder();
+		if (encode(key, result)) {
+			return result.toString();
+		}
+		return null;
+	}
+
+	private static boolean encode(Object object, StringBuilder target) {
+		if (object == null) {
+			target.append('n');
+			return true;
+		}
+
+		if (object instanceof Group) {
+			// compared including the definition, which cannot be encoded
+			return false;
+		}
+
+		Iterable<?> iterable = null;
+		if (object instanceof Iterable<?>) {
+			iterable = (Iterable<?>) object;
+		}
+		else if (object instanceof Object[]) {
+			iterable = Arrays.asList((Object[]) object);
+		}
+		if (iterable != null) {
+			target.append('[');
+			for (Object element : iterable) {
+				if (!encode(element, target)) {
+					return false;
+				}
+			}
+			target.append(']');
+			return true;
+		}
+
+		char type;
+		if (object instanceof String) {
+			type = 's';
+		}
+		else if (object instanceof Integer) {
+			type = 'i';
+		}
+		else if (object instanceof Long) {
+			type = 'l';
+		}
+		else if (object instanceof Short) {
+			type = 'h';
+		}
+		else if (object instanceof Byte) {
+			type = 'b';
+		}
+		else if (object instanceof Double) {
+			type = 'd';
+		}
+		else if (object instanceof Float) {
+			type = 'f';
+		}
+		else if (object instanceof BigInteger) {
+			type = 'I';
+		}
+		else if (object instanceof BigDecimal) {
+			type = 'D';
+		}
+		else if (object instanceof Boolean) {
+			type = 'z';
+		}
+		else if (object instanceof Character) {
+			type = 'c';
+		}
+		else {
+			return false;
+		}
+
+		// type, length and string representation
+		String value = object.toString();
+		target.append(type).append(value.length()).append(':').append(value);
+		return true;
+	}
+
 }
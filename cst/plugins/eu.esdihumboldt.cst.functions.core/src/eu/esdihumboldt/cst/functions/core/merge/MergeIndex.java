@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.cst.functions.core.merge;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+
+import eu.esdihumboldt.cst.functions.core.index.SortedRuns;
+import eu.esdihumboldt.cst.functions.core.index.SortedRuns.GroupReader;
+import eu.esdihumboldt.cst.functions.core.index.SortedRuns.RunWriter;
+import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
+
+/**
+ * Index grouping instance references by merge key.<br>
+ * <br>
+ * Merge keys that can be encoded as string are sorted by their encoding. As
+ * long as the estimated heap memory occupied by the encoded keys stays below
+ * the configured budget, they are sorted in memory, otherwise they are
+ * written to disk as sorted runs that are merged when the groups are read
+ * (external sort). Groups are read in the order of the encoded keys, so only
+ * a single group has to be held in memory at a time. Merge keys that cannot
+ * be encoded are held in memory, their groups are read after the groups of
+ * the encoded keys.<br>
+ * <br>
+ * The instance references themselves are held in memory, the runs only store
+ * their ordinals.
+ * 
+ * @param <K> the merge key type
+ * @author Simon Templer
+ */
+public class MergeIndex<K> {
+
+	/**
+	 * Estimated heap memory occupied by a single buffered entry, not including
+	 * the key.
+	 */
+	private static final int ENTRY_MEMORY = 32;
+
+	private final long memoryBudget;
+
+	/**
+	 * Estimated heap memory of the buffered entries written to a single run.
+	 */
+	private final long runMemory;
+
+	private final List<InstanceReference> references = new ArrayList<>();
+
+	private final List<BufferEntry> buffer = new ArrayList<>();
+
+	private long bufferMemory = 0;
+
+	/**
+	 * Merge key -> reference ordinals, for keys that cannot be encoded.
+	 */
+	private final ListMultimap<K, Integer> pinned = ArrayListMultimap.create();
+
+	private final SortedRuns runs = new SortedRuns("hale-merge");
+
+	private String lastKey;
+
+	private boolean sorted = true;
+
+	private boolean spilled = false;
+
+	private GroupReader groupReader;
+
+	private Iterator<BufferEntry> bufferIterator;
+
+	private BufferEntry pendingEntry;
+
+	private Iterator<K> pinnedIterator;
+
+	private K groupKey;
+
+	private List<InstanceReference> groupReferences;
+
+	/**
+	 * Create a new merge index.
+	 * 
+	 * @param memoryBudget the estimated heap memory in bytes the encoded keys
+	 *            may occupy before they are spilled to disk
+	 */
+	public MergeIndex(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+		this.runMemory = Math.max(memoryBudget, SortedRuns.MIN_RUN_MEMORY);
+	}
+
+	/**
+	 * Add an instance reference to the index.
+	 * 
+	 * @param key the merge key
+	 * @param encodedKey the encoded merge key, <code>null</code> if the key
+	 *            cannot be encoded
+	 * @param reference the instance reference
+	 * @throws IOException if spilling the index to disk fails
+	 */
+	public void add(K key, String encodedKey, InstanceReference reference) throws IOException {
+		if (groupReader != null || bufferIterator != null) {
+			throw new IllegalStateException("Merge index is already finished");
+		}
+
+		references.add(reference);
+		int ordinal = references.size() - 1;
+
+		if (encodedKey == null) {
+			pinned.put(key, ordinal);
+			return;
+		}
+
+		if (sorted && lastKey != null && encodedKey.compareTo(lastKey) < 0) {
+			sorted = false;
+		}
+		lastKey = encodedKey;
+
+		buffer.add(new BufferEntry(encodedKey, ordinal));
+		bufferMemory += ENTRY_MEMORY + 40 + 2 * encodedKey.length();
+		if (bufferMemory > memoryBudget) {
+			spilled = true;
+		}
+		if (spilled && bufferMemory > runMemory) {
+			spill();
+		}
+	}
+
+	/**
+	 * @return if the index was spilled to disk
+	 */
+	public boolean isSpilled() {
+		return spilled;
+	}
+
+	/**
+	 * Determines if the instances were added in order of their merge keys, so
+	 * instances with equal keys were adjacent.
+	 * 
+	 * @return if all keys could be encoded and were added in ascending order
+	 */
+	public boolean isSorted() {
+		return sorted && pinned.isEmpty();
+	}
+
+	/**
+	 * Advance to the next group of instance references with equal merge keys.
+	 * The first call finishes the index, no references can be added
+	 * afterwards.
+	 * 
+	 * @return if there was a next group
+	 * @throws IOException if reading the index from disk fails
+	 */
+	public boolean nextGroup() throws IOException {
+		if (groupReader == null && bufferIterator == null) {
+			finish();
+		}
+
+		// groups of encoded keys
+		if (groupReader != null) {
+			if (groupReader.next()) {
+				groupKey = null;
+				groupReferences = toReferences(groupReader.getValues());
+				return true;
+			}
+		}
+		else if (pendingEntry != null) {
+			String key = pendingEntry.key;
+			groupKey = null;
+			groupReferences = new ArrayList<>();
+			groupReferences.add(references.get(pendingEntry.ordinal));
+			pendingEntry = null;
+			while (bufferIterator.hasNext()) {
+				BufferEntry entry = bufferIterator.next();
+				if (entry.key.equals(key)) {
+					groupReferences.add(references.get(entry.ordinal));
+				}
+				else {
+					pendingEntry = entry;
+					break;
+				}
+			}
+			return true;
+		}
+
+		// groups of keys that cannot be encoded
+		if (pinnedIterator.hasNext()) {
+			groupKey = pinnedIterator.next();
+			List<Integer> ordinals = pinned.get(groupKey);
+			groupReferences = new ArrayList<>(ordinals.size());
+			for (Integer ordinal : ordinals) {
+				groupReferences.add(references.get(ordinal));
+			}
+			return true;
+		}
+
+		groupKey = null;
+		groupReferences = null;
+		return false;
+	}
+
+	/**
+	 * @return the merge key of the current group, <code>null</code> if the key
+	 *         was encoded
+	 */
+	public K getGroupKey() {
+		return groupKey;
+	}
+
+	/**
+	 * @return the instance references of the current group
+	 */
+	public List<InstanceReference> getGroupReferences() {
+		return groupReferences;
+	}
+
+	/**
+	 * Dispose the index, deleting any files created on disk.
+	 */
+	public void dispose() {
+		if (groupReader != null) {
+			groupReader.close();
+		}
+		runs.dispose();
+	}
+
+	private void finish() throws IOException {
+		pinnedIterator = pinned.keySet().iterator();
+
+		if (spilled) {
+			spill();
+			groupReader = runs.readGroups();
+		}
+		else {
+			if (!sorted) {
+				// stable sort, keeps the order of instances with equal keys
+				Collections.sort(buffer);
+			}
+			bufferIterator = buffer.iterator();
+			pendingEntry = bufferIterator.hasNext() ? bufferIterator.next() : null;
+		}
+	}
+
+	private List<InstanceReference> toReferences(int[] ordinals) {
+		List<InstanceReference> result = new ArrayList<>(ordinals.length);
+		for (int ordinal : ordinals) {
+			result.add(references.get(ordinal));
+		}
+		return result;
+	}
+
+	/**
+	 * Write the buffered entries to disk as a sorted run.
+	 * 
+	 * @throws IOException if writing the run fails
+	 */
+	private void spill() throws IOException {
+		spilled = true;
+		if (buffer.isEmpty()) {
+			return;
+		}
+
+		BufferEntry[] entries = buffer.toArray(new BufferEntry[buffer.size()]);
+		if (!sorted) {
+			Arrays.sort(entries);
+		}
+		buffer.clear();
+		bufferMemory = 0;
+
+		try (RunWriter run = runs.createRun()) {
+			for (BufferEntry entry : entries) {
+				run.write(entry.key, entry.ordinal);
+			}
+		}
+	}
+
+	private static class BufferEntry implements Comparable<BufferEntry> {
+
+		private final String key;
+
+		private final int ordinal;
+
+		public BufferEntry(String key, int ordinal) {
+			this.key = key;
+			this.ordinal = ordinal;
+		}
+
+		@Override
+		public int compareTo(BufferEntry o) {
+			return key.compareTo(o.key);
+		}
+
+	}
+
+}
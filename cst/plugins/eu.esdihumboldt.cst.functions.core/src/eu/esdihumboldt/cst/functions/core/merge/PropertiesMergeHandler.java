@@ -115,6 +115,11 @@ public class PropertiesMergeHandler
 		return new DeepIterableKey(valueList);
 	}
 
+	@Override
+	protected String encodeMergeKey(DeepIterableKey key) {
+		return key.encode();
+	}
+
 	@Override
 	protected Instance merge(InstanceCollection instances, TypeDefinition type,
 			DeepIterableKey mergeKey, PropertiesMergeConfig mergeConfig) {
@@ -110,9 +110,10 @@ public class GroovyUtil implements GroovyConstants {
 	public static Script getScript(AbstractTransformationFunction<?> function, Binding binding,
 			GroovyService service, boolean functionCached) throws TransformationException {
 		/*
-		 * The compiled script is stored in a ThreadLocal variable in the
+		 * The script instance is stored in a ThreadLocal variable in the
 		 * execution context, so it needs only to be created once per
-		 * transformation thread.
+		 * transformation thread. The compiled script class is shared through
+		 * the Groovy service.
 		 */
 		ThreadLocal<Script> localScript;
 		Map<Object, Object> context = (functionCached)
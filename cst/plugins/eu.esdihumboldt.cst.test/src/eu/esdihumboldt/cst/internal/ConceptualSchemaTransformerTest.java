@@ -268,6 +268,7 @@ public class ConceptualSchemaTransformerTest extends DefaultTransformationTest {
 				new AlignmentFunctionService(example.getAlignment()));
 		customServices.put(TransformationFunctionService.class,
 				new AlignmentTransformationFunctionService(example.getAlignment()));
+		addCustomServices(example, customServices);
 
 		final ServiceProvider serviceProvider = new ServiceProvider() {
 
@@ -292,4 +293,15 @@ public class ConceptualSchemaTransformerTest extends DefaultTransformationTest {
 		return sink.getDecoratee().getInstances();
 	}
 
+	/**
+	 * Add custom services to be provided to the transformation.
+	 * 
+	 * @param example the transformation example
+	 * @param customServices the custom services, mapped by service interface
+	 */
+	protected void addCustomServices(TransformationExample example,
+			Map<Class<?>, Object> customServices) {
+		// override me
+	}
+
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.cst.internal;
+
+import java.util.Map;
+
+import eu.esdihumboldt.cst.test.TransformationExample;
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings;
+
+/**
+ * Tests for the CST with property transformations executed in multiple worker
+ * threads.
+ * 
+ * @author Simon Templer
+ */
+public class ParallelConceptualSchemaTransformerTest extends ConceptualSchemaTransformerTest {
+
+	@Override
+	protected void addCustomServices(TransformationExample example,
+			Map<Class<?>, Object> customServices) {
+		super.addCustomServices(example, customServices);
+
+		TransformationSettings settings = new TransformationSettings();
+		settings.set(TransformationSettings.SETTING_PROPERTY_WORKERS, "4");
+		settings.set(TransformationSettings.SETTING_PROPERTY_QUEUE_SIZE, "2");
+		customServices.put(TransformationSettings.class, settings);
+	}
+
+}
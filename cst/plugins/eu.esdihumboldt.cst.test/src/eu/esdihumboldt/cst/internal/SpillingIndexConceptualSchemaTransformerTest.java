@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.cst.internal;
+
+import java.util.Map;
+
+import eu.esdihumboldt.cst.test.TransformationExample;
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings;
+
+/**
+ * Tests for the CST with the indexes built for joins and merges always being
+ * spilled to disk.
+ * 
+ * @author Simon Templer
+ */
+public class SpillingIndexConceptualSchemaTransformerTest extends ConceptualSchemaTransformerTest {
+
+	@Override
+	protected void addCustomServices(TransformationExample example,
+			Map<Class<?>, Object> customServices) {
+		super.addCustomServices(example, customServices);
+
+		TransformationSettings settings = new TransformationSettings();
+		settings.set(TransformationSettings.SETTING_JOIN_INDEX_MEMORY, "0");
+		settings.set(TransformationSettings.SETTING_MERGE_INDEX_MEMORY, "0");
+		customServices.put(TransformationSettings.class, settings);
+	}
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.cst.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.namespace.QName;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+
+import eu.esdihumboldt.cst.ConceptualSchemaTransformer;
+import eu.esdihumboldt.hale.common.align.model.Priority;
+import eu.esdihumboldt.hale.common.align.model.Type;
+import eu.esdihumboldt.hale.common.align.model.functions.RetypeFunction;
+import eu.esdihumboldt.hale.common.align.model.impl.DefaultAlignment;
+import eu.esdihumboldt.hale.common.align.model.impl.DefaultCell;
+import eu.esdihumboldt.hale.common.align.model.impl.DefaultType;
+import eu.esdihumboldt.hale.common.align.model.impl.TypeEntityDefinition;
+import eu.esdihumboldt.hale.common.align.service.FunctionService;
+import eu.esdihumboldt.hale.common.align.service.TransformationFunctionService;
+import eu.esdihumboldt.hale.common.align.service.impl.AlignmentFunctionService;
+import eu.esdihumboldt.hale.common.align.service.impl.AlignmentTransformationFunctionService;
+import eu.esdihumboldt.hale.common.align.transformation.report.TransformationMessage;
+import eu.esdihumboldt.hale.common.align.transformation.report.TransformationReport;
+import eu.esdihumboldt.hale.common.align.transformation.service.impl.DefaultInstanceSink;
+import eu.esdihumboldt.hale.common.align.transformation.service.impl.ThreadSafeInstanceSink;
+import eu.esdihumboldt.hale.common.core.io.impl.NullProgressIndicator;
+import eu.esdihumboldt.hale.common.core.service.ServiceManager;
+import eu.esdihumboldt.hale.common.core.service.ServiceProvider;
+import eu.esdihumboldt.hale.common.instance.model.DataSet;
+import eu.esdihumboldt.hale.common.instance.model.Filter;
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.common.instance.model.ext.helper.InstanceCollectionDecorator;
+import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstance;
+import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstanceCollection;
+import eu.esdihumboldt.hale.common.schema.SchemaSpaceID;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultTypeDefinition;
+
+/**
+ * Tests executing streaming type cells together in passes over the source
+ * instances.
+ * 
+ * @author Simon Templer
+ */
+public class StreamingTypeTransformationTest {
+
+	private static final QName NAME = new QName("name");
+
+	private TypeDefinition sourceA;
+	private TypeDefinition sourceB;
+
+	private InstanceCollection instances;
+
+	private final AtomicInteger passes = new AtomicInteger();
+
+	/**
+	 * Create the source instances.
+	 */
+	@Before
+	public void createInstances() {
+		sourceA = new DefaultTypeDefinition(new QName("source", "A"));
+		sourceB = new DefaultTypeDefinition(new QName("source", "B"));
+
+		List<Instance> list = new ArrayList<>();
+		for (int i = 1; i <= 2; i++) {
+			list.add(createInstance(sourceA, "a" + i));
+			list.add(createInstance(sourceB, "b" + i));
+		}
+
+		// count the passes over the source instances
+		passes.set(0);
+		instances = new InstanceCollectionDecorator(new DefaultInstanceCollection(list)) {
+
+			@Override
+			public ResourceIterator<Instance> iterator() {
+				passes.incrementAndGet();
+				return super.iterator();
+			}
+		};
+	}
+
+	/**
+	 * Test that streaming type cells of the same priority are executed in a
+	 * single pass and that type conditions are applied.
+	 * 
+	 * @throws Exception if an error occurs executing the test
+	 */
+	@Test
+	public void testSinglePass() throws Exception {
+		DefaultAlignment alignment = new DefaultAlignment();
+		alignment.addCell(createRetype(sourceA, null, "X", Priority.NORMAL));
+		alignment.addCell(createRetype(sourceB, null, "Y", Priority.NORMAL));
+		alignment.addCell(createRetype(sourceA, new Filter() {
+
+			@Override
+			public boolean match(Instance instance) {
+				return "a1".equals(instance.getProperty(NAME)[0]);
+			}
+		}, "Z", Priority.NORMAL));
+
+		Map<String, Integer> counts = new HashMap<>();
+		TransformationReport report = transform(alignment, counts);
+
+		assertEquals(1, passes.get());
+		assertEquals(Integer.valueOf(2), counts.get("X"));
+		assertEquals(Integer.valueOf(2), counts.get("Y"));
+		assertEquals(Integer.valueOf(1), counts.get("Z"));
+		assertTrue(hasInfo(report,
+				"Executed 3 streaming type transformations in 1 pass(es) over the source instances, saved 2 pass(es)"));
+	}
+
+	/**
+	 * Test that streaming type cells of different priorities are executed in
+	 * separate passes.
+	 * 
+	 * @throws Exception if an error occurs executing the test
+	 */
+	@Test
+	public void testPriorityPasses() throws Exception {
+		DefaultAlignment alignment = new DefaultAlignment();
+		alignment.addCell(createRetype(sourceA, null, "X", Priority.HIGH));
+		alignment.addCell(createRetype(sourceB, null, "Y", Priority.HIGH));
+		alignment.addCell(createRetype(sourceA, null, "Z", Priority.LOW));
+
+		Map<String, Integer> counts = new HashMap<>();
+		TransformationReport report = transform(alignment, counts);
+
+		assertEquals(2, passes.get());
+		assertEquals(Integer.valueOf(2), counts.get("Z"));
+		assertTrue(hasInfo(report,
+				"Executed 3 streaming type transformations in 2 pass(es) over the source instances, saved 1 pass(es)"));
+	}
+
+	/**
+	 * Test that no message on saved passes is reported if no pass was saved.
+	 * 
+	 * @throws Exception if an error occurs executing the test
+	 */
+	@Test
+	public void testNoPassSaved() throws Exception {
+		DefaultAlignment alignment = new DefaultAlignment();
+		alignment.addCell(createRetype(sourceA, null, "X", Priority.HIGH));
+		alignment.addCell(createRetype(sourceB, null, "Y", Priority.LOW));
+
+		TransformationReport report = transform(alignment, new HashMap<String, Integer>());
+
+		assertEquals(2, passes.get());
+		assertFalse(hasInfo(report, "streaming type transformations"));
+	}
+
+	private static Instance createInstance(TypeDefinition type, String name) {
+		DefaultInstance instance = new DefaultInstance(type, DataSet.SOURCE);
+		instance.addProperty(NAME, name);
+		return instance;
+	}
+
+	private static DefaultCell createRetype(TypeDefinition source, Filter filter,
+			String targetName, Priority priority) {
+		DefaultCell cell = new DefaultCell();
+		cell.setTransformationIdentifier(RetypeFunction.ID);
+		ListMultimap<String, Type> sourceEntities = ArrayListMultimap.create();
+		sourceEntities.put(null,
+				new DefaultType(new TypeEntityDefinition(source, SchemaSpaceID.SOURCE, filter)));
+		cell.setSource(sourceEntities);
+		ListMultimap<String, Type> targetEntities = ArrayListMultimap.create();
+		targetEntities.put(null,
+				new DefaultType(new TypeEntityDefinition(
+						new DefaultTypeDefinition(new QName("target", targetName)),
+						SchemaSpaceID.TARGET, null)));
+		cell.setTarget(targetEntities);
+		cell.setPriority(priority);
+		return cell;
+	}
+
+	private TransformationReport transform(DefaultAlignment alignment,
+			Map<String, Integer> counts) throws Exception {
+		ThreadSafeInstanceSink<DefaultInstanceSink> sink = new ThreadSafeInstanceSink<>(
+				new DefaultInstanceSink());
+
+		final Map<Class<?>, Object> customServices = new HashMap<>();
+		customServices.put(FunctionService.class, new AlignmentFunctionService(alignment));
+		customServices.put(TransformationFunctionService.class,
+				new AlignmentTransformationFunctionService(alignment));
+		final ServiceProvider projectScope = new ServiceManager(ServiceManager.SCOPE_PROJECT);
+		ServiceProvider serviceProvider = new ServiceProvider() {
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public <T> T getService(Class<T> serviceInterface) {
+				if (customServices.containsKey(serviceInterface)) {
+					return (T) customServices.get(serviceInterface);
+				}
+				return projectScope.getService(serviceInterface);
+			}
+		};
+
+		TransformationReport report = new ConceptualSchemaTransformer().transform(alignment,
+				instances, sink, serviceProvider, new NullProgressIndicator());
+
+		for (Instance instance : sink.getDecoratee().getInstances()) {
+			String name = instance.getDefinition().getName().getLocalPart();
+			Integer count = counts.get(name);
+			counts.put(name, (count == null) ? (1) : (count + 1));
+		}
+		return report;
+	}
+
+	private static boolean hasInfo(TransformationReport report, String text) {
+		for (TransformationMessage message : report.getInfos()) {
+			if (message.getMessage().contains(text)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
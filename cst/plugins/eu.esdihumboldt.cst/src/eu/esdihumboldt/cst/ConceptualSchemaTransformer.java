@@ -22,9 +22,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
@@ -52,20 +54,28 @@ import eu.esdihumboldt.hale.common.align.transformation.report.TransformationRep
 import eu.esdihumboldt.hale.common.align.transformation.report.TransformationReporter;
 import eu.esdihumboldt.hale.common.align.transformation.report.impl.CellLog;
 import eu.esdihumboldt.hale.common.align.transformation.report.impl.DefaultTransformationReporter;
+import eu.esdihumboldt.hale.common.align.transformation.report.impl.SimpleTransformationLog;
 import eu.esdihumboldt.hale.common.align.transformation.report.impl.TransformationMessageImpl;
 import eu.esdihumboldt.hale.common.align.transformation.service.InstanceSink;
 import eu.esdihumboldt.hale.common.align.transformation.service.PropertyTransformer;
 import eu.esdihumboldt.hale.common.align.transformation.service.TransformationService;
 import eu.esdihumboldt.hale.common.core.io.ProgressIndicator;
 import eu.esdihumboldt.hale.common.core.io.impl.SubtaskProgressIndicator;
+import eu.esdihumboldt.hale.common.core.report.SimpleLog;
 import eu.esdihumboldt.hale.common.core.service.ServiceProvider;
 import eu.esdihumboldt.hale.common.instance.model.FamilyInstance;
 import eu.esdihumboldt.hale.common.instance.model.Filter;
 import eu.esdihumboldt.hale.common.instance.model.Instance;
 import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
 import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.common.instance.model.ext.InstanceCollection2;
+import eu.esdihumboldt.hale.common.instance.model.ext.ReportingInstanceCollection;
 import eu.esdihumboldt.hale.common.instance.model.impl.GenericResourceIteratorAdapter;
+import eu.esdihumboldt.hale.common.instance.model.impl.MultiInstanceCollection;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+import eu.esdihumboldt.util.groovy.sandbox.DefaultGroovyService;
+import eu.esdihumboldt.util.groovy.sandbox.GroovyService;
+import eu.esdihumboldt.util.groovy.sandbox.ScriptCacheStatistics;
 import net.jcip.annotations.Immutable;
 
 /**
@@ -93,6 +103,12 @@ public class ConceptualSchemaTransformer implements TransformationService {
 		TransformationFunctionService functions = serviceProvider
 				.getService(TransformationFunctionService.class);
 
+		GroovyService groovyService = serviceProvider.getService(GroovyService.class);
+		ScriptCacheStatistics scriptCacheBefore = null;
+		if (groovyService instanceof DefaultGroovyService) {
+			scriptCacheBefore = ((DefaultGroovyService) groovyService).getScriptCacheStatistics();
+		}
+
 		final SubtaskProgressIndicator sub = new SubtaskProgressIndicator(progressIndicator) {
 
 			@Override
@@ -131,11 +147,28 @@ public class ConceptualSchemaTransformer implements TransformationService {
 			// sort type cell by priority
 			typeCells = sortTypeCells(typeCells);
 
+			/*
+			 * Streaming type cells (that don't partition the source instances)
+			 * of the same priority are executed together in a single pass over
+			 * the source instances. Cells of a lower priority are only executed
+			 * once all cells with a higher priority have been processed.
+			 */
+			List<StreamingTypeCell> streamingCells = new ArrayList<>();
+			Priority streamingPriority = null;
+			int streamingCellCount = 0;
+			int sourcePasses = 0;
+
 			for (Cell typeCell : typeCells) {
 				if (progressIndicator.isCanceled()) {
 					break;
 				}
 
+				if (!streamingCells.isEmpty() && typeCell.getPriority() != streamingPriority) {
+					sourcePasses += doStreamingTypeTransformations(streamingCells, source,
+							transformer, context, progressIndicator);
+					streamingCells.clear();
+				}
+
 				List<TypeTransformationFactory> transformations = functions
 						.getTypeTransformations(typeCell.getTransformationIdentifier());
 
@@ -151,11 +184,42 @@ public class ConceptualSchemaTransformer implements TransformationService {
 					// engine?
 					TypeTransformationFactory transformation = transformations.iterator().next();
 
-					doTypeTransformation(transformation, typeCell, source, target, alignment,
-							engines, transformer, context, reporter, progressIndicator);
+					TransformationLog cellLog = new CellLog(reporter, typeCell);
+					TypeTransformation<?> function = createFunction(transformation, cellLog);
+					TransformationEngine engine = (function == null) ? (null)
+							: (getEngine(transformation, engines, cellLog));
+					// function and engine are set up once per cell, errors are
+					// already reported
+					if (engine != null) {
+						if (isStreaming(typeCell, function)) {
+							streamingCells.add(new StreamingTypeCell(transformation, typeCell,
+									function, engine, cellLog));
+							streamingPriority = typeCell.getPriority();
+							streamingCellCount++;
+						}
+						else {
+							doTypeTransformation(transformation, typeCell, function, engine,
+									cellLog, source, target, alignment, transformer, context,
+									progressIndicator);
+						}
+					}
 				}
 			}
 
+			if (!streamingCells.isEmpty() && !progressIndicator.isCanceled()) {
+				sourcePasses += doStreamingTypeTransformations(streamingCells, source,
+						transformer, context, progressIndicator);
+			}
+
+			if (streamingCellCount > sourcePasses) {
+				reporter.info(new TransformationMessageImpl((String) null,
+						MessageFormat.format(
+								"Executed {0} streaming type transformations in {1} pass(es) over the source instances, saved {2} pass(es)",
+								streamingCellCount, sourcePasses,
+								streamingCellCount - sourcePasses),
+						null, null));
+			}
+
 			progressIndicator.setCurrentTask("Wait for property transformer to complete");
 
 			// wait for the property transformer to complete
@@ -165,6 +229,11 @@ public class ConceptualSchemaTransformer implements TransformationService {
 
 			engines.dispose();
 
+			if (scriptCacheBefore != null) {
+				reportScriptCache(((DefaultGroovyService) groovyService)
+						.getScriptCacheStatistics().since(scriptCacheBefore), reporter);
+			}
+
 			reporter.setSuccess(true);
 			return reporter;
 		} finally {
@@ -172,6 +241,26 @@ public class ConceptualSchemaTransformer implements TransformationService {
 		}
 	}
 
+	/**
+	 * Report how often compiled Groovy scripts were reused during the
+	 * transformation.
+	 * 
+	 * @param statistics the script cache statistics of the transformation
+	 * @param reporter the transformation reporter
+	 */
+	private void reportScriptCache(ScriptCacheStatistics statistics,
+			TransformationReporter reporter) {
+		if (statistics.getHits() + statistics.getMisses() > 0) {
+			reporter.info(new TransformationMessageImpl((String) null,
+					MessageFormat.format(
+							"Groovy script cache: {0} hit(s), {1} miss(es); {2} script(s) loaded from the cache directory ({3} miss(es)), {4} script(s) compiled",
+							statistics.getHits(), statistics.getMisses(),
+							statistics.getPersistentHits(), statistics.getPersistentMisses(),
+							statistics.getCompiled()),
+					null, null));
+		}
+	}
+
 	/**
 	 * Sort type cells to define order of execution.
 	 * 
@@ -204,44 +293,68 @@ public class ConceptualSchemaTransformer implements TransformationService {
 	}
 
 	/**
-	 * Execute a type transformation based on single type cell
+	 * Create the transformation function for a type cell. Errors are reported
+	 * to the cell log.
 	 * 
 	 * @param transformation the transformation to use
-	 * @param typeCell the type cell
-	 * @param target the target instance sink
-	 * @param source the source instances
-	 * @param alignment the alignment
-	 * @param engines the engine manager
-	 * @param transformer the property transformer
-	 * @param context the transformation execution context
-	 * @param reporter the reporter
-	 * @param progressIndicator the progress indicator
+	 * @param cellLog the cell log
+	 * @return the transformation function or <code>null</code> if it could
+	 *         not be created
 	 */
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	protected void doTypeTransformation(TypeTransformationFactory transformation, Cell typeCell,
-			InstanceCollection source, InstanceSink target, Alignment alignment,
-			EngineManager engines, PropertyTransformer transformer, TransformationContext context,
-			TransformationReporter reporter, ProgressIndicator progressIndicator) {
-		TransformationLog cellLog = new CellLog(reporter, typeCell);
-
-		TypeTransformation<?> function;
+	private TypeTransformation<?> createFunction(TypeTransformationFactory transformation,
+			TransformationLog cellLog) {
 		try {
-			function = transformation.createExtensionObject();
+			return transformation.createExtensionObject();
 		} catch (Exception e) {
-			reporter.error(new TransformationMessageImpl(typeCell,
-					"Error creating transformation function.", e));
-			return;
+			cellLog.error(cellLog.createMessage("Error creating transformation function.", e));
+			return null;
 		}
+	}
 
+	/**
+	 * Get the transformation engine for a type transformation. Errors are
+	 * reported to the cell log.
+	 * 
+	 * @param transformation the transformation to use
+	 * @param engines the engine manager
+	 * @param cellLog the cell log
+	 * @return the transformation engine or <code>null</code> if no matching
+	 *         engine is available
+	 */
+	private TransformationEngine getEngine(TypeTransformationFactory transformation,
+			EngineManager engines, TransformationLog cellLog) {
 		TransformationEngine engine = engines.get(transformation.getEngineId(), cellLog);
 
 		if (engine == null) {
 			// TODO instead try another transformation
 			cellLog.error(cellLog.createMessage(
 					"Skipping type transformation: No matching transformation engine found", null));
-			return;
 		}
 
+		return engine;
+	}
+
+	/**
+	 * Execute a type transformation based on single type cell
+	 * 
+	 * @param transformation the transformation to use
+	 * @param typeCell the type cell
+	 * @param function the transformation function
+	 * @param engine the transformation engine
+	 * @param cellLog the cell log
+	 * @param target the target instance sink
+	 * @param source the source instances
+	 * @param alignment the alignment
+	 * @param transformer the property transformer
+	 * @param context the transformation execution context
+	 * @param progressIndicator the progress indicator
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	protected void doTypeTransformation(TypeTransformationFactory transformation, Cell typeCell,
+			TypeTransformation<?> function, TransformationEngine engine,
+			TransformationLog cellLog, InstanceCollection source, InstanceSink target,
+			Alignment alignment, PropertyTransformer transformer, TransformationContext context,
+			ProgressIndicator progressIndicator) {
 		// prepare transformation configuration
 		ListMultimap<String, Type> targetTypes = ArrayListMultimap.create();
 		for (Entry<String, ? extends Entity> entry : typeCell.getTarget().entries()) {
@@ -275,13 +388,14 @@ public class ConceptualSchemaTransformer implements TransformationService {
 		else {
 			// Step 1: selection
 			// Select only instances that are relevant for the transformation.
-			source = source.select(new TypeCellFilter(typeCell));
+			source = selectSource(source, typeCell, new SimpleTransformationLog(cellLog));
 
 			// Step 2: partition
 			// use InstanceHandler if available - for example merge or join
 			InstanceHandler instanceHandler = function.getInstanceHandler();
 			if (instanceHandler != null) {
 				progressIndicator.setCurrentTask("Perform instance partitioning");
+				instanceHandler.setExecutionContext(context.getCellContext(typeCell));
 				try {
 					iterator = instanceHandler.partitionInstances(source,
 							transformation.getFunctionId(), engine, parameters, executionParameters,
@@ -333,6 +447,341 @@ public class ConceptualSchemaTransformer implements TransformationService {
 		}
 	}
 
+	/**
+	 * Determine if a type cell is executed streaming. A type cell is executed
+	 * streaming if it has source types and its function does not use an
+	 * {@link InstanceHandler} to partition the source instances.
+	 * 
+	 * @param typeCell the type cell
+	 * @param function the transformation function of the type cell
+	 * @return if the type cell can be executed streaming
+	 */
+	private static boolean isStreaming(Cell typeCell, TypeTransformation<?> function) {
+		return typeCell.getSource() != null && !typeCell.getSource().isEmpty()
+				&& function.getInstanceHandler() == null;
+	}
+
+	/**
+	 * Execute the type transformations for streaming type cells in a single
+	 * pass over the source instances. If the source collection supports
+	 * fan-out, the instances are retrieved per type and the type conditions
+	 * of the cells are applied to the collections of the individual types, so
+	 * they can be evaluated e.g. in a database.
+	 * 
+	 * @param cells the streaming type cells
+	 * @param source the source instances
+	 * @param transformer the property transformer
+	 * @param context the transformation execution context
+	 * @param progressIndicator the progress indicator
+	 * @return the number of passes over the source instances
+	 */
+	protected int doStreamingTypeTransformations(List<StreamingTypeCell> cells,
+			InstanceCollection source, PropertyTransformer transformer,
+			TransformationContext context, ProgressIndicator progressIndicator) {
+		// dispatch instances based on their type
+		Map<TypeDefinition, List<StreamingTypeCell>> dispatch = new LinkedHashMap<>();
+		for (StreamingTypeCell cell : cells) {
+			for (TypeDefinition type : cell.getFilter().getTypes()) {
+				List<StreamingTypeCell> typeCells = dispatch.get(type);
+				if (typeCells == null) {
+					typeCells = new ArrayList<>();
+					dispatch.put(type, typeCells);
+				}
+				typeCells.add(cell);
+			}
+		}
+
+		if (cells.size() == 1) {
+			progressIndicator.setCurrentTask("Execute type transformations");
+		}
+		else {
+			progressIndicator.setCurrentTask(MessageFormat
+					.format("Execute {0} type transformations in a single pass", cells.size()));
+		}
+
+		if (source instanceof InstanceCollection2
+				&& ((InstanceCollection2) source).supportsFanout()) {
+			Map<TypeDefinition, InstanceCollection> fanout = ((InstanceCollection2) source)
+					.fanout();
+			if (fanout != null) {
+				return doStreamingFanoutTransformations(dispatch, fanout, transformer, context,
+						progressIndicator);
+			}
+		}
+
+		ResourceIterator<Instance> iterator = source.iterator();
+		try {
+			while (iterator.hasNext()) {
+				// break on cancel
+				if (progressIndicator.isCanceled()) {
+					break;
+				}
+
+				Instance instance = iterator.next();
+				List<StreamingTypeCell> typeCells = dispatch.get(instance.getDefinition());
+				if (typeCells != null) {
+					for (StreamingTypeCell cell : typeCells) {
+						if (cell.getFilter().match(instance)) {
+							cell.execute(new FamilyInstanceImpl(instance), transformer, context);
+						}
+					}
+				}
+			}
+		} finally {
+			iterator.close();
+		}
+
+		return 1;
+	}
+
+	/**
+	 * Execute the type transformations for streaming type cells on the
+	 * instances of a source collection fanned out per type. Instances of a
+	 * type are retrieved once if any cell uses the type without condition,
+	 * otherwise they are selected once per distinct type condition.
+	 * 
+	 * @param dispatch the streaming type cells per source type
+	 * @param fanout the source instances per type
+	 * @param transformer the property transformer
+	 * @param context the transformation execution context
+	 * @param progressIndicator the progress indicator
+	 * @return the maximum number of passes over the instances of a type
+	 */
+	private int doStreamingFanoutTransformations(
+			Map<TypeDefinition, List<StreamingTypeCell>> dispatch,
+			Map<TypeDefinition, InstanceCollection> fanout, PropertyTransformer transformer,
+			TransformationContext context, ProgressIndicator progressIndicator) {
+		int passes = 1;
+		for (Entry<TypeDefinition, List<StreamingTypeCell>> entry : dispatch.entrySet()) {
+			if (progressIndicator.isCanceled()) {
+				break;
+			}
+
+			InstanceCollection instances = fanout.get(entry.getKey());
+			if (instances == null) {
+				continue;
+			}
+
+			// group cells by their condition on the type
+			Map<Filter, List<StreamingTypeCell>> selections = new LinkedHashMap<>();
+			boolean unconditional = false;
+			for (StreamingTypeCell cell : entry.getValue()) {
+				Filter filter = cell.getFilter().getFilter(entry.getKey());
+				if (filter == null) {
+					unconditional = true;
+					break;
+				}
+				List<StreamingTypeCell> filterCells = selections.get(filter);
+				if (filterCells == null) {
+					filterCells = new ArrayList<>();
+					selections.put(filter, filterCells);
+				}
+				filterCells.add(cell);
+			}
+
+			if (unconditional) {
+				// all instances of the type are needed anyway
+				executeStreaming(instances, entry.getValue(), true, transformer, context,
+						progressIndicator);
+			}
+			else {
+				for (Entry<Filter, List<StreamingTypeCell>> selection : selections.entrySet()) {
+					// report the selection to the log of the first cell
+					SimpleLog selectionLog = new SimpleTransformationLog(
+							selection.getValue().get(0).getLog());
+					executeStreaming(select(instances, selection.getKey(), selectionLog),
+							selection.getValue(), false, transformer, context, progressIndicator);
+				}
+				passes = Math.max(passes, selections.size());
+			}
+		}
+
+		return passes;
+	}
+
+	/**
+	 * Execute the given streaming type cells for each of the given instances.
+	 * 
+	 * @param instances the source instances
+	 * @param cells the streaming type cells
+	 * @param match if the type cell filters have to be checked for each
+	 *            instance, <code>false</code> if the instances were already
+	 *            selected accordingly
+	 * @param transformer the property transformer
+	 * @param context the transformation execution context
+	 * @param progressIndicator the progress indicator
+	 */
+	private void executeStreaming(InstanceCollection instances, List<StreamingTypeCell> cells,
+			boolean match, PropertyTransformer transformer, TransformationContext context,
+			ProgressIndicator progressIndicator) {
+		ResourceIterator<Instance> iterator = instances.iterator();
+		try {
+			while (iterator.hasNext()) {
+				// break on cancel
+				if (progressIndicator.isCanceled()) {
+					break;
+				}
+
+				Instance instance = iterator.next();
+				for (StreamingTypeCell cell : cells) {
+					if (!match || cell.getFilter().match(instance)) {
+						cell.execute(new FamilyInstanceImpl(instance), transformer, context);
+					}
+				}
+			}
+		} finally {
+			iterator.close();
+		}
+	}
+
+	/**
+	 * Type cell prepared for streaming execution.
+	 */
+	protected static class StreamingTypeCell {
+
+		private final TypeTransformationFactory transformation;
+		private final Cell typeCell;
+		private final TypeTransformation<?> function;
+		private final TransformationEngine engine;
+		private final TransformationLog cellLog;
+		private final TypeCellFilter filter;
+		private final ListMultimap<String, Type> targetTypes;
+		private final ListMultimap<String, ParameterValue> parameters;
+		private final Map<String, String> executionParameters;
+
+		/**
+		 * Create a type cell prepared for streaming execution.
+		 * 
+		 * @param transformation the transformation to use
+		 * @param typeCell the type cell
+		 * @param function the transformation function
+		 * @param engine the transformation engine
+		 * @param cellLog the cell log
+		 */
+		public StreamingTypeCell(TypeTransformationFactory transformation, Cell typeCell,
+				TypeTransformation<?> function, TransformationEngine engine,
+				TransformationLog cellLog) {
+			this.transformation = transformation;
+			this.typeCell = typeCell;
+			this.function = function;
+			this.engine = engine;
+			this.cellLog = cellLog;
+
+			filter = new TypeCellFilter(typeCell);
+
+			targetTypes = ArrayListMultimap.create();
+			for (Entry<String, ? extends Entity> entry : typeCell.getTarget().entries()) {
+				targetTypes.put(entry.getKey(), (Type) entry.getValue());
+			}
+			ListMultimap<String, ParameterValue> params = typeCell.getTransformationParameters();
+			if (params != null) {
+				params = Multimaps.unmodifiableListMultimap(params);
+			}
+			parameters = params;
+			executionParameters = transformation.getExecutionParameters();
+		}
+
+		/**
+		 * @return the transformation log of the type cell
+		 */
+		public TransformationLog getLog() {
+			return cellLog;
+		}
+
+		/**
+		 * @return the filter matching the instances relevant for the type cell
+		 */
+		public TypeCellFilter getFilter() {
+			return filter;
+		}
+
+		/**
+		 * Execute the type transformation for a source instance.
+		 * 
+		 * @param source the source instance
+		 * @param transformer the property transformer
+		 * @param context the transformation execution context
+		 */
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		public void execute(FamilyInstance source, PropertyTransformer transformer,
+				TransformationContext context) {
+			function.setSource(source);
+			function.setPropertyTransformer(transformer);
+			function.setParameters(parameters);
+			function.setTarget(targetTypes);
+			function.setExecutionContext(context.getCellContext(typeCell));
+
+			try {
+				((TypeTransformation) function).execute(transformation.getFunctionId(), engine,
+						executionParameters, cellLog, typeCell);
+			} catch (TransformationException e) {
+				cellLog.error(
+						cellLog.createMessage("Type transformation failed, skipping instance.", e));
+			}
+		}
+
+	}
+
+	/**
+	 * Select the source instances relevant for a type cell. If the source
+	 * collection supports fan-out, the filters of the source types are
+	 * applied to the collections of the individual types, so they can make
+	 * use of optimizations like evaluating the filter in a database.
+	 * 
+	 * @param source the source instances
+	 * @param typeCell the type cell
+	 * @param log the log to report on the selection of the individual types
+	 * @return the instances relevant for the type cell
+	 */
+	private static InstanceCollection selectSource(InstanceCollection source, Cell typeCell,
+			SimpleLog log) {
+		if (source instanceof InstanceCollection2
+				&& ((InstanceCollection2) source).supportsFanout()) {
+			Map<TypeDefinition, InstanceCollection> fanout = ((InstanceCollection2) source)
+					.fanout();
+			if (fanout != null) {
+				// same as in TypeCellFilter, one filter per type
+				Map<TypeDefinition, Filter> filters = new LinkedHashMap<>();
+				for (Entity sourceEntity : typeCell.getSource().values()) {
+					Type sourceType = (Type) sourceEntity;
+					filters.put(sourceType.getDefinition().getDefinition(),
+							sourceType.getDefinition().getFilter());
+				}
+
+				List<InstanceCollection> selected = new ArrayList<>();
+				for (Entry<TypeDefinition, Filter> entry : filters.entrySet()) {
+					InstanceCollection instances = fanout.get(entry.getKey());
+					if (instances != null) {
+						if (entry.getValue() != null) {
+							instances = select(instances, entry.getValue(), log);
+						}
+						selected.add(instances);
+					}
+				}
+				return new MultiInstanceCollection(selected);
+			}
+		}
+
+		return source.select(new TypeCellFilter(typeCell));
+	}
+
+	/**
+	 * Select the instances matching a filter, reporting on the selection if
+	 * the collection supports it.
+	 * 
+	 * @param instances the instance collection
+	 * @param filter the filter
+	 * @param log the log to report to
+	 * @return the instances matching the filter
+	 */
+	private static InstanceCollection select(InstanceCollection instances, Filter filter,
+			SimpleLog log) {
+		if (instances instanceof ReportingInstanceCollection) {
+			return ((ReportingInstanceCollection) instances).select(filter, log);
+		}
+		return instances.select(filter);
+	}
+
 	private static final Object NO_FILTER = new Object();
 
 	/**
@@ -340,7 +789,7 @@ public class ConceptualSchemaTransformer implements TransformationService {
 	 * 
 	 * @author Kai Schwierczek
 	 */
-	private static class TypeCellFilter implements Filter {
+	protected static class TypeCellFilter implements Filter {
 
 		private final HashMap<TypeDefinition, Object> lookup = new HashMap<TypeDefinition, Object>();
 
@@ -370,5 +819,28 @@ public class ConceptualSchemaTransformer implements TransformationService {
 			else
 				return filter == NO_FILTER || ((Filter) filter).match(instance);
 		}
+
+		/**
+		 * @return the source types relevant for the type cell
+		 */
+		public Set<TypeDefinition> getTypes() {
+			return Collections.unmodifiableSet(lookup.keySet());
+		}
+
+		/**
+		 * Get the condition on a source type of the type cell.
+		 * 
+		 * @param type the source type
+		 * @return the filter for instances of the type, <code>null</code> if
+		 *         there is no condition or the type is not relevant for the
+		 *         type cell
+		 */
+		public Filter getFilter(TypeDefinition type) {
+			Object filter = lookup.get(type);
+			if (filter == null || filter == NO_FILTER) {
+				return null;
+			}
+			return (Filter) filter;
+		}
 	}
 }
@@ -76,6 +76,8 @@ public class EngineManager {
 					TransformationEngine tmp = engineFactory.createExtensionObject();
 					tmp.setup();
 					engine = tmp;
+					// reuse the engine for further executions
+					engines.put(engineId, engine);
 				} catch (Exception e) {
 					log.error(log.createMessage("Could not create transformation engine", e));
 				}
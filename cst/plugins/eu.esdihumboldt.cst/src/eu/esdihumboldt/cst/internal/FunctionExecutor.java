@@ -60,7 +60,9 @@ import eu.esdihumboldt.hale.common.schema.model.constraint.type.ElementType;
 import eu.esdihumboldt.util.Pair;
 
 /**
- * Function executor on a transformation tree.
+ * Function executor on a transformation tree. An executor may be used
+ * concurrently on different trees, the state associated to a single execution
+ * (the current type cell) is held per thread.
  * 
  * @author Simon Templer
  */
@@ -16,10 +16,10 @@
 
 package eu.esdihumboldt.cst.internal;
 
-import java.util.List;
-
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ListMultimap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 
 import eu.esdihumboldt.hale.common.align.model.Alignment;
 import eu.esdihumboldt.hale.common.align.model.Cell;
@@ -29,7 +29,8 @@ import eu.esdihumboldt.hale.common.align.model.transformation.tree.impl.Transfor
 import eu.esdihumboldt.hale.common.align.model.transformation.tree.visitor.ResetVisitor;
 
 /**
- * Pool for transformation trees.
+ * Pool for transformation trees. Trees may be retrieved and released
+ * concurrently from multiple threads.
  * 
  * @author Simon Templer
  */
@@ -37,7 +38,7 @@ public class TransformationTreePool {
 
 	private final Alignment alignment;
 
-	private final ListMultimap<Cell, TransformationTree> trees;
+	private final ConcurrentMap<Cell, Queue<TransformationTree>> trees;
 
 	private final ResetVisitor resetVisitor = new ResetVisitor();
 
@@ -53,7 +54,7 @@ public class TransformationTreePool {
 		this.alignment = alignment;
 		this.matcher = matcher;
 
-		trees = ArrayListMultimap.create();
+		trees = new ConcurrentHashMap<>();
 	}
 
 	/**
@@ -63,20 +64,16 @@ public class TransformationTreePool {
 	 * @return the transformation tree
 	 */
 	public TransformationTree getTree(Cell typeCell) {
-		synchronized (trees) {
-			List<TransformationTree> treeList = trees.get(typeCell);
-			if (treeList.isEmpty()) {
-				TransformationTree tree = new TransformationTreeImpl(alignment, typeCell);
-				if (matcher != null) {
-					matcher.findMatches(tree);
-				}
-				return tree;
-			}
-			else {
-				TransformationTree tree = treeList.remove(0);
-				return tree;
+		TransformationTree tree = getTreeQueue(typeCell).poll();
+		if (tree == null) {
+			// no tree available, create a new one (outside of any lock, as tree
+			// creation and context matching may be expensive)
+			tree = new TransformationTreeImpl(alignment, typeCell);
+			if (matcher != null) {
+				matcher.findMatches(tree);
 			}
 		}
+		return tree;
 	}
 
 	/**
@@ -86,9 +83,25 @@ public class TransformationTreePool {
 	 */
 	public void releaseTree(TransformationTree tree) {
 		tree.accept(resetVisitor); // remove all annotations
-		synchronized (trees) {
-			trees.put(tree.getTypeCell(), tree);
+		getTreeQueue(tree.getTypeCell()).offer(tree);
+	}
+
+	/**
+	 * Get the queue of available trees for a type cell.
+	 * 
+	 * @param typeCell the type cell
+	 * @return the queue of trees available for the type cell
+	 */
+	private Queue<TransformationTree> getTreeQueue(Cell typeCell) {
+		Queue<TransformationTree> queue = trees.get(typeCell);
+		if (queue == null) {
+			queue = new ConcurrentLinkedQueue<>();
+			Queue<TransformationTree> existing = trees.putIfAbsent(typeCell, queue);
+			if (existing != null) {
+				queue = existing;
+			}
 		}
+		return queue;
 	}
 
 }
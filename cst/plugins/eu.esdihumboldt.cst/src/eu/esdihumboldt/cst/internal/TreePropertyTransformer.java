@@ -19,13 +19,18 @@ package eu.esdihumboldt.cst.internal;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import eu.esdihumboldt.cst.extension.hooks.HooksUtil;
 import eu.esdihumboldt.cst.extension.hooks.TransformationTreeHook.TreeState;
@@ -43,6 +48,9 @@ import eu.esdihumboldt.hale.common.align.transformation.report.TransformationRep
 import eu.esdihumboldt.hale.common.align.transformation.report.impl.TransformationMessageImpl;
 import eu.esdihumboldt.hale.common.align.transformation.service.InstanceSink;
 import eu.esdihumboldt.hale.common.align.transformation.service.PropertyTransformer;
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings;
+import eu.esdihumboldt.hale.common.align.transformation.service.TransformationSettings.OrderPolicy;
+import eu.esdihumboldt.hale.common.align.transformation.service.impl.ThreadSafeInstanceSink;
 import eu.esdihumboldt.hale.common.core.HalePlatform;
 import eu.esdihumboldt.hale.common.instance.extension.metadata.MetadataWorker;
 import eu.esdihumboldt.hale.common.instance.model.FamilyInstance;
@@ -54,7 +62,11 @@ import gnu.trove.TObjectIntHashMap;
 import gnu.trove.TObjectIntProcedure;
 
 /**
- * Property transformer based on a {@link TransformationTree}.
+ * Property transformer based on a {@link TransformationTree}.<br>
+ * <br>
+ * If configured via the {@link TransformationSettings}, property
+ * transformations are executed in a pool of worker threads. Otherwise they are
+ * executed in the thread publishing the source/target instance pair.
  * 
  * @author Simon Templer
  */
@@ -73,9 +85,22 @@ public class TreePropertyTransformer implements PropertyTransformer {
 	private final ExecutorService executorService;
 
 	/**
-	 * Controls if multiple threads are used for transformation.
+	 * Limits the number of published instances that have not been handed to
+	 * the sink yet, <code>null</code> if transformations are not forked.
 	 */
-	private final boolean forkedTransformation = false;
+	private final Semaphore pending;
+
+	/**
+	 * Hands transformed instances to the sink in publishing order,
+	 * <code>null</code> if the order does not need to be preserved.
+	 */
+	private final OrderedHandoff orderedHandoff;
+
+	/**
+	 * Sequence number for the next published instance. Only accessed from the
+	 * publishing thread.
+	 */
+	private long nextSequence = 0;
 
 	// make metadataworker threadsave
 	private final ThreadLocal<MetadataWorker> metaworkerthread = new ThreadLocal<MetadataWorker>() {
@@ -105,7 +130,19 @@ public class TreePropertyTransformer implements PropertyTransformer {
 	public TreePropertyTransformer(Alignment alignment, TransformationReporter reporter,
 			InstanceSink sink, EngineManager engines, TransformationContext context) {
 		this.reporter = reporter;
-		this.sink = sink;
+
+		TransformationSettings settings = TransformationSettings
+				.get(context.getServiceProvider());
+		int workers = settings.getPropertyWorkers();
+		boolean forkedTransformation = workers > 1;
+
+		if (forkedTransformation) {
+			// ensure the sink may be accessed from the worker threads
+			this.sink = new ThreadSafeInstanceSink<>(sink);
+		}
+		else {
+			this.sink = sink;
+		}
 
 		// XXX how to determine matcher?
 		ContextMatcher matcher = new AsDeepAsPossible(context.getServiceProvider());
@@ -125,37 +162,27 @@ public class TreePropertyTransformer implements PropertyTransformer {
 		treeHooks = HalePlatform.getService(TransformationTreeHooks.class);
 
 		if (forkedTransformation) {
-			executorService = new ThreadPoolExecutor(4, 4, // 4 threads
-					0L, TimeUnit.MILLISECONDS,
-					// maximum queue size 1000 (keep 1000 instances/workers in
-					// memory
-					// simultaneously at max)
-					new LinkedBlockingQueue<Runnable>(1000) {
-
-						private static final long serialVersionUID = 1L;
-
-						@Override
-						public boolean offer(Runnable e) {
-							// wait for space to be free in the queue
-							try {
-								super.put(e);
-							} catch (InterruptedException e1) {
-								// XXX correct to return false?
-								return false;
-							}
-							// then accept
-							return true;
-
-							/*
-							 * Alternative could be calling offer in a loop with
-							 * a wait until it returns true.
-							 */
-						}
-
-					});
+			int queueSize = settings.getPropertyQueueSize();
+			/*
+			 * The number of instances kept in memory simultaneously is limited
+			 * by the pending semaphore, which also covers instances that are
+			 * transformed but still wait to be handed to the sink in order.
+			 */
+			pending = new Semaphore(queueSize + workers);
+			executorService = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
+
+			if (settings.getPropertyOrder() == OrderPolicy.PRESERVE) {
+				orderedHandoff = new OrderedHandoff();
+			}
+			else {
+				orderedHandoff = null;
+			}
 		}
 		else {
 			executorService = null;
+			pending = null;
+			orderedHandoff = null;
 		}
 	}
 
@@ -166,11 +193,17 @@ public class TreePropertyTransformer implements PropertyTransformer {
 	@Override
 	public void publish(final FamilyInstance source, final MutableInstance target,
 			final TransformationLog typeLog, final Cell typeCell) {
-		instanceCounter.adjustOrPutValue(typeCell, 1, 1);
+		synchronized (instanceCounter) {
+			instanceCounter.adjustOrPutValue(typeCell, 1, 1);
+		}
+
+		final long sequence = nextSequence++;
+
 		Runnable job = new Runnable() {
 
 			@Override
 			public void run() {
+				MutableInstance result = null;
 				try {
 					// Add the meta data ID of the source as SourceID to the
 					// target
@@ -222,16 +255,10 @@ public class TreePropertyTransformer implements PropertyTransformer {
 					// generate the rest of the metadatas
 					metaworkerthread.get().generate(target);
 
-					// XXX ok to add to sink in any thread?!
-					// XXX addInstance and close were made synchronized in
-					// OrientInstanceSink
-					// XXX instead collect instances and write them in only one
-					// thread?
-					// after property transformations, publish target instance
-					sink.addInstance(target);
-
-					// and release the tree for further use
+					// release the tree for further use
 					treePool.releaseTree(tree);
+
+					result = target;
 				} catch (Throwable e) {
 					/*
 					 * Catch any error, as exceptions in the executor service
@@ -239,11 +266,41 @@ public class TreePropertyTransformer implements PropertyTransformer {
 					 */
 					typeLog.error(
 							typeLog.createMessage("Error performing property transformations", e));
+				} finally {
+					// after property transformations, publish target instance
+					try {
+						if (orderedHandoff != null) {
+							orderedHandoff.complete(sequence, result);
+						}
+						else if (result != null) {
+							sink.addInstance(result);
+						}
+					} catch (Throwable e) {
+						typeLog.error(typeLog.createMessage(
+								"Error adding transformed instance to target", e));
+					} finally {
+						if (pending != null && orderedHandoff == null) {
+							pending.release();
+						}
+					}
 				}
 			}
 		};
 
 		if (executorService != null) {
+			try {
+				pending.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				typeLog.error(typeLog.createMessage(
+						"Interrupted while waiting for property transformations", e));
+				return;
+			}
+			if (executorService.isShutdown()) {
+				// transformation was cancelled
+				pending.release();
+				return;
+			}
 			executorService.execute(job);
 		}
 		else {
@@ -261,31 +318,96 @@ public class TreePropertyTransformer implements PropertyTransformer {
 				executorService.shutdown();
 			}
 
-			if (executorService.isTerminated()) {
-				return;
-			}
 			try {
-				// TODO make configurable?
-				if (!executorService.awaitTermination(15, TimeUnit.MINUTES)) {
-					// TODO error message
+				while (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+					// wait for the workers to complete
 				}
 			} catch (InterruptedException e) {
-				// ignore
+				Thread.currentThread().interrupt();
+				reporter.warn(new TransformationMessageImpl((String) null,
+						"Interrupted while waiting for property transformations to complete", e,
+						null));
 			}
 		}
 
 		// report instance counts
-		instanceCounter.forEachEntry(new TObjectIntProcedure<Cell>() {
+		synchronized (instanceCounter) {
+			instanceCounter.forEachEntry(new TObjectIntProcedure<Cell>() {
 
-			@Override
-			public boolean execute(Cell cell, int count) {
-				reporter.info(new TransformationMessageImpl(cell,
-						MessageFormat.format("Created {0} instances during transformation", count),
-						null));
+				@Override
+				public boolean execute(Cell cell, int count) {
+					reporter.info(new TransformationMessageImpl(cell, MessageFormat
+							.format("Created {0} instances during transformation", count), null));
+
+					return true;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Hands transformed instances to the sink in the order they were
+	 * published, regardless of the order the workers complete them in.
+	 */
+	private class OrderedHandoff {
+
+		/**
+		 * Completed instances waiting for their predecessors, mapped by
+		 * sequence number. A <code>null</code> value represents a failed
+		 * transformation.
+		 */
+		private final Map<Long, MutableInstance> completed = new HashMap<>();
+
+		private long next = 0;
+
+		/**
+		 * Signal that the transformation of an instance was completed.
+		 * 
+		 * @param sequence the sequence number of the instance
+		 * @param instance the transformed instance, <code>null</code> if the
+		 *            transformation failed
+		 */
+		public synchronized void complete(long sequence, MutableInstance instance) {
+			completed.put(sequence, instance);
 
-				return true;
+			while (completed.containsKey(next)) {
+				MutableInstance ready = completed.remove(next);
+				next++;
+				try {
+					if (ready != null) {
+						sink.addInstance(ready);
+					}
+				} catch (Throwable e) {
+					// don't block the instances waiting for this one
+					reporter.error(new TransformationMessageImpl((String) null,
+							"Error adding transformed instance to target", e, null));
+				} finally {
+					pending.release();
+				}
 			}
-		});
+		}
+
+	}
+
+	/**
+	 * Thread factory for property transformation workers.
+	 */
+	private static class WorkerThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger poolCounter = new AtomicInteger();
+
+		private final int pool = poolCounter.incrementAndGet();
+
+		private final AtomicInteger threadCounter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "property-transformer-" + pool + "-"
+					+ threadCounter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
 	}
 
 }
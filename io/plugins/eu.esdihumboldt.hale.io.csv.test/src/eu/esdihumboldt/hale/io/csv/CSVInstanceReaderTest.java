@@ -15,9 +15,14 @@
 
 package eu.esdihumboldt.hale.io.csv;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import javax.xml.namespace.QName;
 
 import org.junit.BeforeClass;
@@ -30,6 +35,7 @@ import eu.esdihumboldt.hale.common.core.io.supplier.DefaultInputSupplier;
 import eu.esdihumboldt.hale.common.instance.io.InstanceReader;
 import eu.esdihumboldt.hale.common.instance.model.Instance;
 import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
 import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
 import eu.esdihumboldt.hale.common.schema.model.ChildDefinition;
 import eu.esdihumboldt.hale.common.schema.model.Schema;
@@ -37,6 +43,7 @@ import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
 import eu.esdihumboldt.hale.common.test.TestUtil;
 import eu.esdihumboldt.hale.io.csv.reader.CommonSchemaConstants;
 import eu.esdihumboldt.hale.io.csv.reader.internal.CSVInstanceReader;
+import eu.esdihumboldt.hale.io.csv.reader.internal.CSVInstanceReference;
 import eu.esdihumboldt.hale.io.csv.reader.internal.CSVSchemaReader;
 
 /**
@@ -204,6 +211,72 @@ public class CSVInstanceReaderTest {
 
 	}
 
+	/**
+	 * Test - resolve references to instances read from a csv file, based on
+	 * the record offsets.
+	 * 
+	 * @throws Exception , if an error occurs
+	 */
+	@Test
+	public void testReferences() throws Exception {
+		String typeName = "Random";
+		Schema schema = readCSVSchema("/data/test3-pointdecimal.csv", typeName,
+				"java.lang.Integer,java.lang.String,java.lang.Float,java.lang.Float,java.lang.String",
+				"A,B,C,D,E", ";", null, null, ".");
+		InstanceCollection instances = readCSVInstances("/data/test3-pointdecimal.csv", typeName,
+				true, schema, ";", null, null, ".");
+
+		List<Instance> originals = new ArrayList<>();
+		List<InstanceReference> references = new ArrayList<>();
+		try (ResourceIterator<Instance> it = instances.iterator()) {
+			while (it.hasNext()) {
+				Instance instance = it.next();
+				originals.add(instance);
+				references.add(instances.getReference(instance));
+			}
+		}
+		assertEquals(5, references.size());
+
+		QName a = QName.valueOf("A");
+		QName e = QName.valueOf("E");
+
+		// resolve individually
+		for (int i = 0; i < references.size(); i++) {
+			assertTrue(references.get(i) instanceof CSVInstanceReference);
+			Instance resolved = instances.getInstance(references.get(i));
+			assertArrayEquals(originals.get(i).getProperty(a), resolved.getProperty(a));
+			assertArrayEquals(originals.get(i).getProperty(e), resolved.getProperty(e));
+		}
+
+		// resolve together, in source order
+		Collections.reverse(references);
+		int index = 0;
+		try (ResourceIterator<Instance> it = instances.getInstances(references).iterator()) {
+			while (it.hasNext()) {
+				Instance resolved = it.next();
+				assertArrayEquals(originals.get(index).getProperty(a), resolved.getProperty(a));
+				index++;
+			}
+		}
+		assertEquals(5, index);
+
+		// duplicate references yield an instance each
+		List<InstanceReference> duplicates = new ArrayList<>();
+		duplicates.add(references.get(0));
+		duplicates.add(references.get(2));
+		duplicates.add(references.get(0));
+		List<Instance> resolved = new ArrayList<>();
+		try (ResourceIterator<Instance> it = instances.getInstances(duplicates).iterator()) {
+			while (it.hasNext()) {
+				resolved.add(it.next());
+			}
+		}
+		assertEquals(3, resolved.size());
+		assertArrayEquals(originals.get(2).getProperty(a), resolved.get(0).getProperty(a));
+		assertArrayEquals(originals.get(4).getProperty(a), resolved.get(1).getProperty(a));
+		assertArrayEquals(originals.get(4).getProperty(a), resolved.get(2).getProperty(a));
+	}
+
 	private int collectionSize(InstanceCollection instances) {
 		if (instances.hasSize()) {
 			return instances.size();
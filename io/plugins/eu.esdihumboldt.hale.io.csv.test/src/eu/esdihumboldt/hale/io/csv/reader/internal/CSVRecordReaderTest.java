@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.csv.reader.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CSVRecordReader}.
+ * 
+ * @author Simon Templer
+ */
+public class CSVRecordReaderTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String CSV = "id;name\r\n1;\"multi\nline\"\n2;Straße\r3;last";
+
+	private CSVRecordReader createReader() {
+		return new CSVRecordReader(new ByteArrayInputStream(CSV.getBytes(UTF8)), 0, UTF8, ';',
+				'"', '\\');
+	}
+
+	/**
+	 * Test reading records with different line terminators and a quoted line
+	 * break.
+	 * 
+	 * @throws IOException if reading fails
+	 */
+	@Test
+	public void testRead() throws IOException {
+		try (CSVRecordReader reader = createReader()) {
+			assertArrayEquals(new String[] { "id", "name" }, reader.readNext());
+			assertEquals(0, reader.getRecordOffset());
+
+			assertArrayEquals(new String[] { "1", "multi\nline" }, reader.readNext());
+			assertEquals(9, reader.getRecordOffset());
+
+			assertArrayEquals(new String[] { "2", "Straße" }, reader.readNext());
+			assertEquals(24, reader.getRecordOffset());
+
+			assertArrayEquals(new String[] { "3", "last" }, reader.readNext());
+			assertEquals(34, reader.getRecordOffset());
+
+			assertNull(reader.readNext());
+		}
+	}
+
+	/**
+	 * Test reading records after seeking to their offset.
+	 * 
+	 * @throws IOException if reading fails
+	 */
+	@Test
+	public void testSeek() throws IOException {
+		try (CSVRecordReader reader = createReader()) {
+			reader.seek(9);
+			assertArrayEquals(new String[] { "1", "multi\nline" }, reader.readNext());
+			reader.seek(34);
+			assertArrayEquals(new String[] { "3", "last" }, reader.readNext());
+		}
+
+		byte[] bytes = CSV.getBytes(UTF8);
+		try (CSVRecordReader reader = new CSVRecordReader(
+				new ByteArrayInputStream(bytes, 24, bytes.length - 24), 24, UTF8, ';', '"',
+				'\\')) {
+			assertArrayEquals(new String[] { "2", "Straße" }, reader.readNext());
+			assertEquals(24, reader.getRecordOffset());
+		}
+	}
+
+	/**
+	 * Test which encodings are supported.
+	 */
+	@Test
+	public void testSupportedCharsets() {
+		assertTrue(CSVRecordReader.isSupportedCharset(UTF8));
+		assertTrue(CSVRecordReader.isSupportedCharset(Charset.forName("ISO-8859-1")));
+		assertFalse(CSVRecordReader.isSupportedCharset(Charset.forName("UTF-16")));
+	}
+
+}
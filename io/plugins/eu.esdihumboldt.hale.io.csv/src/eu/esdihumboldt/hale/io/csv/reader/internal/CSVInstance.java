@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.csv.reader.internal;
+
+import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstance;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+
+/**
+ * Instance read from a CSV record. Stores the byte offset of the record.
+ * 
+ * @author Simon Templer
+ */
+public class CSVInstance extends DefaultInstance {
+
+	private final long offset;
+
+	/**
+	 * Create an instance with an associated record offset.
+	 * 
+	 * @param type the type definition
+	 * @param offset the byte offset of the record in the source,
+	 *            <code>-1</code> if it is not known
+	 */
+	public CSVInstance(TypeDefinition type, long offset) {
+		super(type, null);
+		this.offset = offset;
+	}
+
+	/**
+	 * @return the byte offset of the record in the source, <code>-1</code> if
+	 *         it is not known
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+}
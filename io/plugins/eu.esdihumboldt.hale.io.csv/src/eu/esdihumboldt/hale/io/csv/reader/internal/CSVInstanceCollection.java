@@ -16,13 +16,20 @@
 package eu.esdihumboldt.hale.io.csv.reader.internal;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
 import javax.xml.namespace.QName;
 
+import org.apache.commons.io.IOUtils;
 import org.springframework.core.convert.ConversionService;
 
 import au.com.bytecode.opencsv.CSVReader;
@@ -36,9 +43,11 @@ import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
 import eu.esdihumboldt.hale.common.instance.model.MutableInstance;
 import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
 import eu.esdihumboldt.hale.common.instance.model.ext.InstanceCollection2;
-import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstance;
+import eu.esdihumboldt.hale.common.instance.model.ext.RandomAccessInstanceCollection;
 import eu.esdihumboldt.hale.common.instance.model.impl.FilteredInstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.impl.GenericResourceIteratorAdapter;
 import eu.esdihumboldt.hale.common.instance.model.impl.PseudoInstanceReference;
+import eu.esdihumboldt.hale.common.instance.model.impl.ReferenceInstanceCollection;
 import eu.esdihumboldt.hale.common.schema.model.PropertyDefinition;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
 import eu.esdihumboldt.hale.common.schema.model.constraint.type.Binding;
@@ -49,7 +58,8 @@ import eu.esdihumboldt.hale.io.csv.reader.CommonSchemaConstants;
  * 
  * @author Simon Templer
  */
-public class CSVInstanceCollection implements InstanceCollection, InstanceCollection2 {
+public class CSVInstanceCollection
+		implements RandomAccessInstanceCollection, InstanceCollection2 {
 
 	private static final ALogger log = ALoggerFactory.getLogger(CSVInstanceCollection.class);
 
@@ -65,8 +75,12 @@ public class CSVInstanceCollection implements InstanceCollection, InstanceCollec
 
 		private CSVReader csvReader;
 
+		private CSVRecordReader recordReader;
+
 		private String[] nextItem = null;
 
+		private long nextOffset = -1;
+
 		@Override
 		public boolean hasNext() {
 			if (closed) {
@@ -84,20 +98,26 @@ public class CSVInstanceCollection implements InstanceCollection, InstanceCollec
 			}
 
 			// initialize reader if necessary
-			if (csvReader == null) {
+			if (csvReader == null && recordReader == null) {
 				boolean skipFirst = reader.getParameter(CommonSchemaConstants.PARAM_SKIP_FIRST_LINE)
 						.as(Boolean.class, false);
 
 				try {
-					csvReader = CSVUtil.readFirst(reader);
+					if (locateRecords) {
+						recordReader = createRecordReader(reader.getSource().getInput(), 0);
+					}
+					else {
+						csvReader = CSVUtil.readFirst(reader);
+					}
 				} catch (IOException e) {
 					log.error("Could not open CSV source", e);
 					closed = true;
+					return;
 				}
 
 				if (skipFirst) {
 					try {
-						csvReader.readNext();
+						readNext();
 					} catch (IOException e) {
 						// close on error
 						close(e);
@@ -109,7 +129,8 @@ public class CSVInstanceCollection implements InstanceCollection, InstanceCollec
 			if (nextItem == null) {
 				// item was consumed or first item
 				try {
-					nextItem = csvReader.readNext();
+					nextItem = readNext();
+					nextOffset = (recordReader == null) ? (-1) : (recordReader.getRecordOffset());
 				} catch (IOException e) {
 					// close on error
 					close(e);
@@ -118,6 +139,13 @@ public class CSVInstanceCollection implements InstanceCollection, InstanceCollec
 			}
 		}
 
+		private String[] readNext() throws IOException {
+			if (recordReader != null) {
+				return recordReader.readNext();
+			}
+			return csvReader.readNext();
+		}
+
 		private void close(IOException e) {
 			closed = true;
 			log.error("Error accessing CSV source", e);
@@ -131,70 +159,11 @@ public class CSVInstanceCollection implements InstanceCollection, InstanceCollec
 				throw new NoSuchElementException();
 			}
 
-			MutableInstance instance = new DefaultInstance(type, null);
 			try {
-				// build instance
-				PropertyDefinition[] propAr = type.getChildren()
-						.toArray(new PropertyDefinition[type.getChildren().size()]);
-
-				int index = 0;
-				for (String part : nextItem) {
-					if (index >= propAr.length) {
-						// break if line has more columns than the specified
-						// type
-						log.warn("More data columns encountered than defined in the schema");
-						break;
-					}
-					PropertyDefinition property = propAr[index];
-
-					Object value = convertValue(part, property);
-
-					instance.addProperty(property.getName(), value);
-					index++;
-				}
+				return createInstance(nextItem, nextOffset);
 			} finally {
 				nextItem = null;
 			}
-
-			return instance;
-		}
-
-		private Object convertValue(String part, PropertyDefinition property) {
-			if (part == null || part.isEmpty()) {
-				// FIXME make this configurable?
-				return null;
-			}
-
-			Binding binding = property.getPropertyType().getConstraint(Binding.class);
-			try {
-				if (!binding.getBinding().equals(String.class)) {
-
-					if (Number.class.isAssignableFrom(binding.getBinding())
-							&& decimalPoint != '.') {
-						// number binding and we don't have the
-						// default decimal point
-
-						// TODO more sophisticated behavior?
-						// what about thousands separator char?
-
-						part = part.replace(decimalPoint, '.');
-					}
-
-					ConversionService conversionService = HalePlatform
-							.getService(ConversionService.class);
-					if (conversionService.canConvert(String.class, binding.getBinding())) {
-						return conversionService.convert(part, binding.getBinding());
-					}
-					else {
-						throw new IllegalStateException("Conversion not possible!");
-					}
-				}
-			} catch (Exception e) {
-				log.error(MessageFormat.format("Cannot convert property value to {0}",
-						binding.getBinding().getSimpleName()), e);
-			}
-
-			return part;
 		}
 
 		@Override
@@ -205,12 +174,15 @@ public class CSVInstanceCollection implements InstanceCollection, InstanceCollec
 		@Override
 		public void close() {
 			closed = true;
-			if (csvReader != null) {
-				try {
+			try {
+				if (csvReader != null) {
 					csvReader.close();
-				} catch (IOException e) {
-					log.debug("Error closing CSV reader", e);
 				}
+				if (recordReader != null) {
+					recordReader.close();
+				}
+			} catch (IOException e) {
+				log.debug("Error closing CSV reader", e);
 			}
 		}
 
@@ -231,6 +203,12 @@ public class CSVInstanceCollection implements InstanceCollection, InstanceCollec
 	 */
 	protected final char decimalPoint;
 
+	/**
+	 * If the byte offsets of the records are determined, to be able to
+	 * reference instances by their offset.
+	 */
+	private final boolean locateRecords;
+
 	private Boolean empty;
 
 	/**
@@ -248,11 +226,104 @@ public class CSVInstanceCollection implements InstanceCollection, InstanceCollec
 		// Schema type
 		type = reader.getSourceSchema().getType(QName.valueOf(
 				reader.getParameter(CommonSchemaConstants.PARAM_TYPENAME).as(String.class)));
+
+		locateRecords = CSVRecordReader.isSupportedCharset(reader.getCharset());
 	}
 
+	/**
+	 * Create a record reader on the CSV source.
+	 * 
+	 * @param in the source input stream, positioned at the given offset
+	 * @param offset the byte offset of the current position of the stream
+	 * @return the record reader
+	 */
+	private CSVRecordReader createRecordReader(InputStream in, long offset) {
+		return new CSVRecordReader(in, offset, reader.getCharset(), CSVUtil.getSep(reader),
+				CSVUtil.getQuote(reader), CSVUtil.getEscape(reader));
+	}
+
+	/**
+	 * Create an instance from a CSV record.
+	 * 
+	 * @param record the fields of the record
+	 * @param offset the byte offset of the record in the source,
+	 *            <code>-1</code> if it is not known
+	 * @return the instance
+	 */
+	private Instance createInstance(String[] record, long offset) {
+		MutableInstance instance = new CSVInstance(type, offset);
+
+		// build instance
+		PropertyDefinition[] propAr = type.getChildren()
+				.toArray(new PropertyDefinition[type.getChildren().size()]);
+
+		int index = 0;
+		for (String part : record) {
+			if (index >= propAr.length) {
+				// break if line has more columns than the specified
+				// type
+				log.warn("More data columns encountered than defined in the schema");
+				break;
+			}
+			PropertyDefinition property = propAr[index];
+
+			Object value = convertValue(part, property);
+
+			instance.addProperty(property.getName(), value);
+			index++;
+		}
+
+		return instance;
+	}
+
+	private Object convertValue(String part, PropertyDefinition property) {
+		if (part == null || part.isEmpty()) {
+			// FIXME make this configurable?
+			return null;
+		}
+
+		Binding binding = property.getPropertyType().getConstraint(Binding.class);
+		try {
+			if (!binding.getBinding().equals(String.class)) {
+
+				if (Number.class.isAssignableFrom(binding.getBinding())
+						&& decimalPoint != '.') {
+					// number binding and we don't have the
+					// default decimal point
+
+					// TODO more sophisticated behavior?
+					// what about thousands separator char?
+
+					part = part.replace(decimalPoint, '.');
+				}
+
+				ConversionService conversionService = HalePlatform
+						.getService(ConversionService.class);
+				if (conversionService.canConvert(String.class, binding.getBinding())) {
+					return conversionService.convert(part, binding.getBinding());
+				}
+				else {
+					throw new IllegalStateException("Conversion not possible!");
+				}
+			}
+		} catch (Exception e) {
+			log.error(MessageFormat.format("Cannot convert property value to {0}",
+					binding.getBinding().getSimpleName()), e);
+		}
+
+		return part;
+	}
+
+	/**
+	 * Creates a reference based on the byte offset of the record in the
+	 * source, if it is known.
+	 */
 	@Override
 	public InstanceReference getReference(Instance instance) {
-		// TODO reference by line?
+		if (instance instanceof CSVInstance && ((CSVInstance) instance).getOffset() >= 0) {
+			return new CSVInstanceReference(instance.getDataSet(),
+					((CSVInstance) instance).getOffset());
+		}
 		return new PseudoInstanceReference(instance);
 	}
 
@@ -261,9 +332,75 @@ public class CSVInstanceCollection implements InstanceCollection, InstanceCollec
 		if (reference instanceof PseudoInstanceReference) {
 			return ((PseudoInstanceReference) reference).getInstance();
 		}
+		if (reference instanceof CSVInstanceReference) {
+			long offset = ((CSVInstanceReference) reference).getOffset();
+			try (InputStream in = reader.getSource().getInput()) {
+				IOUtils.skipFully(in, offset);
+				return readRecord(createRecordReader(in, offset));
+			} catch (IOException e) {
+				throw new IllegalStateException("Failed to read CSV record at offset " + offset,
+						e);
+			}
+		}
 		return null;
 	}
 
+	/**
+	 * Resolves references based on record offsets in a single pass over the
+	 * source, in the order the records appear in the source.
+	 */
+	@Override
+	public InstanceCollection getInstances(Collection<? extends InstanceReference> references) {
+		List<CSVInstanceReference> located = new ArrayList<>(references.size());
+		for (InstanceReference reference : references) {
+			if (reference instanceof CSVInstanceReference) {
+				located.add((CSVInstanceReference) reference);
+			}
+			else {
+				located = null;
+				break;
+			}
+		}
+
+		if (located != null) {
+			Collections.sort(located, new Comparator<CSVInstanceReference>() {
+
+				@Override
+				public int compare(CSVInstanceReference o1, CSVInstanceReference o2) {
+					return Long.compare(o1.getOffset(), o2.getOffset());
+				}
+			});
+			return new LocatedReferenceCollection(located);
+		}
+		return new ReferenceInstanceCollection(references, this);
+	}
+
+	/**
+	 * States that random access is supported if the records can be located by
+	 * their offset and the source is a local file, where skipping to an offset
+	 * does not require reading the data before it.
+	 */
+	@Override
+	public boolean supportsRandomAccess() {
+		URI location = reader.getSource().getLocation();
+		return locateRecords && location != null && "file".equals(location.getScheme());
+	}
+
+	/**
+	 * Read the next record and create an instance from it.
+	 * 
+	 * @param recordReader the record reader
+	 * @return the instance created from the record
+	 * @throws IOException if reading the record fails
+	 */
+	private Instance readRecord(CSVRecordReader recordReader) throws IOException {
+		String[] record = recordReader.readNext();
+		if (record == null) {
+			throw new IOException("No CSV record found at the given offset");
+		}
+		return createInstance(record, recordReader.getRecordOffset());
+	}
+
 	@Override
 	public ResourceIterator<Instance> iterator() {
 		return new CSVIterator();
@@ -306,4 +443,73 @@ public class CSVInstanceCollection implements InstanceCollection, InstanceCollec
 		return Collections.<TypeDefinition, InstanceCollection> singletonMap(type, this);
 	}
 
+	/**
+	 * Collection of instances resolved from offset based references, reading
+	 * the referenced records in a single pass over the source.
+	 */
+	private class LocatedReferenceCollection extends ReferenceInstanceCollection {
+
+		private final List<CSVInstanceReference> references;
+
+		/**
+		 * Create a collection of instances resolved by their record offsets.
+		 * 
+		 * @param references the instance references, ordered by their offset
+		 */
+		public LocatedReferenceCollection(List<CSVInstanceReference> references) {
+			super(references, CSVInstanceCollection.this);
+			this.references = references;
+		}
+
+		@Override
+		public ResourceIterator<Instance> iterator() {
+			return new GenericResourceIteratorAdapter<CSVInstanceReference, Instance>(
+					references.iterator()) {
+
+				private CSVRecordReader recordReader;
+
+				private long lastOffset = -1;
+
+				private String[] lastRecord;
+
+				@Override
+				protected Instance convert(CSVInstanceReference next) {
+					try {
+						if (next.getOffset() != lastOffset) {
+							if (recordReader == null) {
+								recordReader = createRecordReader(reader.getSource().getInput(),
+										0);
+							}
+							recordReader.seek(next.getOffset());
+							lastRecord = recordReader.readNext();
+							if (lastRecord == null) {
+								throw new IOException("No CSV record found at the given offset");
+							}
+							lastOffset = next.getOffset();
+						}
+						// the same record may be referenced multiple times
+						return createInstance(lastRecord, lastOffset);
+					} catch (IOException e) {
+						throw new IllegalStateException(
+								"Failed to read CSV record at offset " + next.getOffset(), e);
+					}
+				}
+
+				@Override
+				public void close() {
+					if (recordReader != null) {
+						try {
+							recordReader.close();
+						} catch (IOException e) {
+							// ignore
+						}
+						recordReader = null;
+					}
+				}
+
+			};
+		}
+
+	}
+
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.csv.reader.internal;
+
+import eu.esdihumboldt.hale.common.instance.model.DataSet;
+import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
+
+/**
+ * Reference to an instance read from a CSV record, based on the byte offset
+ * of the record in the source.
+ * 
+ * @author Simon Templer
+ */
+public class CSVInstanceReference implements InstanceReference {
+
+	private final DataSet dataSet;
+
+	private final long offset;
+
+	/**
+	 * Create a reference to a CSV record.
+	 * 
+	 * @param dataSet the instance data set
+	 * @param offset the byte offset of the record
+	 */
+	public CSVInstanceReference(DataSet dataSet, long offset) {
+		super();
+		this.dataSet = dataSet;
+		this.offset = offset;
+	}
+
+	@Override
+	public DataSet getDataSet() {
+		return dataSet;
+	}
+
+	/**
+	 * @return the byte offset of the record
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((dataSet == null) ? 0 : dataSet.hashCode());
+		result = prime * result + (int) (offset ^ (offset >>> 32));
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		CSVInstanceReference other = (CSVInstanceReference) obj;
+		if (dataSet != other.dataSet)
+			return false;
+		if (offset != other.offset)
+			return false;
+		return true;
+	}
+
+}
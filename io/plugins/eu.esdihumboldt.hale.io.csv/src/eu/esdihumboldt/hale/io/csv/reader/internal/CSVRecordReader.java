@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.csv.reader.internal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+
+import au.com.bytecode.opencsv.CSVParser;
+
+/**
+ * Reads CSV records from a byte stream and keeps track of the byte offset
+ * each record starts at, so a record can later be read again by seeking to
+ * its offset. Records are parsed the same way as by the opencsv
+ * <code>CSVReader</code>. Lines are split on the byte level, so only
+ * encodings compatible with ASCII are supported, see
+ * {@link #isSupportedCharset(Charset)}.
+ * 
+ * @author Simon Templer
+ */
+public class CSVRecordReader implements Closeable {
+
+	private static final String ASCII_SAMPLE = "\r\n\t ;,|\"'\\azAZ09";
+
+	private final InputStream in;
+
+	private final Charset charset;
+
+	private final CSVParser parser;
+
+	private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+	private long position;
+
+	private long recordOffset = -1;
+
+	/**
+	 * Create a record reader.
+	 * 
+	 * @param in the input stream, positioned at the given offset
+	 * @param offset the byte offset of the current position of the input
+	 *            stream
+	 * @param charset the character encoding
+	 * @param separator the separator character
+	 * @param quote the quote character
+	 * @param escape the escape character
+	 */
+	public CSVRecordReader(InputStream in, long offset, Charset charset, char separator,
+			char quote, char escape) {
+		super();
+		this.in = new BufferedInputStream(in);
+		this.position = offset;
+		this.charset = charset;
+		this.parser = new CSVParser(separator, quote, escape);
+	}
+
+	/**
+	 * Determines if records in the given encoding can be located by their
+	 * byte offset, i.e. if line breaks and the characters usually used as
+	 * separators and quotes are encoded as in ASCII.
+	 * 
+	 * @param charset the character encoding
+	 * @return if the encoding is supported
+	 */
+	public static boolean isSupportedCharset(Charset charset) {
+		try {
+			return Arrays.equals(ASCII_SAMPLE.getBytes(charset),
+					ASCII_SAMPLE.getBytes("US-ASCII"));
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Read the next record.
+	 * 
+	 * @return the fields of the record or <code>null</code> if the end of the
+	 *         stream was reached
+	 * @throws IOException if reading from the stream fails
+	 */
+	public String[] readNext() throws IOException {
+		String[] result = null;
+		long offset = position;
+		do {
+			String nextLine = readLine();
+			if (nextLine == null) {
+				break;
+			}
+			String[] fields = parser.parseLineMulti(nextLine);
+			if (fields.length > 0) {
+				if (result == null) {
+					result = fields;
+				}
+				else {
+					String[] combined = new String[result.length + fields.length];
+					System.arraycopy(result, 0, combined, 0, result.length);
+					System.arraycopy(fields, 0, combined, result.length, fields.length);
+					result = combined;
+				}
+			}
+		} while (parser.isPending());
+
+		recordOffset = (result == null) ? (-1) : (offset);
+		return result;
+	}
+
+	/**
+	 * @return the byte offset of the record read last, <code>-1</code> if no
+	 *         record was read
+	 */
+	public long getRecordOffset() {
+		return recordOffset;
+	}
+
+	/**
+	 * Move forward to the given byte offset. The offset must be the start of
+	 * a record.
+	 * 
+	 * @param offset the byte offset, not before the current position
+	 * @throws IOException if skipping in the stream fails
+	 */
+	public void seek(long offset) throws IOException {
+		if (offset < position) {
+			throw new IllegalArgumentException("Can only seek forward in the CSV source");
+		}
+		IOUtils.skipFully(in, offset - position);
+		position = offset;
+	}
+
+	/**
+	 * Read the next line. Lines may be terminated by a line feed, a carriage
+	 * return or a carriage return followed by a line feed.
+	 * 
+	 * @return the line w/o line terminator or <code>null</code> if the end of
+	 *         the stream was reached
+	 * @throws IOException if reading from the stream fails
+	 */
+	private String readLine() throws IOException {
+		line.reset();
+		int b = in.read();
+		if (b < 0) {
+			return null;
+		}
+
+		while (b >= 0) {
+			position++;
+			if (b == '\n') {
+				break;
+			}
+			if (b == '\r') {
+				in.mark(1);
+				if (in.read() == '\n') {
+					position++;
+				}
+				else {
+					in.reset();
+				}
+				break;
+			}
+			line.write(b);
+			b = in.read();
+		}
+		return new String(line.toByteArray(), charset);
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
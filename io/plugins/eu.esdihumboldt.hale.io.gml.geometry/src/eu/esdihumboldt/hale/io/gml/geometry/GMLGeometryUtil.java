@@ -16,22 +16,16 @@
 
 package eu.esdihumboldt.hale.io.gml.geometry;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.text.NumberFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
 
 import javax.xml.namespace.QName;
 
 import org.springframework.core.convert.ConversionException;
 
-import com.google.common.base.Splitter;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
 
@@ -43,6 +37,7 @@ import eu.esdihumboldt.hale.common.instance.helper.BreadthFirstInstanceTraverser
 import eu.esdihumboldt.hale.common.instance.helper.PropertyResolver;
 import eu.esdihumboldt.hale.common.instance.model.Instance;
 import eu.esdihumboldt.hale.common.schema.geometry.CRSDefinition;
+import eu.esdihumboldt.util.geometry.NumberScanner;
 
 /**
  * Utility methods for reading GML geometries from an {@link Instance} model.
@@ -90,27 +85,8 @@ public abstract class GMLGeometryUtil {
 				String cs = getCoordinateSeparator(coordinates);
 				String ts = getTupleSeparator(coordinates);
 
-				Splitter coordinateSplitter = Splitter.on(cs).trimResults();
-				Splitter tupleSplitter = Splitter.on(ts).trimResults();
-				NumberFormat format = NumberFormat.getInstance(Locale.US);
-				if (format instanceof DecimalFormat) {
-					DecimalFormat decFormat = ((DecimalFormat) format);
-					DecimalFormatSymbols symbols = decFormat.getDecimalFormatSymbols();
-					symbols.setDecimalSeparator(decimal.charAt(0));
-					decFormat.setDecimalFormatSymbols(symbols);
-				}
-
-				List<Coordinate> coordList = new ArrayList<Coordinate>();
-
-				// split into tuples
-				Iterable<String> tuples = tupleSplitter.split(coordinatesString.trim());
-				for (String tuple : tuples) {
-					Coordinate coord = parseTuple(tuple, coordinateSplitter, format);
-					if (coord != null) {
-						coordList.add(coord);
-					}
-				}
-				return coordList.toArray(new Coordinate[coordList.size()]);
+				return parseCoordinates(coordinatesString, decimal.charAt(0), cs.charAt(0),
+						ts.charAt(0));
 			} catch (ConversionException e) {
 				log.error("Error parsing geometry coordinates", e);
 			}
@@ -120,48 +96,74 @@ public abstract class GMLGeometryUtil {
 	}
 
 	/**
-	 * Parse a tuple in a GML CoordinatesType string.
+	 * Parse coordinates from a GML CoordinatesType string. The numbers are
+	 * read directly from the string, without splitting it into tuples and
+	 * ordinates first. Whitespace around the separators is ignored.
 	 * 
-	 * @param tuple the tuple
-	 * @param coordinateSplitter the coordinate splitter
-	 * @param format the number format
-	 * @return the coordinate or <code>null</code>
+	 * @param text the coordinates string
+	 * @param decimal the decimal separator
+	 * @param cs the separator between the ordinates of a tuple
+	 * @param ts the separator between tuples
+	 * @return the coordinates
 	 * @throws ParseException if parsing the coordinates fails
 	 */
-	private static Coordinate parseTuple(String tuple, Splitter coordinateSplitter,
-			NumberFormat format) throws ParseException {
-		if (tuple == null || tuple.isEmpty()) {
-			return null;
-		}
+	static Coordinate[] parseCoordinates(String text, char decimal, char cs, char ts)
+			throws ParseException {
+		boolean whitespaceCs = Character.isWhitespace(cs);
+		boolean whitespaceTs = Character.isWhitespace(ts);
+
+		NumberScanner scanner = new NumberScanner(text, decimal);
+		List<Coordinate> coordList = new ArrayList<Coordinate>();
+		double[] ordinates = new double[3];
+		try {
+			scanner.skipWhitespace();
+			while (!scanner.isAtEnd()) {
+				// ignore empty tuples
+				if (!whitespaceTs && scanner.skip(ts)) {
+					scanner.skipWhitespace();
+					continue;
+				}
 
-		double x = Double.NaN;
-		double y = Double.NaN;
-		double z = Double.NaN;
+				int index = 0;
+				boolean tupleEnd = false;
+				while (!tupleEnd) {
+					double value = scanner.nextDouble();
+					// only the first three ordinates are used
+					if (index < 3) {
+						ordinates[index] = value;
+					}
+					index++;
 
-		Iterable<String> coordinates = coordinateSplitter.split(tuple);
-		Iterator<String> itCoordinates = coordinates.iterator();
-		int index = 0;
-		while (index <= 2 && itCoordinates.hasNext()) {
-			String coord = itCoordinates.next();
-
-			// parse coordinate value
-			Number value = format.parse(coord);
-			switch (index) {
-			case 0:
-				x = value.doubleValue();
-				break;
-			case 1:
-				y = value.doubleValue();
-				break;
-			case 2:
-				z = value.doubleValue();
-				break;
-			}
+					boolean whitespace = scanner.skipWhitespace();
+					if (!whitespaceCs && scanner.skip(cs)) {
+						scanner.skipWhitespace();
+					}
+					else if (scanner.isAtEnd() || (!whitespaceTs && scanner.skip(ts))) {
+						tupleEnd = true;
+					}
+					else if (whitespace && whitespaceCs) {
+						// next ordinate
+					}
+					else if (whitespace && whitespaceTs) {
+						tupleEnd = true;
+					}
+					else {
+						throw new ParseException("Unexpected character in coordinates: "
+								+ text.charAt(scanner.getPosition()), scanner.getPosition());
+					}
+				}
+				scanner.skipWhitespace();
 
-			index++;
+				coordList.add(new Coordinate(ordinates[0], (index > 1) ? (ordinates[1])
+						: (Double.NaN), (index > 2) ? (ordinates[2]) : (Double.NaN)));
+			}
+		} catch (NumberFormatException e) {
+			ParseException pe = new ParseException(e.getMessage(), scanner.getPosition());
+			pe.initCause(e);
+			throw pe;
 		}
 
-		return new Coordinate(x, y, z);
+		return coordList.toArray(new Coordinate[coordList.size()]);
 	}
 
 	private static String getTupleSeparator(Instance coordinates) {
@@ -269,7 +271,14 @@ public abstract class GMLGeometryUtil {
 
 		if (value != null) {
 			try {
-				List<Double> values = ConversionUtil.getAsList(value, Double.class, true);
+				List<Double> values;
+				if (value instanceof CharSequence) {
+					// parse the list directly from the text
+					values = parseDoubleList((CharSequence) value);
+				}
+				else {
+					values = ConversionUtil.getAsList(value, Double.class, true);
+				}
 
 				/*
 				 * Filter null values that may have been created because of
@@ -283,8 +292,6 @@ public abstract class GMLGeometryUtil {
 				 */
 				values.removeAll(Collections.singleton(null));
 
-				List<Coordinate> cs = new ArrayList<Coordinate>();
-
 				// validate dimension
 				if (values.size() % srsDimension != 0) {
 					// try alternative dimension
@@ -304,23 +311,25 @@ public abstract class GMLGeometryUtil {
 				}
 
 				if (srsDimension == 2) {
-					for (int i = 0; i < values.size(); i++) {
-						cs.add(new Coordinate(values.get(i), values.get(++i)));
+					coordinates = new Coordinate[values.size() / 2];
+					for (int i = 0; i < coordinates.length; i++) {
+						coordinates[i] = new Coordinate(values.get(2 * i),
+								values.get(2 * i + 1));
 					}
-					coordinates = cs.toArray(new Coordinate[values.size() / 2]);
 				}
 				else if (srsDimension == 3) {
-					for (int i = 0; i < values.size(); i++) {
-						cs.add(new Coordinate(values.get(i), values.get(++i), values.get(++i)));
+					coordinates = new Coordinate[values.size() / 3];
+					for (int i = 0; i < coordinates.length; i++) {
+						coordinates[i] = new Coordinate(values.get(3 * i),
+								values.get(3 * i + 1), values.get(3 * i + 2));
 					}
-					coordinates = cs.toArray(new Coordinate[values.size() / 3]);
 				}
 				else {
 					throw new GeometryNotSupportedException(
 							"DirectPosition with invalid number of coordinates: " + values.size());
 				}
 
-			} catch (ConversionException e) {
+			} catch (ConversionException | NumberFormatException e) {
 				throw new GeometryNotSupportedException(e);
 			}
 		}
@@ -328,6 +337,27 @@ public abstract class GMLGeometryUtil {
 		return coordinates;
 	}
 
+	/**
+	 * Parse a whitespace separated list of numbers.
+	 * 
+	 * @param text the text to parse
+	 * @return the list of numbers
+	 * @throws NumberFormatException if the text contains an invalid number
+	 */
+	private static List<Double> parseDoubleList(CharSequence text) throws NumberFormatException {
+		NumberScanner scanner = new NumberScanner(text);
+		List<Double> result = new ArrayList<Double>();
+		scanner.skipWhitespace();
+		while (!scanner.isAtEnd()) {
+			result.add(scanner.nextDouble());
+			if (!scanner.skipWhitespace() && !scanner.isAtEnd()) {
+				throw new NumberFormatException("Unexpected character in list at position "
+						+ scanner.getPosition());
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Parse a coordinate from a GML CoordType instance.
 	 * 
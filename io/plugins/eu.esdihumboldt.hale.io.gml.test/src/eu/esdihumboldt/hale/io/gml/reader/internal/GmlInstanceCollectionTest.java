@@ -19,11 +19,15 @@ package eu.esdihumboldt.hale.io.gml.reader.internal;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import javax.xml.namespace.QName;
 
@@ -36,7 +40,9 @@ import eu.esdihumboldt.hale.common.core.io.supplier.DefaultInputSupplier;
 import eu.esdihumboldt.hale.common.instance.model.Group;
 import eu.esdihumboldt.hale.common.instance.model.Instance;
 import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
 import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.common.instance.model.impl.MultiInstanceCollection;
 import eu.esdihumboldt.hale.common.schema.io.SchemaReader;
 import eu.esdihumboldt.hale.common.schema.model.Schema;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
@@ -229,6 +235,141 @@ public class GmlInstanceCollectionTest {
 		}
 	}
 
+	/**
+	 * Test resolving instance references using the instance index built while
+	 * iterating over the instances.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testResolveIndexed() throws Exception {
+		GmlInstanceCollection instances = loadInstances(
+				getClass().getResource("/data/shiporder/shiporder.xsd").toURI(),
+				getClass().getResource("/data/shiporder/shiporders.xml").toURI(), false);
+
+		String ns = "http://www.example.com";
+		QName orderperson = new QName(ns, "orderperson");
+
+		// no index before the first iteration
+		assertNull(instances.getIndex());
+		// but references are resolved efficiently once it was built
+		assertTrue(instances.supportsRandomAccess());
+		assertTrue(new MultiInstanceCollection(
+				Collections.<InstanceCollection> singletonList(instances)).supportsRandomAccess());
+
+		List<InstanceReference> references = new ArrayList<>();
+		List<Object> persons = new ArrayList<>();
+		ResourceIterator<Instance> it = instances.iterator();
+		try {
+			while (it.hasNext()) {
+				Instance instance = it.next();
+				references.add(instances.getReference(instance));
+				persons.add(instance.getProperty(orderperson)[0]);
+			}
+		} finally {
+			it.close();
+		}
+		assertEquals(3, references.size());
+		assertEquals("Jörg Müller", persons.get(1));
+
+		GmlInstanceIndex index = instances.getIndex();
+		assertNotNull(index);
+		assertEquals(3, index.size());
+
+		// resolve individual references
+		for (int i = references.size() - 1; i >= 0; i--) {
+			Instance instance = instances.getInstance(references.get(i));
+			assertNotNull(instance);
+			assertEquals(persons.get(i), instance.getProperty(orderperson)[0]);
+			assertEquals(references.get(i), instances.getReference(instance));
+		}
+
+		// resolve references in one sweep
+		List<InstanceReference> reversed = new ArrayList<>(references);
+		Collections.reverse(reversed);
+		InstanceCollection resolved = instances.getInstances(reversed);
+		assertEquals(3, resolved.size());
+		List<Object> resolvedPersons = new ArrayList<>();
+		ResourceIterator<Instance> resolvedIt = resolved.iterator();
+		try {
+			while (resolvedIt.hasNext()) {
+				resolvedPersons.add(resolvedIt.next().getProperty(orderperson)[0]);
+			}
+		} finally {
+			resolvedIt.close();
+		}
+		// instances are provided in the order they appear in the source
+		assertEquals(persons, resolvedPersons);
+
+		// index was not disabled
+		assertNotNull(instances.getIndex());
+	}
+
+	/**
+	 * Test if instances parsed in parallel are the same and are provided in
+	 * the same order as when parsing sequentially.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testLoadParallel() throws Exception {
+		URI schemaLocation = getClass().getResource("/data/shiporder/shiporder.xsd").toURI();
+		URI xmlLocation = getClass().getResource("/data/shiporder/shiporders.xml").toURI();
+		GmlInstanceCollection sequential = loadInstances(schemaLocation, xmlLocation, false, true,
+				1);
+		GmlInstanceCollection parallel = loadInstances(schemaLocation, xmlLocation, false, true,
+				4);
+
+		String ns = "http://www.example.com";
+		QName orderperson = new QName(ns, "orderperson");
+
+		List<Object> persons = new ArrayList<>();
+		ResourceIterator<Instance> it = sequential.iterator();
+		try {
+			while (it.hasNext()) {
+				persons.add(it.next().getProperty(orderperson)[0]);
+			}
+		} finally {
+			it.close();
+		}
+		assertEquals(3, persons.size());
+
+		List<Object> parallelPersons = new ArrayList<>();
+		List<InstanceReference> references = new ArrayList<>();
+		it = parallel.iterator();
+		try {
+			while (it.hasNext()) {
+				Instance instance = it.next();
+				parallelPersons.add(instance.getProperty(orderperson)[0]);
+				references.add(parallel.getReference(instance));
+			}
+		} finally {
+			it.close();
+		}
+		assertEquals(persons, parallelPersons);
+
+		// the instance index is also built when parsing in parallel
+		assertNotNull(parallel.getIndex());
+		assertEquals(persons.get(2),
+				parallel.getInstance(references.get(2)).getProperty(orderperson)[0]);
+
+		// skipping instances
+		it = parallel.iterator();
+		try {
+			it.skip();
+			assertTrue(it.hasNext());
+			assertEquals(persons.get(1), it.next().getProperty(orderperson)[0]);
+		} finally {
+			it.close();
+		}
+
+		// geometries and a document encoding other than UTF-8
+		testWVAInstances(loadInstances(
+				getClass().getResource("/data/sample_wva/wfs_va.xsd").toURI(),
+				getClass().getResource("/data/sample_wva/wfs_va_sample.gml").toURI(), true, true,
+				4));
+	}
+
 	/**
 	 * Test loading a simple XML file with one instance including a choice.
 	 * 
@@ -473,6 +614,12 @@ public class GmlInstanceCollectionTest {
 	private GmlInstanceCollection loadInstances(URI schemaLocation, URI xmlLocation,
 			boolean restrictToFeatures, boolean ignoreNamespace)
 					throws IOException, IOProviderConfigurationException {
+		return loadInstances(schemaLocation, xmlLocation, restrictToFeatures, ignoreNamespace, 1);
+	}
+
+	private GmlInstanceCollection loadInstances(URI schemaLocation, URI xmlLocation,
+			boolean restrictToFeatures, boolean ignoreNamespace, int parserThreads)
+					throws IOException, IOProviderConfigurationException {
 		SchemaReader reader = new XmlSchemaReader();
 		reader.setSharedTypes(null);
 		reader.setSource(new DefaultInputSupplier(schemaLocation));
@@ -481,7 +628,8 @@ public class GmlInstanceCollectionTest {
 		Schema sourceSchema = reader.getSchema();
 
 		return new GmlInstanceCollection(new DefaultInputSupplier(xmlLocation), sourceSchema,
-				restrictToFeatures, false, true, ignoreNamespace, null, reader);
+				restrictToFeatures, false, true, ignoreNamespace, null, reader, true,
+				parserThreads);
 	}
 
 }
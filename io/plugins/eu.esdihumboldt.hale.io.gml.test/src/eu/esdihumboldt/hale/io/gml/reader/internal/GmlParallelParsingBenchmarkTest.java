@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.gml.reader.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import eu.esdihumboldt.hale.common.core.io.IOProvider;
+import eu.esdihumboldt.hale.common.core.io.report.IOReport;
+import eu.esdihumboldt.hale.common.core.io.supplier.DefaultInputSupplier;
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.common.schema.io.SchemaReader;
+import eu.esdihumboldt.hale.common.schema.model.Schema;
+import eu.esdihumboldt.hale.common.test.TestUtil;
+import eu.esdihumboldt.hale.io.xsd.reader.XmlSchemaReader;
+
+/**
+ * Compares reading a GML document with many features sequentially and with
+ * the feature elements parsed in parallel.
+ * 
+ * @author Simon Templer
+ */
+@SuppressWarnings("restriction")
+public class GmlParallelParsingBenchmarkTest {
+
+	private static final int FEATURES = 20000;
+
+	private static final String FEATURE_MEMBER_START = "<gml:featureMember>";
+
+	private static final String FEATURE_MEMBER_END = "</gml:featureMember>";
+
+	private static File document;
+
+	/**
+	 * Wait for needed services to be running and create the test document.
+	 * 
+	 * @throws Exception if creating the test document fails
+	 */
+	@BeforeClass
+	public static void prepare() throws Exception {
+		TestUtil.startConversionService();
+
+		// repeat the feature of the sample document
+		String sample = new String(
+				Files.readAllBytes(Paths.get(GmlParallelParsingBenchmarkTest.class
+						.getResource("/data/sample_wva/wfs_va_sample.gml").toURI())),
+				StandardCharsets.ISO_8859_1);
+		int start = sample.indexOf(FEATURE_MEMBER_START);
+		int end = sample.indexOf(FEATURE_MEMBER_END) + FEATURE_MEMBER_END.length();
+		String member = sample.substring(start, end);
+
+		document = File.createTempFile("features", ".gml");
+		try (Writer writer = Files.newBufferedWriter(document.toPath(),
+				StandardCharsets.ISO_8859_1)) {
+			writer.write(sample.substring(0, start));
+			for (int i = 0; i < FEATURES; i++) {
+				writer.write(member.replace("<waterVA:FID_Waterc>0<",
+						"<waterVA:FID_Waterc>" + i + "<"));
+			}
+			writer.write(sample.substring(end));
+		}
+	}
+
+	/**
+	 * Delete the test document.
+	 */
+	@AfterClass
+	public static void cleanUp() {
+		if (document != null) {
+			document.delete();
+		}
+	}
+
+	/**
+	 * Read the test document sequentially and in parallel and compare the
+	 * time taken.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Ignore
+	// benchmark, run manually
+	@Test
+	public void testBenchmark() throws Exception {
+		SchemaReader reader = new XmlSchemaReader();
+		reader.setSharedTypes(null);
+		reader.setSource(new DefaultInputSupplier(
+				getClass().getResource("/data/sample_wva/wfs_va.xsd").toURI()));
+		IOReport schemaReport = reader.execute(null);
+		assertTrue(schemaReport.isSuccess());
+		Schema schema = reader.getSchema();
+		QName id = new QName("http://www.esdi-humboldt.org/waterVA", "FID_Waterc");
+
+		int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+		// warm up
+		read(schema, reader, id, 1);
+		read(schema, reader, id, threads);
+
+		long sequentialStart = System.nanoTime();
+		List<Object> sequential = read(schema, reader, id, 1);
+		long sequentialTime = (System.nanoTime() - sequentialStart) / 1000000;
+
+		long parallelStart = System.nanoTime();
+		List<Object> parallel = read(schema, reader, id, threads);
+		long parallelTime = (System.nanoTime() - parallelStart) / 1000000;
+
+		System.out.println(String.format(
+				"%d features (%d KB)%nSequential:          %d ms%nParallel (%d threads): %d ms",
+				FEATURES, document.length() / 1024, sequentialTime, threads, parallelTime));
+
+		assertEquals(FEATURES, sequential.size());
+		// same instances in the same order
+		assertEquals(sequential, parallel);
+	}
+
+	/**
+	 * Read the feature identifiers from the test document.
+	 * 
+	 * @param schema the source schema
+	 * @param provider the I/O provider to get values
+	 * @param id the name of the identifier property
+	 * @param parserThreads the number of parser threads
+	 * @return the feature identifiers in the order the features were read
+	 * @throws IOException if reading the document fails
+	 */
+	private List<Object> read(Schema schema, IOProvider provider, QName id, int parserThreads)
+			throws IOException {
+		URI location = document.toURI();
+		GmlInstanceCollection instances = new GmlInstanceCollection(
+				new DefaultInputSupplier(location), schema, true, false, true, false, null,
+				provider, false, parserThreads);
+
+		List<Object> ids = new ArrayList<>();
+		ResourceIterator<Instance> it = instances.iterator();
+		try {
+			while (it.hasNext()) {
+				ids.add(it.next().getProperty(id)[0]);
+			}
+		} finally {
+			it.close();
+		}
+		return ids;
+	}
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.gml.writer.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link PrefixedXMLStreamWriter}.
+ * 
+ * @author Simon Templer
+ */
+public class PrefixedXMLStreamWriterTest {
+
+	private static final String NS_A = "http://www.example.com/a";
+
+	private static final String NS_B = "http://www.example.com/b";
+
+	private static final String NS_UNKNOWN = "http://www.example.com/unknown";
+
+	/**
+	 * Test if namespaces bound before the root element are declared once on
+	 * the root element.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testRootDeclarations() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		XMLStreamWriter writer = new PrefixedXMLStreamWriter(out, StandardCharsets.UTF_8);
+		writer.setPrefix("a", NS_A);
+		writer.setPrefix("b", NS_B);
+		assertEquals(NS_A, writer.getNamespaceContext().getNamespaceURI("a"));
+		assertNull(writer.getNamespaceContext().getNamespaceURI("c"));
+
+		writer.writeStartDocument();
+		writer.writeStartElement(NS_A, "root");
+		for (int i = 0; i < 3; i++) {
+			writer.writeStartElement(NS_B, "member");
+			writer.writeAttribute(NS_A, "id", "m" + i);
+			writer.writeCharacters("<" + i + "> & more");
+			writer.writeEndElement();
+		}
+		writer.writeEmptyElement("local");
+		writer.writeEndDocument();
+		writer.close();
+
+		String xml = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		assertEquals(1, count(xml, "xmlns:a="));
+		assertEquals(1, count(xml, "xmlns:b="));
+		assertTrue(xml.contains("<b:member a:id=\"m1\">&lt;1&gt; &amp; more</b:member>"));
+
+		List<String> events = read(out.toByteArray());
+		assertEquals(new QName(NS_A, "root").toString(), events.get(0));
+		assertEquals(new QName(NS_B, "member") + " " + new QName(NS_A, "id") + "=m0",
+				events.get(1));
+		assertEquals("<0> & more", events.get(2));
+		assertEquals("local", events.get(events.size() - 1));
+	}
+
+	/**
+	 * Test if namespaces that were not bound in advance are declared on the
+	 * elements they are used on.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testRepairUnknownNamespace() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		XMLStreamWriter writer = new PrefixedXMLStreamWriter(out, StandardCharsets.UTF_8);
+		writer.setPrefix("a", NS_A);
+
+		writer.writeStartDocument();
+		writer.writeStartElement(NS_A, "root");
+		for (int i = 0; i < 2; i++) {
+			writer.writeStartElement(NS_UNKNOWN, "member");
+			writer.writeStartElement(NS_UNKNOWN, "value");
+			writer.writeEndElement();
+			writer.writeEndElement();
+		}
+		writer.writeStartElement(NS_A, "other");
+		writer.writeAttribute(NS_UNKNOWN, "attribute", "value");
+		writer.writeEndElement();
+		writer.writeEndDocument();
+		writer.close();
+
+		String xml = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		// declared once for each member and once for the attribute
+		assertEquals(3, count(xml, "=\"" + NS_UNKNOWN + "\""));
+
+		List<String> events = read(out.toByteArray());
+		assertEquals(new QName(NS_UNKNOWN, "member").toString(), events.get(1));
+		assertEquals(new QName(NS_UNKNOWN, "value").toString(), events.get(2));
+		assertEquals(new QName(NS_A, "other") + " " + new QName(NS_UNKNOWN, "attribute")
+				+ "=value", events.get(5));
+	}
+
+	/**
+	 * Test writing characters that cannot be represented in the encoding.
+	 * 
+	 * @throws Exception if an error occurs
+	 */
+	@Test
+	public void testEncoding() throws Exception {
+		String text = "Straße € 😀";
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		XMLStreamWriter writer = new PrefixedXMLStreamWriter(out,
+				Charset.forName("ISO-8859-1"));
+		writer.writeStartDocument();
+		writer.writeStartElement("root");
+		writer.writeAttribute("text", text);
+		writer.writeCharacters(text);
+		writer.writeEndDocument();
+		writer.close();
+
+		List<String> events = read(out.toByteArray());
+		assertEquals("root text=" + text, events.get(0));
+		assertEquals(text, events.get(1));
+	}
+
+	private static int count(String text, String part) {
+		int count = 0;
+		int index = text.indexOf(part);
+		while (index >= 0) {
+			count++;
+			index = text.indexOf(part, index + part.length());
+		}
+		return count;
+	}
+
+	/**
+	 * Read the start elements and texts from a document.
+	 * 
+	 * @param xml the document
+	 * @return the start elements with their attributes and the texts
+	 * @throws XMLStreamException if reading the document fails
+	 */
+	private static List<String> read(byte[] xml) throws XMLStreamException {
+		XMLStreamReader reader = XMLInputFactory.newInstance()
+				.createXMLStreamReader(new ByteArrayInputStream(xml));
+		List<String> events = new ArrayList<>();
+		StringBuilder text = new StringBuilder();
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.CHARACTERS) {
+				text.append(reader.getText());
+				continue;
+			}
+			if (text.length() > 0) {
+				events.add(text.toString());
+				text.setLength(0);
+			}
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				StringBuilder element = new StringBuilder(reader.getName().toString());
+				for (int i = 0; i < reader.getAttributeCount(); i++) {
+					element.append(' ').append(reader.getAttributeName(i)).append('=')
+							.append(reader.getAttributeValue(i));
+				}
+				events.add(element.toString());
+			}
+		}
+		reader.close();
+		return events;
+	}
+
+}
@@ -37,6 +37,7 @@ import eu.esdihumboldt.hale.common.core.HalePlatform;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
 import eu.esdihumboldt.hale.common.schema.model.constraint.type.Binding;
 import eu.esdihumboldt.hale.common.schema.model.constraint.type.ElementType;
+import eu.esdihumboldt.util.geometry.NumberScanner;
 
 /**
  * Utility methods used for simple type conversion
@@ -143,9 +144,18 @@ public class SimpleTypeUtil {
 		if (List.class.isAssignableFrom(binding)) { // XXX also for collection
 													// binding?
 			// we are dealing with a simple type list
+			ElementType elementType = type.getConstraint(ElementType.class);
+
+			if (Double.class.equals(elementType.getBinding())) {
+				// parse numbers directly, e.g. for coordinate lists
+				List<Object> numbers = parseDoubleList(value);
+				if (numbers != null) {
+					return numbers;
+				}
+			}
+
 			// items separated by whitespace
 			String[] elements = value.split("\\s+");
-			ElementType elementType = type.getConstraint(ElementType.class);
 
 			Class<? extends XmlAnySimpleType> elementSimpleType = null;
 			if (elementType.getDefinition() != null) {
@@ -167,6 +177,30 @@ public class SimpleTypeUtil {
 		return convertFromXml(value, simpleType, binding);
 	}
 
+	/**
+	 * Parse a whitespace separated list of numbers.
+	 * 
+	 * @param value the list string
+	 * @return the list of numbers or <code>null</code> if the string contains
+	 *         an item that is no valid number
+	 */
+	private static List<Object> parseDoubleList(String value) {
+		NumberScanner scanner = new NumberScanner(value);
+		List<Object> result = new ArrayList<Object>();
+		try {
+			scanner.skipWhitespace();
+			while (!scanner.isAtEnd()) {
+				result.add(scanner.nextDouble());
+				if (!scanner.skipWhitespace() && !scanner.isAtEnd()) {
+					return null;
+				}
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return result;
+	}
+
 	private static Object convertFromXml(String value, Class<? extends XmlAnySimpleType> simpleType,
 			Class<?> binding) {
 		ConversionService conversionService = HalePlatform.getService(ConversionService.class);
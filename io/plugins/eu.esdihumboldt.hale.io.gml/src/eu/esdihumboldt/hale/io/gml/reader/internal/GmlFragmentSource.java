@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.gml.reader.internal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Provides XML stream readers for instance elements located at byte offsets
+ * recorded in a {@link GmlInstanceIndex}. The document is read forward only,
+ * so multiple instances can be read in one sweep if they are requested in
+ * ascending order of their offsets.<br>
+ * <br>
+ * Each instance element is wrapped in an artificial root element declaring
+ * the namespaces in effect for the element in the original document. Only a
+ * single reader may be in use at a time, opening a reader for the next
+ * instance invalidates the previous one.
+ * 
+ * @author Simon Templer
+ */
+class GmlFragmentSource implements Closeable {
+
+	private static final String FRAGMENT_ROOT = "_hale_fragment";
+
+	private final InputStream in;
+
+	private final String encoding;
+
+	private final XMLInputFactory inputFactory;
+
+	/**
+	 * Bytes that were read from the document by the current fragment stream,
+	 * starting at {@link #bufferOffset}. They may be needed again for the next
+	 * fragment, as the XML parser reads ahead.
+	 */
+	private byte[] buffer = new byte[8192];
+
+	private int bufferLength = 0;
+
+	/**
+	 * The byte offset in the document of the first byte in the buffer. If the
+	 * buffer is empty, this is the offset of the next byte to read from the
+	 * document.
+	 */
+	private long bufferOffset = 0;
+
+	private FragmentInputStream current;
+
+	/**
+	 * Create a fragment source for the given document.
+	 * 
+	 * @param input the document input stream, is closed when this source is
+	 *            closed
+	 * @param encoding the character encoding of the document
+	 */
+	public GmlFragmentSource(InputStream input, String encoding) {
+		this.in = new BufferedInputStream(input);
+		this.encoding = encoding;
+		this.inputFactory = XMLInputFactory.newInstance();
+	}
+
+	/**
+	 * Open an XML stream reader for the instance with the given index.
+	 * 
+	 * @param index the instance index
+	 * @param instanceIndex the index of the instances in the document
+	 * @return the XML stream reader positioned at the start element of the
+	 *         instance
+	 * @throws IOException if reading the document fails or the instance
+	 *             element does not match the index
+	 * @throws XMLStreamException if parsing the XML fails
+	 */
+	public XMLStreamReader open(int index, GmlInstanceIndex instanceIndex)
+			throws IOException, XMLStreamException {
+		InputStream content = openAt(instanceIndex.getOffset(index));
+
+		XMLStreamReader reader = createReader(inputFactory, content, encoding,
+				instanceIndex.getNamespaces(index), instanceIndex.getElementName(index));
+		if (reader == null) {
+			throw new IOException("Element at offset of instance " + index
+					+ " does not match the indexed element "
+					+ instanceIndex.getElementName(index));
+		}
+		return reader;
+	}
+
+	/**
+	 * Create an XML stream reader for a fragment of a document, that starts
+	 * with the start tag of an instance element. The fragment is wrapped in a
+	 * root element declaring the namespaces in effect for the instance
+	 * element in the original document.
+	 * 
+	 * @param inputFactory the XML input factory
+	 * @param content the fragment content
+	 * @param encoding the character encoding of the document
+	 * @param namespaces the namespace declarations in effect for the parent of
+	 *            the instance element
+	 * @param elementName the name of the instance element
+	 * @return the XML stream reader positioned at the start element of the
+	 *         instance or <code>null</code> if the fragment does not start
+	 *         with the given element
+	 * @throws XMLStreamException if parsing the XML fails
+	 */
+	public static XMLStreamReader createReader(XMLInputFactory inputFactory, InputStream content,
+			String encoding, Map<String, String> namespaces, QName elementName)
+			throws XMLStreamException {
+		// build the fragment root declaring the namespaces in effect
+		StringBuilder root = new StringBuilder();
+		root.append("<?xml version=\"1.0\" encoding=\"").append(encoding).append("\"?>");
+		root.append('<').append(FRAGMENT_ROOT);
+		for (Entry<String, String> ns : namespaces.entrySet()) {
+			String prefix = ns.getKey();
+			if (XMLConstants.XML_NS_PREFIX.equals(prefix)
+					|| XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+				continue;
+			}
+			boolean defaultNamespace = prefix == null || prefix.isEmpty();
+			if (!defaultNamespace && ns.getValue().isEmpty()) {
+				// undeclaring a prefix is not allowed in XML 1.0
+				continue;
+			}
+			root.append(' ').append(XMLConstants.XMLNS_ATTRIBUTE);
+			if (!defaultNamespace) {
+				root.append(':').append(prefix);
+			}
+			root.append("=\"");
+			escapeAttribute(ns.getValue(), root);
+			root.append('"');
+		}
+		root.append('>');
+
+		XMLStreamReader reader = inputFactory.createXMLStreamReader(new SequenceInputStream(
+				new ByteArrayInputStream(root.toString().getBytes(Charset.forName(encoding))),
+				content));
+
+		// proceed to the instance element
+		if (reader.nextTag() == XMLStreamConstants.START_ELEMENT
+				&& reader.next() == XMLStreamConstants.START_ELEMENT) {
+			String ns = reader.getNamespaceURI();
+			if (ns == null) {
+				ns = XMLConstants.NULL_NS_URI;
+			}
+			if (elementName.getLocalPart().equals(reader.getLocalName())
+					&& elementName.getNamespaceURI().equals(ns)) {
+				return reader;
+			}
+		}
+
+		reader.close();
+		return null;
+	}
+
+	/**
+	 * Get a stream providing the document content starting at the given
+	 * offset.
+	 * 
+	 * @param offset the byte offset, must not be smaller than the offset of a
+	 *            previous call
+	 * @return the stream providing the document content
+	 * @throws IOException if the document cannot be read up to the offset
+	 */
+	private InputStream openAt(long offset) throws IOException {
+		if (offset < bufferOffset) {
+			throw new IllegalArgumentException(
+					"Fragments must be read in ascending order of their offsets");
+		}
+
+		// discard buffered bytes before the offset
+		int drop = (int) Math.min(offset - bufferOffset, bufferLength);
+		System.arraycopy(buffer, drop, buffer, 0, bufferLength - drop);
+		bufferLength -= drop;
+		bufferOffset += drop;
+
+		// skip bytes that were not buffered
+		while (bufferOffset < offset) {
+			long skipped = in.skip(offset - bufferOffset);
+			if (skipped <= 0) {
+				if (in.read() < 0) {
+					throw new EOFException("Offset " + offset + " is beyond the document end");
+				}
+				skipped = 1;
+			}
+			bufferOffset += skipped;
+		}
+
+		current = new FragmentInputStream();
+		return current;
+	}
+
+	private static void escapeAttribute(String value, StringBuilder target) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '&':
+				target.append("&amp;");
+				break;
+			case '<':
+				target.append("&lt;");
+				break;
+			case '"':
+				target.append("&quot;");
+				break;
+			default:
+				target.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Collect the namespace declarations of the current element of the given
+	 * reader, adding them to a copy of the given parent declarations.
+	 * 
+	 * @param reader the XML stream reader positioned at a start element
+	 * @param parent the namespace declarations in effect for the parent element
+	 * @return the namespace declarations in effect for the current element, the
+	 *         parent declarations if the element declares no namespaces
+	 */
+	public static Map<String, String> collectNamespaces(XMLStreamReader reader,
+			Map<String, String> parent) {
+		int count = reader.getNamespaceCount();
+		if (count == 0) {
+			return parent;
+		}
+
+		Map<String, String> result = new HashMap<>(parent);
+		for (int i = 0; i < count; i++) {
+			String prefix = reader.getNamespacePrefix(i);
+			String ns = reader.getNamespaceURI(i);
+			result.put(prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix,
+					ns == null ? XMLConstants.NULL_NS_URI : ns);
+		}
+		return result;
+	}
+
+	@Override
+	public void close() throws IOException {
+		current = null;
+		in.close();
+	}
+
+	/**
+	 * Stream on the document content starting at {@link #bufferOffset}. Reads
+	 * buffered bytes first, bytes read from the document are added to the
+	 * buffer.
+	 */
+	private class FragmentInputStream extends InputStream {
+
+		private int position = 0;
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int read = read(b, 0, 1);
+			return (read <= 0) ? -1 : (b[0] & 0xFF);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (current != this) {
+				throw new IOException("Fragment stream is no longer valid");
+			}
+			if (len == 0) {
+				return 0;
+			}
+
+			if (position < bufferLength) {
+				int count = Math.min(len, bufferLength - position);
+				System.arraycopy(buffer, position, b, off, count);
+				position += count;
+				return count;
+			}
+
+			int count = in.read(b, off, len);
+			if (count > 0) {
+				if (bufferLength + count > buffer.length) {
+					buffer = Arrays.copyOf(buffer,
+							Math.max(buffer.length * 2, bufferLength + count));
+				}
+				System.arraycopy(b, off, buffer, bufferLength, count);
+				bufferLength += count;
+				position += count;
+			}
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+			// the underlying document is closed with the fragment source
+		}
+
+	}
+
+}
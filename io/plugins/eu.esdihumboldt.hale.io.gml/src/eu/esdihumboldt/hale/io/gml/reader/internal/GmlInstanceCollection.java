@@ -17,11 +17,15 @@
 package eu.esdihumboldt.hale.io.gml.reader.internal;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -29,6 +33,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
 import javax.xml.XMLConstants;
@@ -37,6 +48,7 @@ import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
 
 import de.fhg.igd.slf4jplus.ALogger;
 import de.fhg.igd.slf4jplus.ALoggerFactory;
@@ -50,8 +62,11 @@ import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
 import eu.esdihumboldt.hale.common.instance.model.InstanceResolver;
 import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
 import eu.esdihumboldt.hale.common.instance.model.ext.InstanceIterator;
+import eu.esdihumboldt.hale.common.instance.model.ext.RandomAccessInstanceCollection;
 import eu.esdihumboldt.hale.common.instance.model.impl.FilteredInstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.impl.GenericResourceIteratorAdapter;
 import eu.esdihumboldt.hale.common.instance.model.impl.IndexInstanceReference;
+import eu.esdihumboldt.hale.common.instance.model.impl.ReferenceInstanceCollection;
 import eu.esdihumboldt.hale.common.schema.Classification;
 import eu.esdihumboldt.hale.common.schema.model.ChildDefinition;
 import eu.esdihumboldt.hale.common.schema.model.DefinitionUtil;
@@ -71,7 +86,7 @@ import eu.esdihumboldt.hale.io.xsd.model.XmlElement;
  * @author Simon Templer
  * @partner 01 / Fraunhofer Institute for Computer Graphics Research
  */
-public class GmlInstanceCollection implements InstanceCollection {
+public class GmlInstanceCollection implements RandomAccessInstanceCollection {
 
 	/**
 	 * Iterates over {@link Instance}s in an XML/GML stream
@@ -108,6 +123,77 @@ public class GmlInstanceCollection implements InstanceCollection {
 		 */
 		private final Deque<TypeDefinition> typeStack = new LinkedList<>();
 
+		/**
+		 * Builder for the instance index, <code>null</code> if no index is
+		 * built.
+		 */
+		private GmlInstanceIndex.Builder indexBuilder;
+
+		/**
+		 * States if the start tags and namespace declarations of the elements
+		 * are tracked, i.e. if an index is built or instances are parsed in
+		 * parallel.
+		 */
+		private boolean locating = false;
+
+		/**
+		 * Records the document content for parsing instances in parallel,
+		 * <code>null</code> if instances are parsed sequentially.
+		 */
+		private final RecordingInputStream recorder;
+
+		/**
+		 * Executor parsing the instances in parallel, <code>null</code> if
+		 * instances are parsed sequentially.
+		 */
+		private ExecutorService parsers;
+
+		/**
+		 * The instances dispatched for parsing in parallel, in document order.
+		 */
+		private final Deque<PendingInstance> pending = new ArrayDeque<>();
+
+		/**
+		 * The character encoding of the document, only set if instances are
+		 * parsed in parallel.
+		 */
+		private String encoding;
+
+		/**
+		 * XML input factory for parsing instance fragments, per parser thread.
+		 */
+		private final ThreadLocal<XMLInputFactory> fragmentFactory = ThreadLocal
+				.withInitial(XMLInputFactory::newInstance);
+
+		/**
+		 * Namespace declarations in effect for the open elements, only tracked
+		 * if start tags are located.
+		 */
+		private final Deque<Map<String, String>> namespaceStack = new ArrayDeque<>();
+
+		/**
+		 * Byte offset of the start tag of the current element, only tracked if
+		 * start tags are located.
+		 */
+		private long startTagOffset = -1;
+
+		/**
+		 * Byte offset of the start tag of the element of the instance returned
+		 * next.
+		 */
+		private long nextOffset;
+
+		/**
+		 * Name of the element of the instance returned next.
+		 */
+		private QName nextElementName;
+
+		/**
+		 * Namespace declarations in effect for the parent of the element of
+		 * the instance returned next.
+		 */
+		private Map<String, String> nextNamespaces;
+
 		/**
 		 * Default constructor
 		 */
@@ -118,18 +204,105 @@ public class GmlInstanceCollection implements InstanceCollection {
 
 			try {
 				in = new BufferedInputStream(source.getInput());
-				reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+				boolean index = indexInstances && indexUsable;
+				recorder = (parserThreads > 1) ? (new RecordingInputStream(in)) : (null);
+				if (index || recorder != null) {
+					reader = createLocatingReader(new StartTagLocatingInputStream(
+							(recorder != null) ? (recorder) : (in)), index);
+				}
+				else {
+					reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+				}
 			} catch (Throwable e) {
 				throw new IllegalStateException("Could not open instance input", e);
 			}
 		}
 
+		/**
+		 * Create an XML stream reader that tracks the byte offsets of the start
+		 * tags of the elements it encounters, to be able to build an instance
+		 * index or to parse instances in parallel.
+		 * 
+		 * @param locator the stream locating the start tags
+		 * @param index if an instance index should be built
+		 * @return the XML stream reader
+		 * @throws XMLStreamException if creating the reader fails
+		 */
+		private XMLStreamReader createLocatingReader(final StartTagLocatingInputStream locator,
+				boolean index) throws XMLStreamException {
+			XMLStreamReader streamReader = XMLInputFactory.newInstance()
+					.createXMLStreamReader(locator);
+
+			String encoding = streamReader.getEncoding();
+			if (encoding == null) {
+				encoding = streamReader.getCharacterEncodingScheme();
+			}
+			if (encoding == null) {
+				encoding = "UTF-8";
+			}
+			if (!StartTagLocatingInputStream.isSupportedEncoding(encoding)) {
+				log.debug("No instance index created and instances parsed sequentially "
+						+ "for document with encoding " + encoding);
+				if (recorder != null) {
+					recorder.release(Long.MAX_VALUE);
+				}
+				return streamReader;
+			}
+
+			locating = true;
+			if (index) {
+				indexBuilder = new GmlInstanceIndex.Builder(encoding);
+			}
+			if (recorder != null) {
+				this.encoding = encoding;
+				AtomicInteger threadCount = new AtomicInteger();
+				ThreadPoolExecutor executor = new ThreadPoolExecutor(parserThreads,
+						parserThreads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+						r -> {
+							Thread thread = new Thread(r,
+									"GML instance parser " + threadCount.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						});
+				// don't keep idle threads if the iterator is not closed
+				executor.allowCoreThreadTimeOut(true);
+				parsers = executor;
+			}
+
+			// associate start element events with the start tag offsets
+			return new StreamReaderDelegate(streamReader) {
+
+				@Override
+				public int next() throws XMLStreamException {
+					return located(super.next());
+				}
+
+				@Override
+				public int nextTag() throws XMLStreamException {
+					return located(super.nextTag());
+				}
+
+				private int located(int event) {
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						startTagOffset = locator.nextStartTag();
+					}
+					return event;
+				}
+
+			};
+		}
+
 		/**
 		 * @see Iterator#hasNext()
 		 */
 		@Override
 		public synchronized boolean hasNext() {
 			try {
+				if (parsers != null) {
+					dispatchInstances();
+					return !pending.isEmpty();
+				}
+
 				proceedToNext();
 			} catch (XMLStreamException e) {
 				throw new IllegalStateException("Failed to proceed to next instance", e);
@@ -139,9 +312,9 @@ public class GmlInstanceCollection implements InstanceCollection {
 		}
 
 		@Override
-		public TypeDefinition typePeek() {
+		public synchronized TypeDefinition typePeek() {
 			if (hasNext()) {
-				return nextType;
+				return (parsers != null) ? (pending.peek().type) : (nextType);
 			}
 			return null;
 		}
@@ -163,6 +336,14 @@ public class GmlInstanceCollection implements InstanceCollection {
 			while (nextType == null && reader.hasNext()) {
 				int event = reader.next();
 				if (event == XMLStreamConstants.START_ELEMENT) {
+					Map<String, String> parentNamespaces = null;
+					if (locating) {
+						parentNamespaces = namespaceStack.isEmpty() ? Collections.emptyMap()
+								: namespaceStack.peek();
+						namespaceStack.push(
+								GmlFragmentSource.collectNamespaces(reader, parentNamespaces));
+					}
+
 					// check element and try to determine associated type
 					QName elementName = new QName(reader.getNamespaceURI(), reader.getLocalName());
 					TypeDefinition def = findType(elementName);
@@ -218,12 +399,211 @@ public class GmlInstanceCollection implements InstanceCollection {
 
 					if (def != null && isAllowedType(def)) {
 						nextType = def;
+
+						if (locating) {
+							nextOffset = startTagOffset;
+							nextElementName = elementName;
+							nextNamespaces = parentNamespaces;
+						}
+					}
+					else if (recorder != null) {
+						// the content before the element is no longer needed
+						recorder.release(startTagOffset);
 					}
 				}
 				else if (event == XMLStreamConstants.END_ELEMENT) {
 					typeStack.pop();
+					if (locating) {
+						namespaceStack.pop();
+					}
+				}
+			}
+
+			if (nextType == null) {
+				// end of the document reached
+				publishIndex();
+			}
+		}
+
+		/**
+		 * Add the instance returned next to the instance index, if an index is
+		 * built.
+		 */
+		private void indexNext() {
+			if (locating && nextOffset < 0) {
+				// start tag could not be located, discard the index and parse
+				// the remaining instances sequentially
+				log.warn("Failed to locate instance in document, "
+						+ "no instance index is built and instances are parsed sequentially");
+				locating = false;
+				indexBuilder = null;
+				namespaceStack.clear();
+				if (recorder != null) {
+					recorder.release(Long.MAX_VALUE);
 				}
 			}
+			else if (indexBuilder != null) {
+				indexBuilder.add(elementIndex, nextOffset, nextElementName, nextType,
+						nextNamespaces);
+			}
+		}
+
+		/**
+		 * Dispatch instances for parsing in parallel, until enough instances
+		 * are pending or the end of the document is reached.
+		 * 
+		 * @throws XMLStreamException if parsing the document fails
+		 */
+		private void dispatchInstances() throws XMLStreamException {
+			int maxPending = parserThreads * PENDING_PER_THREAD;
+			while (pending.size() < maxPending) {
+				proceedToNext();
+				if (nextType == null) {
+					// end of the document reached
+					return;
+				}
+
+				final TypeDefinition type = nextType;
+				indexNext();
+				final int index = elementIndex++;
+
+				CompletableFuture<Instance> instance;
+				if (locating) {
+					final QName elementName = nextElementName;
+					final Map<String, String> namespaces = nextNamespaces;
+					long offset = nextOffset;
+
+					// consume the element, afterwards its content was recorded
+					skipNext();
+					final byte[] content = fragment(recorder.copy(offset));
+					recorder.release(startTagOffset);
+
+					instance = CompletableFuture.supplyAsync(
+							() -> parseFragment(content, elementName, namespaces, type, index),
+							parsers);
+				}
+				else {
+					// start tag was not located, parse in this thread
+					instance = CompletableFuture.completedFuture(parseNext(index));
+				}
+				pending.add(new PendingInstance(type, instance));
+			}
+		}
+
+		/**
+		 * Remove content following the last tag from the recorded document
+		 * content, as it may end with an incomplete character.
+		 * 
+		 * @param content the recorded document content
+		 * @return the content up to and including the last tag
+		 */
+		private byte[] fragment(byte[] content) {
+			int end = content.length;
+			while (end > 0 && content[end - 1] != '>') {
+				end--;
+			}
+			return (end == content.length) ? (content) : (Arrays.copyOf(content, end));
+		}
+
+		/**
+		 * Parse an instance from a fragment of the document. Called from the
+		 * parser threads.
+		 * 
+		 * @param content the fragment content, starting with the start tag of
+		 *            the instance element
+		 * @param elementName the name of the instance element
+		 * @param namespaces the namespace declarations in effect for the parent
+		 *            of the instance element
+		 * @param type the type of the instance
+		 * @param index the index of the instance in the document
+		 * @return the instance
+		 */
+		private Instance parseFragment(byte[] content, QName elementName,
+				Map<String, String> namespaces, TypeDefinition type, int index) {
+			try {
+				XMLStreamReader fragmentReader = GmlFragmentSource.createReader(
+						fragmentFactory.get(), new ByteArrayInputStream(content), encoding,
+						namespaces, elementName);
+				if (fragmentReader == null) {
+					throw new IllegalStateException("Element of instance " + index
+							+ " could not be located in the document");
+				}
+				try {
+					return StreamGmlHelper.parseInstance(fragmentReader, type, index, strict, null,
+							synchronizedCrsProvider, type, null, false, ignoreNamespaces,
+							ioProvider);
+				} finally {
+					fragmentReader.close();
+				}
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * Parse the instance returned next from the document. The CRS
+		 * provider calls are serialized, as the parser threads may be active
+		 * at the same time.
+		 * 
+		 * @param index the index of the instance in the document
+		 * @return the instance
+		 */
+		private Instance parseNext(int index) {
+			try {
+				return StreamGmlHelper.parseInstance(reader, nextType, index, strict, null,
+						synchronizedCrsProvider, nextType, null, false, ignoreNamespaces,
+						ioProvider);
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException(e);
+			} finally {
+				popNext(); // parseInstance consumes END_ELEMENT
+			}
+		}
+
+		/**
+		 * Skip the element of the instance returned next in the document.
+		 */
+		private void skipNext() {
+			try {
+				// close elements
+				int open = 1;
+				while (open > 0 && reader.hasNext()) {
+					int event = reader.next();
+					switch (event) {
+					case XMLStreamConstants.START_ELEMENT:
+						open++;
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						open--;
+						break;
+					}
+				}
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException(e);
+			} finally {
+				popNext(); // END_ELEMENT was consumed
+			}
+		}
+
+		/**
+		 * Pop the element of the instance returned next from the element
+		 * stacks, after it was consumed.
+		 */
+		private void popNext() {
+			nextType = null;
+			typeStack.pop();
+			if (locating) {
+				namespaceStack.pop();
+			}
+		}
+
+		/**
+		 * Publish the index built so far to the instance collection.
+		 */
+		private void publishIndex() {
+			if (indexBuilder != null) {
+				GmlInstanceCollection.this.publishIndex(indexBuilder);
+			}
 		}
 
 		/**
@@ -552,6 +932,13 @@ public class GmlInstanceCollection implements InstanceCollection {
 		 */
 		@Override
 		public synchronized Instance next() {
+			if (parsers != null) {
+				if (!hasNext()) {
+					throw new IllegalStateException();
+				}
+				return pending.poll().get();
+			}
+
 			if (nextType == null) {
 				try {
 					proceedToNext();
@@ -564,15 +951,9 @@ public class GmlInstanceCollection implements InstanceCollection {
 				throw new IllegalStateException();
 			}
 
-			try {
-				return StreamGmlHelper.parseInstance(reader, nextType, elementIndex++, strict, null,
-						crsProvider, nextType, null, false, ignoreNamespaces, ioProvider);
-			} catch (XMLStreamException e) {
-				throw new IllegalStateException(e);
-			} finally {
-				nextType = null;
-				typeStack.pop(); // parseInstance consumes END_ELEMENT
-			}
+			indexNext();
+
+			return parseNext(elementIndex++);
 		}
 
 		/**
@@ -582,6 +963,10 @@ public class GmlInstanceCollection implements InstanceCollection {
 		 * @return the type of the next instance
 		 */
 		public synchronized TypeDefinition nextType() {
+			if (parsers != null) {
+				PendingInstance next = pending.peek();
+				return (next != null) ? (next.type) : (null);
+			}
 			return nextType;
 		}
 
@@ -590,6 +975,14 @@ public class GmlInstanceCollection implements InstanceCollection {
 		 */
 		@Override
 		public synchronized void skip() {
+			if (parsers != null) {
+				if (!hasNext()) {
+					throw new IllegalStateException();
+				}
+				pending.poll().instance.cancel(false);
+				return;
+			}
+
 			if (nextType == null) {
 				try {
 					proceedToNext();
@@ -602,25 +995,10 @@ public class GmlInstanceCollection implements InstanceCollection {
 				throw new IllegalStateException();
 			}
 
-			try {
-				// close elements
-				int open = 1;
-				while (open > 0 && reader.hasNext()) {
-					int event = reader.next();
-					switch (event) {
-					case XMLStreamConstants.START_ELEMENT:
-						open++;
-						break;
-					case XMLStreamConstants.END_ELEMENT:
-						open--;
-						break;
-					}
-				}
-			} catch (XMLStreamException e) {
-				throw new IllegalStateException(e);
-			} finally {
-				nextType = null;
-			}
+			indexNext();
+			elementIndex++;
+
+			skipNext();
 		}
 
 		/**
@@ -636,6 +1014,18 @@ public class GmlInstanceCollection implements InstanceCollection {
 		 */
 		@Override
 		public synchronized void close() {
+			publishIndex();
+			indexBuilder = null;
+
+			if (parsers != null) {
+				for (PendingInstance instance : pending) {
+					instance.instance.cancel(false);
+				}
+				pending.clear();
+				parsers.shutdownNow();
+				parsers = null;
+			}
+
 			try {
 				reader.close();
 			} catch (XMLStreamException e) {
@@ -651,6 +1041,53 @@ public class GmlInstanceCollection implements InstanceCollection {
 
 	}
 
+	/**
+	 * An instance dispatched for parsing in parallel.
+	 */
+	private static class PendingInstance {
+
+		private final TypeDefinition type;
+
+		private final CompletableFuture<Instance> instance;
+
+		/**
+		 * Create a pending instance.
+		 * 
+		 * @param type the instance type
+		 * @param instance the future instance
+		 */
+		public PendingInstance(TypeDefinition type, CompletableFuture<Instance> instance) {
+			super();
+			this.type = type;
+			this.instance = instance;
+		}
+
+		/**
+		 * Wait for the instance to be parsed.
+		 * 
+		 * @return the instance
+		 */
+		public Instance get() {
+			try {
+				return instance.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while parsing instance", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+
+	}
+
+	/**
+	 * Number of instances dispatched in advance per parser thread.
+	 */
+	private static final int PENDING_PER_THREAD = 16;
+
 	private final ALogger log = ALoggerFactory.getLogger(GmlInstanceCollection.class);
 
 	private final TypeIndex sourceSchema;
@@ -664,6 +1101,25 @@ public class GmlInstanceCollection implements InstanceCollection {
 	private final CRSProvider crsProvider;
 	private final boolean ignoreNamespaces;
 	private final IOProvider ioProvider;
+	private final boolean indexInstances;
+	private final int parserThreads;
+
+	/**
+	 * CRS provider that may be called from the parser threads, serializing
+	 * the calls to {@link #crsProvider}.
+	 */
+	private final CRSProvider synchronizedCrsProvider;
+
+	/**
+	 * The instance index, built while iterating over the instances.
+	 */
+	private volatile GmlInstanceIndex index;
+
+	/**
+	 * States if the instance index may be used, is reset if resolving an
+	 * instance using the index fails.
+	 */
+	private volatile boolean indexUsable = true;
 
 	/**
 	 * Create an XMl/GML instance collection based on the given source.
@@ -687,6 +1143,72 @@ public class GmlInstanceCollection implements InstanceCollection {
 	public GmlInstanceCollection(LocatableInputSupplier<? extends InputStream> source,
 			TypeIndex sourceSchema, boolean restrictToFeatures, boolean ignoreRoot, boolean strict,
 			boolean ignoreNamespaces, CRSProvider crsProvider, IOProvider provider) {
+		this(source, sourceSchema, restrictToFeatures, ignoreRoot, strict, ignoreNamespaces,
+				crsProvider, provider, true);
+	}
+
+	/**
+	 * Create an XMl/GML instance collection based on the given source.
+	 * 
+	 * @param source the source
+	 * @param sourceSchema the source schema
+	 * @param restrictToFeatures if only instances that are GML features shall
+	 *            be loaded
+	 * @param ignoreRoot if the root element should be ignored for creating
+	 *            instances even if it is recognized as an allowed instance type
+	 * @param strict if associating elements with properties should be done
+	 *            strictly according to the schema, otherwise a fall-back is
+	 *            used trying to populate values also on invalid property paths
+	 * @param ignoreNamespaces if parsing of the XML instances should allow
+	 *            types and properties with namespaces that differ from those
+	 *            defined in the schema
+	 * @param crsProvider CRS provider in case no CRS is specified, may be
+	 *            <code>null</code>
+	 * @param provider the I/O provider to get values
+	 * @param indexInstances if an index of the instance positions in the
+	 *            source should be built while iterating over the instances, to
+	 *            allow resolving instance references without parsing the
+	 *            source up to the referenced instance
+	 */
+	public GmlInstanceCollection(LocatableInputSupplier<? extends InputStream> source,
+			TypeIndex sourceSchema, boolean restrictToFeatures, boolean ignoreRoot, boolean strict,
+			boolean ignoreNamespaces, CRSProvider crsProvider, IOProvider provider,
+			boolean indexInstances) {
+		this(source, sourceSchema, restrictToFeatures, ignoreRoot, strict, ignoreNamespaces,
+				crsProvider, provider, indexInstances, 1);
+	}
+
+	/**
+	 * Create an XMl/GML instance collection based on the given source.
+	 * 
+	 * @param source the source
+	 * @param sourceSchema the source schema
+	 * @param restrictToFeatures if only instances that are GML features shall
+	 *            be loaded
+	 * @param ignoreRoot if the root element should be ignored for creating
+	 *            instances even if it is recognized as an allowed instance type
+	 * @param strict if associating elements with properties should be done
+	 *            strictly according to the schema, otherwise a fall-back is
+	 *            used trying to populate values also on invalid property paths
+	 * @param ignoreNamespaces if parsing of the XML instances should allow
+	 *            types and properties with namespaces that differ from those
+	 *            defined in the schema
+	 * @param crsProvider CRS provider in case no CRS is specified, may be
+	 *            <code>null</code>
+	 * @param provider the I/O provider to get values
+	 * @param indexInstances if an index of the instance positions in the
+	 *            source should be built while iterating over the instances, to
+	 *            allow resolving instance references without parsing the
+	 *            source up to the referenced instance
+	 * @param parserThreads the number of threads parsing the instance
+	 *            elements, if greater than one the elements are located in the
+	 *            document and parsed in parallel, while the instances are still
+	 *            provided in document order
+	 */
+	public GmlInstanceCollection(LocatableInputSupplier<? extends InputStream> source,
+			TypeIndex sourceSchema, boolean restrictToFeatures, boolean ignoreRoot, boolean strict,
+			boolean ignoreNamespaces, CRSProvider crsProvider, IOProvider provider,
+			boolean indexInstances, int parserThreads) {
 		this.source = source;
 		this.sourceSchema = sourceSchema;
 		this.restrictToFeatures = restrictToFeatures;
@@ -695,6 +1217,19 @@ public class GmlInstanceCollection implements InstanceCollection {
 		this.ignoreNamespaces = ignoreNamespaces;
 		this.crsProvider = crsProvider;
 		this.ioProvider = provider;
+		this.indexInstances = indexInstances;
+		this.parserThreads = parserThreads;
+
+		if (crsProvider != null) {
+			this.synchronizedCrsProvider = (parentType, propertyPath) -> {
+				synchronized (crsProvider) {
+					return crsProvider.getCRS(parentType, propertyPath);
+				}
+			};
+		}
+		else {
+			this.synchronizedCrsProvider = null;
+		}
 	}
 
 	/**
@@ -762,10 +1297,6 @@ public class GmlInstanceCollection implements InstanceCollection {
 				"Reference can only be determined based on a StreamGmlInstance");
 	}
 
-	/*
-	 * TODO optimize retrieval of multiple references
-	 */
-
 	/**
 	 * @see InstanceResolver#getInstance(InstanceReference)
 	 */
@@ -773,6 +1304,16 @@ public class GmlInstanceCollection implements InstanceCollection {
 	public Instance getInstance(InstanceReference reference) {
 		IndexInstanceReference ref = (IndexInstanceReference) reference;
 
+		GmlInstanceIndex index = getUsableIndex();
+		if (index != null && index.contains(ref.getIndex())) {
+			try (GmlFragmentSource fragments = new GmlFragmentSource(source.getInput(),
+					index.getEncoding())) {
+				return readIndexed(fragments, index, ref.getIndex());
+			} catch (Exception e) {
+				indexFailed(e);
+			}
+		}
+
 		GmlInstanceIterator it = iterator();
 		try {
 			for (int i = 0; i < ref.getIndex(); i++) {
@@ -785,4 +1326,177 @@ public class GmlInstanceCollection implements InstanceCollection {
 		}
 	}
 
+	/**
+	 * @see InstanceResolver#getInstances(Collection)
+	 */
+	@Override
+	public InstanceCollection getInstances(Collection<? extends InstanceReference> references) {
+		GmlInstanceIndex index = getUsableIndex();
+		if (index != null) {
+			List<IndexInstanceReference> indexed = new ArrayList<>(references.size());
+			for (InstanceReference reference : references) {
+				if (reference instanceof IndexInstanceReference
+						&& index.contains(((IndexInstanceReference) reference).getIndex())) {
+					indexed.add((IndexInstanceReference) reference);
+				}
+				else {
+					indexed = null;
+					break;
+				}
+			}
+
+			if (indexed != null) {
+				// read the instances in the order they appear in the source
+				indexed.sort((a, b) -> Integer.compare(a.getIndex(), b.getIndex()));
+				return new IndexedReferenceCollection(indexed, index);
+			}
+		}
+
+		return RandomAccessInstanceCollection.super.getInstances(references);
+	}
+
+	/**
+	 * States that random access is supported if an instance index is built
+	 * while iterating over the instances and it has not been discarded.
+	 * 
+	 * @see RandomAccessInstanceCollection#supportsRandomAccess()
+	 */
+	@Override
+	public boolean supportsRandomAccess() {
+		return indexInstances && indexUsable;
+	}
+
+	/**
+	 * Read the instance with the given index using the instance index.
+	 * 
+	 * @param fragments the fragment source
+	 * @param index the instance index
+	 * @param instanceIndex the index of the instance in the stream
+	 * @return the instance
+	 * @throws Exception if reading the instance fails
+	 */
+	private Instance readIndexed(GmlFragmentSource fragments, GmlInstanceIndex index,
+			int instanceIndex) throws Exception {
+		XMLStreamReader reader = fragments.open(instanceIndex, index);
+		try {
+			TypeDefinition type = index.getType(instanceIndex);
+			return StreamGmlHelper.parseInstance(reader, type, instanceIndex, strict, null,
+					crsProvider, type, null, false, ignoreNamespaces, ioProvider);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Get the index of the instance positions in the source. The index is
+	 * built while iterating over the instances.
+	 * 
+	 * @return the instance index if it is available and may be used,
+	 *         otherwise <code>null</code>
+	 */
+	@Nullable
+	public GmlInstanceIndex getIndex() {
+		return getUsableIndex();
+	}
+
+	/**
+	 * @return the instance index if it is available and may be used,
+	 *         otherwise <code>null</code>
+	 */
+	@Nullable
+	private GmlInstanceIndex getUsableIndex() {
+		if (indexUsable) {
+			return index;
+		}
+		return null;
+	}
+
+	/**
+	 * Publish an instance index. The index is only replaced if it covers more
+	 * instances than the current index.
+	 * 
+	 * @param builder the index builder
+	 */
+	private synchronized void publishIndex(GmlInstanceIndex.Builder builder) {
+		if (indexUsable && (index == null || builder.size() > index.size())) {
+			index = builder.build();
+		}
+	}
+
+	/**
+	 * Called when resolving an instance using the instance index failed.
+	 * Disables using the index.
+	 * 
+	 * @param e the error
+	 */
+	private void indexFailed(Exception e) {
+		log.warn("Resolving instance using the instance index failed, "
+				+ "falling back to parsing the source", e);
+		indexUsable = false;
+		index = null;
+	}
+
+	/**
+	 * Collection of instances resolved using the instance index, in the order
+	 * they appear in the source. The instances are read in one forward sweep.
+	 */
+	private class IndexedReferenceCollection extends ReferenceInstanceCollection {
+
+		private final List<IndexInstanceReference> references;
+
+		private final GmlInstanceIndex index;
+
+		/**
+		 * Create a collection of instances resolved using the instance index.
+		 * 
+		 * @param references the instance references, ordered by their index
+		 * @param index the instance index
+		 */
+		public IndexedReferenceCollection(List<IndexInstanceReference> references,
+				GmlInstanceIndex index) {
+			super(references, GmlInstanceCollection.this);
+			this.references = references;
+			this.index = index;
+		}
+
+		@Override
+		public ResourceIterator<Instance> iterator() {
+			return new GenericResourceIteratorAdapter<IndexInstanceReference, Instance>(
+					references.iterator()) {
+
+				private GmlFragmentSource fragments;
+
+				@Override
+				protected Instance convert(IndexInstanceReference next) {
+					if (indexUsable) {
+						try {
+							if (fragments == null) {
+								fragments = new GmlFragmentSource(source.getInput(),
+										index.getEncoding());
+							}
+							return readIndexed(fragments, index, next.getIndex());
+						} catch (Exception e) {
+							indexFailed(e);
+						}
+					}
+					return getInstance(next);
+				}
+
+				@Override
+				public void close() {
+					if (fragments != null) {
+						try {
+							fragments.close();
+						} catch (IOException e) {
+							// ignore
+						}
+						fragments = null;
+					}
+				}
+
+			};
+		}
+
+	}
+
 }
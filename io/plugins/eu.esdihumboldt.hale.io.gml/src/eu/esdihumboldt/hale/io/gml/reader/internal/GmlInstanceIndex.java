@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.gml.reader.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+
+/**
+ * Index of the instances in an XML/GML document, mapping the index of an
+ * instance in the stream to the byte offset of the start tag of the instance
+ * element and the namespace context that is in effect there.<br>
+ * <br>
+ * An index is immutable, it is created using a {@link Builder} while iterating
+ * over the instances.
+ * 
+ * @author Simon Templer
+ */
+public class GmlInstanceIndex {
+
+	/**
+	 * Builder for a {@link GmlInstanceIndex}. Instances have to be added in the
+	 * order they appear in the stream.
+	 */
+	public static class Builder {
+
+		private final String encoding;
+
+		private long[] offsets = new long[64];
+
+		private QName[] elementNames = new QName[64];
+
+		private TypeDefinition[] types = new TypeDefinition[64];
+
+		@SuppressWarnings("unchecked")
+		private Map<String, String>[] namespaces = new Map[64];
+
+		private int size = 0;
+
+		/**
+		 * Create a new index builder.
+		 * 
+		 * @param encoding the character encoding of the document
+		 */
+		public Builder(String encoding) {
+			this.encoding = encoding;
+		}
+
+		/**
+		 * Add an instance to the index.
+		 * 
+		 * @param index the index of the instance in the stream, must be equal
+		 *            to the number of instances already added
+		 * @param offset the byte offset of the start tag of the instance
+		 *            element
+		 * @param elementName the element name
+		 * @param type the type of the instance
+		 * @param namespaces the namespace declarations in effect for the
+		 *            element, excluding those declared on the element itself,
+		 *            mapping prefixes to namespaces (the empty string as prefix
+		 *            represents the default namespace)
+		 */
+		public void add(int index, long offset, QName elementName, TypeDefinition type,
+				Map<String, String> namespaces) {
+			if (index != size) {
+				throw new IllegalStateException(
+						"Instances must be added to the index in stream order");
+			}
+			if (size > 0 && offset < offsets[size - 1]) {
+				throw new IllegalStateException("Instance offsets must be ascending");
+			}
+
+			if (size == offsets.length) {
+				int newLength = size * 2;
+				offsets = Arrays.copyOf(offsets, newLength);
+				elementNames = Arrays.copyOf(elementNames, newLength);
+				types = Arrays.copyOf(types, newLength);
+				this.namespaces = Arrays.copyOf(this.namespaces, newLength);
+			}
+
+			offsets[size] = offset;
+			elementNames[size] = elementName;
+			types[size] = type;
+			this.namespaces[size] = namespaces;
+			size++;
+		}
+
+		/**
+		 * @return the number of instances added to the index
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Build the index.
+		 * 
+		 * @return the index containing the instances added so far
+		 */
+		public GmlInstanceIndex build() {
+			return new GmlInstanceIndex(this);
+		}
+
+	}
+
+	private final String encoding;
+
+	private final long[] offsets;
+
+	private final QName[] elementNames;
+
+	private final TypeDefinition[] types;
+
+	private final Map<String, String>[] namespaces;
+
+	private final int size;
+
+	private GmlInstanceIndex(Builder builder) {
+		this.encoding = builder.encoding;
+		this.size = builder.size;
+		this.offsets = Arrays.copyOf(builder.offsets, size);
+		this.elementNames = Arrays.copyOf(builder.elementNames, size);
+		this.types = Arrays.copyOf(builder.types, size);
+		this.namespaces = Arrays.copyOf(builder.namespaces, size);
+	}
+
+	/**
+	 * @return the character encoding of the document
+	 */
+	public String getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * @return the number of indexed instances
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Determines if the instance with the given index in the stream is
+	 * contained in the index.
+	 * 
+	 * @param index the index of the instance in the stream
+	 * @return if the instance is contained in the index
+	 */
+	public boolean contains(int index) {
+		return index >= 0 && index < size;
+	}
+
+	/**
+	 * Get the byte offset of the start tag of the element of the instance with
+	 * the given index.
+	 * 
+	 * @param index the index of the instance in the stream
+	 * @return the byte offset
+	 */
+	public long getOffset(int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * Get the element name of the instance with the given index.
+	 * 
+	 * @param index the index of the instance in the stream
+	 * @return the element name
+	 */
+	public QName getElementName(int index) {
+		return elementNames[index];
+	}
+
+	/**
+	 * Get the type of the instance with the given index.
+	 * 
+	 * @param index the index of the instance in the stream
+	 * @return the instance type
+	 */
+	public TypeDefinition getType(int index) {
+		return types[index];
+	}
+
+	/**
+	 * Get the namespace declarations in effect for the element of the instance
+	 * with the given index, excluding those declared on the element itself.
+	 * 
+	 * @param index the index of the instance in the stream
+	 * @return the namespace declarations, mapping prefixes to namespaces
+	 */
+	public Map<String, String> getNamespaces(int index) {
+		Map<String, String> result = namespaces[index];
+		if (result == null) {
+			return Collections.emptyMap();
+		}
+		return result;
+	}
+
+}
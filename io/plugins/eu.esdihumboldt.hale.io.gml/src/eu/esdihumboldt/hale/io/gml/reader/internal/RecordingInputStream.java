@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.gml.reader.internal;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Input stream that records the bytes read from it, so parts of the document
+ * that were already consumed, e.g. by an XML parser, can be retrieved again
+ * by their byte offsets. Recorded bytes that are no longer needed have to be
+ * released with {@link #release(long)}, only bytes after the released offset
+ * are recorded.
+ * 
+ * @author Simon Templer
+ */
+class RecordingInputStream extends FilterInputStream {
+
+	private byte[] buffer = new byte[8192];
+
+	private int length = 0;
+
+	/**
+	 * The byte offset of the first byte in the buffer. If the buffer is
+	 * empty, this is the offset of the first byte to record.
+	 */
+	private long bufferOffset = 0;
+
+	/**
+	 * The offset of the next byte read.
+	 */
+	private long position = 0;
+
+	/**
+	 * Create a recording input stream.
+	 * 
+	 * @param in the input stream to wrap
+	 */
+	public RecordingInputStream(InputStream in) {
+		super(in);
+	}
+
+	/**
+	 * @return the offset of the next byte read
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * Release the recorded bytes before the given offset. Bytes before the
+	 * offset that are read later on are not recorded.
+	 * 
+	 * @param offset the byte offset, may be beyond the current position
+	 */
+	public void release(long offset) {
+		if (offset <= bufferOffset) {
+			return;
+		}
+
+		int drop = (int) Math.min(offset - bufferOffset, length);
+		System.arraycopy(buffer, drop, buffer, 0, length - drop);
+		length -= drop;
+		bufferOffset = (length > 0) ? (bufferOffset + drop) : (offset);
+	}
+
+	/**
+	 * Get a copy of the recorded bytes starting at the given offset up to the
+	 * current position.
+	 * 
+	 * @param from the byte offset, must not have been released
+	 * @return the recorded bytes
+	 */
+	public byte[] copy(long from) {
+		if (from < bufferOffset || from > position) {
+			throw new IllegalArgumentException("Bytes at offset " + from + " are not recorded");
+		}
+		int start = (int) (from - bufferOffset);
+		return Arrays.copyOfRange(buffer, start, length);
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0) {
+			record(new byte[] { (byte) b }, 0, 1);
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = super.read(b, off, len);
+		if (read > 0) {
+			record(b, off, read);
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		// bytes must be recorded, so they have to be read
+		byte[] skipped = new byte[(int) Math.min(n, 8192)];
+		long count = 0;
+		while (count < n) {
+			int read = read(skipped, 0, (int) Math.min(n - count, skipped.length));
+			if (read < 0) {
+				break;
+			}
+			count += read;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+		// not supported
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("Mark/reset not supported");
+	}
+
+	private void record(byte[] b, int off, int len) {
+		long start = position;
+		position += len;
+		if (position <= bufferOffset) {
+			// all bytes were released in advance
+			return;
+		}
+
+		int skip = (int) Math.max(0, bufferOffset - start);
+		int count = len - skip;
+		if (length + count > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + count));
+		}
+		System.arraycopy(b, off + skip, buffer, length, count);
+		length += count;
+	}
+
+}
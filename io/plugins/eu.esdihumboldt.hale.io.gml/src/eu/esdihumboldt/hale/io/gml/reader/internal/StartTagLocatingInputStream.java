@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.gml.reader.internal;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Input stream that locates the start tags in an XML document while it is
+ * read, e.g. by an XML parser. The byte offsets of the start tags can be
+ * retrieved in document order with {@link #nextStartTag()}, so they can be
+ * associated with the start element events reported by the parser.<br>
+ * <br>
+ * The document is scanned on byte level, distinguishing only start tags,
+ * end tags, comments, CDATA sections, processing instructions and the
+ * document type declaration. This only works for encodings where the XML
+ * markup characters are represented by single ASCII bytes that are not used
+ * in multi-byte sequences (see {@link #isSupportedEncoding(String)}).
+ * 
+ * @author Simon Templer
+ */
+class StartTagLocatingInputStream extends FilterInputStream {
+
+	private static final int TEXT = 0;
+	private static final int TAG_OPEN = 1;
+	private static final int START_TAG = 2;
+	private static final int START_TAG_QUOTED = 3;
+	private static final int END_TAG = 4;
+	private static final int MARKUP_DECL = 5;
+	private static final int COMMENT = 6;
+	private static final int CDATA = 7;
+	private static final int PI = 8;
+	private static final int DOCTYPE = 9;
+	private static final int DOCTYPE_QUOTED = 10;
+
+	private static final byte[] COMMENT_START = "--".getBytes();
+	private static final byte[] CDATA_START = "[CDATA[".getBytes();
+
+	private int state = TEXT;
+
+	/**
+	 * The quote character if in a quoted section.
+	 */
+	private int quote;
+
+	/**
+	 * Number of characters matched in the current markup declaration or
+	 * section end.
+	 */
+	private int matched;
+
+	/**
+	 * Bracket depth in the document type declaration.
+	 */
+	private int bracketDepth;
+
+	/**
+	 * The offset of the next byte read.
+	 */
+	private long position = 0;
+
+	/**
+	 * Ring buffer of start tag offsets that were not yet retrieved.
+	 */
+	private long[] startTags = new long[64];
+
+	private int head = 0;
+
+	private int count = 0;
+
+	/**
+	 * Create a start tag locating input stream.
+	 * 
+	 * @param in the input stream to wrap
+	 */
+	public StartTagLocatingInputStream(InputStream in) {
+		super(in);
+	}
+
+	/**
+	 * Determines if the given encoding is supported for locating start tags.
+	 * 
+	 * @param encoding the name of the encoding
+	 * @return if the encoding is supported
+	 */
+	public static boolean isSupportedEncoding(String encoding) {
+		String name;
+		try {
+			name = Charset.forName(encoding).name().toUpperCase(Locale.ENGLISH);
+		} catch (Exception e) {
+			return false;
+		}
+		return name.equals("UTF-8") || name.equals("US-ASCII") || name.startsWith("ISO-8859-")
+				|| name.startsWith("WINDOWS-125");
+	}
+
+	/**
+	 * Get the offset of the next start tag in the document, that was not yet
+	 * retrieved. Must only be called after the start tag was read from the
+	 * stream.
+	 * 
+	 * @return the byte offset of the start tag or <code>-1</code> if no
+	 *         further start tag has been located
+	 */
+	public long nextStartTag() {
+		if (count == 0) {
+			return -1;
+		}
+
+		long result = startTags[head];
+		head = (head + 1) % startTags.length;
+		count--;
+		return result;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0) {
+			scan(b);
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = super.read(b, off, len);
+		for (int i = 0; i < read; i++) {
+			scan(b[off + i] & 0xFF);
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		// bytes must be scanned, so they have to be read
+		byte[] buffer = new byte[(int) Math.min(n, 8192)];
+		long skipped = 0;
+		while (skipped < n) {
+			int read = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+			if (read < 0) {
+				break;
+			}
+			skipped += read;
+		}
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+		// not supported
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("Mark/reset not supported");
+	}
+
+	private void scan(int b) {
+		switch (state) {
+		case TEXT:
+			if (b == '<') {
+				state = TAG_OPEN;
+			}
+			break;
+		case TAG_OPEN:
+			if (b == '/') {
+				state = END_TAG;
+			}
+			else if (b == '?') {
+				state = PI;
+				matched = 0;
+			}
+			else if (b == '!') {
+				state = MARKUP_DECL;
+				matched = 0;
+			}
+			else {
+				addStartTag(position - 1);
+				state = (b == '>') ? TEXT : START_TAG;
+			}
+			break;
+		case START_TAG:
+			if (b == '"' || b == '\'') {
+				quote = b;
+				state = START_TAG_QUOTED;
+			}
+			else if (b == '>') {
+				state = TEXT;
+			}
+			break;
+		case START_TAG_QUOTED:
+			if (b == quote) {
+				state = START_TAG;
+			}
+			break;
+		case END_TAG:
+			if (b == '>') {
+				state = TEXT;
+			}
+			break;
+		case MARKUP_DECL:
+			// distinguish comment, CDATA section and document type
+			// declaration
+			if (matched < COMMENT_START.length && b == COMMENT_START[matched]) {
+				matched++;
+				if (matched == COMMENT_START.length) {
+					state = COMMENT;
+					matched = 0;
+				}
+			}
+			else if (b == CDATA_START[matched]) {
+				matched++;
+				if (matched == CDATA_START.length) {
+					state = CDATA;
+					matched = 0;
+				}
+			}
+			else {
+				state = DOCTYPE;
+				bracketDepth = 0;
+				scanDoctype(b);
+			}
+			break;
+		case COMMENT:
+			// comment ends with -->
+			matched = scanEnd(b, '-', matched);
+			break;
+		case CDATA:
+			// CDATA section ends with ]]>
+			matched = scanEnd(b, ']', matched);
+			break;
+		case PI:
+			// processing instruction ends with ?>
+			if (b == '>' && matched > 0) {
+				state = TEXT;
+			}
+			matched = (b == '?') ? 1 : 0;
+			break;
+		case DOCTYPE:
+			scanDoctype(b);
+			break;
+		case DOCTYPE_QUOTED:
+			if (b == quote) {
+				state = DOCTYPE;
+			}
+			break;
+		}
+
+		position++;
+	}
+
+	/**
+	 * Scan for the end of a section that ends with two times the given
+	 * character followed by <code>&gt;</code>.
+	 * 
+	 * @param b the current byte
+	 * @param c the character
+	 * @param matched the number of consecutive occurrences of the character
+	 *            matched
+	 * @return the new number of matched characters
+	 */
+	private int scanEnd(int b, char c, int matched) {
+		if (b == c) {
+			return matched + 1;
+		}
+		if (b == '>' && matched >= 2) {
+			state = TEXT;
+		}
+		return 0;
+	}
+
+	private void scanDoctype(int b) {
+		if (b == '"' || b == '\'') {
+			quote = b;
+			state = DOCTYPE_QUOTED;
+		}
+		else if (b == '[') {
+			bracketDepth++;
+		}
+		else if (b == ']') {
+			bracketDepth--;
+		}
+		else if (b == '>' && bracketDepth <= 0) {
+			state = TEXT;
+		}
+	}
+
+	private void addStartTag(long offset) {
+		if (count == startTags.length) {
+			// grow ring buffer
+			long[] grown = Arrays.copyOf(startTags, startTags.length * 2);
+			if (head > 0) {
+				// move wrapped part to the end
+				System.arraycopy(startTags, 0, grown, startTags.length, head);
+			}
+			startTags = grown;
+		}
+		startTags[(head + count) % startTags.length] = offset;
+		count++;
+	}
+
+}
@@ -75,6 +75,22 @@ public class StreamGmlReader extends AbstractInstanceReader {
 	 */
 	public static final String PARAM_FEATURES_PER_WFS_REQUEST = "featuresPerWfsRequest";
 
+	/**
+	 * The name of the parameter specifying if an index of the instance
+	 * positions in the source should be built while iterating over the
+	 * instances, allowing fast resolution of instance references. Parameter
+	 * value defaults to <code>true</code>.
+	 */
+	public static final String PARAM_INDEX_INSTANCES = "indexInstances";
+
+	/**
+	 * The name of the parameter specifying the number of threads parsing the
+	 * instances. If greater than one, the instance elements are located in
+	 * the source and parsed in parallel. Parameter value defaults to
+	 * <code>1</code>.
+	 */
+	public static final String PARAM_PARSER_THREADS = "parserThreads";
+
 	private InstanceCollection instances;
 
 	private final boolean restrictToFeatures;
@@ -94,6 +110,8 @@ public class StreamGmlReader extends AbstractInstanceReader {
 		addSupportedParameter(PARAM_IGNORE_NAMESPACES);
 		addSupportedParameter(PARAM_PAGINATE_REQUEST);
 		addSupportedParameter(PARAM_FEATURES_PER_WFS_REQUEST);
+		addSupportedParameter(PARAM_INDEX_INSTANCES);
+		addSupportedParameter(PARAM_PARSER_THREADS);
 	}
 
 	/**
@@ -110,6 +128,8 @@ public class StreamGmlReader extends AbstractInstanceReader {
 			boolean ignoreNamespaces = getParameter(PARAM_IGNORE_NAMESPACES).as(Boolean.class,
 					false);
 			boolean paginateRequest = getParameter(PARAM_PAGINATE_REQUEST).as(Boolean.class, false);
+			boolean indexInstances = getParameter(PARAM_INDEX_INSTANCES).as(Boolean.class, true);
+			int parserThreads = getParameter(PARAM_PARSER_THREADS).as(Integer.class, 1);
 			int featuresPerRequest;
 			if (paginateRequest) {
 				featuresPerRequest = getParameter(PARAM_FEATURES_PER_WFS_REQUEST).as(Integer.class,
@@ -140,7 +160,7 @@ public class StreamGmlReader extends AbstractInstanceReader {
 			else {
 				instances = new GmlInstanceCollection(getSource(), getSourceSchema(),
 						restrictToFeatures, ignoreRoot, strict, ignoreNamespaces, getCrsProvider(),
-						this);
+						this, indexInstances, parserThreads);
 			}
 
 			// TODO any kind of analysis on file? e.g. types and size - would
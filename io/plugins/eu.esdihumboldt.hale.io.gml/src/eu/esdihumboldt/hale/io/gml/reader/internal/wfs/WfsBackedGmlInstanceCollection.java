@@ -410,7 +410,7 @@ public class WfsBackedGmlInstanceCollection implements InstanceCollection {
 
 			currentCollection = new GmlInstanceCollection(new DefaultInputSupplier(nextUri),
 					sourceSchema, restrictToFeatures, ignoreRoot, strict, ignoreNamespaces,
-					crsProvider, ioProvider);
+					crsProvider, ioProvider, false);
 			iterator = currentCollection.iterator();
 
 			// Make sure root element is processed by the iterator
@@ -0,0 +1,734 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.gml.writer.internal;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * XML stream writer that declares the namespaces bound with
+ * {@link #setPrefix(String, String)} before the first element on that
+ * element, and then writes elements and attributes with these prefixes
+ * without any further namespace bookkeeping. Only namespaces that were not
+ * bound in advance are repaired, i.e. declared with a prefix on the element
+ * they are used on.<br>
+ * <br>
+ * The document is written to a buffered character stream, characters that
+ * cannot be represented in the encoding are written as character
+ * references.
+ * 
+ * @author Simon Templer
+ */
+public class PrefixedXMLStreamWriter implements XMLStreamWriter {
+
+	private static final String REPAIRING_NAMESPACES = "javax.xml.stream.isRepairingNamespaces";
+
+	private static final String GENERATED_PREFIX = "ns";
+
+	private final Writer out;
+
+	private final String encoding;
+
+	/**
+	 * Encoder to check if characters can be represented in the encoding,
+	 * <code>null</code> if the encoding supports all characters.
+	 */
+	private final CharsetEncoder encoder;
+
+	/**
+	 * Namespaces mapped to the prefixes they are bound to.
+	 */
+	private final Map<String, String> prefixes = new HashMap<>();
+
+	/**
+	 * Prefixes mapped to the namespaces they are bound to, the empty prefix
+	 * represents the default namespace.
+	 */
+	private final Map<String, String> namespaces = new HashMap<>();
+
+	/**
+	 * Bindings to declare on the first element.
+	 */
+	private final Map<String, String> rootDeclarations = new LinkedHashMap<>();
+
+	/**
+	 * Prefixes to use for namespaces that are repaired.
+	 */
+	private final Map<String, String> preferredPrefixes = new HashMap<>();
+
+	/**
+	 * Bindings replaced by declarations on the open elements, to be restored
+	 * when the elements end. Each entry holds the prefix, the namespace, the
+	 * namespace previously bound to the prefix and the prefix previously
+	 * bound to the namespace.
+	 */
+	private final List<String[]> replacedBindings = new ArrayList<>();
+
+	private NamespaceContext rootContext;
+
+	private String[] elementPrefixes = new String[32];
+
+	private String[] elementNames = new String[32];
+
+	/**
+	 * The number of replaced bindings before each open element.
+	 */
+	private int[] bindingMarks = new int[32];
+
+	/**
+	 * The number of open elements.
+	 */
+	private int depth = 0;
+
+	private boolean rootWritten = false;
+
+	private boolean startTagOpen = false;
+
+	private boolean emptyElement = false;
+
+	private int generatedPrefixes = 0;
+
+	/**
+	 * Create a XML stream writer.
+	 * 
+	 * @param out the output stream, it is not closed when the writer is
+	 *            closed
+	 * @param charset the character encoding
+	 */
+	public PrefixedXMLStreamWriter(OutputStream out, Charset charset) {
+		super();
+		this.out = new BufferedWriter(new OutputStreamWriter(out, charset), 32768);
+		this.encoding = charset.name();
+		this.encoder = (charset.name().startsWith("UTF")) ? (null) : (charset.newEncoder());
+	}
+
+	@Override
+	public void writeStartElement(String localName) throws XMLStreamException {
+		startElement(null, XMLConstants.NULL_NS_URI, localName, false);
+	}
+
+	@Override
+	public void writeStartElement(String namespaceURI, String localName)
+			throws XMLStreamException {
+		startElement(null, namespaceURI, localName, false);
+	}
+
+	@Override
+	public void writeStartElement(String prefix, String localName, String namespaceURI)
+			throws XMLStreamException {
+		startElement(prefix, namespaceURI, localName, false);
+	}
+
+	@Override
+	public void writeEmptyElement(String localName) throws XMLStreamException {
+		startElement(null, XMLConstants.NULL_NS_URI, localName, true);
+	}
+
+	@Override
+	public void writeEmptyElement(String namespaceURI, String localName)
+			throws XMLStreamException {
+		startElement(null, namespaceURI, localName, true);
+	}
+
+	@Override
+	public void writeEmptyElement(String prefix, String localName, String namespaceURI)
+			throws XMLStreamException {
+		startElement(prefix, namespaceURI, localName, true);
+	}
+
+	private void startElement(String prefix, String namespaceURI, String localName,
+			boolean empty) throws XMLStreamException {
+		closeStartTag();
+
+		pushElement();
+		String ns = (namespaceURI == null) ? (XMLConstants.NULL_NS_URI) : (namespaceURI);
+
+		// determine the prefix, declare the namespace if needed
+		String declare = null;
+		if (prefix != null && !ns.isEmpty()) {
+			if (!ns.equals(namespaces.get(prefix))) {
+				bind(prefix, ns);
+				declare = prefix;
+			}
+		}
+		else if (ns.isEmpty()) {
+			prefix = XMLConstants.DEFAULT_NS_PREFIX;
+			String defaultNamespace = namespaces.get(prefix);
+			if (defaultNamespace != null && !defaultNamespace.isEmpty()) {
+				// undeclare the default namespace
+				bind(prefix, ns);
+				declare = prefix;
+			}
+		}
+		else {
+			prefix = getBoundPrefix(ns);
+			if (prefix == null) {
+				prefix = createPrefix(ns);
+				bind(prefix, ns);
+				declare = prefix;
+			}
+		}
+
+		elementPrefixes[depth - 1] = prefix;
+		elementNames[depth - 1] = localName;
+
+		try {
+			out.write('<');
+			writeName(prefix, localName);
+			startTagOpen = true;
+			emptyElement = empty;
+
+			if (!rootWritten) {
+				rootWritten = true;
+				for (Entry<String, String> binding : rootDeclarations.entrySet()) {
+					if (!binding.getKey().equals(declare)) {
+						writeDeclaration(binding.getKey(), binding.getValue());
+					}
+				}
+				rootDeclarations.clear();
+			}
+			if (declare != null) {
+				writeDeclaration(declare, ns);
+			}
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	@Override
+	public void writeEndElement() throws XMLStreamException {
+		closeStartTag();
+		if (depth == 0) {
+			throw new XMLStreamException("No element to end");
+		}
+
+		try {
+			out.write("</");
+			writeName(elementPrefixes[depth - 1], elementNames[depth - 1]);
+			out.write('>');
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+		popElement();
+	}
+
+	@Override
+	public void writeEndDocument() throws XMLStreamException {
+		while (depth > 0) {
+			writeEndElement();
+		}
+		closeStartTag();
+	}
+
+	@Override
+	public void close() throws XMLStreamException {
+		flush();
+	}
+
+	@Override
+	public void flush() throws XMLStreamException {
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	@Override
+	public void writeAttribute(String localName, String value) throws XMLStreamException {
+		writeAttribute(null, XMLConstants.NULL_NS_URI, localName, value);
+	}
+
+	@Override
+	public void writeAttribute(String namespaceURI, String localName, String value)
+			throws XMLStreamException {
+		writeAttribute(null, namespaceURI, localName, value);
+	}
+
+	@Override
+	public void writeAttribute(String prefix, String namespaceURI, String localName, String value)
+			throws XMLStreamException {
+		checkStartTagOpen();
+
+		try {
+			String attributePrefix = XMLConstants.DEFAULT_NS_PREFIX;
+			if (namespaceURI != null && !namespaceURI.isEmpty()) {
+				if (prefix != null && !prefix.isEmpty()) {
+					attributePrefix = prefix;
+					if (!namespaceURI.equals(namespaces.get(prefix))) {
+						bind(prefix, namespaceURI);
+						writeDeclaration(prefix, namespaceURI);
+					}
+				}
+				else {
+					// attributes need a prefix to be in a namespace
+					attributePrefix = getBoundPrefix(namespaceURI);
+					if (attributePrefix == null || attributePrefix.isEmpty()) {
+						attributePrefix = createPrefix(namespaceURI);
+						bind(attributePrefix, namespaceURI);
+						writeDeclaration(attributePrefix, namespaceURI);
+					}
+				}
+			}
+
+			out.write(' ');
+			writeName(attributePrefix, localName);
+			out.write("=\"");
+			if (value != null) {
+				writeEscaped(value, true);
+			}
+			out.write('"');
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	@Override
+	public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+		if (prefix == null || prefix.isEmpty() || XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+			writeDefaultNamespace(namespaceURI);
+			return;
+		}
+		checkStartTagOpen();
+
+		String ns = (namespaceURI == null) ? (XMLConstants.NULL_NS_URI) : (namespaceURI);
+		if (!ns.equals(namespaces.get(prefix))) {
+			bind(prefix, ns);
+			try {
+				writeDeclaration(prefix, ns);
+			} catch (IOException e) {
+				throw new XMLStreamException(e);
+			}
+		}
+	}
+
+	@Override
+	public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+		checkStartTagOpen();
+
+		String ns = (namespaceURI == null) ? (XMLConstants.NULL_NS_URI) : (namespaceURI);
+		String current = namespaces.get(XMLConstants.DEFAULT_NS_PREFIX);
+		if (!ns.equals((current == null) ? (XMLConstants.NULL_NS_URI) : (current))) {
+			bind(XMLConstants.DEFAULT_NS_PREFIX, ns);
+			try {
+				writeDeclaration(XMLConstants.DEFAULT_NS_PREFIX, ns);
+			} catch (IOException e) {
+				throw new XMLStreamException(e);
+			}
+		}
+	}
+
+	@Override
+	public void writeComment(String data) throws XMLStreamException {
+		closeStartTag();
+		try {
+			out.write("<!--");
+			out.write(data);
+			out.write("-->");
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	@Override
+	public void writeProcessingInstruction(String target) throws XMLStreamException {
+		writeProcessingInstruction(target, null);
+	}
+
+	@Override
+	public void writeProcessingInstruction(String target, String data)
+			throws XMLStreamException {
+		closeStartTag();
+		try {
+			out.write("<?");
+			out.write(target);
+			if (data != null) {
+				out.write(' ');
+				out.write(data);
+			}
+			out.write("?>");
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	@Override
+	public void writeCData(String data) throws XMLStreamException {
+		closeStartTag();
+		try {
+			out.write("<![CDATA[");
+			// split sections containing the end marker
+			out.write(data.replace("]]>", "]]]]><![CDATA[>"));
+			out.write("]]>");
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	@Override
+	public void writeDTD(String dtd) throws XMLStreamException {
+		try {
+			out.write(dtd);
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	@Override
+	public void writeEntityRef(String name) throws XMLStreamException {
+		closeStartTag();
+		try {
+			out.write('&');
+			out.write(name);
+			out.write(';');
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	@Override
+	public void writeStartDocument() throws XMLStreamException {
+		writeStartDocument(encoding, "1.0");
+	}
+
+	@Override
+	public void writeStartDocument(String version) throws XMLStreamException {
+		writeStartDocument(encoding, version);
+	}
+
+	@Override
+	public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+		try {
+			out.write("<?xml version=\"");
+			out.write((version == null) ? ("1.0") : (version));
+			out.write('"');
+			if (encoding != null) {
+				out.write(" encoding=\"");
+				out.write(encoding);
+				out.write('"');
+			}
+			out.write("?>");
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	@Override
+	public void writeCharacters(String text) throws XMLStreamException {
+		closeStartTag();
+		try {
+			writeEscaped(text, false);
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	@Override
+	public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+		writeCharacters(new String(text, start, len));
+	}
+
+	@Override
+	public String getPrefix(String uri) throws XMLStreamException {
+		return getBoundPrefix(uri);
+	}
+
+	/**
+	 * Binds a prefix to a namespace. Bindings made before the first element
+	 * are declared on the first element, bindings made later are used if the
+	 * namespace has to be declared.
+	 * 
+	 * @see XMLStreamWriter#setPrefix(String, String)
+	 */
+	@Override
+	public void setPrefix(String prefix, String uri) throws XMLStreamException {
+		if (prefix == null || uri == null || XMLConstants.XML_NS_PREFIX.equals(prefix)
+				|| XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+			return;
+		}
+
+		if (!rootWritten) {
+			if (prefix.isEmpty() && uri.isEmpty()) {
+				// no default namespace
+				if (rootDeclarations.remove(prefix) != null) {
+					namespaces.remove(prefix);
+				}
+				return;
+			}
+			String previous = namespaces.put(prefix, uri);
+			if (previous != null && prefix.equals(prefixes.get(previous))) {
+				prefixes.remove(previous);
+			}
+			prefixes.put(uri, prefix);
+			rootDeclarations.put(prefix, uri);
+		}
+		else if (!prefix.isEmpty()) {
+			preferredPrefixes.put(uri, prefix);
+		}
+	}
+
+	@Override
+	public void setDefaultNamespace(String uri) throws XMLStreamException {
+		setPrefix(XMLConstants.DEFAULT_NS_PREFIX,
+				(uri == null) ? (XMLConstants.NULL_NS_URI) : (uri));
+	}
+
+	@Override
+	public void setNamespaceContext(NamespaceContext context) throws XMLStreamException {
+		this.rootContext = context;
+	}
+
+	@Override
+	public NamespaceContext getNamespaceContext() {
+		return new NamespaceContext() {
+
+			@Override
+			public String getNamespaceURI(String prefix) {
+				if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+					return XMLConstants.XML_NS_URI;
+				}
+				if (XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+					return XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+				}
+				return namespaces.get(prefix);
+			}
+
+			@Override
+			public String getPrefix(String namespaceURI) {
+				return getBoundPrefix(namespaceURI);
+			}
+
+			@Override
+			public Iterator<String> getPrefixes(String namespaceURI) {
+				String prefix = getBoundPrefix(namespaceURI);
+				if (prefix == null) {
+					return Collections.<String> emptyList().iterator();
+				}
+				return Collections.singletonList(prefix).iterator();
+			}
+		};
+	}
+
+	@Override
+	public Object getProperty(String name) throws IllegalArgumentException {
+		if (REPAIRING_NAMESPACES.equals(name)) {
+			return Boolean.TRUE;
+		}
+		throw new IllegalArgumentException("Property not supported: " + name);
+	}
+
+	/**
+	 * Get the prefix bound to the given namespace.
+	 * 
+	 * @param namespaceURI the namespace
+	 * @return the prefix or <code>null</code> if no prefix is bound to the
+	 *         namespace
+	 */
+	private String getBoundPrefix(String namespaceURI) {
+		String prefix = prefixes.get(namespaceURI);
+		if (prefix != null && namespaceURI.equals(namespaces.get(prefix))) {
+			return prefix;
+		}
+		return null;
+	}
+
+	/**
+	 * Create a prefix for a namespace that was not bound in advance.
+	 * 
+	 * @param namespaceURI the namespace
+	 * @return a prefix that is not bound yet
+	 */
+	private String createPrefix(String namespaceURI) {
+		String prefix = preferredPrefixes.get(namespaceURI);
+		if (prefix == null && rootContext != null) {
+			prefix = rootContext.getPrefix(namespaceURI);
+		}
+		if (prefix != null && !prefix.isEmpty() && !namespaces.containsKey(prefix)) {
+			return prefix;
+		}
+
+		do {
+			prefix = GENERATED_PREFIX + (++generatedPrefixes);
+		} while (namespaces.containsKey(prefix));
+		return prefix;
+	}
+
+	/**
+	 * Bind a prefix to a namespace in the scope of the current element.
+	 * 
+	 * @param prefix the prefix
+	 * @param namespaceURI the namespace
+	 */
+	private void bind(String prefix, String namespaceURI) {
+		String previousNamespace = namespaces.put(prefix, namespaceURI);
+		String previousPrefix = prefixes.put(namespaceURI, prefix);
+		replacedBindings
+				.add(new String[] { prefix, namespaceURI, previousNamespace, previousPrefix });
+	}
+
+	private void pushElement() {
+		if (depth == elementNames.length) {
+			elementPrefixes = Arrays.copyOf(elementPrefixes, depth * 2);
+			elementNames = Arrays.copyOf(elementNames, depth * 2);
+			bindingMarks = Arrays.copyOf(bindingMarks, depth * 2);
+		}
+		bindingMarks[depth] = replacedBindings.size();
+		depth++;
+	}
+
+	private void popElement() {
+		depth--;
+		elementPrefixes[depth] = null;
+		elementNames[depth] = null;
+
+		// restore the bindings replaced in the element
+		int mark = bindingMarks[depth];
+		for (int i = replacedBindings.size() - 1; i >= mark; i--) {
+			String[] binding = replacedBindings.remove(i);
+			restore(namespaces, binding[0], binding[2]);
+			restore(prefixes, binding[1], binding[3]);
+		}
+	}
+
+	private static void restore(Map<String, String> map, String key, String previous) {
+		if (previous == null) {
+			map.remove(key);
+		}
+		else {
+			map.put(key, previous);
+		}
+	}
+
+	private void closeStartTag() throws XMLStreamException {
+		if (startTagOpen) {
+			startTagOpen = false;
+			try {
+				if (emptyElement) {
+					out.write("/>");
+				}
+				else {
+					out.write('>');
+				}
+			} catch (IOException e) {
+				throw new XMLStreamException(e);
+			}
+			if (emptyElement) {
+				emptyElement = false;
+				popElement();
+			}
+		}
+	}
+
+	private void checkStartTagOpen() throws XMLStreamException {
+		if (!startTagOpen) {
+			throw new XMLStreamException("Attributes and namespaces can only be written "
+					+ "directly after a start element");
+		}
+	}
+
+	private void writeName(String prefix, String localName) throws IOException {
+		if (prefix != null && !prefix.isEmpty()) {
+			out.write(prefix);
+			out.write(':');
+		}
+		out.write(localName);
+	}
+
+	private void writeDeclaration(String prefix, String namespaceURI) throws IOException {
+		out.write(' ');
+		out.write(XMLConstants.XMLNS_ATTRIBUTE);
+		if (!prefix.isEmpty()) {
+			out.write(':');
+			out.write(prefix);
+		}
+		out.write("=\"");
+		writeEscaped(namespaceURI, true);
+		out.write('"');
+	}
+
+	/**
+	 * Write text escaping markup characters and characters that cannot be
+	 * represented in the encoding.
+	 * 
+	 * @param text the text to write
+	 * @param attribute if the text is an attribute value
+	 * @throws IOException if writing the text fails
+	 */
+	private void writeEscaped(String text, boolean attribute) throws IOException {
+		int start = 0;
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			String replacement;
+			switch (c) {
+			case '&':
+				replacement = "&amp;";
+				break;
+			case '<':
+				replacement = "&lt;";
+				break;
+			case '>':
+				replacement = "&gt;";
+				break;
+			case '"':
+				replacement = (attribute) ? ("&quot;") : (null);
+				break;
+			default:
+				replacement = null;
+				if (c >= 0x80 && encoder != null && !encoder.canEncode(c)) {
+					int codePoint = c;
+					if (Character.isHighSurrogate(c) && i + 1 < length
+							&& Character.isLowSurrogate(text.charAt(i + 1))) {
+						codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+					}
+					out.write(text, start, i - start);
+					out.write("&#");
+					out.write(Integer.toString(codePoint));
+					out.write(';');
+					i += Character.charCount(codePoint) - 1;
+					start = i + 1;
+					continue;
+				}
+			}
+			if (replacement != null) {
+				out.write(text, start, i - start);
+				out.write(replacement);
+				start = i + 1;
+			}
+		}
+		out.write(text, start, length - start);
+	}
+
+}
@@ -141,6 +141,14 @@ public class StreamGmlWriter extends AbstractGeoInstanceWriter
 	 */
 	public static final String PARAM_GEOMETRY_FORMAT = "geometry.write.decimalFormat";
 
+	/**
+	 * The parameter name for the flag specifying if the namespaces of the
+	 * target schema should be declared on the root element, and elements
+	 * written with these prefixes without further namespace repairing.
+	 * Defaults to <code>true</code>.
+	 */
+	public static final String PARAM_DECLARE_NAMESPACES_ON_ROOT = "xml.namespaces.declareOnRoot";
+
 	/**
 	 * The XML stream writer
 	 */
@@ -379,14 +387,22 @@ public class StreamGmlWriter extends AbstractGeoInstanceWriter
 		additionalSchemaPrefixes.clear();
 
 		// create and set-up a writer
-		XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
-		// will set namespaces if these not set explicitly
-		outputFactory.setProperty("javax.xml.stream.isRepairingNamespaces", //$NON-NLS-1$
-				Boolean.valueOf(true));
-		// create XML stream writer with UTF-8 encoding
 		OutputStream outStream = getTarget().getOutput();
-		XMLStreamWriter tmpWriter = outputFactory.createXMLStreamWriter(outStream,
-				getCharset().name()); // $NON-NLS-1$
+		XMLStreamWriter tmpWriter;
+		if (isDeclareNamespacesOnRoot()) {
+			// namespaces bound before the root element are declared on it,
+			// only other namespaces are repaired
+			tmpWriter = new PrefixedXMLStreamWriter(outStream, getCharset());
+		}
+		else {
+			XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+			// will set namespaces if these not set explicitly
+			outputFactory.setProperty("javax.xml.stream.isRepairingNamespaces", //$NON-NLS-1$
+					Boolean.valueOf(true));
+			// create XML stream writer with UTF-8 encoding
+			tmpWriter = outputFactory.createXMLStreamWriter(outStream,
+					getCharset().name()); // $NON-NLS-1$
+		}
 
 		String defNamespace = null;
 
@@ -492,6 +508,26 @@ public class StreamGmlWriter extends AbstractGeoInstanceWriter
 		setParameter(PARAM_PRETTY_PRINT, Value.of(prettyPrint));
 	}
 
+	/**
+	 * @return if the namespaces of the target schema should be declared on
+	 *         the root element
+	 */
+	public boolean isDeclareNamespacesOnRoot() {
+		return getParameter(PARAM_DECLARE_NAMESPACES_ON_ROOT).as(Boolean.class, true);
+	}
+
+	/**
+	 * Set if the namespaces of the target schema should be declared on the
+	 * root element. Otherwise namespaces are declared by the namespace
+	 * repairing writer of the StAX implementation where they are used.
+	 * 
+	 * @param declareOnRoot <code>true</code> if the namespaces should be
+	 *            declared on the root element, <code>false</code> otherwise
+	 */
+	public void setDeclareNamespacesOnRoot(boolean declareOnRoot) {
+		setParameter(PARAM_DECLARE_NAMESPACES_ON_ROOT, Value.of(declareOnRoot));
+	}
+
 	/**
 	 * @return geometry write format
 	 */
@@ -233,16 +233,9 @@ public abstract class AbstractGeometryWriter<T extends Geometry> extends Abstrac
 
 			// write coordinates separated by spaces
 			if (coordinates.length > 0) {
-				Coordinate coordinate = coordinates[0];
-
-				writer.writeCharacters(NumberFormatter.formatTo(coordinate.x, decimalFormatter));
-				writer.writeCharacters(" "); //$NON-NLS-1$
-				writer.writeCharacters(NumberFormatter.formatTo(coordinate.y, decimalFormatter));
-				if (!Double.isNaN(coordinate.z)) {
-					writer.writeCharacters(" "); //$NON-NLS-1$
-					writer.writeCharacters(
-							NumberFormatter.formatTo(coordinate.z, decimalFormatter));
-				}
+				StringBuilder text = new StringBuilder();
+				appendCoordinate(text, coordinates[0], ' ', decimalFormatter);
+				writer.writeCharacters(text.toString());
 			}
 
 			writer.writeEndElement();
@@ -269,8 +262,8 @@ public abstract class AbstractGeometryWriter<T extends Geometry> extends Abstrac
 			TypeDefinition elementType, String gmlNs, DecimalFormat decimalFormatter)
 					throws XMLStreamException {
 		PropertyDefinition listAttribute = null;
-		String delimiter = " "; //$NON-NLS-1$
-		String setDelimiter = " "; //$NON-NLS-1$
+		char delimiter = ' ';
+		char setDelimiter = ' ';
 
 		// check for DirectPositionListType
 		for (PropertyDefinition att : DefinitionUtil.getAllProperties(elementType)) {
@@ -287,7 +280,7 @@ public abstract class AbstractGeometryWriter<T extends Geometry> extends Abstrac
 			for (PropertyDefinition att : DefinitionUtil.getAllProperties(elementType)) {
 				if (att.getPropertyType().getName().equals(new QName(gmlNs, "CoordinatesType"))) { //$NON-NLS-1$
 					listAttribute = att;
-					delimiter = ","; //$NON-NLS-1$
+					delimiter = ',';
 					break;
 				}
 			}
@@ -297,25 +290,15 @@ public abstract class AbstractGeometryWriter<T extends Geometry> extends Abstrac
 			writer.writeStartElement(listAttribute.getName().getNamespaceURI(),
 					listAttribute.getName().getLocalPart());
 
-			boolean first = true;
 			// write coordinates separated by spaces
-			for (Coordinate coordinate : coordinates) {
-				if (first) {
-					first = false;
-				}
-				else {
-					writer.writeCharacters(setDelimiter);
-				}
-
-				writer.writeCharacters(NumberFormatter.formatTo(coordinate.x, decimalFormatter));
-				writer.writeCharacters(delimiter);
-				writer.writeCharacters(NumberFormatter.formatTo(coordinate.y, decimalFormatter));
-				if (!Double.isNaN(coordinate.z)) {
-					writer.writeCharacters(delimiter);
-					writer.writeCharacters(
-							NumberFormatter.formatTo(coordinate.z, decimalFormatter));
+			StringBuilder text = new StringBuilder(coordinates.length * 24);
+			for (int i = 0; i < coordinates.length; i++) {
+				if (i > 0) {
+					text.append(setDelimiter);
 				}
+				appendCoordinate(text, coordinates[i], delimiter, decimalFormatter);
 			}
+			writer.writeCharacters(text.toString());
 
 			writer.writeEndElement();
 			return true;
@@ -325,6 +308,26 @@ public abstract class AbstractGeometryWriter<T extends Geometry> extends Abstrac
 		}
 	}
 
+	/**
+	 * Append the ordinates of a coordinate to a string builder.
+	 * 
+	 * @param text the string builder
+	 * @param coordinate the coordinate
+	 * @param delimiter the delimiter between the ordinates
+	 * @param decimalFormatter a decimal formatter to format geometry
+	 *            coordinates, may be <code>null</code>
+	 */
+	private static void appendCoordinate(StringBuilder text, Coordinate coordinate,
+			char delimiter, DecimalFormat decimalFormatter) {
+		NumberFormatter.appendTo(text, coordinate.x, decimalFormatter);
+		text.append(delimiter);
+		NumberFormatter.appendTo(text, coordinate.y, decimalFormatter);
+		if (!Double.isNaN(coordinate.z)) {
+			text.append(delimiter);
+			NumberFormatter.appendTo(text, coordinate.z, decimalFormatter);
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public boolean accepts(Geometry geometry) {
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.jdbc.postgresql.test;
+
+import static org.junit.Assert.*
+
+import java.sql.Timestamp
+
+import org.junit.Test
+import org.postgis.PGgeometry
+
+import eu.esdihumboldt.hale.io.jdbc.postgresql.CopyBulkInsert
+import ru.yandex.qatools.allure.annotations.Features
+import ru.yandex.qatools.allure.annotations.Stories
+
+/**
+ * Tests for encoding rows for the PostgreSQL <code>COPY</code> command.
+ * 
+ * @author Simon Templer
+ */
+@Features("Databases")
+@Stories("PostgreSQL")
+public class CopyBulkInsertTest {
+
+	/**
+	 * Test encoding simple values, including special characters.
+	 */
+	@Test
+	void testEncodeRow() {
+		StringBuilder buffer = new StringBuilder()
+		CopyBulkInsert.appendRow(buffer, [
+			1,
+			'tab\there',
+			'line\nbreak\r',
+			'back\\slash',
+			null,
+			true,
+			new BigDecimal('12.50')] as Object[])
+
+		assertEquals('1\ttab\\there\tline\\nbreak\\r\tback\\\\slash\t\\N\tt\t12.50\n',
+				buffer.toString())
+	}
+
+	/**
+	 * Test encoding binary and date values.
+	 */
+	@Test
+	void testEncodeBinaryAndDates() {
+		StringBuilder buffer = new StringBuilder()
+		CopyBulkInsert.appendValue(buffer, [0, 15, -1] as byte[])
+		assertEquals('\\\\x000fff', buffer.toString())
+
+		long time = Timestamp.valueOf('2017-03-01 12:30:00').time
+		buffer.setLength(0)
+		CopyBulkInsert.appendValue(buffer, new Date(time))
+		assertEquals('2017-03-01 12:30:00.0', buffer.toString())
+
+		buffer.setLength(0)
+		CopyBulkInsert.appendValue(buffer, new java.sql.Date(time))
+		assertEquals('2017-03-01', buffer.toString())
+	}
+
+	/**
+	 * Test that geometries are encoded as hex EWKB including the SRID.
+	 */
+	@Test
+	void testEncodeGeometry() {
+		StringBuilder buffer = new StringBuilder()
+		CopyBulkInsert.appendValue(buffer, new PGgeometry('SRID=4326;POINT(1 2)'))
+
+		assertEquals('0101000020E6100000000000000000F03F0000000000000040',
+				buffer.toString().toUpperCase())
+	}
+
+	/**
+	 * Test the COPY statement created for a table.
+	 */
+	@Test
+	void testStatement() {
+		CopyBulkInsert insert = new CopyBulkInsert(null, '"public"."roads"', ['id', 'geom'],
+				CopyBulkInsert.DEFAULT_BUFFER_SIZE)
+
+		assertEquals('COPY "public"."roads" ("id", "geom") FROM STDIN', insert.statement)
+
+		// column names that are already quoted
+		insert = new CopyBulkInsert(null, '"public"."roads"', ['id', '"geom"'],
+				CopyBulkInsert.DEFAULT_BUFFER_SIZE)
+
+		assertEquals('COPY "public"."roads" ("id", "geom") FROM STDIN', insert.statement)
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.jdbc.postgresql.test;
+
+import static org.junit.Assert.*
+
+import java.util.function.Supplier
+
+import javax.xml.namespace.QName
+
+import org.junit.Test
+
+import eu.esdihumboldt.hale.common.instance.model.DataSet
+import eu.esdihumboldt.hale.common.instance.model.Instance
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator
+import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstance
+import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstanceCollection
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultTypeDefinition
+import eu.esdihumboldt.hale.io.jdbc.PartitionedInstanceIterator
+import ru.yandex.qatools.allure.annotations.Features
+import ru.yandex.qatools.allure.annotations.Stories
+
+/**
+ * Tests for reading table partitions concurrently.
+ * 
+ * @author Simon Templer
+ */
+@Features("Databases")
+@Stories("PostgreSQL")
+public class PartitionedInstanceIteratorTest {
+
+	private final DefaultTypeDefinition type = new DefaultTypeDefinition(new QName("table"))
+
+	/**
+	 * Test that the instances of all partitions are returned.
+	 */
+	@Test
+	void testMerge() {
+		List<Supplier<ResourceIterator<Instance>>> partitions = (0..<4).collect { int partition ->
+			createPartition(partition * 1000, 1000)
+		}
+
+		Set<Object> values = new HashSet<>()
+		PartitionedInstanceIterator it = new PartitionedInstanceIterator(type, partitions, 10, 'table')
+		try {
+			while (it.hasNext()) {
+				assertEquals(type, it.typePeek())
+				assertTrue(values.add(it.next().value))
+			}
+		} finally {
+			it.close()
+		}
+
+		assertEquals(4000, values.size())
+		assertEquals((0..<4000) as Set, values)
+	}
+
+	/**
+	 * Test that a failure reading a partition is propagated.
+	 */
+	@Test
+	void testFailure() {
+		List<Supplier<ResourceIterator<Instance>>> partitions = [
+			createPartition(0, 100),
+			({ -> throw new IllegalStateException('broken') } as Supplier)
+		]
+
+		PartitionedInstanceIterator it = new PartitionedInstanceIterator(type, partitions, 10, 'table')
+		try {
+			while (it.hasNext()) {
+				it.next()
+			}
+			fail('Expected the failure to be propagated')
+		} catch (IllegalStateException e) {
+			assertEquals('broken', e.cause.message)
+		} finally {
+			it.close()
+		}
+	}
+
+	/**
+	 * Test closing the iterator before all partitions were read.
+	 */
+	@Test
+	void testClose() {
+		List<Supplier<ResourceIterator<Instance>>> partitions = (0..<4).collect { int partition ->
+			createPartition(partition * 1000, 1000)
+		}
+
+		PartitionedInstanceIterator it = new PartitionedInstanceIterator(type, partitions, 10, 'table')
+		assertTrue(it.hasNext())
+		it.next()
+		it.close()
+
+		assertFalse(it.hasNext())
+	}
+
+	private Supplier<ResourceIterator<Instance>> createPartition(int start, int count) {
+		DefaultInstanceCollection instances = new DefaultInstanceCollection()
+		for (int i = start; i < start + count; i++) {
+			DefaultInstance instance = new DefaultInstance(type, DataSet.SOURCE)
+			instance.value = i
+			instances.add(instance)
+		}
+		return { -> instances.iterator() } as Supplier
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.jdbc.postgresql.test
+
+import static org.junit.Assert.*
+
+import javax.xml.namespace.QName
+
+import org.junit.Test
+
+import com.google.common.collect.ArrayListMultimap
+import com.google.common.collect.ListMultimap
+
+import eu.esdihumboldt.cst.ConceptualSchemaTransformer
+import eu.esdihumboldt.hale.common.align.model.ParameterValue
+import eu.esdihumboldt.hale.common.align.model.Type
+import eu.esdihumboldt.hale.common.align.model.functions.RenameFunction
+import eu.esdihumboldt.hale.common.align.model.functions.RetypeFunction
+import eu.esdihumboldt.hale.common.align.model.impl.DefaultAlignment
+import eu.esdihumboldt.hale.common.align.model.impl.DefaultCell
+import eu.esdihumboldt.hale.common.align.model.impl.DefaultType
+import eu.esdihumboldt.hale.common.align.model.impl.TypeEntityDefinition
+import eu.esdihumboldt.hale.common.align.service.FunctionService
+import eu.esdihumboldt.hale.common.align.service.TransformationFunctionService
+import eu.esdihumboldt.hale.common.align.service.impl.AlignmentFunctionService
+import eu.esdihumboldt.hale.common.align.service.impl.AlignmentTransformationFunctionService
+import eu.esdihumboldt.hale.common.align.transformation.report.TransformationReport
+import eu.esdihumboldt.hale.common.align.transformation.service.impl.DefaultInstanceSink
+import eu.esdihumboldt.hale.common.align.transformation.service.impl.ThreadSafeInstanceSink
+import eu.esdihumboldt.hale.common.core.io.impl.NullProgressIndicator
+import eu.esdihumboldt.hale.common.core.service.ServiceManager
+import eu.esdihumboldt.hale.common.core.service.ServiceProvider
+import eu.esdihumboldt.hale.common.filter.FilterGeoCqlImpl
+import eu.esdihumboldt.hale.common.instance.model.Instance
+import eu.esdihumboldt.hale.common.schema.SchemaSpaceID
+import eu.esdihumboldt.hale.common.schema.model.Schema
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition
+import eu.esdihumboldt.hale.common.test.TestUtil
+import eu.esdihumboldt.hale.io.jdbc.test.AbstractDBTest
+import eu.esdihumboldt.hale.io.jdbc.test.DBConfigInstance
+import groovy.sql.Sql
+import ru.yandex.qatools.allure.annotations.Features
+import ru.yandex.qatools.allure.annotations.Stories
+
+/**
+ * Tests a Retype with a condition on a database table as source.
+ * 
+ * @author Simon Templer
+ */
+@Features("Databases")
+@Stories("PostgreSQL")
+class RetypeConditionIT extends AbstractDBTest {
+
+	private static final TABLE_PARCELS = '''CREATE TABLE parcels
+		(
+		  id integer NOT NULL,
+		  status character varying,
+		  area double precision,
+		  CONSTRAINT parcels_pkey PRIMARY KEY (id)
+		);'''
+
+	public RetypeConditionIT() {
+		super(new DBConfigInstance("postgis", RetypeConditionIT.class.getClassLoader()))
+	}
+
+	/**
+	 * Test that only the instances matching the condition of the Retype are
+	 * transformed and that the condition is evaluated in the database.
+	 */
+	@Test
+	void testRetypeCondition() {
+		TestUtil.startConversionService()
+
+		Sql sql = new Sql(waitForConnection())
+		try {
+			sql.execute TABLE_PARCELS
+			for (i in 1..20) {
+				sql.execute('INSERT INTO parcels (id, status, area) VALUES (?, ?, ?)',
+						[i, (i % 4 == 0) ? 'ACTIVE' : 'RETIRED', i * 10d])
+			}
+		}
+		finally {
+			sql.close()
+		}
+
+		Schema schema = readSchema()
+		TypeDefinition parcels = schema.getTypes().find { TypeDefinition type ->
+			type.name.localPart == 'parcels'
+		}
+
+		// Retype parcels to themselves, copying the properties
+		DefaultCell cell = new DefaultCell()
+		cell.transformationIdentifier = RetypeFunction.ID
+		ListMultimap<String, Type> source = ArrayListMultimap.create()
+		source.put(null, new DefaultType(new TypeEntityDefinition(parcels, SchemaSpaceID.SOURCE,
+				new FilterGeoCqlImpl("status = 'ACTIVE' AND area > 50"))))
+		cell.source = source
+		ListMultimap<String, Type> target = ArrayListMultimap.create()
+		target.put(null, new DefaultType(new TypeEntityDefinition(parcels, SchemaSpaceID.TARGET,
+				null)))
+		cell.target = target
+		ListMultimap<String, ParameterValue> parameters = ArrayListMultimap.create()
+		parameters.put(RenameFunction.PARAMETER_STRUCTURAL_RENAME, new ParameterValue('true'))
+		cell.transformationParameters = parameters
+		DefaultAlignment alignment = new DefaultAlignment()
+		alignment.addCell(cell)
+
+		Map<Class<?>, Object> customServices = [
+			(FunctionService): new AlignmentFunctionService(alignment),
+			(TransformationFunctionService): new AlignmentTransformationFunctionService(alignment)
+		]
+		ServiceProvider projectScope = new ServiceManager(ServiceManager.SCOPE_PROJECT)
+		ServiceProvider serviceProvider = [
+			getService: { Class<?> serviceInterface ->
+				customServices.containsKey(serviceInterface) ? customServices[serviceInterface] :
+						projectScope.getService(serviceInterface)
+			}
+		] as ServiceProvider
+
+		// transform
+		ThreadSafeInstanceSink<DefaultInstanceSink> sink = new ThreadSafeInstanceSink<>(
+				new DefaultInstanceSink())
+		TransformationReport report = new ConceptualSchemaTransformer().transform(alignment,
+				readInstances(schema), sink, serviceProvider, new NullProgressIndicator())
+
+		assertTrue(report.errors.isEmpty())
+		// the condition is evaluated in the database
+		assertTrue(report.infos.any { it.message.contains('evaluated in database: WHERE') })
+
+		List<Instance> instances = sink.decoratee.instances
+		List<Object> ids = instances.collect { Instance instance ->
+			instance.getProperty(new QName('id'))[0]
+		}
+		assertEquals([8, 12, 16, 20], ids.sort())
+	}
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.jdbc.postgresql.test;
+
+import static org.junit.Assert.*
+
+import javax.xml.namespace.QName
+
+import org.junit.Before
+import org.junit.Test
+
+import com.vividsolutions.jts.geom.Geometry
+
+import eu.esdihumboldt.hale.common.filter.FilterGeoCqlImpl
+import eu.esdihumboldt.hale.common.filter.FilterGeoECqlImpl
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.Binding
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.GeometryType
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultPropertyDefinition
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultTypeDefinition
+import eu.esdihumboldt.hale.io.jdbc.GeometryAdvisor
+import eu.esdihumboldt.hale.io.jdbc.constraints.GeometryMetadata
+import eu.esdihumboldt.hale.io.jdbc.constraints.internal.GeometryAdvisorConstraint
+import eu.esdihumboldt.hale.io.jdbc.filter.SQLFilter
+import eu.esdihumboldt.hale.io.jdbc.filter.SQLFilterTranslator
+import ru.yandex.qatools.allure.annotations.Features
+import ru.yandex.qatools.allure.annotations.Stories
+
+/**
+ * Tests translating CQL/ECQL filters to SQL conditions.
+ * 
+ * @author Simon Templer
+ */
+@Features("Databases")
+@Stories("PostgreSQL")
+public class SQLFilterTranslatorTest {
+
+	private static final NAMESPACE = "jdbc:postgresql:gis:public";
+
+	private SQLFilterTranslator translator
+
+	@Before
+	void createTable() {
+		DefaultTypeDefinition table = new DefaultTypeDefinition(new QName(NAMESPACE, "parcel"))
+
+		DefaultTypeDefinition varchar = new DefaultTypeDefinition(new QName("jdbc:postgresql:gis",
+				"varchar"))
+		varchar.setConstraint(Binding.get(String))
+		DefaultTypeDefinition float8 = new DefaultTypeDefinition(new QName("jdbc:postgresql:gis",
+				"float8"))
+		float8.setConstraint(Binding.get(Double))
+		DefaultTypeDefinition geometry = new DefaultTypeDefinition(new QName("jdbc:postgresql:gis",
+				"geometry"))
+		geometry.setConstraint(Binding.get(Geometry))
+		geometry.setConstraint(GeometryType.get(Geometry))
+		geometry.setConstraint(new GeometryMetadata("4326", 2, null, "EPSG"))
+		// advisor only supporting bounding box conditions
+		geometry.setConstraint(new GeometryAdvisorConstraint([
+			getBBoxCondition: { String column, TypeDefinition type ->
+				"$column && ST_MakeEnvelope(?, ?, ?, ?, 4326)".toString()
+			},
+			getIntersectsCondition: { String column, TypeDefinition type -> null }
+		] as GeometryAdvisor))
+		DefaultTypeDefinition unknownGeometry = new DefaultTypeDefinition(new QName("jdbc:postgresql:gis",
+				"unknown"))
+		unknownGeometry.setConstraint(Binding.get(Geometry))
+		unknownGeometry.setConstraint(GeometryType.get(Geometry))
+
+		table.addChild(new DefaultPropertyDefinition(new QName("status"), table, varchar))
+		table.addChild(new DefaultPropertyDefinition(new QName("area"), table, float8))
+		table.addChild(new DefaultPropertyDefinition(new QName("geom"), table, geometry))
+		table.addChild(new DefaultPropertyDefinition(new QName("other_geom"), table, unknownGeometry))
+
+		translator = new SQLFilterTranslator(table)
+	}
+
+	/**
+	 * Test translating a conjunction of comparisons.
+	 */
+	@Test
+	void testComparisons() {
+		SQLFilter filter = translator.translate(new FilterGeoCqlImpl("status = 'ACTIVE' AND area > 100"))
+
+		assertTrue(filter.complete)
+		assertEquals('("status" = ?) AND ("area" > ?)', filter.condition)
+		assertEquals(2, filter.parameters.size())
+		assertEquals('ACTIVE', filter.parameters[0])
+		assertTrue(filter.parameters[1] == 100)
+		assertEquals('SELECT * FROM parcel WHERE ("status" = ?) AND ("area" > ?)',
+				filter.appendTo('SELECT * FROM parcel'))
+	}
+
+	/**
+	 * Test translating comparisons with the literal first and other
+	 * operators.
+	 */
+	@Test
+	void testOperators() {
+		assertEquals('("area" > ?)', translator.translate(new FilterGeoCqlImpl("100 < area")).condition)
+		assertEquals('("status" <> ? OR "status" IS NULL)',
+				translator.translate(new FilterGeoCqlImpl("status <> 'ACTIVE'")).condition)
+		assertEquals('("area" BETWEEN ? AND ?)',
+				translator.translate(new FilterGeoCqlImpl("area BETWEEN 10 AND 20")).condition)
+		assertEquals('("status" LIKE ?)',
+				translator.translate(new FilterGeoCqlImpl("status LIKE 'ACT%'")).condition)
+		assertEquals('("status" IS NULL)',
+				translator.translate(new FilterGeoCqlImpl("status IS NULL")).condition)
+		assertEquals('(("status" = ?) OR ("status" = ?))',
+				translator.translate(new FilterGeoCqlImpl("status = 'A' OR status = 'B'")).condition)
+	}
+
+	/**
+	 * Test that parts of a filter that cannot be translated are reported.
+	 */
+	@Test
+	void testPartial() {
+		SQLFilter filter = translator.translate(new FilterGeoECqlImpl("status = 'ACTIVE' AND strLength(status) > 3"))
+
+		assertFalse(filter.empty)
+		assertFalse(filter.complete)
+		assertEquals('("status" = ?)', filter.condition)
+		assertEquals(1, filter.untranslated.size())
+
+		// a disjunction can only be translated as a whole
+		filter = translator.translate(new FilterGeoECqlImpl("status = 'ACTIVE' OR strLength(status) > 3"))
+		assertTrue(filter.empty)
+	}
+
+	/**
+	 * Test that filters are not translated if the types don't match or the
+	 * property is not a column.
+	 */
+	@Test
+	void testNotTranslated() {
+		assertTrue(translator.translate(new FilterGeoCqlImpl("area = 'large'")).empty)
+		assertTrue(translator.translate(new FilterGeoCqlImpl("owner = 'me'")).empty)
+		assertTrue(translator.translate(new FilterGeoCqlImpl("NOT (status = 'ACTIVE')")).empty)
+	}
+
+	/**
+	 * Test translating a bounding box filter.
+	 */
+	@Test
+	void testBBox() {
+		SQLFilter filter = translator.translate(new FilterGeoCqlImpl("BBOX(geom, 1, 2, 3, 4)"))
+
+		assertTrue(filter.complete)
+		assertEquals('("geom" && ST_MakeEnvelope(?, ?, ?, ?, 4326))', filter.condition)
+		assertEquals([1d, 2d, 3d, 4d], filter.parameters)
+
+		// no geometry advisor
+		assertTrue(translator.translate(new FilterGeoCqlImpl("BBOX(other_geom, 1, 2, 3, 4)")).empty)
+		// advisor does not support intersects
+		assertTrue(translator.translate(new FilterGeoCqlImpl("INTERSECTS(geom, POINT(1 2))")).empty)
+	}
+
+	/**
+	 * Test that bounding box filters are only translated if they use the CRS
+	 * of the geometry column.
+	 */
+	@Test
+	void testBBoxCRS() {
+		SQLFilter filter = translator.translate(new FilterGeoCqlImpl("BBOX(geom, 1, 2, 3, 4, 'EPSG:4326')"))
+		assertTrue(filter.complete)
+		assertEquals('("geom" && ST_MakeEnvelope(?, ?, ?, ?, 4326))', filter.condition)
+
+		filter = translator.translate(new FilterGeoCqlImpl("BBOX(geom, 1, 2, 3, 4, 'urn:ogc:def:crs:EPSG::4326')"))
+		assertTrue(filter.complete)
+
+		// different CRS is evaluated on the instances
+		assertTrue(translator.translate(new FilterGeoCqlImpl("BBOX(geom, 1, 2, 3, 4, 'EPSG:3857')")).empty)
+	}
+}
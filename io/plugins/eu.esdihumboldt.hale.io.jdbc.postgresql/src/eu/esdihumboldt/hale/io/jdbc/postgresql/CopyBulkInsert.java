@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.jdbc.postgresql;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import org.postgis.PGgeometry;
+import org.postgis.binary.BinaryWriter;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.util.PGobject;
+
+import eu.esdihumboldt.hale.io.jdbc.JDBCUtil;
+import eu.esdihumboldt.hale.io.jdbc.extension.BulkInsert;
+
+/**
+ * Bulk insert using the PostgreSQL <code>COPY</code> command in text format.
+ * Rows are buffered and sent with a single <code>COPY</code> per buffer, so
+ * the connection is not blocked between flushes. Geometries are transferred
+ * as hex encoded EWKB.
+ * 
+ * @author Simon Templer
+ */
+public class CopyBulkInsert implements BulkInsert {
+
+	/**
+	 * The default number of characters to buffer before sending them to the
+	 * database.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 4 * 1024 * 1024;
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final CopyManager copyManager;
+
+	private final String sql;
+
+	private final int bufferSize;
+
+	private final StringBuilder buffer = new StringBuilder();
+
+	/**
+	 * Create a bulk insert for a table.
+	 * 
+	 * @param copyManager the copy manager of the connection
+	 * @param tableName the full table name
+	 * @param columns the column names
+	 * @param bufferSize the number of characters to buffer before sending
+	 *            them to the database
+	 */
+	public CopyBulkInsert(CopyManager copyManager, String tableName, List<String> columns,
+			int bufferSize) {
+		super();
+		this.copyManager = copyManager;
+		this.bufferSize = bufferSize;
+
+		StringBuilder copy = new StringBuilder("COPY ");
+		copy.append(tableName).append(" (");
+		boolean first = true;
+		for (String column : columns) {
+			if (first)
+				first = false;
+			else
+				copy.append(", ");
+			copy.append(JDBCUtil.quote(column));
+		}
+		copy.append(") FROM STDIN");
+		this.sql = copy.toString();
+	}
+
+	/**
+	 * @return the <code>COPY</code> statement used to insert the rows
+	 */
+	public String getStatement() {
+		return sql;
+	}
+
+	@Override
+	public void addRow(Object[] values) throws SQLException {
+		appendRow(buffer, values);
+		if (buffer.length() >= bufferSize) {
+			flush();
+		}
+	}
+
+	@Override
+	public void flush() throws SQLException {
+		if (buffer.length() == 0) {
+			return;
+		}
+
+		try {
+			copyManager.copyIn(sql, new StringReader(buffer.toString()));
+		} catch (IOException e) {
+			throw new SQLException("Sending rows to the database failed", e);
+		} finally {
+			buffer.setLength(0);
+		}
+	}
+
+	/**
+	 * Append a row in the text format of the <code>COPY</code> command.
+	 * 
+	 * @param buffer the buffer to append the row to
+	 * @param values the column values
+	 */
+	public static void appendRow(StringBuilder buffer, Object[] values) {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				buffer.append('\t');
+			}
+			appendValue(buffer, values[i]);
+		}
+		buffer.append('\n');
+	}
+
+	/**
+	 * Append a value in the text format of the <code>COPY</code> command.
+	 * 
+	 * @param buffer the buffer to append the value to
+	 * @param value the value, may be <code>null</code>
+	 */
+	public static void appendValue(StringBuilder buffer, Object value) {
+		if (value == null) {
+			buffer.append("\\N");
+		}
+		else if (value instanceof PGgeometry) {
+			buffer.append(new BinaryWriter().writeHexed(((PGgeometry) value).getGeometry()));
+		}
+		else if (value instanceof PGobject) {
+			String text = ((PGobject) value).getValue();
+			if (text == null) {
+				buffer.append("\\N");
+			}
+			else {
+				appendEscaped(buffer, text);
+			}
+		}
+		else if (value instanceof byte[]) {
+			// bytea hex format, with the backslash escaped
+			buffer.append("\\\\x");
+			for (byte b : (byte[]) value) {
+				buffer.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+			}
+		}
+		else if (value instanceof Boolean) {
+			buffer.append(((Boolean) value) ? 't' : 'f');
+		}
+		else if (value instanceof Date && !(value instanceof java.sql.Date)
+				&& !(value instanceof java.sql.Time) && !(value instanceof Timestamp)) {
+			buffer.append(new Timestamp(((Date) value).getTime()));
+		}
+		else if (value instanceof Calendar) {
+			buffer.append(new Timestamp(((Calendar) value).getTimeInMillis()));
+		}
+		else {
+			appendEscaped(buffer, value.toString());
+		}
+	}
+
+	private static void appendEscaped(StringBuilder buffer, String text) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '\\':
+				buffer.append("\\\\");
+				break;
+			case '\t':
+				buffer.append("\\t");
+				break;
+			case '\n':
+				buffer.append("\\n");
+				break;
+			case '\r':
+				buffer.append("\\r");
+				break;
+			default:
+				buffer.append(c);
+			}
+		}
+	}
+
+}
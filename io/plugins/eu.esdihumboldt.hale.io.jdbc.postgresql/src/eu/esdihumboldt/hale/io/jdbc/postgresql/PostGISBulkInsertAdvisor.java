@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.jdbc.postgresql;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.postgresql.PGConnection;
+
+import eu.esdihumboldt.hale.io.jdbc.extension.BulkInsert;
+import eu.esdihumboldt.hale.io.jdbc.extension.BulkInsertAdvisor;
+
+/**
+ * Bulk insert advisor for PostgreSQL/PostGIS, inserting rows with the
+ * <code>COPY</code> command.
+ * 
+ * @author Simon Templer
+ */
+public class PostGISBulkInsertAdvisor implements BulkInsertAdvisor<PGConnection> {
+
+	@Override
+	public BulkInsert createBulkInsert(PGConnection connection, String tableName,
+			List<String> columns) throws SQLException {
+		return new CopyBulkInsert(connection.getCopyAPI(), tableName, columns,
+				CopyBulkInsert.DEFAULT_BUFFER_SIZE);
+	}
+
+}
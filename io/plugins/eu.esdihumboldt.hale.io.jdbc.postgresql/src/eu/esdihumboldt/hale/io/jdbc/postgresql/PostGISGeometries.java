@@ -220,4 +220,45 @@ public class PostGISGeometries implements GeometryAdvisor<PGConnection> {
 
 		throw new IllegalArgumentException("Only conversion of PGgeometry supported");
 	}
+
+	@Override
+	public String getBBoxCondition(String column, TypeDefinition columnType) {
+		Integer srid = getSrid(columnType);
+		if (srid == null) {
+			return null;
+		}
+
+		// the && operator makes use of a spatial index
+		return column + " && ST_MakeEnvelope(?, ?, ?, ?, " + srid + ")";
+	}
+
+	@Override
+	public String getIntersectsCondition(String column, TypeDefinition columnType) {
+		Integer srid = getSrid(columnType);
+		if (srid == null) {
+			return null;
+		}
+
+		return "ST_Intersects(" + column + ", ST_GeomFromText(?, " + srid + "))";
+	}
+
+	/**
+	 * Determine the SRID of a geometry column.
+	 * 
+	 * @param columnType the type definition of the geometry column
+	 * @return the SRID or <code>null</code> if it is not known
+	 */
+	private Integer getSrid(TypeDefinition columnType) {
+		GeometryMetadata columnTypeMetadata = columnType.getConstraint(GeometryMetadata.class);
+		String authName = columnTypeMetadata.getAuthName();
+		String srs = columnTypeMetadata.getSrs();
+		if (srs != null && authName != null && authName.equals("EPSG")) {
+			try {
+				return Integer.valueOf(srs);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return null;
+	}
 }
@@ -297,4 +297,15 @@ public class SpatiaLiteGeometries implements GeometryAdvisor<SQLiteConnection> {
 
 		return jtsGeom;
 	}
+
+	@Override
+	public String getBBoxCondition(String column, TypeDefinition columnType) {
+		// SpatiaLite predicates yield 1 for true, 0 for false and -1 on error
+		return "MbrIntersects(" + column + ", BuildMbr(?, ?, ?, ?, SRID(" + column + "))) = 1";
+	}
+
+	@Override
+	public String getIntersectsCondition(String column, TypeDefinition columnType) {
+		return "ST_Intersects(" + column + ", GeomFromText(?, SRID(" + column + "))) = 1";
+	}
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import eu.esdihumboldt.hale.io.jdbc.extension.BulkInsert;
+
+/**
+ * Writes rows to a table using a {@link BulkInsert}, optionally committing
+ * after a fixed number of rows. Rows are either inserted in the calling
+ * thread, or handed over to a dedicated writer thread through a bounded
+ * queue. In the latter case the writer should use its own connection, as the
+ * connection is used exclusively by the writer thread.
+ * 
+ * @author Simon Templer
+ */
+public class BulkTableWriter {
+
+	/**
+	 * Marker for the end of the rows to write.
+	 */
+	private static final Object[] END = new Object[0];
+
+	private final String tableName;
+
+	private final BulkInsert insert;
+
+	private final Connection connection;
+
+	private final boolean ownConnection;
+
+	private final int commitInterval;
+
+	private final BlockingQueue<Object[]> queue;
+
+	private final Thread thread;
+
+	private volatile boolean cancelled = false;
+
+	private volatile Throwable failure;
+
+	private long rows = 0;
+
+	private long uncommitted = 0;
+
+	/**
+	 * Create a writer for a table.
+	 * 
+	 * @param tableName the table name
+	 * @param insert the bulk insert for the table
+	 * @param connection the connection the bulk insert was created for
+	 * @param ownConnection if the connection is used only by this writer, in
+	 *            that case it is committed and closed when writing is finished
+	 * @param commitInterval the number of rows after which the transaction is
+	 *            committed, zero or less to not commit while writing
+	 * @param queueSize the maximum number of rows waiting for the writer
+	 *            thread, zero or less to insert rows in the calling thread
+	 */
+	public BulkTableWriter(String tableName, BulkInsert insert, Connection connection,
+			boolean ownConnection, int commitInterval, int queueSize) {
+		super();
+		this.tableName = tableName;
+		this.insert = insert;
+		this.connection = connection;
+		this.ownConnection = ownConnection;
+		this.commitInterval = commitInterval;
+
+		if (queueSize > 0) {
+			queue = new ArrayBlockingQueue<>(queueSize);
+			thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					consume();
+				}
+			}, "Write table " + tableName);
+			thread.setDaemon(true);
+			thread.start();
+		}
+		else {
+			queue = null;
+			thread = null;
+		}
+	}
+
+	/**
+	 * @return the table name
+	 */
+	public String getTableName() {
+		return tableName;
+	}
+
+	/**
+	 * @return if rows are written in a separate thread
+	 */
+	public boolean isThreaded() {
+		return thread != null;
+	}
+
+	/**
+	 * @return the number of rows written so far
+	 */
+	public long getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * Write a row.
+	 * 
+	 * @param values the column values
+	 * @throws SQLException if writing the row or a previous row failed
+	 */
+	public void write(Object[] values) throws SQLException {
+		if (queue == null) {
+			insertRow(values);
+		}
+		else {
+			put(values);
+		}
+	}
+
+	/**
+	 * Write the remaining rows and wait for them to be inserted. If the writer
+	 * has its own connection, the transaction is committed and the connection
+	 * closed.
+	 * 
+	 * @throws SQLException if writing the rows or committing fails
+	 */
+	public void finish() throws SQLException {
+		try {
+			if (queue == null) {
+				complete();
+			}
+			else {
+				put(END);
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					cancel();
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted while writing table " + tableName, e);
+				}
+				checkFailure();
+			}
+		} finally {
+			closeConnection();
+		}
+	}
+
+	/**
+	 * Stop writing. If the writer has its own connection, rows that were not
+	 * committed yet are rolled back and the connection is closed.
+	 */
+	public void cancel() {
+		cancelled = true;
+		if (queue != null) {
+			queue.clear();
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (ownConnection) {
+			try {
+				connection.rollback();
+			} catch (SQLException e) {
+				// ignore
+			}
+		}
+		closeConnection();
+	}
+
+	private void consume() {
+		try {
+			while (!cancelled) {
+				Object[] values = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (values == END) {
+					complete();
+					return;
+				}
+				else if (values != null) {
+					insertRow(values);
+				}
+			}
+		} catch (Throwable e) {
+			failure = e;
+			queue.clear();
+		}
+	}
+
+	private void put(Object[] values) throws SQLException {
+		try {
+			while (!queue.offer(values, 100, TimeUnit.MILLISECONDS)) {
+				checkFailure();
+				if (cancelled || !thread.isAlive()) {
+					throw new SQLException("Writing table " + tableName + " was stopped");
+				}
+			}
+		} catch (InterruptedException e) {
+			cancel();
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while writing table " + tableName, e);
+		}
+		checkFailure();
+	}
+
+	private void checkFailure() throws SQLException {
+		Throwable e = failure;
+		if (e instanceof SQLException) {
+			throw (SQLException) e;
+		}
+		else if (e != null) {
+			throw new SQLException("Writing table " + tableName + " failed", e);
+		}
+	}
+
+	private void insertRow(Object[] values) throws SQLException {
+		insert.addRow(values);
+		rows++;
+		uncommitted++;
+		if (commitInterval > 0 && uncommitted >= commitInterval) {
+			insert.flush();
+			connection.commit();
+			uncommitted = 0;
+		}
+	}
+
+	private void complete() throws SQLException {
+		insert.flush();
+		if (ownConnection) {
+			connection.commit();
+		}
+	}
+
+	private void closeConnection() {
+		if (ownConnection) {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				// ignore
+			}
+		}
+	}
+
+}
@@ -94,4 +94,37 @@ public interface GeometryAdvisor<C> {
 	public GeometryProperty<?> convertToInstanceGeometry(Object geom, TypeDefinition columnType,
 			C connection, Supplier<CRSDefinition> crsProvider) throws Exception;
 
+	/**
+	 * Get an SQL condition testing if the bounding box of a geometry column
+	 * intersects a given bounding box. The condition is used in the
+	 * <code>WHERE</code> clause of a query, with four parameters for the
+	 * bounding box in the order minimum x, minimum y, maximum x, maximum y.
+	 * 
+	 * @param column the quoted column name
+	 * @param columnType the type definition of the associated geometry column
+	 *            that was previously configured using
+	 *            {@link #configureGeometryColumnType(Object, Column, DefaultTypeDefinition)}
+	 * @return the SQL condition or <code>null</code> if the condition is not
+	 *         supported for the column
+	 */
+	public default String getBBoxCondition(String column, TypeDefinition columnType) {
+		return null;
+	}
+
+	/**
+	 * Get an SQL condition testing if a geometry column intersects a given
+	 * geometry. The condition is used in the <code>WHERE</code> clause of a
+	 * query, with one parameter for the geometry in WKT format.
+	 * 
+	 * @param column the quoted column name
+	 * @param columnType the type definition of the associated geometry column
+	 *            that was previously configured using
+	 *            {@link #configureGeometryColumnType(Object, Column, DefaultTypeDefinition)}
+	 * @return the SQL condition or <code>null</code> if the condition is not
+	 *         supported for the column
+	 */
+	public default String getIntersectsCondition(String column, TypeDefinition columnType) {
+		return null;
+	}
+
 }
@@ -38,6 +38,30 @@ public interface JDBCConstants {
 	 */
 	public static final String PARAM_PASSWORD = "jdbc.password";
 
+	/**
+	 * Parameter name for the maximum number of partitions a table is read in
+	 * concurrently, each on a separate connection
+	 */
+	public static final String PARAM_PARTITIONS = "jdbc.partitions";
+
+	/**
+	 * Parameter name for enabling a database specific bulk insert when writing
+	 * instances, if available for the database
+	 */
+	public static final String PARAM_BULK_INSERT = "jdbc.bulkInsert";
+
+	/**
+	 * Parameter name for the number of rows after which the transaction is
+	 * committed when writing instances
+	 */
+	public static final String PARAM_COMMIT_INTERVAL = "jdbc.commitInterval";
+
+	/**
+	 * Parameter name for the maximum number of tables written concurrently in
+	 * bulk, each by a separate thread on a separate connection
+	 */
+	public static final String PARAM_WRITER_THREADS = "jdbc.writerThreads";
+
 	/**
 	 * Parameter name for the selected schemas. The value is a comma-separated
 	 * list of schema names.
@@ -54,6 +54,7 @@ public class JDBCInstanceReader extends AbstractInstanceReader implements JDBCCo
 
 		addSupportedParameter(PARAM_PASSWORD);
 		addSupportedParameter(PARAM_USER);
+		addSupportedParameter(PARAM_PARTITIONS);
 	}
 
 	@Override
@@ -109,6 +110,7 @@ public class JDBCInstanceReader extends AbstractInstanceReader implements JDBCCo
 
 			String user = getParameter(PARAM_USER).as(String.class);
 			String password = getParameter(PARAM_PASSWORD).as(String.class);
+			int partitions = getParameter(PARAM_PARTITIONS).as(Integer.class, 1);
 
 			Map<TypeDefinition, InstanceCollection> collections = new HashMap<>();
 
@@ -118,7 +120,7 @@ public class JDBCInstanceReader extends AbstractInstanceReader implements JDBCCo
 				// check constraint is a Database table or not?
 				if (type.getConstraint(DatabaseTable.class).isTable()) {
 					collections.put(type, new JDBCTableCollection(type, getSource().getLocation(),
-							user, password, getCrsProvider()) {
+							user, password, getCrsProvider(), partitions) {
 
 						// To provide extensibility for getting customized
 						// database connection for
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.jdbc;
+
+import eu.esdihumboldt.hale.common.instance.model.DataSet;
+import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
+
+/**
+ * Reference to an instance of a database table, based on the primary key of
+ * the table row.
+ * 
+ * @author Simon Templer
+ */
+public class JDBCInstanceReference implements InstanceReference {
+
+	private final DataSet dataSet;
+
+	private final String table;
+
+	private final Object key;
+
+	/**
+	 * Create a reference to a table row.
+	 * 
+	 * @param dataSet the instance data set
+	 * @param table the full name of the table
+	 * @param key the primary key value of the row
+	 */
+	public JDBCInstanceReference(DataSet dataSet, String table, Object key) {
+		super();
+		this.dataSet = dataSet;
+		this.table = table;
+		this.key = key;
+	}
+
+	@Override
+	public DataSet getDataSet() {
+		return dataSet;
+	}
+
+	/**
+	 * @return the full name of the table
+	 */
+	public String getTable() {
+		return table;
+	}
+
+	/**
+	 * @return the primary key value of the row
+	 */
+	public Object getKey() {
+		return key;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((dataSet == null) ? 0 : dataSet.hashCode());
+		result = prime * result + ((key == null) ? 0 : key.hashCode());
+		result = prime * result + ((table == null) ? 0 : table.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		JDBCInstanceReference other = (JDBCInstanceReference) obj;
+		if (dataSet != other.dataSet)
+			return false;
+		if (key == null) {
+			if (other.key != null)
+				return false;
+		}
+		else if (!key.equals(other.key))
+			return false;
+		if (table == null) {
+			if (other.table != null)
+				return false;
+		}
+		else if (!table.equals(other.table))
+			return false;
+		return true;
+	}
+
+}
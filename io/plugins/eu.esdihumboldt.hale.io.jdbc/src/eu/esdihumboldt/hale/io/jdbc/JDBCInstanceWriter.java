@@ -59,6 +59,9 @@ import eu.esdihumboldt.hale.io.jdbc.constraints.DefaultValue;
 import eu.esdihumboldt.hale.io.jdbc.constraints.SQLArray;
 import eu.esdihumboldt.hale.io.jdbc.constraints.SQLType;
 import eu.esdihumboldt.hale.io.jdbc.constraints.internal.GeometryAdvisorConstraint;
+import eu.esdihumboldt.hale.io.jdbc.extension.BulkInsert;
+import eu.esdihumboldt.hale.io.jdbc.extension.BulkInsertAdvisor;
+import eu.esdihumboldt.hale.io.jdbc.extension.internal.BulkInsertAdvisorExtension;
 
 /**
  * Writes instance to a database through a JDBC connection.
@@ -74,10 +77,37 @@ public class JDBCInstanceWriter extends AbstractInstanceWriter implements JDBCCo
 	 */
 	private static final String PARAM_UNORDERED = "unordered";
 
+	/**
+	 * Maximum number of rows waiting to be written by a table writer thread.
+	 */
+	private static final int BULK_QUEUE_SIZE = 1000;
+
+	/**
+	 * Bulk writer for a table and the properties written as its columns.
+	 */
+	private static class BulkTarget {
+
+		private final List<QName> columns;
+
+		private final BulkTableWriter writer;
+
+		public BulkTarget(List<QName> columns, BulkTableWriter writer) {
+			super();
+			this.columns = columns;
+			this.writer = writer;
+		}
+
+	}
+
 	private final Map<TypeDefinition, Map<Object, Long>> typAuto = new HashMap<>();
 
 	private Map<TypeDefinition, Boolean> visitedType;
 
+	@SuppressWarnings("rawtypes")
+	private BulkInsertAdvisor bulkAdvisor;
+
+	private int bulkThreads;
+
 	/**
 	 * Default constructor.
 	 */
@@ -87,6 +117,9 @@ public class JDBCInstanceWriter extends AbstractInstanceWriter implements JDBCCo
 		addSupportedParameter(PARAM_USER);
 		addSupportedParameter(PARAM_PASSWORD);
 		addSupportedParameter(PARAM_UNORDERED);
+		addSupportedParameter(PARAM_BULK_INSERT);
+		addSupportedParameter(PARAM_COMMIT_INTERVAL);
+		addSupportedParameter(PARAM_WRITER_THREADS);
 	}
 
 	@Override
@@ -120,6 +153,10 @@ public class JDBCInstanceWriter extends AbstractInstanceWriter implements JDBCCo
 				return reporter;
 			}
 
+			// determine if rows can be inserted in bulk
+			bulkAdvisor = (isBulkInsert())
+					? (BulkInsertAdvisorExtension.getInstance().getAdvisor(connection)) : (null);
+
 			if (isWriteUnordered()) {
 				// write instances as they come in
 				writeInstances(connection, instances, progress, reporter);
@@ -167,6 +204,31 @@ public class JDBCInstanceWriter extends AbstractInstanceWriter implements JDBCCo
 		return getParameter(PARAM_UNORDERED).as(Boolean.class, false);
 	}
 
+	/**
+	 * @return if rows should be inserted in bulk where supported by the
+	 *         database
+	 */
+	protected boolean isBulkInsert() {
+		return getParameter(PARAM_BULK_INSERT).as(Boolean.class, true);
+	}
+
+	/**
+	 * @return the number of rows after which the transaction is committed,
+	 *         zero or less if the instances should be written in a single
+	 *         transaction
+	 */
+	protected int getCommitInterval() {
+		return getParameter(PARAM_COMMIT_INTERVAL).as(Integer.class, 0);
+	}
+
+	/**
+	 * @return the maximum number of tables written in bulk concurrently, each
+	 *         in a separate thread
+	 */
+	protected int getWriterThreads() {
+		return getParameter(PARAM_WRITER_THREADS).as(Integer.class, 0);
+	}
+
 	/**
 	 * Write instances to a database connection Auto incremental keys are
 	 * written to the database with the new generated values, and updated the
@@ -179,6 +241,13 @@ public class JDBCInstanceWriter extends AbstractInstanceWriter implements JDBCCo
 	 * This implementation for auto generated key insert is supported only for
 	 * those tables which has only single auto generated fields.
 	 * 
+	 * <p>
+	 * Where supported by the database, rows are inserted in bulk, optionally
+	 * with a separate connection and thread per table. Rows that have
+	 * auto generated values to map or array values are always inserted with
+	 * insert statements.
+	 * </p>
+	 * 
 	 * @param connection the database connection
 	 * @param instances the instances to write
 	 * @param progress the progress indicator
@@ -196,6 +265,13 @@ public class JDBCInstanceWriter extends AbstractInstanceWriter implements JDBCCo
 		// maps type definitions to prepared statements
 		Map<TypeDefinition, Map<Set<QName>, PreparedStatement>> typeStatements = new HashMap<TypeDefinition, Map<Set<QName>, PreparedStatement>>();
 		Map<TypeDefinition, Map<Set<QName>, Integer>> typeCount = new HashMap<TypeDefinition, Map<Set<QName>, Integer>>();
+		// maps type definitions to bulk writers
+		Map<TypeDefinition, Map<Set<QName>, BulkTarget>> typeBulkTargets = new HashMap<>();
+		bulkThreads = 0;
+		boolean bulkFinished = false;
+
+		int commitInterval = getCommitInterval();
+		int uncommitted = 0;
 
 		ResourceIterator<Instance> it = instances.iterator();
 		try {
@@ -208,29 +284,51 @@ public class JDBCInstanceWriter extends AbstractInstanceWriter implements JDBCCo
 					properties.add(property);
 				filterInsertProperties(type, properties);
 
-				// per type count
-				Map<Set<QName>, Integer> typeCountMap = typeCount.get(type);
-				if (typeCountMap == null) {
-					typeCountMap = new HashMap<Set<QName>, Integer>();
-					typeCount.put(type, typeCountMap);
-				}
-				Integer count = typeCountMap.get(properties);
-				if (count == null)
-					count = 0;
-				typeCountMap.put(properties, count + 1);
-
-				// get prepared statement for instance type
-				PreparedStatement statement = getInsertStatement(type, properties, typeStatements,
+				BulkTarget bulkTarget = getBulkTarget(type, properties, typeBulkTargets,
 						connection);
+				if (bulkTarget != null) {
+					// insert row in bulk
+					bulkTarget.writer.write(
+							createRow(type, bulkTarget.columns, instance, reporter, connection));
+				}
+				else {
+					// per type count
+					Map<Set<QName>, Integer> typeCountMap = typeCount.get(type);
+					if (typeCountMap == null) {
+						typeCountMap = new HashMap<Set<QName>, Integer>();
+						typeCount.put(type, typeCountMap);
+					}
+					Integer count = typeCountMap.get(properties);
+					if (count == null)
+						count = 0;
+					typeCountMap.put(properties, count + 1);
+
+					// get prepared statement for instance type
+					PreparedStatement statement = getInsertStatement(type, properties,
+							typeStatements, connection);
+
+					// populate insert statement with values
+					populateInsertStatementOrExecuteAutoIncStatement(statement, properties,
+							instance, reporter, connection);
+
+					if (count % 100 == 0) {
+						statement.executeBatch();
+						// TODO statement.getGeneratedKeys() / does not work with
+						// batches for PostgreSQL
+					}
 
-				// populate insert statement with values
-				populateInsertStatementOrExecuteAutoIncStatement(statement, properties, instance,
-						reporter, connection);
-
-				if (count % 100 == 0) {
-					statement.executeBatch();
-					// TODO statement.getGeneratedKeys() / does not work with
-					// batches for PostgreSQL
+					uncommitted++;
+					if (commitInterval > 0 && uncommitted >= commitInterval) {
+						// execute all batches and commit
+						for (Map<Set<QName>, PreparedStatement> typeSpecificMap : typeStatements
+								.values()) {
+							for (PreparedStatement batch : typeSpecificMap.values()) {
+								batch.executeBatch();
+							}
+						}
+						connection.commit();
+						uncommitted = 0;
+					}
 				}
 
 				if (trackProgress) {
@@ -238,6 +336,20 @@ public class JDBCInstanceWriter extends AbstractInstanceWriter implements JDBCCo
 				}
 			}
 
+			// write remaining rows in bulk
+			for (Map<Set<QName>, BulkTarget> typeSpecificMap : typeBulkTargets.values()) {
+				for (BulkTarget target : typeSpecificMap.values()) {
+					if (target != null && !progress.isCanceled()) {
+						target.writer.finish();
+						log.info("Inserted " + target.writer.getRowCount() + " rows into table "
+								+ target.writer.getTableName() + " in bulk"
+								+ ((target.writer.isThreaded()) ? (" on a separate connection")
+										: ("")));
+					}
+				}
+			}
+			bulkFinished = !progress.isCanceled();
+
 			// execute remaining batches
 			for (Map<Set<QName>, PreparedStatement> typeSpecificMap : typeStatements.values()) {
 				if (progress.isCanceled())
@@ -271,6 +383,14 @@ public class JDBCInstanceWriter extends AbstractInstanceWriter implements JDBCCo
 			// close iterator
 			it.close();
 
+			// stop bulk writers
+			if (!bulkFinished) {
+				for (Map<Set<QName>, BulkTarget> typeSpecificMap : typeBulkTargets.values())
+					for (BulkTarget target : typeSpecificMap.values())
+						if (target != null)
+							target.writer.cancel();
+			}
+
 			// close statements
 			for (Map<Set<QName>, PreparedStatement> typeSpecificMap : typeStatements.values())
 				for (PreparedStatement statement : typeSpecificMap.values())
@@ -405,6 +525,152 @@ public class JDBCInstanceWriter extends AbstractInstanceWriter implements JDBCCo
 		return referencedTD;
 	}
 
+	/**
+	 * Get the bulk writer for instances of the given type with the given set
+	 * of properties. Bulk inserts are only used if they are supported for the
+	 * database and there are no auto generated values to map or arrays to
+	 * insert.
+	 * 
+	 * @param type the type definition
+	 * @param properties the set properties of the instance
+	 * @param typeBulkTargets the already created bulk writers
+	 * @param connection the database connection
+	 * @return the bulk writer or <code>null</code> if the instance has to be
+	 *         inserted with an insert statement
+	 * @throws SQLException if creating the bulk writer fails
+	 */
+	private BulkTarget getBulkTarget(TypeDefinition type, Set<QName> properties,
+			Map<TypeDefinition, Map<Set<QName>, BulkTarget>> typeBulkTargets,
+			Connection connection) throws SQLException {
+		if (bulkAdvisor == null) {
+			return null;
+		}
+
+		Map<Set<QName>, BulkTarget> typeSpecificMap = typeBulkTargets.get(type);
+		if (typeSpecificMap == null) {
+			typeSpecificMap = new HashMap<Set<QName>, BulkTarget>();
+			typeBulkTargets.put(type, typeSpecificMap);
+		}
+		if (typeSpecificMap.containsKey(properties)) {
+			return typeSpecificMap.get(properties);
+		}
+
+		List<QName> columns = new ArrayList<QName>(properties);
+		List<String> columnNames = new ArrayList<String>();
+		boolean supported = true;
+		for (QName property : columns) {
+			PropertyDefinition propertyDef = (PropertyDefinition) type.getChild(property);
+			if (!propertyDef.getPropertyType().getConstraint(SQLType.class).isSet()
+					|| propertyDef.getPropertyType().getConstraint(SQLArray.class).isArray()
+					|| (!isWriteUnordered()
+							&& propertyDef.getConstraint(AutoGenerated.class).isEnabled())) {
+				supported = false;
+				break;
+			}
+			columnNames.add(property.getLocalPart());
+		}
+
+		BulkTarget result = null;
+		if (supported) {
+			String tableName = type.getConstraint(DatabaseTable.class).getFullTableName();
+			result = new BulkTarget(columns,
+					createBulkWriter(tableName, columnNames, connection));
+		}
+		typeSpecificMap.put(properties, result);
+		return result;
+	}
+
+	/**
+	 * Create a bulk writer for a table. As long as the maximum number of
+	 * writer threads is not reached, the writer uses its own thread and
+	 * connection, otherwise it writes in the calling thread using the given
+	 * connection.
+	 * 
+	 * @param tableName the full table name
+	 * @param columns the column names
+	 * @param connection the database connection
+	 * @return the bulk writer
+	 * @throws SQLException if creating the bulk insert fails
+	 */
+	@SuppressWarnings("unchecked")
+	private BulkTableWriter createBulkWriter(String tableName, List<String> columns,
+			Connection connection) throws SQLException {
+		if (bulkThreads < getWriterThreads()) {
+			Connection tableConnection = JDBCConnection.getConnection(this);
+			try {
+				tableConnection.setAutoCommit(false);
+				BulkInsert insert = bulkAdvisor.createBulkInsert(tableConnection, tableName,
+						columns);
+				bulkThreads++;
+				return new BulkTableWriter(tableName, insert, tableConnection, true,
+						getCommitInterval(), BULK_QUEUE_SIZE);
+			} catch (SQLException e) {
+				tableConnection.close();
+				throw e;
+			}
+		}
+
+		BulkInsert insert = bulkAdvisor.createBulkInsert(connection, tableName, columns);
+		return new BulkTableWriter(tableName, insert, connection, false, getCommitInterval(), 0);
+	}
+
+	/**
+	 * Create the row to insert in bulk for an instance.
+	 * 
+	 * @param type the type definition
+	 * @param columns the properties to use as columns
+	 * @param instance the instance
+	 * @param reporter the reporter
+	 * @param conn the database connection
+	 * @return the column values
+	 */
+	private Object[] createRow(TypeDefinition type, List<QName> columns, Instance instance,
+			IOReporter reporter, Connection conn) {
+		Object[] row = new Object[columns.size()];
+		for (int i = 0; i < row.length; i++) {
+			PropertyDefinition property = (PropertyDefinition) type.getChild(columns.get(i));
+			Object[] values = instance.getProperty(columns.get(i));
+
+			if (values == null || values.length == 0) {
+				DefaultValue defaultValue = property.getConstraint(DefaultValue.class);
+				row[i] = (defaultValue.isSet()) ? (defaultValue.getValue()) : (null);
+				continue;
+			}
+
+			if (values.length > 1)
+				reporter.warn(new IOMessageImpl(
+						"Multiple values for a property. Only exporting first.", null));
+
+			Object value = mapReference(property, values[0]);
+			if (value != null) {
+				value = convertGeometry(value, property, reporter, conn);
+			}
+			row[i] = value;
+		}
+		return row;
+	}
+
+	/**
+	 * Replace the value of a property referencing a type with auto generated
+	 * identifiers with the identifier generated for the referenced row.
+	 * 
+	 * @param property the property definition
+	 * @param value the property value
+	 * @return the value to insert
+	 */
+	private Object mapReference(PropertyDefinition property, Object value) {
+		Reference ref = property.getConstraint(Reference.class);
+		if (ref.getReferencedTypes() != null) {
+			TypeDefinition td = (TypeDefinition) ref.getReferencedTypes().toArray()[0];
+			Map<Object, Long> marshMallow = typAuto.get(td);
+			if (marshMallow != null && value != null) {
+				// lookup identifier for reference
+				value = marshMallow.get(processLookupId(value));
+			}
+		}
+		return value;
+	}
+
 	/**
 	 * Filters the set of properties to only contain properties that can be used
 	 * for inserting (e. g. no groups).
@@ -565,15 +831,7 @@ public class JDBCInstanceWriter extends AbstractInstanceWriter implements JDBCCo
 				}
 			}
 
-			Reference ref = property.getConstraint(Reference.class);
-			if (ref.getReferencedTypes() != null) {
-				TypeDefinition td = (TypeDefinition) ref.getReferencedTypes().toArray()[0];
-				Map<Object, Long> marshMallow = typAuto.get(td);
-				if (marshMallow != null && value != null) {
-					// lookup identifier for reference
-					value = marshMallow.get(processLookupId(value));
-				}
-			}
+			value = mapReference(property, value);
 
 			if (values == null || values.length == 0) {
 				// XXX The default value could be a function call.
@@ -631,36 +889,10 @@ public class JDBCInstanceWriter extends AbstractInstanceWriter implements JDBCCo
 	 *            database
 	 * @throws SQLException if setting the parameter fails
 	 */
-	@SuppressWarnings("unchecked")
 	private void setStatementParameter(PreparedStatement statement, int index, Object value,
 			PropertyDefinition propertyDef, int sqlType, IOReporter reporter, Connection conn)
 			throws SQLException {
-		if (propertyDef.getPropertyType().getConstraint(GeometryType.class).isGeometry()) {
-			// is a geometry column
-
-			// get the geometry advisor
-			@SuppressWarnings("rawtypes")
-			GeometryAdvisor advisor = propertyDef.getPropertyType()
-					.getConstraint(GeometryAdvisorConstraint.class).getAdvisor();
-			if (advisor != null) {
-				// use the advisor to convert the geometry
-				if (value instanceof GeometryProperty<?>) {
-					// XXX JTS geometry conversion needed beforehand?
-					try {
-						value = advisor.convertGeometry((GeometryProperty<?>) value,
-								propertyDef.getPropertyType(), conn);
-					} catch (Exception e) {
-						reporter.error(new IOMessageImpl("Something went wrong during conversion",
-								e));
-					}
-				}
-				else {
-					reporter.error(new IOMessageImpl(
-							"Geometry value is not of type GeometryProperty and could thus not be converted for the database",
-							null));
-				}
-			}
-		}
+		value = convertGeometry(value, propertyDef, reporter, conn);
 
 		SQLArray arrayInfo = propertyDef.getPropertyType().getConstraint(SQLArray.class);
 		if (arrayInfo.isArray()) {
@@ -691,6 +923,50 @@ public class JDBCInstanceWriter extends AbstractInstanceWriter implements JDBCCo
 		statement.setObject(index, value, sqlType);
 	}
 
+	/**
+	 * Convert a geometry value for the database, if the property is a
+	 * geometry column.
+	 * 
+	 * @param value the value, not <code>null</code>
+	 * @param propertyDef the associated property definition
+	 * @param reporter the reporter
+	 * @param conn Connection (currently used for geometry conversion for oracle
+	 *            database
+	 * @return the converted value or the value itself if no conversion was
+	 *         done
+	 */
+	@SuppressWarnings("unchecked")
+	private Object convertGeometry(Object value, PropertyDefinition propertyDef,
+			IOReporter reporter, Connection conn) {
+		if (propertyDef.getPropertyType().getConstraint(GeometryType.class).isGeometry()) {
+			// is a geometry column
+
+			// get the geometry advisor
+			@SuppressWarnings("rawtypes")
+			GeometryAdvisor advisor = propertyDef.getPropertyType()
+					.getConstraint(GeometryAdvisorConstraint.class).getAdvisor();
+			if (advisor != null) {
+				// use the advisor to convert the geometry
+				if (value instanceof GeometryProperty<?>) {
+					// XXX JTS geometry conversion needed beforehand?
+					try {
+						value = advisor.convertGeometry((GeometryProperty<?>) value,
+								propertyDef.getPropertyType(), conn);
+					} catch (Exception e) {
+						reporter.error(new IOMessageImpl("Something went wrong during conversion",
+								e));
+					}
+				}
+				else {
+					reporter.error(new IOMessageImpl(
+							"Geometry value is not of type GeometryProperty and could thus not be converted for the database",
+							null));
+				}
+			}
+		}
+		return value;
+	}
+
 	@Override
 	protected String getDefaultTypeName() {
 		return "Database";
@@ -17,13 +17,28 @@ package eu.esdihumboldt.hale.io.jdbc;
 
 import java.net.URI;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
-import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import javax.xml.namespace.QName;
 
 import de.fhg.igd.slf4jplus.ALogger;
 import de.fhg.igd.slf4jplus.ALoggerFactory;
+import eu.esdihumboldt.hale.common.core.report.SimpleLog;
 import eu.esdihumboldt.hale.common.instance.geometry.CRSProvider;
 import eu.esdihumboldt.hale.common.instance.model.Filter;
 import eu.esdihumboldt.hale.common.instance.model.Instance;
@@ -31,20 +46,47 @@ import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
 import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
 import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
 import eu.esdihumboldt.hale.common.instance.model.ext.InstanceIterator;
+import eu.esdihumboldt.hale.common.instance.model.ext.RandomAccessInstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.ext.ReportingInstanceCollection;
 import eu.esdihumboldt.hale.common.instance.model.impl.FilteredInstanceCollection;
 import eu.esdihumboldt.hale.common.instance.model.impl.PseudoInstanceReference;
+import eu.esdihumboldt.hale.common.instance.model.impl.ReferenceInstanceCollection;
+import eu.esdihumboldt.hale.common.schema.model.ChildDefinition;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.Binding;
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.PrimaryKey;
 import eu.esdihumboldt.hale.io.jdbc.constraints.DatabaseTable;
+import eu.esdihumboldt.hale.io.jdbc.filter.SQLFilter;
+import eu.esdihumboldt.hale.io.jdbc.filter.SQLFilterTranslator;
 
 /**
  * Instance collection for instances belonging to a specific database table.
  * 
  * @author Simon Templer
  */
-public class JDBCTableCollection implements InstanceCollection {
+public class JDBCTableCollection
+		implements RandomAccessInstanceCollection, ReportingInstanceCollection {
 
 	private static final ALogger log = ALoggerFactory.getLogger(JDBCTableCollection.class);
 
+	/**
+	 * The minimum number of rows per partition when reading a table in
+	 * partitions.
+	 */
+	private static final int MIN_PARTITION_ROWS = 10000;
+
+	/**
+	 * The maximum number of instances read ahead when reading a table in
+	 * partitions.
+	 */
+	private static final int PARTITION_QUEUE_SIZE = 1000;
+
+	/**
+	 * The maximum number of rows retrieved with a single query when resolving
+	 * instance references.
+	 */
+	private static final int LOOKUP_BATCH_SIZE = 500;
+
 	/**
 	 * Iterator other a JDBC table.
 	 */
@@ -52,6 +94,8 @@ public class JDBCTableCollection implements InstanceCollection {
 
 		private final TableInstanceBuilder builder;
 
+		private final SQLFilter filter;
+
 //		private static final int ROW_LIMIT = 100;
 
 		private final Connection connection;
@@ -74,13 +118,16 @@ public class JDBCTableCollection implements InstanceCollection {
 		private boolean done = false;
 
 		/**
-		 * Default constructor.
+		 * Create an iterator over the table rows.
 		 * 
 		 * @param crsProvider the CRS provider
+		 * @param filter the filter to apply in the query, may be
+		 *            <code>null</code>
 		 */
-		public JDBCTableIterator(CRSProvider crsProvider) {
+		public JDBCTableIterator(CRSProvider crsProvider, SQLFilter filter) {
 			super();
 			builder = new TableInstanceBuilder(crsProvider);
+			this.filter = filter;
 			try {
 				connection = createConnection();
 			} catch (SQLException e) {
@@ -135,20 +182,24 @@ public class JDBCTableCollection implements InstanceCollection {
 				else if (currentResults == null) {
 					// retrieve result set
 					connection.setAutoCommit(false);
-					Statement st = null;
+					String query = createQuery("SELECT * FROM " + fullTableName, filter);
+					PreparedStatement st = null;
 					try {
-						st = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+						st = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
 								ResultSet.CONCUR_READ_ONLY, ResultSet.CLOSE_CURSORS_AT_COMMIT);
 						st.setFetchSize(500);
 					} catch (SQLFeatureNotSupportedException e) {
 
 						log.warn("Oracle Database supports only HOLD_CURSORS_OVER_COMMIT");
 
-						st = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+						st = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
 								ResultSet.CONCUR_READ_ONLY, ResultSet.HOLD_CURSORS_OVER_COMMIT);
 						st.setFetchSize(500);
 					}
-					currentResults = st.executeQuery("SELECT * FROM " + fullTableName);
+					if (filter != null) {
+						filter.setParameters(st);
+					}
+					currentResults = st.executeQuery();
 
 					proceedToNext();
 				}
@@ -218,6 +269,13 @@ public class JDBCTableCollection implements InstanceCollection {
 
 	private final String fullTableName;
 	private final CRSProvider crsProvider;
+	private final int partitions;
+
+	/**
+	 * The name of the primary key property, <code>null</code> if the table
+	 * has no primary key with a single column.
+	 */
+	private final QName keyName;
 
 	/**
 	 * Constructor.
@@ -230,13 +288,39 @@ public class JDBCTableCollection implements InstanceCollection {
 	 */
 	public JDBCTableCollection(TypeDefinition type, URI jdbcURI, String user, String password,
 			CRSProvider crsProvider) {
+		this(type, jdbcURI, user, password, crsProvider, 1);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param type the type definition associated to the table
+	 * @param jdbcURI the JDBC URI to access the database
+	 * @param user the database user
+	 * @param password the user's password
+	 * @param crsProvider crs provider
+	 * @param partitions the maximum number of partitions to read concurrently
+	 *            on separate connections, partitioning is only possible for
+	 *            tables with an integer primary key
+	 */
+	public JDBCTableCollection(TypeDefinition type, URI jdbcURI, String user, String password,
+			CRSProvider crsProvider, int partitions) {
 		this.type = type;
 		this.jdbcURI = jdbcURI;
 		this.user = user;
 		this.password = password;
 		this.crsProvider = crsProvider;
+		this.partitions = partitions;
 
 		this.fullTableName = type.getConstraint(DatabaseTable.class).getFullTableName();
+
+		PrimaryKey key = type.getConstraint(PrimaryKey.class);
+		if (key.hasPrimaryKey() && key.getPrimaryKeyPath().size() == 1) {
+			this.keyName = key.getPrimaryKeyPath().get(0);
+		}
+		else {
+			this.keyName = null;
+		}
 	}
 
 	/**
@@ -249,9 +333,16 @@ public class JDBCTableCollection implements InstanceCollection {
 		return JDBCConnection.getConnection(jdbcURI, user, password);
 	}
 
+	/**
+	 * Creates a reference based on the primary key of the row, if the table
+	 * has a primary key with a single column.
+	 */
 	@Override
 	public InstanceReference getReference(Instance instance) {
-		// TODO create a database backed reference instead?
+		Object key = getKey(instance);
+		if (key != null) {
+			return new JDBCInstanceReference(instance.getDataSet(), fullTableName, key);
+		}
 		return new PseudoInstanceReference(instance);
 	}
 
@@ -260,12 +351,257 @@ public class JDBCTableCollection implements InstanceCollection {
 		if (reference instanceof PseudoInstanceReference) {
 			return ((PseudoInstanceReference) reference).getInstance();
 		}
+		if (isOwnReference(reference)) {
+			Object key = ((JDBCInstanceReference) reference).getKey();
+			try (Connection connection = createConnection()) {
+				return lookup(connection, Collections.singletonList(key)).get(key);
+			} catch (SQLException e) {
+				throw new IllegalStateException(
+						"Could not retrieve row with key " + key + " from table " + fullTableName,
+						e);
+			}
+		}
 		return null;
 	}
 
+	/**
+	 * Resolves references based on primary keys in batches, each batch with a
+	 * single query.
+	 */
+	@Override
+	public InstanceCollection getInstances(Collection<? extends InstanceReference> references) {
+		List<JDBCInstanceReference> keyReferences = new ArrayList<>(references.size());
+		for (InstanceReference reference : references) {
+			if (isOwnReference(reference)) {
+				keyReferences.add((JDBCInstanceReference) reference);
+			}
+			else {
+				keyReferences = null;
+				break;
+			}
+		}
+
+		if (keyReferences != null) {
+			return new KeyReferenceCollection(keyReferences);
+		}
+		return RandomAccessInstanceCollection.super.getInstances(references);
+	}
+
+	/**
+	 * States that random access is supported if the table has a primary key
+	 * with a single column, as instances are then referenced and retrieved by
+	 * their key.
+	 */
+	@Override
+	public boolean supportsRandomAccess() {
+		return keyName != null;
+	}
+
+	/**
+	 * Determine if the given reference is a key based reference to a row of
+	 * this table.
+	 * 
+	 * @param reference the instance reference
+	 * @return if the reference can be resolved with a query on the table
+	 */
+	private boolean isOwnReference(InstanceReference reference) {
+		return keyName != null && reference instanceof JDBCInstanceReference
+				&& fullTableName.equals(((JDBCInstanceReference) reference).getTable());
+	}
+
+	/**
+	 * Get the primary key value of an instance.
+	 * 
+	 * @param instance the instance
+	 * @return the key value or <code>null</code> if the table has no primary
+	 *         key with a single column or the instance has no key value
+	 */
+	private Object getKey(Instance instance) {
+		if (keyName == null) {
+			return null;
+		}
+		Object[] values = instance.getProperty(keyName);
+		if (values == null || values.length != 1) {
+			return null;
+		}
+		return values[0];
+	}
+
+	/**
+	 * Retrieve the rows with the given primary key values.
+	 * 
+	 * @param connection the database connection to use
+	 * @param keys the primary key values
+	 * @return the instances created from the rows, mapped by key value
+	 * @throws SQLException if executing the query fails
+	 */
+	private Map<Object, Instance> lookup(Connection connection, Collection<Object> keys)
+			throws SQLException {
+		StringBuilder query = new StringBuilder("SELECT * FROM ").append(fullTableName)
+				.append(" WHERE ").append(JDBCUtil.quote(keyName.getLocalPart()));
+		if (keys.size() == 1) {
+			query.append(" = ?");
+		}
+		else {
+			query.append(" IN (");
+			for (int i = 0; i < keys.size(); i++) {
+				if (i > 0) {
+					query.append(", ");
+				}
+				query.append('?');
+			}
+			query.append(')');
+		}
+
+		Map<Object, Instance> result = new HashMap<>();
+		try (PreparedStatement st = connection.prepareStatement(query.toString())) {
+			int index = 1;
+			for (Object key : keys) {
+				st.setObject(index++, key);
+			}
+
+			TableInstanceBuilder builder = new TableInstanceBuilder(crsProvider);
+			try (ResultSet res = st.executeQuery()) {
+				while (res.next()) {
+					Instance instance = builder.createInstance(type, res, connection);
+					result.put(getKey(instance), instance);
+				}
+			}
+		}
+		return result;
+	}
+
 	@Override
 	public ResourceIterator<Instance> iterator() {
-		return new JDBCTableIterator(crsProvider);
+		return createIterator(null);
+	}
+
+	/**
+	 * Create an iterator over the rows of the table matching the given filter.
+	 * If possible the table is read in partitions on several connections
+	 * concurrently.
+	 * 
+	 * @param filter the filter, may be <code>null</code>
+	 * @return the iterator
+	 */
+	private ResourceIterator<Instance> createIterator(SQLFilter filter) {
+		List<SQLFilter> partitionFilters = partition(filter);
+		if (partitionFilters == null) {
+			return new JDBCTableIterator(crsProvider, filter);
+		}
+
+		List<Supplier<? extends ResourceIterator<Instance>>> iterators = new ArrayList<>();
+		for (SQLFilter partitionFilter : partitionFilters) {
+			iterators.add(() -> new JDBCTableIterator(crsProvider, partitionFilter));
+		}
+		return new PartitionedInstanceIterator(type, iterators, PARTITION_QUEUE_SIZE,
+				fullTableName);
+	}
+
+	/**
+	 * Determine the partitions to read the table in. The table is split into
+	 * ranges of its primary key, this requires a primary key column with
+	 * integer values.
+	 * 
+	 * @param filter the filter to apply to the table, may be <code>null</code>
+	 * @return the filters selecting the individual partitions or
+	 *         <code>null</code> if the table should not be partitioned
+	 */
+	private List<SQLFilter> partition(SQLFilter filter) {
+		if (partitions <= 1) {
+			return null;
+		}
+
+		String keyColumn = getIntegerKeyColumn();
+		if (keyColumn == null) {
+			log.debug("Table " + fullTableName
+					+ " is not read in partitions, as it has no integer primary key");
+			return null;
+		}
+
+		long min;
+		long max;
+		long count;
+		try (Connection connection = createConnection()) {
+			PreparedStatement st = connection.prepareStatement(createQuery("SELECT MIN("
+					+ keyColumn + "), MAX(" + keyColumn + "), COUNT(*) FROM " + fullTableName,
+					filter));
+			if (filter != null) {
+				filter.setParameters(st);
+			}
+
+			ResultSet res = st.executeQuery();
+			if (!res.next()) {
+				return null;
+			}
+			min = res.getLong(1);
+			max = res.getLong(2);
+			count = res.getLong(3);
+		} catch (SQLException e) {
+			log.warn("Could not determine partitions of table " + fullTableName, e);
+			return null;
+		}
+
+		int partitionCount = (int) Math.min(partitions, count / MIN_PARTITION_ROWS);
+		long range = max - min;
+		if (partitionCount <= 1 || range < partitionCount) {
+			// too small to partition (or overflow)
+			return null;
+		}
+
+		SQLFilter base = (filter == null)
+				? (new SQLFilter(null, Collections.emptyList(), Collections.emptyList()))
+				: (filter);
+		long step = range / partitionCount + 1;
+		List<SQLFilter> result = new ArrayList<>(partitionCount);
+		for (int i = 0; i < partitionCount; i++) {
+			long lower = min + i * step;
+			long upper = lower + step;
+			if (i == 0) {
+				result.add(
+						base.and(keyColumn + " < ?", Collections.<Object> singletonList(upper)));
+			}
+			else if (i == partitionCount - 1) {
+				result.add(
+						base.and(keyColumn + " >= ?", Collections.<Object> singletonList(lower)));
+			}
+			else {
+				result.add(base.and(keyColumn + " >= ? AND " + keyColumn + " < ?",
+						Arrays.<Object> asList(lower, upper)));
+			}
+		}
+
+		log.info("Reading table " + fullTableName + " in " + partitionCount
+				+ " partitions of about " + count / partitionCount + " rows each");
+		return result;
+	}
+
+	/**
+	 * Get the primary key column of the table, if it holds integer values.
+	 * 
+	 * @return the quoted name of the primary key column or <code>null</code>
+	 */
+	private String getIntegerKeyColumn() {
+		if (keyName == null) {
+			return null;
+		}
+
+		ChildDefinition<?> child = type.getChild(keyName);
+		if (child == null || child.asProperty() == null) {
+			return null;
+		}
+
+		Class<?> binding = child.asProperty().getPropertyType().getConstraint(Binding.class)
+				.getBinding();
+		if (binding == null) {
+			return null;
+		}
+		if (Long.class.equals(binding) || Integer.class.equals(binding)
+				|| Short.class.equals(binding) || long.class.equals(binding)
+				|| int.class.equals(binding) || short.class.equals(binding)) {
+			return JDBCUtil.quote(keyName.getLocalPart());
+		}
+		return null;
 	}
 
 	@Override
@@ -275,10 +611,24 @@ public class JDBCTableCollection implements InstanceCollection {
 
 	@Override
 	public int size() {
+		return size(null);
+	}
+
+	/**
+	 * Determine the number of rows in the table matching the given filter.
+	 * 
+	 * @param filter the filter, may be <code>null</code>
+	 * @return the number of rows
+	 */
+	private int size(SQLFilter filter) {
 		try (Connection connection = createConnection()) {
-			Statement st = connection.createStatement();
+			PreparedStatement st = connection
+					.prepareStatement(createQuery("SELECT COUNT(*) FROM " + fullTableName, filter));
+			if (filter != null) {
+				filter.setParameters(st);
+			}
 
-			ResultSet res = st.executeQuery("SELECT COUNT(*) FROM " + fullTableName);
+			ResultSet res = st.executeQuery();
 			int count = 0;
 			if (res.next()) {
 				count = res.getInt(1);
@@ -298,10 +648,239 @@ public class JDBCTableCollection implements InstanceCollection {
 		return size <= 0;
 	}
 
+	/**
+	 * Selects the instances matching the filter. Conditions of CQL/ECQL
+	 * filters that can be expressed in SQL are evaluated by the database, the
+	 * rest of the filter is applied to the instances retrieved.
+	 */
 	@Override
 	public InstanceCollection select(Filter filter) {
-		// TODO apply filter to query instead!
-		return FilteredInstanceCollection.applyFilter(this, filter);
+		return select(filter, null);
+	}
+
+	/**
+	 * Selects the instances matching the filter, see {@link #select(Filter)}.
+	 * The condition evaluated in the database and the parts of the filter
+	 * applied to the retrieved instances are reported to the given log.
+	 */
+	@Override
+	public InstanceCollection select(Filter filter, SimpleLog reportLog) {
+		SQLFilter sqlFilter = new SQLFilterTranslator(type).translate(filter);
+		if (sqlFilter.isEmpty()) {
+			report(reportLog, "Filter on table " + fullTableName
+					+ " evaluated on the retrieved instances, not translated to SQL: "
+					+ sqlFilter.getUntranslated());
+			return FilteredInstanceCollection.applyFilter(this, filter);
+		}
+
+		StringBuilder message = new StringBuilder();
+		message.append("Filter on table ").append(fullTableName)
+				.append(" evaluated in database: WHERE ").append(sqlFilter.getCondition());
+		if (!sqlFilter.getParameters().isEmpty()) {
+			message.append(" with parameters ").append(sqlFilter.getParameters());
+		}
+		if (!sqlFilter.isComplete()) {
+			message.append("; evaluated on the retrieved instances: ")
+					.append(sqlFilter.getUntranslated());
+		}
+		report(reportLog, message.toString());
+
+		InstanceCollection selected = new SelectedTableCollection(sqlFilter);
+		if (sqlFilter.isComplete()) {
+			return selected;
+		}
+		return FilteredInstanceCollection.applyFilter(selected, filter);
+	}
+
+	/**
+	 * Report information on a selection.
+	 * 
+	 * @param reportLog the log to report to, if <code>null</code> the message
+	 *            is only logged
+	 * @param message the message
+	 */
+	private static void report(SimpleLog reportLog, String message) {
+		if (reportLog != null) {
+			reportLog.info(message);
+		}
+		else {
+			log.info(message);
+		}
+	}
+
+	/**
+	 * Create a query, adding the condition of the given filter.
+	 * 
+	 * @param query the query w/o <code>WHERE</code> clause
+	 * @param filter the filter, may be <code>null</code>
+	 * @return the query
+	 */
+	private static String createQuery(String query, SQLFilter filter) {
+		if (filter == null) {
+			return query;
+		}
+		return filter.appendTo(query);
+	}
+
+	/**
+	 * Collection of the rows of the table matching a filter that is evaluated
+	 * by the database.
+	 */
+	private class SelectedTableCollection implements InstanceCollection {
+
+		private final SQLFilter filter;
+
+		/**
+		 * Create a collection of the rows matching the given filter.
+		 * 
+		 * @param filter the filter
+		 */
+		public SelectedTableCollection(SQLFilter filter) {
+			super();
+			this.filter = filter;
+		}
+
+		@Override
+		public InstanceReference getReference(Instance instance) {
+			return JDBCTableCollection.this.getReference(instance);
+		}
+
+		@Override
+		public Instance getInstance(InstanceReference reference) {
+			return JDBCTableCollection.this.getInstance(reference);
+		}
+
+		@Override
+		public InstanceCollection getInstances(
+				Collection<? extends InstanceReference> references) {
+			return JDBCTableCollection.this.getInstances(references);
+		}
+
+		@Override
+		public ResourceIterator<Instance> iterator() {
+			return createIterator(filter);
+		}
+
+		@Override
+		public boolean hasSize() {
+			return true;
+		}
+
+		@Override
+		public int size() {
+			return JDBCTableCollection.this.size(filter);
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() <= 0;
+		}
+
+		@Override
+		public InstanceCollection select(Filter subFilter) {
+			return FilteredInstanceCollection.applyFilter(this, subFilter);
+		}
+
+	}
+
+	/**
+	 * Collection of instances resolved from key based references. The rows are
+	 * retrieved in batches, the instances are returned in the order of the
+	 * references. Each iterator uses its own connection, that is closed when
+	 * the last batch was retrieved or the iterator is closed.
+	 */
+	private class KeyReferenceCollection extends ReferenceInstanceCollection {
+
+		private final List<JDBCInstanceReference> references;
+
+		/**
+		 * Create a collection of instances resolved with queries on the table.
+		 * 
+		 * @param references the instance references
+		 */
+		public KeyReferenceCollection(List<JDBCInstanceReference> references) {
+			super(references, JDBCTableCollection.this);
+			this.references = references;
+		}
+
+		@Override
+		public ResourceIterator<Instance> iterator() {
+			return new ResourceIterator<Instance>() {
+
+				private final Iterator<JDBCInstanceReference> remaining = references
+						.iterator();
+
+				private final List<Object> batch = new ArrayList<>();
+
+				private Map<Object, Instance> resolved = Collections.emptyMap();
+
+				private int position = 0;
+
+				private Connection connection;
+
+				@Override
+				public boolean hasNext() {
+					return position < batch.size() || remaining.hasNext();
+				}
+
+				@Override
+				public Instance next() {
+					if (position >= batch.size()) {
+						nextBatch();
+					}
+					return resolved.get(batch.get(position++));
+				}
+
+				private void nextBatch() {
+					if (!remaining.hasNext()) {
+						throw new NoSuchElementException();
+					}
+
+					batch.clear();
+					position = 0;
+					Set<Object> keys = new LinkedHashSet<>();
+					while (remaining.hasNext() && keys.size() < LOOKUP_BATCH_SIZE) {
+						Object key = remaining.next().getKey();
+						batch.add(key);
+						keys.add(key);
+					}
+
+					try {
+						if (connection == null) {
+							connection = createConnection();
+						}
+						resolved = lookup(connection, keys);
+					} catch (SQLException e) {
+						close();
+						throw new IllegalStateException(
+								"Could not retrieve rows from table " + fullTableName, e);
+					}
+
+					if (!remaining.hasNext()) {
+						// last batch retrieved
+						close();
+					}
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+
+				@Override
+				public void close() {
+					if (connection != null) {
+						try {
+							connection.close();
+						} catch (SQLException e) {
+							log.warn("Failed to close database connection", e);
+						}
+						connection = null;
+					}
+				}
+			};
+		}
+
 	}
 
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.jdbc;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.common.instance.model.ext.InstanceIterator;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+
+/**
+ * Iterator that reads several partitions of a table concurrently, each on its
+ * own thread, and merges the instances into a single stream. The order of the
+ * instances is not preserved.<br>
+ * <br>
+ * The iterator of a partition is created, used and closed exclusively in the
+ * thread reading the partition, so each partition should use its own
+ * database connection.
+ * 
+ * @author Simon Templer
+ */
+public class PartitionedInstanceIterator implements InstanceIterator {
+
+	/**
+	 * Marker for a partition that was read completely.
+	 */
+	private static final Object END = new Object();
+
+	private final TypeDefinition type;
+
+	private final BlockingQueue<Object> queue;
+
+	private volatile boolean cancelled = false;
+
+	private volatile Throwable failure;
+
+	private int running;
+
+	private Instance next;
+
+	private boolean done = false;
+
+	/**
+	 * Create an iterator reading the given partitions concurrently.
+	 * 
+	 * @param type the type of the instances in all partitions
+	 * @param partitions suppliers of the iterators over the individual
+	 *            partitions
+	 * @param queueSize the maximum number of instances read ahead
+	 * @param name the name of the partitioned collection, used to name the
+	 *            reading threads
+	 */
+	public PartitionedInstanceIterator(TypeDefinition type,
+			List<Supplier<? extends ResourceIterator<Instance>>> partitions, int queueSize,
+			String name) {
+		super();
+		this.type = type;
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+		this.running = partitions.size();
+		if (running == 0) {
+			done = true;
+		}
+
+		int index = 1;
+		for (Supplier<? extends ResourceIterator<Instance>> partition : partitions) {
+			Thread reader = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					read(partition);
+				}
+			}, "Read partition " + index++ + "/" + partitions.size() + " of " + name);
+			reader.setDaemon(true);
+			reader.start();
+		}
+	}
+
+	private void read(Supplier<? extends ResourceIterator<Instance>> partition) {
+		try (ResourceIterator<Instance> it = partition.get()) {
+			while (!cancelled && it.hasNext()) {
+				if (!put(it.next())) {
+					return;
+				}
+			}
+		} catch (Throwable e) {
+			failure = e;
+		} finally {
+			put(END);
+		}
+	}
+
+	/**
+	 * Add an element to the queue, waiting for space to become available.
+	 * 
+	 * @param element the element to add
+	 * @return if the element was added, <code>false</code> if the iterator was
+	 *         closed or the thread interrupted
+	 */
+	private boolean put(Object element) {
+		try {
+			while (!cancelled) {
+				if (queue.offer(element, 100, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (next == null && !done) {
+			Object element;
+			try {
+				element = queue.take();
+			} catch (InterruptedException e) {
+				close();
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while reading table partitions", e);
+			}
+
+			if (failure != null) {
+				close();
+				throw new IllegalStateException("Reading a table partition failed", failure);
+			}
+
+			if (element == END) {
+				running--;
+				if (running <= 0) {
+					done = true;
+				}
+			}
+			else {
+				next = (Instance) element;
+			}
+		}
+		return next != null;
+	}
+
+	@Override
+	public Instance next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Instance result = next;
+		next = null;
+		return result;
+	}
+
+	@Override
+	public TypeDefinition typePeek() {
+		if (hasNext()) {
+			// always the same type returned in this iterator
+			return type;
+		}
+		return null;
+	}
+
+	@Override
+	public boolean supportsTypePeek() {
+		return true;
+	}
+
+	@Override
+	public void skip() {
+		if (hasNext()) {
+			next = null;
+		}
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() {
+		done = true;
+		next = null;
+		cancelled = true;
+		queue.clear();
+	}
+
+}
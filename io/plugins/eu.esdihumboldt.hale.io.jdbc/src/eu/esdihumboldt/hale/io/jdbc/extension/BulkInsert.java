@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.jdbc.extension;
+
+import java.sql.SQLException;
+
+/**
+ * Inserts rows into a database table in bulk, bypassing the overhead of
+ * individual insert statements. Rows may be buffered, they are only
+ * guaranteed to be sent to the database after {@link #flush()} was called.
+ * A bulk insert is used by a single thread only.
+ * 
+ * @author Simon Templer
+ */
+public interface BulkInsert {
+
+	/**
+	 * Add a row to insert.
+	 * 
+	 * @param values the column values in the order of the columns the bulk
+	 *            insert was created for, geometries already converted by the
+	 *            geometry advisor of the column
+	 * @throws SQLException if sending buffered rows to the database fails
+	 */
+	public void addRow(Object[] values) throws SQLException;
+
+	/**
+	 * Send all buffered rows to the database. The rows are inserted in the
+	 * current transaction of the connection the bulk insert was created for.
+	 * 
+	 * @throws SQLException if inserting the rows fails
+	 */
+	public void flush() throws SQLException;
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.jdbc.extension;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import eu.esdihumboldt.hale.io.jdbc.JDBCInstanceWriter;
+
+/**
+ * Database specific advisor providing a fast path for inserting many rows
+ * with the {@link JDBCInstanceWriter}, e.g. based on a bulk loading command.
+ * 
+ * @param <C> the connection type
+ * 
+ * @author Simon Templer
+ */
+public interface BulkInsertAdvisor<C> {
+
+	/**
+	 * Create a bulk insert for the given table and columns.
+	 * 
+	 * @param connection the database connection
+	 * @param tableName the full table name, as used in SQL statements
+	 * @param columns the column names, not quoted
+	 * @return the bulk insert
+	 * @throws SQLException if the bulk insert cannot be created for the
+	 *             connection
+	 */
+	public BulkInsert createBulkInsert(C connection, String tableName, List<String> columns)
+			throws SQLException;
+
+}
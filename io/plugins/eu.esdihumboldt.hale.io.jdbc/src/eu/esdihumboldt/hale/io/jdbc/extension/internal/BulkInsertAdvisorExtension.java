@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.jdbc.extension.internal;
+
+import java.sql.Connection;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.core.runtime.IConfigurationElement;
+
+import de.fhg.igd.eclipse.util.extension.AbstractConfigurationFactory;
+import de.fhg.igd.eclipse.util.extension.AbstractExtension;
+import de.fhg.igd.eclipse.util.extension.ExtensionUtil;
+import de.fhg.igd.slf4jplus.ALogger;
+import de.fhg.igd.slf4jplus.ALoggerFactory;
+import eu.esdihumboldt.hale.io.jdbc.extension.BulkInsertAdvisor;
+import eu.esdihumboldt.hale.io.jdbc.extension.DriverConfigurationExtension;
+
+/**
+ * Extension for {@link BulkInsertAdvisor}s.
+ * 
+ * @author Simon Templer
+ */
+@SuppressWarnings("rawtypes")
+public class BulkInsertAdvisorExtension
+		extends AbstractExtension<BulkInsertAdvisor, BulkInsertAdvisorDescriptor> {
+
+	private static final ALogger log = ALoggerFactory.getLogger(BulkInsertAdvisorExtension.class);
+
+	/**
+	 * Default factory for {@link BulkInsertAdvisor}s.
+	 */
+	private static class ConfigurationFactory extends
+			AbstractConfigurationFactory<BulkInsertAdvisor> implements BulkInsertAdvisorDescriptor {
+
+		private final Class<?> connectionType;
+
+		/**
+		 * Create a factory/descriptor for a {@link BulkInsertAdvisor}.
+		 * 
+		 * @param conf the configuration element
+		 */
+		protected ConfigurationFactory(IConfigurationElement conf) {
+			super(conf, "class");
+
+			connectionType = ExtensionUtil.loadClass(conf, "connection");
+		}
+
+		@Override
+		public void dispose(BulkInsertAdvisor instance) {
+			// nothing to do
+		}
+
+		@Override
+		public String getIdentifier() {
+			return conf.getAttribute("id");
+		}
+
+		@Override
+		public String getDisplayName() {
+			return getIdentifier();
+		}
+
+		@Override
+		public boolean applies(Connection connection) {
+			return connectionType.isInstance(connection);
+		}
+
+	}
+
+	private static BulkInsertAdvisorExtension instance;
+
+	/**
+	 * Get the extension instance.
+	 * 
+	 * @return the extension instance
+	 */
+	public static BulkInsertAdvisorExtension getInstance() {
+		if (instance == null) {
+			instance = new BulkInsertAdvisorExtension();
+		}
+		return instance;
+	}
+
+	/**
+	 * Default constructor.
+	 */
+	protected BulkInsertAdvisorExtension() {
+		super(DriverConfigurationExtension.EXTENSION_ID);
+	}
+
+	@Override
+	protected BulkInsertAdvisorDescriptor createFactory(IConfigurationElement conf)
+			throws Exception {
+		if ("bulkInsert".equals(conf.getName())) {
+			return new ConfigurationFactory(conf);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the bulk insert advisor applicable for the given connection.
+	 * 
+	 * @param connection the database connection
+	 * @return the advisor or <code>null</code>
+	 */
+	@Nullable
+	public BulkInsertAdvisor getAdvisor(Connection connection) {
+		for (BulkInsertAdvisorDescriptor factory : getFactories()) {
+			if (factory.applies(connection)) {
+				try {
+					return factory.createExtensionObject();
+				} catch (Exception e) {
+					log.error(
+							"Could not create JDBC bulk insert advisor " + factory.getIdentifier(),
+							e);
+				}
+			}
+		}
+
+		return null;
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.jdbc.filter;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Result of translating an instance filter to an SQL condition. The condition
+ * may cover only a part of the filter, in that case the filter still has to
+ * be applied to the instances retrieved from the database.
+ * 
+ * @author Simon Templer
+ */
+public class SQLFilter {
+
+	private final String condition;
+
+	private final List<Object> parameters;
+
+	private final List<String> untranslated;
+
+	/**
+	 * Create a translated filter.
+	 * 
+	 * @param condition the SQL condition to use in a <code>WHERE</code>
+	 *            clause, <code>null</code> if no part of the filter could be
+	 *            translated
+	 * @param parameters the values of the parameters in the SQL condition
+	 * @param untranslated descriptions of the parts of the filter that could
+	 *            not be translated
+	 */
+	public SQLFilter(@Nullable String condition, List<Object> parameters,
+			List<String> untranslated) {
+		super();
+		this.condition = condition;
+		this.parameters = Collections.unmodifiableList(new ArrayList<Object>(parameters));
+		this.untranslated = ImmutableList.copyOf(untranslated);
+	}
+
+	/**
+	 * @return the SQL condition to use in a <code>WHERE</code> clause,
+	 *         <code>null</code> if no part of the filter could be translated
+	 */
+	@Nullable
+	public String getCondition() {
+		return condition;
+	}
+
+	/**
+	 * @return the values of the parameters in the SQL condition
+	 */
+	public List<Object> getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * @return descriptions of the parts of the filter that could not be
+	 *         translated
+	 */
+	public List<String> getUntranslated() {
+		return untranslated;
+	}
+
+	/**
+	 * @return if no part of the filter could be translated
+	 */
+	public boolean isEmpty() {
+		return condition == null;
+	}
+
+	/**
+	 * @return if the filter was translated completely, i.e. it does not need
+	 *         to be applied to the instances retrieved from the database
+	 */
+	public boolean isComplete() {
+		return condition != null && untranslated.isEmpty();
+	}
+
+	/**
+	 * Create a filter that combines an additional condition with the
+	 * condition of this filter.
+	 * 
+	 * @param additionalCondition the SQL condition to add
+	 * @param additionalParameters the values of the parameters in the
+	 *            additional condition
+	 * @return the combined filter
+	 */
+	public SQLFilter and(String additionalCondition, List<Object> additionalParameters) {
+		List<Object> combinedParameters = new ArrayList<Object>(parameters);
+		combinedParameters.addAll(additionalParameters);
+		String combined = (condition == null) ? (additionalCondition)
+				: ("(" + condition + ") AND (" + additionalCondition + ")");
+		return new SQLFilter(combined, combinedParameters, untranslated);
+	}
+
+	/**
+	 * Append the condition as <code>WHERE</code> clause to the given query.
+	 * 
+	 * @param query the query
+	 * @return the query including the condition
+	 */
+	public String appendTo(String query) {
+		if (condition == null) {
+			return query;
+		}
+		return query + " WHERE " + condition;
+	}
+
+	/**
+	 * Set the values of the condition parameters on a prepared statement.
+	 * 
+	 * @param statement the prepared statement created for a query that
+	 *            includes the condition and has no other parameters
+	 * @throws SQLException if setting a parameter fails
+	 */
+	public void setParameters(PreparedStatement statement) throws SQLException {
+		for (int i = 0; i < parameters.size(); i++) {
+			statement.setObject(i + 1, parameters.get(i));
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		result.append((condition == null) ? "no SQL condition" : condition);
+		if (!parameters.isEmpty()) {
+			result.append(" with parameters ").append(parameters);
+		}
+		if (!untranslated.isEmpty()) {
+			result.append(", not translated: ").append(untranslated);
+		}
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,525 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.jdbc.filter;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.ExcludeFilter;
+import org.opengis.filter.Filter;
+import org.opengis.filter.IncludeFilter;
+import org.opengis.filter.Not;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.PropertyIsLike;
+import org.opengis.filter.PropertyIsNotEqualTo;
+import org.opengis.filter.PropertyIsNull;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.spatial.BBOX;
+import org.opengis.filter.spatial.Intersects;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKTWriter;
+
+import eu.esdihumboldt.hale.common.filter.AbstractGeotoolsFilter;
+import eu.esdihumboldt.hale.common.instance.geometry.impl.CodeDefinition;
+import eu.esdihumboldt.hale.common.instance.helper.CompiledPropertyPath;
+import eu.esdihumboldt.hale.common.schema.model.ChildDefinition;
+import eu.esdihumboldt.hale.common.schema.model.PropertyDefinition;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.Binding;
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.GeometryType;
+import eu.esdihumboldt.hale.io.jdbc.GeometryAdvisor;
+import eu.esdihumboldt.hale.io.jdbc.JDBCUtil;
+import eu.esdihumboldt.hale.io.jdbc.constraints.GeometryMetadata;
+import eu.esdihumboldt.hale.io.jdbc.constraints.SQLArray;
+import eu.esdihumboldt.hale.io.jdbc.constraints.internal.GeometryAdvisorConstraint;
+
+/**
+ * Translates CQL/ECQL based instance filters to SQL conditions on a database
+ * table. The top level conjunctions of a filter are translated separately, so
+ * parts of a filter that cannot be translated can still be evaluated on the
+ * instances retrieved from the database.
+ * 
+ * Supported are comparisons of a column with a literal, <code>LIKE</code>,
+ * <code>BETWEEN</code> and <code>IS NULL</code>, the logical operators and,
+ * for databases whose {@link GeometryAdvisor} supports it, <code>BBOX</code>
+ * and <code>INTERSECTS</code>. Spatial conditions are only translated if
+ * they specify no CRS or the same EPSG code as the geometry column.
+ * 
+ * @author Simon Templer
+ */
+public class SQLFilterTranslator {
+
+	/**
+	 * A translated part of a filter.
+	 */
+	private static class Condition {
+
+		private final String sql;
+
+		private final List<Object> parameters;
+
+		public Condition(String sql, List<Object> parameters) {
+			super();
+			this.sql = sql;
+			this.parameters = parameters;
+		}
+
+		public Condition(String sql, Object... parameters) {
+			this(sql, toList(parameters));
+		}
+
+		private static List<Object> toList(Object... parameters) {
+			List<Object> result = new ArrayList<Object>(parameters.length);
+			Collections.addAll(result, parameters);
+			return result;
+		}
+
+	}
+
+	/**
+	 * A column referenced in a filter.
+	 */
+	private static class Column {
+
+		private final String name;
+
+		private final TypeDefinition type;
+
+		public Column(String name, TypeDefinition type) {
+			super();
+			this.name = name;
+			this.type = type;
+		}
+
+	}
+
+	private final TypeDefinition table;
+
+	/**
+	 * Create a translator for filters on the given table.
+	 * 
+	 * @param table the type definition associated to the database table
+	 */
+	public SQLFilterTranslator(TypeDefinition table) {
+		super();
+		this.table = table;
+	}
+
+	/**
+	 * Translate an instance filter to an SQL condition.
+	 * 
+	 * @param filter the instance filter
+	 * @return the translated filter, it is empty if the filter cannot be
+	 *         translated at all
+	 */
+	public SQLFilter translate(eu.esdihumboldt.hale.common.instance.model.Filter filter) {
+		if (!(filter instanceof AbstractGeotoolsFilter)) {
+			return new SQLFilter(null, Collections.emptyList(),
+					Collections.singletonList(String.valueOf(filter)));
+		}
+
+		List<Filter> parts = new ArrayList<>();
+		collectConjunction(((AbstractGeotoolsFilter) filter).getInternFilter(), parts);
+
+		StringBuilder condition = new StringBuilder();
+		List<Object> parameters = new ArrayList<>();
+		List<String> untranslated = new ArrayList<>();
+		for (Filter part : parts) {
+			if (part instanceof IncludeFilter) {
+				continue;
+			}
+
+			Condition translated = translate(part);
+			if (translated == null) {
+				untranslated.add(part.toString());
+			}
+			else {
+				if (condition.length() > 0) {
+					condition.append(" AND ");
+				}
+				condition.append('(').append(translated.sql).append(')');
+				parameters.addAll(translated.parameters);
+			}
+		}
+
+		return new SQLFilter((condition.length() > 0) ? (condition.toString()) : (null),
+				parameters, untranslated);
+	}
+
+	/**
+	 * Collect the parts of a conjunction.
+	 * 
+	 * @param filter the filter
+	 * @param parts the list to add the parts to
+	 */
+	private void collectConjunction(Filter filter, List<Filter> parts) {
+		if (filter instanceof And) {
+			for (Filter child : ((And) filter).getChildren()) {
+				collectConjunction(child, parts);
+			}
+		}
+		else {
+			parts.add(filter);
+		}
+	}
+
+	/**
+	 * Translate a filter.
+	 * 
+	 * @param filter the filter
+	 * @return the SQL condition or <code>null</code> if the filter cannot be
+	 *         translated
+	 */
+	private Condition translate(Filter filter) {
+		if (filter instanceof IncludeFilter) {
+			return new Condition("1 = 1");
+		}
+		if (filter instanceof ExcludeFilter) {
+			return new Condition("1 = 0");
+		}
+		if (filter instanceof And) {
+			return translateLogical(((And) filter).getChildren(), " AND ");
+		}
+		if (filter instanceof Or) {
+			return translateLogical(((Or) filter).getChildren(), " OR ");
+		}
+		if (filter instanceof Not) {
+			/*
+			 * Only negated null checks are supported, as the negation of other
+			 * conditions in SQL does not match missing values.
+			 */
+			Filter negated = ((Not) filter).getFilter();
+			if (negated instanceof PropertyIsNull) {
+				Column column = getColumn(((PropertyIsNull) negated).getExpression());
+				if (column != null) {
+					return new Condition(column.name + " IS NOT NULL");
+				}
+			}
+			return null;
+		}
+		if (filter instanceof BinaryComparisonOperator) {
+			return translateComparison((BinaryComparisonOperator) filter);
+		}
+		if (filter instanceof PropertyIsBetween) {
+			PropertyIsBetween between = (PropertyIsBetween) filter;
+			Column column = getColumn(between.getExpression());
+			if (column == null) {
+				return null;
+			}
+			Object lower = getParameter(between.getLowerBoundary(), column);
+			Object upper = getParameter(between.getUpperBoundary(), column);
+			if (lower == null || upper == null) {
+				return null;
+			}
+			return new Condition(column.name + " BETWEEN ? AND ?", lower, upper);
+		}
+		if (filter instanceof PropertyIsLike) {
+			return translateLike((PropertyIsLike) filter);
+		}
+		if (filter instanceof PropertyIsNull) {
+			Column column = getColumn(((PropertyIsNull) filter).getExpression());
+			if (column == null) {
+				return null;
+			}
+			return new Condition(column.name + " IS NULL");
+		}
+		if (filter instanceof BBOX) {
+			return translateBBox((BBOX) filter);
+		}
+		if (filter instanceof Intersects) {
+			return translateIntersects((Intersects) filter);
+		}
+
+		return null;
+	}
+
+	private Condition translateLogical(List<Filter> children, String operator) {
+		StringBuilder sql = new StringBuilder();
+		List<Object> parameters = new ArrayList<>();
+		for (Filter child : children) {
+			Condition condition = translate(child);
+			if (condition == null) {
+				// all parts must be translated
+				return null;
+			}
+			if (sql.length() > 0) {
+				sql.append(operator);
+			}
+			sql.append('(').append(condition.sql).append(')');
+			parameters.addAll(condition.parameters);
+		}
+		if (sql.length() == 0) {
+			return null;
+		}
+		return new Condition(sql.toString(), parameters);
+	}
+
+	private Condition translateComparison(BinaryComparisonOperator filter) {
+		boolean swapped = false;
+		Column column = getColumn(filter.getExpression1());
+		Expression other = filter.getExpression2();
+		if (column == null) {
+			column = getColumn(filter.getExpression2());
+			other = filter.getExpression1();
+			swapped = true;
+		}
+		if (column == null) {
+			return null;
+		}
+
+		Object value = getParameter(other, column);
+		if (value == null) {
+			return null;
+		}
+		if (value instanceof String && !filter.isMatchingCase()) {
+			return null;
+		}
+
+		if (filter instanceof PropertyIsEqualTo) {
+			return new Condition(column.name + " = ?", value);
+		}
+		if (filter instanceof PropertyIsNotEqualTo) {
+			// a missing value is not equal to the literal
+			return new Condition(column.name + " <> ? OR " + column.name + " IS NULL", value);
+		}
+		if (filter instanceof PropertyIsLessThan) {
+			return new Condition(column.name + ((swapped) ? (" > ?") : (" < ?")), value);
+		}
+		if (filter instanceof PropertyIsLessThanOrEqualTo) {
+			return new Condition(column.name + ((swapped) ? (" >= ?") : (" <= ?")), value);
+		}
+		if (filter instanceof PropertyIsGreaterThan) {
+			return new Condition(column.name + ((swapped) ? (" < ?") : (" > ?")), value);
+		}
+		if (filter instanceof PropertyIsGreaterThanOrEqualTo) {
+			return new Condition(column.name + ((swapped) ? (" <= ?") : (" >= ?")), value);
+		}
+		return null;
+	}
+
+	private Condition translateLike(PropertyIsLike like) {
+		Column column = getColumn(like.getExpression());
+		if (column == null || !like.isMatchingCase()
+				|| !String.class.equals(getBinding(column.type))) {
+			return null;
+		}
+		if (!"%".equals(like.getWildCard()) || !"_".equals(like.getSingleChar())) {
+			// only the SQL wildcards are supported
+			return null;
+		}
+
+		String escape = like.getEscape();
+		if (escape == null || escape.isEmpty()) {
+			return new Condition(column.name + " LIKE ?", like.getLiteral());
+		}
+		if (escape.length() != 1 || escape.equals("'")) {
+			return null;
+		}
+		return new Condition(column.name + " LIKE ? ESCAPE '" + escape + "'", like.getLiteral());
+	}
+
+	private Condition translateBBox(BBOX bbox) {
+		Column column = getColumn(bbox.getExpression1());
+		GeometryAdvisor<?> advisor = getGeometryAdvisor(column);
+		if (advisor == null || !isColumnSrs(column, bbox.getSRS())) {
+			return null;
+		}
+
+		String condition = advisor.getBBoxCondition(column.name, column.type);
+		if (condition == null) {
+			return null;
+		}
+		return new Condition(condition, bbox.getMinX(), bbox.getMinY(), bbox.getMaxX(),
+				bbox.getMaxY());
+	}
+
+	private Condition translateIntersects(Intersects intersects) {
+		Column column = getColumn(intersects.getExpression1());
+		Expression other = intersects.getExpression2();
+		if (column == null) {
+			column = getColumn(intersects.getExpression2());
+			other = intersects.getExpression1();
+		}
+		GeometryAdvisor<?> advisor = getGeometryAdvisor(column);
+		if (advisor == null || !(other instanceof Literal)
+				|| !(((Literal) other).getValue() instanceof Geometry)) {
+			return null;
+		}
+		Geometry geometry = (Geometry) ((Literal) other).getValue();
+		if (geometry.getSRID() > 0) {
+			if (!isColumnSrs(column, "EPSG:" + geometry.getSRID())) {
+				return null;
+			}
+		}
+		else if (geometry.getUserData() != null) {
+			// CRS information that is not checked
+			return null;
+		}
+
+		String condition = advisor.getIntersectsCondition(column.name, column.type);
+		if (condition == null) {
+			return null;
+		}
+		return new Condition(condition, new WKTWriter().write(geometry));
+	}
+
+	/**
+	 * Determine if coordinates in the given CRS can be compared with a
+	 * geometry column in the database.
+	 * 
+	 * @param column the geometry column
+	 * @param srs the CRS code, <code>null</code> or empty if no CRS was
+	 *            specified and the coordinates are in the CRS of the column
+	 * @return if the CRS is not specified or is the CRS of the column
+	 */
+	private static boolean isColumnSrs(Column column, String srs) {
+		if (srs == null || srs.isEmpty()) {
+			return true;
+		}
+
+		String code = CodeDefinition.extractEPSGCode(srs);
+		GeometryMetadata metadata = column.type.getConstraint(GeometryMetadata.class);
+		return code != null && "EPSG".equals(metadata.getAuthName())
+				&& code.equals(metadata.getSrs());
+	}
+
+	/**
+	 * Get the geometry advisor for a geometry column.
+	 * 
+	 * @param column the column, may be <code>null</code>
+	 * @return the geometry advisor or <code>null</code> if the column is no
+	 *         geometry column or there is no advisor
+	 */
+	private GeometryAdvisor<?> getGeometryAdvisor(Column column) {
+		if (column == null || !column.type.getConstraint(GeometryType.class).isGeometry()) {
+			return null;
+		}
+		return column.type.getConstraint(GeometryAdvisorConstraint.class).getAdvisor();
+	}
+
+	/**
+	 * Get the column an expression references.
+	 * 
+	 * @param expression the expression
+	 * @return the column or <code>null</code> if the expression does not
+	 *         reference exactly one column of the table
+	 */
+	private Column getColumn(Expression expression) {
+		if (!(expression instanceof PropertyName)) {
+			return null;
+		}
+
+		CompiledPropertyPath path = CompiledPropertyPath.compile(table,
+				((PropertyName) expression).getPropertyName());
+		if (path.isEmpty() || !path.isUnique()) {
+			return null;
+		}
+		List<QName> names = path.getPaths().get(0);
+		if (names.size() != 1) {
+			return null;
+		}
+
+		ChildDefinition<?> child = table.getChild(names.get(0));
+		PropertyDefinition property = (child == null) ? (null) : (child.asProperty());
+		if (property == null) {
+			return null;
+		}
+
+		TypeDefinition type = property.getPropertyType();
+		if (type.getConstraint(SQLArray.class).isArray()) {
+			return null;
+		}
+
+		return new Column(JDBCUtil.quote(names.get(0).getLocalPart()), type);
+	}
+
+	/**
+	 * Get the value of a literal to compare with a column as parameter.
+	 * 
+	 * @param expression the expression
+	 * @param column the column the value is compared with
+	 * @return the parameter value or <code>null</code> if the expression is no
+	 *         literal or its value cannot be compared with the column in the
+	 *         database
+	 */
+	private Object getParameter(Expression expression, Column column) {
+		if (!(expression instanceof Literal)) {
+			return null;
+		}
+
+		Object value = ((Literal) expression).getValue();
+		Class<?> binding = getBinding(column.type);
+		if (value == null || binding == null) {
+			return null;
+		}
+
+		if (value instanceof Number && Number.class.isAssignableFrom(binding)) {
+			return value;
+		}
+		if (value instanceof String && String.class.equals(binding)) {
+			return value;
+		}
+		if (value instanceof Boolean && Boolean.class.equals(binding)) {
+			return value;
+		}
+		if (value instanceof Date && Date.class.isAssignableFrom(binding)) {
+			if (value instanceof java.sql.Date || value instanceof Timestamp) {
+				return value;
+			}
+			return new Timestamp(((Date) value).getTime());
+		}
+
+		return null;
+	}
+
+	/**
+	 * Get the binding of a column type.
+	 * 
+	 * @param type the column type
+	 * @return the binding, primitive types are replaced by their wrappers
+	 */
+	private static Class<?> getBinding(TypeDefinition type) {
+		Class<?> binding = type.getConstraint(Binding.class).getBinding();
+		if (binding == null || !binding.isPrimitive()) {
+			return binding;
+		}
+		if (binding == boolean.class) {
+			return Boolean.class;
+		}
+		if (binding == char.class) {
+			return Character.class;
+		}
+		// all other primitives are numbers
+		return Number.class;
+	}
+
+}
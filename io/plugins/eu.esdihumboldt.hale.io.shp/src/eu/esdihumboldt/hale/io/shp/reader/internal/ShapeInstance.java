@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.shp.reader.internal;
+
+import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstance;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+
+/**
+ * Instance read from a Shapefile. Stores the number of the record it was read
+ * from.
+ * 
+ * @author Simon Templer
+ */
+public class ShapeInstance extends DefaultInstance {
+
+	private final int recordNumber;
+
+	/**
+	 * Create an instance with an associated record number.
+	 * 
+	 * @param type the type definition
+	 * @param recordNumber the number of the record in the Shapefile,
+	 *            <code>-1</code> if it is not known
+	 */
+	public ShapeInstance(TypeDefinition type, int recordNumber) {
+		super(type, null);
+		this.recordNumber = recordNumber;
+	}
+
+	/**
+	 * @return the number of the record in the Shapefile, <code>-1</code> if it
+	 *         is not known
+	 */
+	public int getRecordNumber() {
+		return recordNumber;
+	}
+
+}
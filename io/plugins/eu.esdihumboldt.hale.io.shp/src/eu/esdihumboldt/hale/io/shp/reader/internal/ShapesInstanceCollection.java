@@ -17,22 +17,29 @@
 package eu.esdihumboldt.hale.io.shp.reader.internal;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.namespace.QName;
 
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.factory.CommonFactoryFinder;
 import org.opengis.feature.Property;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.FilterFactory;
+import org.opengis.filter.identity.FeatureId;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multiset;
 import com.vividsolutions.jts.geom.Geometry;
 
 import de.fhg.igd.slf4jplus.ALogger;
@@ -51,9 +58,11 @@ import eu.esdihumboldt.hale.common.instance.model.MutableInstance;
 import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
 import eu.esdihumboldt.hale.common.instance.model.ext.InstanceCollection2;
 import eu.esdihumboldt.hale.common.instance.model.ext.InstanceIterator;
-import eu.esdihumboldt.hale.common.instance.model.impl.DefaultInstance;
+import eu.esdihumboldt.hale.common.instance.model.ext.RandomAccessInstanceCollection;
 import eu.esdihumboldt.hale.common.instance.model.impl.FilteredInstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.impl.IndexInstanceReference;
 import eu.esdihumboldt.hale.common.instance.model.impl.PseudoInstanceReference;
+import eu.esdihumboldt.hale.common.instance.model.impl.ReferenceInstanceCollection;
 import eu.esdihumboldt.hale.common.schema.geometry.CRSDefinition;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
 import eu.esdihumboldt.hale.io.shp.ShapefileConstants;
@@ -63,10 +72,13 @@ import eu.esdihumboldt.hale.io.shp.ShapefileConstants;
  * 
  * @author Simon Templer
  */
-public class ShapesInstanceCollection implements InstanceCollection2 {
+public class ShapesInstanceCollection
+		implements RandomAccessInstanceCollection, InstanceCollection2 {
 
 	private static final ALogger log = ALoggerFactory.getLogger(ShapesInstanceCollection.class);
 
+	private static final FilterFactory FILTER_FACTORY = CommonFactoryFinder.getFilterFactory(null);
+
 	/**
 	 * Iterates through a shape data store
 	 */
@@ -74,8 +86,6 @@ public class ShapesInstanceCollection implements InstanceCollection2 {
 
 		private final SimpleFeatureIterator currentIterator;
 
-		private final Set<QName> missingProperties = new HashSet<QName>();
-
 		/**
 		 * Create a new iterator on the data store.
 		 * 
@@ -94,91 +104,7 @@ public class ShapesInstanceCollection implements InstanceCollection2 {
 
 		@Override
 		public Instance next() {
-			SimpleFeature feature = currentIterator.next();
-
-			Instance instance = createInstance(type, feature);
-			if (instance != null) {
-				return instance;
-			}
-			else {
-				log.error("Could not create a data instance from a feature of type "
-						+ type.getName());
-				throw new IllegalStateException();
-			}
-		}
-
-		/**
-		 * Create an instance from a given feature
-		 * 
-		 * @param type the type definition associated to the feature/instance
-		 * @param feature the feature
-		 * @return the instance or <code>null</code> if it couldn't be created
-		 */
-		private Instance createInstance(TypeDefinition type, SimpleFeature feature) {
-			MutableInstance instance = new DefaultInstance(type, null);
-
-			for (Property property : feature.getProperties()) {
-				Object value = property.getValue();
-				QName propertyName = new QName(property.getName().getNamespaceURI(), property
-						.getName().getLocalPart());
-
-				if (type.getChild(propertyName) == null) {
-					if (!missingProperties.contains(propertyName)) {
-						log.warn("Discarding values of property " + propertyName.getLocalPart()
-								+ " as it is not contained in the schema type.");
-						missingProperties.add(propertyName);
-					}
-					// only add values for properties contained in the type
-					continue;
-				}
-
-				// wrap geometry
-				if (value instanceof Geometry) {
-					// try to determine CRS
-					CoordinateReferenceSystem crs = null;
-
-					// try user data of geometry
-					Object userData = ((Geometry) value).getUserData();
-					if (userData instanceof CoordinateReferenceSystem) {
-						crs = (CoordinateReferenceSystem) userData;
-					}
-
-					if (crs == null) {
-						// try CRS associated to geometry descriptor
-						AttributeDescriptor pd = feature.getFeatureType().getDescriptor(
-								property.getName());
-						if (pd != null && pd instanceof GeometryDescriptor) {
-							crs = ((GeometryDescriptor) pd).getCoordinateReferenceSystem();
-						}
-					}
-
-					if (crs == null) {
-						// try CRS associated to feature type
-						crs = feature.getFeatureType().getCoordinateReferenceSystem();
-					}
-
-					CRSDefinition crsDef;
-					if (crs != null) {
-						crsDef = CRSDefinitionUtil.createDefinition(crs, crsCache);
-					}
-					else {
-						// ask CRS provider
-						crsDef = crsProvider.getCRS(type, Collections.singletonList(propertyName));
-					}
-					value = new DefaultGeometryProperty<Geometry>(crsDef, (Geometry) value);
-				}
-
-				// TODO safe add? in respect to binding, existence of property
-				instance.addProperty(propertyName, value);
-			}
-
-			// add filename augmented property
-			if (fileName != null) {
-				instance.addProperty(new QName(ShapefileConstants.SHAPEFILE_AUGMENT_NS,
-						ShapefileConstants.AUGMENTED_PROPERTY_FILENAME), fileName);
-			}
-
-			return instance;
+			return createInstance(currentIterator.next());
 		}
 
 		@Override
@@ -222,6 +148,9 @@ public class ShapesInstanceCollection implements InstanceCollection2 {
 	 */
 	protected final CRSResolveCache crsCache = new EPSGResolveCache();
 
+	private final Set<QName> missingProperties = Collections
+			.newSetFromMap(new ConcurrentHashMap<QName, Boolean>());
+
 	/**
 	 * Data store for accessing simple features (from a Shapefile).
 	 * 
@@ -240,11 +169,129 @@ public class ShapesInstanceCollection implements InstanceCollection2 {
 	}
 
 	/**
+	 * Create an instance from a given feature
+	 * 
+	 * @param type the type definition associated to the feature/instance
+	 * @param feature the feature
+	 * @return the instance or <code>null</code> if it couldn't be created
+	 */
+	private Instance createInstance(TypeDefinition type, SimpleFeature feature) {
+		MutableInstance instance = new ShapeInstance(type, getRecordNumber(feature));
+
+		for (Property property : feature.getProperties()) {
+			Object value = property.getValue();
+			QName propertyName = new QName(property.getName().getNamespaceURI(), property
+					.getName().getLocalPart());
+
+			if (type.getChild(propertyName) == null) {
+				if (!missingProperties.contains(propertyName)) {
+					log.warn("Discarding values of property " + propertyName.getLocalPart()
+							+ " as it is not contained in the schema type.");
+					missingProperties.add(propertyName);
+				}
+				// only add values for properties contained in the type
+				continue;
+			}
+
+			// wrap geometry
+			if (value instanceof Geometry) {
+				// try to determine CRS
+				CoordinateReferenceSystem crs = null;
+
+				// try user data of geometry
+				Object userData = ((Geometry) value).getUserData();
+				if (userData instanceof CoordinateReferenceSystem) {
+					crs = (CoordinateReferenceSystem) userData;
+				}
+
+				if (crs == null) {
+					// try CRS associated to geometry descriptor
+					AttributeDescriptor pd = feature.getFeatureType().getDescriptor(
+							property.getName());
+					if (pd != null && pd instanceof GeometryDescriptor) {
+						crs = ((GeometryDescriptor) pd).getCoordinateReferenceSystem();
+					}
+				}
+
+				if (crs == null) {
+					// try CRS associated to feature type
+					crs = feature.getFeatureType().getCoordinateReferenceSystem();
+				}
+
+				CRSDefinition crsDef;
+				if (crs != null) {
+					crsDef = CRSDefinitionUtil.createDefinition(crs, crsCache);
+				}
+				else {
+					// ask CRS provider
+					crsDef = crsProvider.getCRS(type, Collections.singletonList(propertyName));
+				}
+				value = new DefaultGeometryProperty<Geometry>(crsDef, (Geometry) value);
+			}
+
+			// TODO safe add? in respect to binding, existence of property
+			instance.addProperty(propertyName, value);
+		}
+
+		// add filename augmented property
+		if (fileName != null) {
+			instance.addProperty(new QName(ShapefileConstants.SHAPEFILE_AUGMENT_NS,
+					ShapefileConstants.AUGMENTED_PROPERTY_FILENAME), fileName);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Create an instance from a feature.
+	 * 
+	 * @param feature the feature
+	 * @return the instance
+	 */
+	private Instance createInstance(SimpleFeature feature) {
+		Instance instance = createInstance(type, feature);
+		if (instance != null) {
+			return instance;
+		}
+		else {
+			log.error("Could not create a data instance from a feature of type " + type.getName());
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * Determine the record number of a feature from its feature ID.
+	 * 
+	 * @param feature the feature
+	 * @return the record number or <code>-1</code> if it cannot be determined
+	 */
+	private int getRecordNumber(SimpleFeature feature) {
+		String id = feature.getID();
+		String prefix = source.getSchema().getTypeName() + ".";
+		if (id != null && id.startsWith(prefix)) {
+			try {
+				return Integer.parseInt(id.substring(prefix.length()));
+			} catch (NumberFormatException e) {
+				// ignore
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Creates a reference based on the record number of the instance in the
+	 * Shapefile, if it is known.
+	 * 
 	 * @see InstanceResolver#getReference(Instance)
 	 */
 	@Override
 	public InstanceReference getReference(Instance instance) {
-		// TODO data store based instance reference?
+		if (instance instanceof ShapeInstance) {
+			int recordNumber = ((ShapeInstance) instance).getRecordNumber();
+			if (recordNumber >= 0) {
+				return new IndexInstanceReference(instance.getDataSet(), recordNumber);
+			}
+		}
 		return new PseudoInstanceReference(instance);
 	}
 
@@ -253,14 +300,104 @@ public class ShapesInstanceCollection implements InstanceCollection2 {
 	 */
 	@Override
 	public Instance getInstance(InstanceReference reference) {
-		// TODO data store based instance reference?
 		if (reference instanceof PseudoInstanceReference) {
 			return ((PseudoInstanceReference) reference).getInstance();
 		}
+		if (reference instanceof IndexInstanceReference) {
+			try (ResourceIterator<Instance> it = getInstances(
+					Collections.singleton(reference)).iterator()) {
+				if (it.hasNext()) {
+					return it.next();
+				}
+			}
+		}
 
 		return null;
 	}
 
+	/**
+	 * Resolves references based on record numbers with a single feature ID
+	 * query on the Shapefile. The instances are returned in the order of the
+	 * records, with one instance per reference.
+	 * 
+	 * @see InstanceResolver#getInstances(Collection)
+	 */
+	@Override
+	public InstanceCollection getInstances(Collection<? extends InstanceReference> references) {
+		// number of references per record
+		final Multiset<Integer> counts = HashMultiset.create();
+		final Set<FeatureId> ids = new HashSet<FeatureId>();
+		String prefix = source.getSchema().getTypeName() + ".";
+		for (InstanceReference reference : references) {
+			if (reference instanceof IndexInstanceReference) {
+				int index = ((IndexInstanceReference) reference).getIndex();
+				if (counts.add(index, 1) == 0) {
+					ids.add(FILTER_FACTORY.featureId(prefix + index));
+				}
+			}
+			else {
+				return new ReferenceInstanceCollection(references, this);
+			}
+		}
+
+		return new ReferenceInstanceCollection(references, this) {
+
+			@Override
+			public ResourceIterator<Instance> iterator() {
+				final SimpleFeatureIterator features;
+				try {
+					features = source.getFeatures(FILTER_FACTORY.id(ids)).features();
+				} catch (IOException e) {
+					throw new IllegalStateException("Could not read shapefile", e);
+				}
+
+				return new ResourceIterator<Instance>() {
+
+					private SimpleFeature current;
+
+					private int remaining = 0;
+
+					@Override
+					public boolean hasNext() {
+						return remaining > 0 || features.hasNext();
+					}
+
+					@Override
+					public Instance next() {
+						if (remaining == 0) {
+							current = features.next();
+							remaining = Math.max(1, counts.count(getRecordNumber(current)));
+						}
+						remaining--;
+						return createInstance(current);
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+
+					@Override
+					public void close() {
+						features.close();
+					}
+				};
+			}
+
+		};
+	}
+
+	/**
+	 * Looking up features by their ID in a Shapefile involves scanning the
+	 * file, so resolving references individually is not cheap.
+	 * 
+	 * @see RandomAccessInstanceCollection#supportsRandomAccess()
+	 */
+	@Override
+	public boolean supportsRandomAccess() {
+		return false;
+	}
+
 	/**
 	 * @see InstanceCollection#iterator()
 	 */
@@ -56,6 +56,13 @@ public class PartitioningWFSWriter extends AbstractGeoInstanceWriter implements
 	 */
 	public static final int DEFAULT_INSTANCES_THRESHOLD = 15000;
 
+	/**
+	 * Name of the parameter specifying if the instance references should be
+	 * retrieved in a second pass over the instances instead of being held in
+	 * memory while partitioning.
+	 */
+	public static final String PARAM_STREAMING = "partition.streaming";
+
 	@Override
 	protected IOReport execute(final ProgressIndicator progress, final IOReporter reporter)
 			throws IOProviderConfigurationException, IOException {
@@ -64,8 +71,9 @@ public class PartitioningWFSWriter extends AbstractGeoInstanceWriter implements
 			progress.setCurrentTask("Partitioning data");
 
 			// create a reference graph
+			boolean streaming = getParameter(PARAM_STREAMING).as(Boolean.class, false);
 			ReferenceGraph<String> rg = new ReferenceGraph<String>(new XMLInspector(),
-					getInstances());
+					getInstances(), streaming);
 
 			// partition the graph
 			int threshold = getParameter(PARAM_INSTANCES_THRESHOLD).as(Integer.class,
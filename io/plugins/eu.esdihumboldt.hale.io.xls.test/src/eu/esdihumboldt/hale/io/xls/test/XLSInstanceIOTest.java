@@ -52,14 +52,28 @@ public class XLSInstanceIOTest extends TestCase {
 	 */
 	@Test
 	public void test() {
+		testRoundTrip("eu.esdihumboldt.hale.io.xls.xls", "data.xls");
+	}
+
+	/**
+	 * Exports and imports instances like {@link #test()}, but with a XLSX
+	 * file, that is written with a streaming workbook and read without
+	 * loading the whole workbook.
+	 */
+	@Test
+	public void testXLSX() {
+		testRoundTrip(XLSInstanceReader.XLSX_CONTENT_TYPE_ID, "data.xlsx");
+	}
+
+	private void testRoundTrip(String contentTypeId, String fileName) {
 		// set instances to xls instance writer
 		XLSInstanceWriter writer = new XLSInstanceWriter();
 		InstanceCollection instances = XLSInstanceWriterTestExamples.createInstanceCollection();
 		IContentType contentType = HalePlatform.getContentTypeManager().getContentType(
-				"eu.esdihumboldt.hale.io.xls.xls");
+				contentTypeId);
 		writer.setParameter(InstanceTableIOConstants.SOLVE_NESTED_PROPERTIES, Value.of(false));
 		File tempDir = Files.createTempDir();
-		File tempFile = new File(tempDir, "data.xls");
+		File tempFile = new File(tempDir, fileName);
 		writer.setInstances(instances);
 		try {
 			// write instances to a temporary XLS file
@@ -107,14 +121,19 @@ public class XLSInstanceIOTest extends TestCase {
 		}
 		// compare size of instance collection
 		InstanceCollection inst = reader.getInstances();
-		assertEquals(4, inst.size());
+		if (inst.hasSize()) {
+			assertEquals(4, inst.size());
+		}
 
 		// check if instance collection contains current instance
+		int count = 0;
 		Iterator<Instance> instanceIt = inst.iterator();
 		while (instanceIt.hasNext()) {
 			Instance instance = instanceIt.next();
 			assertTrue(contains(instances.iterator(), instance));
+			count++;
 		}
+		assertEquals(4, count);
 
 		// other instance should be contained in the imported instances
 		InstanceCollection falseInstances = XLSInstanceWriterTestExamples
@@ -125,6 +144,21 @@ public class XLSInstanceIOTest extends TestCase {
 			assertFalse(contains(falseInstances.iterator(), instance));
 		}
 
+		// reading a sheet that does not exist should fail
+		XLSInstanceReader missingSheetReader = new XLSInstanceReader();
+		missingSheetReader.setSourceSchema(schema);
+		missingSheetReader.setParameter(CommonSchemaConstants.PARAM_TYPENAME,
+				Value.of("ItemType"));
+		missingSheetReader.setParameter(InstanceTableIOConstants.SHEET_INDEX, Value.of(1));
+		missingSheetReader.setContentType(contentType);
+		missingSheetReader.setSource(new FileIOSupplier(tempFile));
+		try {
+			IOReport report = missingSheetReader.execute(null);
+			assertFalse(report.isSuccess());
+		} catch (IOProviderConfigurationException | IOException e) {
+			fail("Execution of xls instance reader failed.");
+		}
+
 		// delete file and temporary directory
 		tempFile.delete();
 		tempDir.delete();
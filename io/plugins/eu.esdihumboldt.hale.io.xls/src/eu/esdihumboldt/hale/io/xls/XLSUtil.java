@@ -52,13 +52,7 @@ public class XLSUtil {
 		case Cell.CELL_TYPE_BOOLEAN:
 			return String.valueOf(value.getBooleanValue());
 		case Cell.CELL_TYPE_NUMERIC:
-			// number formatting
-			double number = value.getNumberValue();
-			if (number == Math.floor(number)) {
-				// it's an integer
-				return String.valueOf((int) number);
-			}
-			return String.valueOf(value.getNumberValue());
+			return formatNumber(value.getNumberValue());
 		case Cell.CELL_TYPE_STRING:
 			return value.getStringValue();
 		case Cell.CELL_TYPE_FORMULA:
@@ -70,4 +64,18 @@ public class XLSUtil {
 		}
 	}
 
+	/**
+	 * Get the text for a numeric cell value.
+	 * 
+	 * @param number the cell value
+	 * @return the cell text, without decimal places for integers
+	 */
+	public static String formatNumber(double number) {
+		if (number == Math.floor(number)) {
+			// it's an integer
+			return String.valueOf((int) number);
+		}
+		return String.valueOf(number);
+	}
+
 }
@@ -25,6 +25,8 @@ import javax.xml.namespace.QName;
 
 import org.springframework.core.convert.ConversionService;
 
+import de.fhg.igd.slf4jplus.ALogger;
+import de.fhg.igd.slf4jplus.ALoggerFactory;
 import eu.esdihumboldt.hale.common.core.HalePlatform;
 import eu.esdihumboldt.hale.common.core.io.IOProviderConfigurationException;
 import eu.esdihumboldt.hale.common.core.io.ProgressIndicator;
@@ -53,7 +55,14 @@ import eu.esdihumboldt.hale.io.xls.AnalyseXLSSchemaTable;
  */
 public class XLSInstanceReader extends AbstractInstanceReader {
 
-	private DefaultInstanceCollection instances;
+	private static final ALogger log = ALoggerFactory.getLogger(XLSInstanceReader.class);
+
+	/**
+	 * Identifier of the content type of Excel 2007 (XLSX) files.
+	 */
+	public static final String XLSX_CONTENT_TYPE_ID = "eu.esdihumboldt.hale.io.xls.xlsx";
+
+	private InstanceCollection instances;
 	private PropertyDefinition[] propAr;
 	private TypeDefinition type;
 	private AnalyseXLSSchemaTable analyser;
@@ -90,7 +99,28 @@ public class XLSInstanceReader extends AbstractInstanceReader {
 		// first sheet as default
 		sheetNum = getParameter(InstanceTableIOConstants.SHEET_INDEX).as(int.class, 0);
 
-		instances = new DefaultInstanceCollection(new ArrayList<Instance>());
+		// get type definition of the schema
+		type = getSourceSchema().getType(
+				QName.valueOf(getParameter(CommonSchemaConstants.PARAM_TYPENAME).as(String.class)));
+
+		if (getContentType() != null && XLSX_CONTENT_TYPE_ID.equals(getContentType().getId())) {
+			// make sure the workbook and sheet can be read
+			try (XLSXSheetReader sheetReader = new XLSXSheetReader(getSource(), sheetNum)) {
+				// the rows are read lazily by the instance collection
+			} catch (Exception e) {
+				reporter.error(new IOMessageImpl("Reading the excel sheet has failed", e));
+				return reporter;
+			}
+
+			// read XLSX rows lazily
+			instances = new XLSXInstanceCollection(getSource(), sheetNum, skipFirst, type);
+			reporter.setSuccess(true);
+			return reporter;
+		}
+
+		DefaultInstanceCollection collection = new DefaultInstanceCollection(
+				new ArrayList<Instance>());
+		instances = collection;
 
 		try {
 			// analyze the excel sheet to get all information
@@ -100,10 +130,6 @@ public class XLSInstanceReader extends AbstractInstanceReader {
 			return reporter;
 		}
 
-		// get type definition of the schema
-		type = getSourceSchema().getType(
-				QName.valueOf(getParameter(CommonSchemaConstants.PARAM_TYPENAME).as(String.class)));
-
 		// get property definition
 		propAr = type.getChildren().toArray(new PropertyDefinition[type.getChildren().size()]);
 		Collection<List<String>> rows = analyser.getRows();
@@ -111,7 +137,7 @@ public class XLSInstanceReader extends AbstractInstanceReader {
 		// skip if first row is a header
 		if (!skipFirst) {
 			// otherwise first line is also an instance
-			createInstanceCollection(analyser.getHeader(), reporter);
+			collection.add(createInstance(type, propAr, analyser.getHeader(), line, reporter));
 			line++;
 		}
 
@@ -119,7 +145,7 @@ public class XLSInstanceReader extends AbstractInstanceReader {
 		Iterator<List<String>> allRows = rows.iterator();
 		while (allRows.hasNext()) {
 			List<String> row = allRows.next();
-			createInstanceCollection(row, reporter);
+			collection.add(createInstance(type, propAr, row, line, reporter));
 			line++;
 		}
 
@@ -131,13 +157,16 @@ public class XLSInstanceReader extends AbstractInstanceReader {
 	 * create instances, see
 	 * {@link CSVInstanceReader#execute(ProgressIndicator, IOReporter)}
 	 * 
+	 * @param type the type of the instance
+	 * @param propAr the properties of the type, in the order of the columns
 	 * @param row the current row
-	 * @param reporter the reporter of the writer
-	 * @param solveNestedProperties true, if schema should not be flat <b>(not
-	 *            implemented yet)</b>
+	 * @param line the line number, for error messages
+	 * @param reporter the reporter of the reader, if <code>null</code>
+	 *            conversion errors are logged
+	 * @return the instance created from the row
 	 **/
-	@SuppressWarnings("javadoc")
-	private void createInstanceCollection(List<String> row, IOReporter reporter) {
+	static Instance createInstance(TypeDefinition type, PropertyDefinition[] propAr,
+			List<String> row, int line, IOReporter reporter) {
 		MutableInstance instance = new DefaultInstance(type, null);
 
 //		int propertyIndex = 0;
@@ -170,15 +199,22 @@ public class XLSInstanceReader extends AbstractInstanceReader {
 							}
 						}
 					} catch (Exception e) {
-						reporter.error(new IOMessageImpl("Cannot convert property value to {0}", e,
-								line, -1, binding.getBinding().getSimpleName()));
+						IOMessageImpl message = new IOMessageImpl(
+								"Cannot convert property value to {0}", e, line, -1,
+								binding.getBinding().getSimpleName());
+						if (reporter != null) {
+							reporter.error(message);
+						}
+						else {
+							log.error(message.getFormattedMessage(), e);
+						}
 					}
 					instance.addProperty(property.getName(), value);
 				}
 //				propertyIndex++;
 			}
 		}
-		instances.add(instance);
+		return instance;
 	}
 
 	/**
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.xls.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import de.fhg.igd.slf4jplus.ALogger;
+import de.fhg.igd.slf4jplus.ALoggerFactory;
+import eu.esdihumboldt.hale.common.core.io.supplier.LocatableInputSupplier;
+import eu.esdihumboldt.hale.common.instance.model.Filter;
+import eu.esdihumboldt.hale.common.instance.model.Instance;
+import eu.esdihumboldt.hale.common.instance.model.InstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.InstanceReference;
+import eu.esdihumboldt.hale.common.instance.model.ResourceIterator;
+import eu.esdihumboldt.hale.common.instance.model.ext.InstanceCollection2;
+import eu.esdihumboldt.hale.common.instance.model.impl.FilteredInstanceCollection;
+import eu.esdihumboldt.hale.common.instance.model.impl.PseudoInstanceReference;
+import eu.esdihumboldt.hale.common.schema.model.PropertyDefinition;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+
+/**
+ * Instance collection reading the rows of a sheet in an Excel 2007 (XLSX)
+ * file lazily, each time it is iterated. The rows are not held in memory.
+ * 
+ * @author Simon Templer
+ */
+public class XLSXInstanceCollection implements InstanceCollection2 {
+
+	private static final ALogger log = ALoggerFactory.getLogger(XLSXInstanceCollection.class);
+
+	/**
+	 * Iterator creating instances from the sheet rows.
+	 */
+	private class XLSXIterator implements ResourceIterator<Instance> {
+
+		private XLSXSheetReader sheetReader;
+
+		private boolean closed = false;
+
+		private List<String> nextRow;
+
+		@Override
+		public boolean hasNext() {
+			proceedToNext();
+
+			return nextRow != null;
+		}
+
+		private void proceedToNext() {
+			if (closed) {
+				return;
+			}
+
+			try {
+				if (sheetReader == null) {
+					sheetReader = new XLSXSheetReader(source, sheetNum);
+
+					if (skipFirst) {
+						sheetReader.readRow();
+					}
+				}
+
+				if (nextRow == null) {
+					nextRow = sheetReader.readRow();
+					if (nextRow == null) {
+						close();
+					}
+				}
+			} catch (IOException e) {
+				close();
+				throw new IllegalStateException("Error reading Excel sheet", e);
+			}
+		}
+
+		@Override
+		public Instance next() {
+			proceedToNext();
+
+			if (nextRow == null) {
+				throw new NoSuchElementException();
+			}
+
+			try {
+				return XLSInstanceReader.createInstance(type, properties, nextRow,
+						sheetReader.getRowNumber(), null);
+			} finally {
+				nextRow = null;
+			}
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+			if (sheetReader != null) {
+				try {
+					sheetReader.close();
+				} catch (IOException e) {
+					log.debug("Error closing Excel sheet", e);
+				}
+			}
+		}
+
+	}
+
+	private final LocatableInputSupplier<? extends InputStream> source;
+
+	private final int sheetNum;
+
+	private final boolean skipFirst;
+
+	private final TypeDefinition type;
+
+	private final PropertyDefinition[] properties;
+
+	private Boolean empty;
+
+	/**
+	 * Create an instance collection for a sheet.
+	 * 
+	 * @param source the source of the XLSX file
+	 * @param sheetNum the number of the sheet (0-based)
+	 * @param skipFirst if the first row should be skipped, e.g. because it is
+	 *            a header
+	 * @param type the type of the instances to create
+	 */
+	public XLSXInstanceCollection(LocatableInputSupplier<? extends InputStream> source,
+			int sheetNum, boolean skipFirst, TypeDefinition type) {
+		super();
+		this.source = source;
+		this.sheetNum = sheetNum;
+		this.skipFirst = skipFirst;
+		this.type = type;
+		this.properties = type.getChildren()
+				.toArray(new PropertyDefinition[type.getChildren().size()]);
+	}
+
+	@Override
+	public ResourceIterator<Instance> iterator() {
+		return new XLSXIterator();
+	}
+
+	@Override
+	public boolean hasSize() {
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return UNKNOWN_SIZE;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		if (empty == null) {
+			try (ResourceIterator<Instance> it = iterator()) {
+				empty = !it.hasNext();
+			}
+		}
+		return empty;
+	}
+
+	@Override
+	public InstanceCollection select(Filter filter) {
+		return FilteredInstanceCollection.applyFilter(this, filter);
+	}
+
+	@Override
+	public InstanceReference getReference(Instance instance) {
+		return new PseudoInstanceReference(instance);
+	}
+
+	@Override
+	public Instance getInstance(InstanceReference reference) {
+		if (reference instanceof PseudoInstanceReference) {
+			return ((PseudoInstanceReference) reference).getInstance();
+		}
+		return null;
+	}
+
+	@Override
+	public boolean supportsFanout() {
+		return true;
+	}
+
+	@Override
+	public Map<TypeDefinition, InstanceCollection> fanout() {
+		return Collections.<TypeDefinition, InstanceCollection> singletonMap(type, this);
+	}
+
+}
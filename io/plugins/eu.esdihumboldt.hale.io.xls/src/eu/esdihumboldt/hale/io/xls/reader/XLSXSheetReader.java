@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.hale.io.xls.reader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+
+import eu.esdihumboldt.hale.common.core.io.supplier.LocatableInputSupplier;
+import eu.esdihumboldt.hale.io.xls.XLSUtil;
+
+/**
+ * Reads the rows of a sheet in an Excel 2007 (XLSX) file one by one, parsing
+ * the sheet XML as a stream instead of loading the whole workbook. Only the
+ * shared strings of the workbook are held in memory. The cell texts are
+ * determined like in {@link XLSUtil#extractText}, for formulas the cached
+ * result is used.
+ * 
+ * @author Simon Templer
+ */
+public class XLSXSheetReader implements Closeable {
+
+	private final OPCPackage pkg;
+
+	private final ReadOnlySharedStringsTable sharedStrings;
+
+	private final InputStream sheetStream;
+
+	private final XMLStreamReader reader;
+
+	private int rowNumber = -1;
+
+	/**
+	 * Open a sheet for reading.
+	 * 
+	 * @param source the source of the XLSX file, local files are accessed
+	 *            directly, other sources are loaded into memory
+	 * @param sheetNum the number of the sheet (0-based)
+	 * @throws IOException if the file cannot be opened or does not contain
+	 *             the sheet
+	 */
+	public XLSXSheetReader(LocatableInputSupplier<? extends InputStream> source, int sheetNum)
+			throws IOException {
+		super();
+
+		URI location = source.getLocation();
+		try {
+			if (location != null && "file".equals(location.getScheme())) {
+				pkg = OPCPackage.open(new File(location).getAbsolutePath(), PackageAccess.READ);
+			}
+			else {
+				try (InputStream in = source.getInput()) {
+					pkg = OPCPackage.open(in);
+				}
+			}
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Could not open Excel file", e);
+		}
+
+		try {
+			XSSFReader xssfReader = new XSSFReader(pkg);
+			sharedStrings = new ReadOnlySharedStringsTable(pkg);
+
+			Iterator<InputStream> sheets = xssfReader.getSheetsData();
+			for (int i = 0; i < sheetNum && sheets.hasNext(); i++) {
+				sheets.next().close();
+			}
+			if (!sheets.hasNext()) {
+				throw new IOException("Sheet " + sheetNum + " does not exist");
+			}
+			sheetStream = sheets.next();
+
+			reader = XMLInputFactory.newInstance().createXMLStreamReader(sheetStream);
+		} catch (Exception e) {
+			pkg.revert();
+			if (e instanceof IOException) {
+				throw (IOException) e;
+			}
+			throw new IOException("Could not read Excel sheet", e);
+		}
+	}
+
+	/**
+	 * Read the next row. Rows that are not present in the sheet are skipped.
+	 * 
+	 * @return the cell texts of the row, indexed by column, or
+	 *         <code>null</code> if there are no more rows
+	 * @throws IOException if reading the sheet fails
+	 */
+	public List<String> readRow() throws IOException {
+		try {
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT
+						&& "row".equals(reader.getLocalName())) {
+					rowNumber = parseRowNumber(reader.getAttributeValue(null, "r"));
+					return readCells();
+				}
+			}
+			return null;
+		} catch (XMLStreamException e) {
+			throw new IOException("Reading the Excel sheet failed", e);
+		}
+	}
+
+	/**
+	 * @return the number of the row read last (0-based)
+	 */
+	public int getRowNumber() {
+		return rowNumber;
+	}
+
+	private int parseRowNumber(String ref) {
+		if (ref != null) {
+			try {
+				return Integer.parseInt(ref) - 1;
+			} catch (NumberFormatException e) {
+				// ignore
+			}
+		}
+		return rowNumber + 1;
+	}
+
+	private List<String> readCells() throws XMLStreamException {
+		List<String> cells = new ArrayList<String>();
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT && "c".equals(reader.getLocalName())) {
+				int column = getColumnIndex(reader.getAttributeValue(null, "r"), cells.size());
+				String text = readCellText(reader.getAttributeValue(null, "t"));
+
+				while (cells.size() <= column) {
+					cells.add(null);
+				}
+				cells.set(column, text);
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT
+					&& "row".equals(reader.getLocalName())) {
+				break;
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * Determine the column index from a cell reference, e.g. <code>AB12</code>.
+	 * 
+	 * @param ref the cell reference, may be <code>null</code>
+	 * @param defaultIndex the index to use if there is no reference
+	 * @return the column index (0-based)
+	 */
+	static int getColumnIndex(String ref, int defaultIndex) {
+		if (ref == null) {
+			return defaultIndex;
+		}
+
+		int column = 0;
+		for (int i = 0; i < ref.length(); i++) {
+			char c = ref.charAt(i);
+			if (c < 'A' || c > 'Z') {
+				break;
+			}
+			column = column * 26 + (c - 'A' + 1);
+		}
+		return (column == 0) ? (defaultIndex) : (column - 1);
+	}
+
+	private String readCellText(String type) throws XMLStreamException {
+		String value = null;
+		StringBuilder inline = null;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				if ("v".equals(reader.getLocalName())) {
+					value = reader.getElementText();
+				}
+				else if ("t".equals(reader.getLocalName())) {
+					// text of an inline string
+					if (inline == null) {
+						inline = new StringBuilder();
+					}
+					inline.append(reader.getElementText());
+				}
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT
+					&& "c".equals(reader.getLocalName())) {
+				break;
+			}
+		}
+
+		if ("inlineStr".equals(type)) {
+			return (inline == null) ? (null) : (inline.toString());
+		}
+		if (value == null || value.isEmpty() || "e".equals(type)) {
+			// blank or error
+			return null;
+		}
+		if ("s".equals(type)) {
+			return sharedStrings.getEntryAt(Integer.parseInt(value));
+		}
+		if ("b".equals(type)) {
+			return String.valueOf("1".equals(value));
+		}
+		if ("str".equals(type)) {
+			// formula result
+			return value;
+		}
+
+		// numeric
+		try {
+			return XLSUtil.formatNumber(Double.parseDouble(value));
+		} catch (NumberFormatException e) {
+			return value;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			reader.close();
+		} catch (XMLStreamException e) {
+			// ignore
+		}
+		sheetStream.close();
+		// read only access, discard the package without saving
+		pkg.revert();
+	}
+
+}
@@ -15,8 +15,14 @@
 
 package eu.esdihumboldt.hale.io.xls.writer;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
@@ -34,7 +40,8 @@ import org.apache.poi.ss.usermodel.RichTextString;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 import eu.esdihumboldt.hale.common.core.io.IOProviderConfigurationException;
 import eu.esdihumboldt.hale.common.core.io.ProgressIndicator;
@@ -47,6 +54,8 @@ import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
 import eu.esdihumboldt.hale.io.csv.InstanceTableIOConstants;
 import eu.esdihumboldt.hale.io.csv.writer.AbstractTableInstanceWriter;
 import eu.esdihumboldt.hale.io.xls.XLSCellStyles;
+import eu.esdihumboldt.hale.io.xls.XLSUtil;
+import eu.esdihumboldt.hale.io.xls.reader.XLSInstanceReader;
 
 /**
  * Instance export provider for xls files
@@ -55,6 +64,16 @@ import eu.esdihumboldt.hale.io.xls.XLSCellStyles;
  */
 public class XLSInstanceWriter extends AbstractTableInstanceWriter {
 
+	/**
+	 * The number of rows kept in memory when writing a xlsx file.
+	 */
+	private static final int ROW_ACCESS_WINDOW = 100;
+
+	/**
+	 * The maximum column width in characters.
+	 */
+	private static final int MAX_COLUMN_WIDTH = 255;
+
 	private Workbook wb;
 
 	private CellStyle headerStyle;
@@ -62,6 +81,8 @@ public class XLSInstanceWriter extends AbstractTableInstanceWriter {
 
 	private List<String> headerRowStrings;
 
+	private int[] columnWidths;
+
 	/**
 	 * @see eu.esdihumboldt.hale.common.core.io.impl.AbstractIOProvider#execute(eu.esdihumboldt.hale.common.core.io.ProgressIndicator,
 	 *      eu.esdihumboldt.hale.common.core.io.report.IOReporter)
@@ -86,17 +107,16 @@ public class XLSInstanceWriter extends AbstractTableInstanceWriter {
 			wb = new HSSFWorkbook();
 		}
 		// write xlsx file
-		else if (getContentType().getId().equals("eu.esdihumboldt.hale.io.xls.xlsx")) {
-			wb = new XSSFWorkbook();
+		else if (getContentType().getId().equals(XLSInstanceReader.XLSX_CONTENT_TYPE_ID)) {
+			// only keep a window of rows in memory, older rows are flushed to
+			// a temporary file
+			wb = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
 		}
 		else {
 			reporter.error(new IOMessageImpl("Content type is invalid!", null));
 			return reporter;
 		}
 
-		cellStyle = XLSCellStyles.getNormalStyle(wb, false);
-		headerStyle = XLSCellStyles.getHeaderStyle(wb);
-
 		// get all instances of the selected Type
 		InstanceCollection instances = getInstanceCollection(selectedTypeName);
 		Iterator<Instance> instanceIterator = instances.iterator();
@@ -108,38 +128,71 @@ public class XLSInstanceWriter extends AbstractTableInstanceWriter {
 			return reporter;
 		}
 
-		List<Instance> remainingInstances = new ArrayList<Instance>();
-
 		headerRowStrings = new ArrayList<String>();
 
 		// all instances with equal type definitions are stored in an extra
 		// sheet
 		TypeDefinition definition = instance.getDefinition();
 
-		Sheet sheet = wb.createSheet(definition.getDisplayName());
-		Row headerRow = sheet.createRow(0);
-		int rowNum = 1;
-		Row row = sheet.createRow(rowNum++);
-		writeRow(row, super.getPropertyMap(instance, headerRowStrings, solveNestedProperties));
-
-		while (instanceIterator.hasNext()) {
-			Instance nextInst = instanceIterator.next();
-			if (nextInst.getDefinition().equals(definition)) {
-				row = sheet.createRow(rowNum++);
-				writeRow(row,
-						super.getPropertyMap(nextInst, headerRowStrings, solveNestedProperties));
+		// the header is only complete if all instances have been processed,
+		// so the rows are written to a temporary file first
+		File tempFile = File.createTempFile("xls-rows", ".tmp");
+		try {
+			int rowCount = 0;
+			ObjectOutputStream rowsOut = new ObjectOutputStream(new BufferedOutputStream(
+					new FileOutputStream(tempFile)));
+			try {
+				writeRow(rowsOut,
+						super.getPropertyMap(instance, headerRowStrings, solveNestedProperties));
+				rowCount++;
+
+				while (instanceIterator.hasNext()) {
+					Instance nextInst = instanceIterator.next();
+					if (nextInst.getDefinition().equals(definition)) {
+						writeRow(rowsOut, super.getPropertyMap(nextInst, headerRowStrings,
+								solveNestedProperties));
+						rowCount++;
+					}
+				}
+			} finally {
+				rowsOut.close();
+			}
+
+			cellStyle = XLSCellStyles.getNormalStyle(wb, false);
+			headerStyle = XLSCellStyles.getHeaderStyle(wb);
+
+			Sheet sheet = wb.createSheet(definition.getDisplayName());
+			columnWidths = new int[headerRowStrings.size()];
+			writeHeaderRow(sheet.createRow(0), headerRowStrings);
+
+			ObjectInputStream rowsIn = new ObjectInputStream(new BufferedInputStream(
+					new FileInputStream(tempFile)));
+			try {
+				for (int rowNum = 1; rowNum <= rowCount; rowNum++) {
+					writeRow(sheet.createRow(rowNum), (Object[]) rowsIn.readObject());
+				}
+			} catch (ClassNotFoundException e) {
+				throw new IOException("Failed to read temporary row data", e);
+			} finally {
+				rowsIn.close();
 			}
-			else
-				remainingInstances.add(nextInst);
-		}
-		writeHeaderRow(headerRow, headerRowStrings);
-		setCellStyle(sheet, headerRowStrings.size());
-		resizeSheet(sheet);
 
-		// write file
-		FileOutputStream out = new FileOutputStream(getTarget().getLocation().getPath());
-		wb.write(out);
-		out.close();
+			resizeSheet(sheet);
+
+			// write file
+			FileOutputStream out = new FileOutputStream(getTarget().getLocation().getPath());
+			try {
+				wb.write(out);
+			} finally {
+				out.close();
+			}
+		} finally {
+			if (wb instanceof SXSSFWorkbook) {
+				// delete the temporary files backing the sheets
+				((SXSSFWorkbook) wb).dispose();
+			}
+			tempFile.delete();
+		}
 
 		reporter.setSuccess(true);
 		return reporter;
@@ -166,22 +219,74 @@ public class XLSInstanceWriter extends AbstractTableInstanceWriter {
 		}
 	}
 
-	private void writeRow(Row row, Map<String, Object> tableRow) {
+	private void writeRow(ObjectOutputStream out, Map<String, Object> tableRow)
+			throws IOException {
+		Object[] values = new Object[headerRowStrings.size()];
+		for (int k = 0; k < values.length; k++) {
+			values[k] = toCellValue(tableRow.get(headerRowStrings.get(k)));
+		}
+		out.writeObject(values);
+		// don't keep references to the rows already written
+		out.reset();
+	}
+
+	private void writeRow(Row row, Object[] values) {
 		for (int k = 0; k < headerRowStrings.size(); k++) {
 			Cell cell = row.createCell(k);
-//			cell.setCellStyle(cellStyle);
-			setValueOfCell(cell, tableRow.get(headerRowStrings.get(k)));
+			cell.setCellStyle(cellStyle);
+			// rows written before the header was complete have less cells
+			setValueOfCell(cell, (k < values.length) ? (values[k]) : (null));
 		}
 	}
 
-	// only based on first row
 	private void resizeSheet(Sheet sheet) {
-		for (int i = 0; i < sheet.getRow(0).getPhysicalNumberOfCells(); i++) {
-			sheet.autoSizeColumn(i);
+		if (sheet instanceof SXSSFSheet) {
+			// rows already flushed are not available to auto-size the columns,
+			// use the text lengths determined while writing instead
+			for (int i = 0; i < columnWidths.length; i++) {
+				sheet.setColumnWidth(i, Math.min(MAX_COLUMN_WIDTH, columnWidths[i] + 2) * 256);
+			}
+		}
+		else {
+			for (int i = 0; i < sheet.getRow(0).getPhysicalNumberOfCells(); i++) {
+				sheet.autoSizeColumn(i);
+			}
+		}
+	}
+
+	/**
+	 * Convert a property value to a serializable value that can be written to
+	 * a cell.
+	 * 
+	 * @param value the property value
+	 * @return the cell value
+	 */
+	private Object toCellValue(Object value) {
+		if (value == null || value instanceof Double || value instanceof Boolean
+				|| value instanceof Calendar || value instanceof Date
+				|| value instanceof String) {
+			return value;
+		}
+		if (value instanceof RichTextString) {
+			return ((RichTextString) value).getString();
+		}
+		if (value instanceof Instance) {
+			Object instValue = ((Instance) value).getValue();
+			if (instValue != null) {
+				return instValue.toString();
+			}
 		}
+		return value.toString();
 	}
 
 	private void setValueOfCell(Cell cell, Object value) {
+		if (value != null && cell.getColumnIndex() < columnWidths.length) {
+			int length = (value instanceof Double) ? (XLSUtil.formatNumber((Double) value)
+					.length()) : (value.toString().length());
+			columnWidths[cell.getColumnIndex()] = Math.max(columnWidths[cell.getColumnIndex()],
+					length);
+		}
+
 		if (value == null) {
 			cell.setCellValue("");
 		}
@@ -211,19 +316,4 @@ public class XLSInstanceWriter extends AbstractTableInstanceWriter {
 		}
 
 	}
-
-	private void setCellStyle(Sheet sheet, int rowSize) {
-		int rowNum = sheet.getPhysicalNumberOfRows();
-		for (int i = 1; i < rowNum; i++) {
-			Row row = sheet.getRow(i);
-			for (int k = 0; k < rowSize; k++) {
-				Cell cell = row.getCell(k);
-				if (cell != null)
-					cell.setCellStyle(cellStyle);
-				else
-					row.createCell(k).setCellStyle(cellStyle);
-			}
-		}
-
-	}
 }
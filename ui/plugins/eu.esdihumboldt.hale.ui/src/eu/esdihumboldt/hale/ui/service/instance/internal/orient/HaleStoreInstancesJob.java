@@ -36,7 +36,19 @@ import eu.esdihumboldt.hale.ui.common.service.population.PopulationService;
 public abstract class HaleStoreInstancesJob extends StoreInstancesJob {
 
 	private final PopulationService ps;
-	private final MetadataWorker metaworker;
+
+	/**
+	 * Metadata generators are not necessarily thread safe, so each worker
+	 * converting instances uses its own.
+	 */
+	private final ThreadLocal<MetadataWorker> metaworker = new ThreadLocal<MetadataWorker>() {
+
+		@Override
+		protected MetadataWorker initialValue() {
+			return new MetadataWorker();
+		}
+
+	};
 
 	/**
 	 * Create a job that stores instances in a database
@@ -50,7 +62,6 @@ public abstract class HaleStoreInstancesJob extends StoreInstancesJob {
 		super(name, database, instances, DefaultReportHandler.getInstance());
 
 		ps = PlatformUI.getWorkbench().getService(PopulationService.class);
-		metaworker = new MetadataWorker();
 	}
 
 	/**
@@ -61,7 +72,7 @@ public abstract class HaleStoreInstancesJob extends StoreInstancesJob {
 		super.updateInstance(instance);
 
 		// generate metadata into instance
-		metaworker.generate(instance);
+		metaworker.get().generate(instance);
 	}
 
 	/**
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.util.geometry;
+
+import static org.junit.Assert.assertEquals;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FixedPrecisionFormat}.
+ * 
+ * @author Simon Templer
+ */
+public class FixedPrecisionFormatTest {
+
+	private static final String[] PATTERNS = { "0", "0.0", "0.00", "0000.00", "000000.000",
+			"0.000000", "0.000000000000000" };
+
+	/**
+	 * Test that numbers are formatted the same as by {@link DecimalFormat}.
+	 */
+	@Test
+	public void testDecimalFormatEquivalence() {
+		DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+		symbols.setDecimalSeparator('.');
+
+		Random random = new Random(42);
+		for (String pattern : PATTERNS) {
+			FixedPrecisionFormat format = new FixedPrecisionFormat(pattern, symbols);
+			DecimalFormat reference = new DecimalFormat(pattern, symbols);
+
+			for (int i = 0; i < 20000; i++) {
+				double value;
+				switch (i % 4) {
+				case 0:
+					value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(16) - 4);
+					break;
+				case 1:
+					// values close to a rounding tie
+					value = Math.round(random.nextDouble() * 1e6) / 1e3 + 0.0005;
+					break;
+				case 2:
+					// exact rounding ties
+					value = (random.nextInt(2000000) - 1000000) / 8.0;
+					break;
+				default:
+					// negative values rounded to zero
+					value = -random.nextDouble() * 1e-4;
+					break;
+				}
+
+				StringBuilder result = new StringBuilder();
+				format.appendTo(result, value);
+				assertEquals(pattern + ": " + value, reference.format(value),
+						result.toString());
+			}
+		}
+	}
+
+}
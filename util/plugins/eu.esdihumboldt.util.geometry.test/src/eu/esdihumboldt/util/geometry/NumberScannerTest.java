@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.util.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link NumberScanner}.
+ * 
+ * @author Simon Templer
+ */
+public class NumberScannerTest {
+
+	/**
+	 * Test scanning a whitespace separated list of numbers.
+	 */
+	@Test
+	public void testList() {
+		NumberScanner scanner = new NumberScanner(" 12.5 -3\n4.25E2\t+0.001 ");
+
+		assertTrue(scanner.skipWhitespace());
+		assertEquals(12.5, scanner.nextDouble(), 0);
+		assertTrue(scanner.skipWhitespace());
+		assertEquals(-3, scanner.nextDouble(), 0);
+		assertTrue(scanner.skipWhitespace());
+		assertEquals(425, scanner.nextDouble(), 0);
+		assertTrue(scanner.skipWhitespace());
+		assertEquals(0.001, scanner.nextDouble(), 0);
+		assertTrue(scanner.skipWhitespace());
+		assertTrue(scanner.isAtEnd());
+	}
+
+	/**
+	 * Test scanning numbers with separators and a custom decimal separator.
+	 */
+	@Test
+	public void testSeparators() {
+		NumberScanner scanner = new NumberScanner("1,5;2,25", ',');
+
+		assertEquals(1.5, scanner.nextDouble(), 0);
+		assertTrue(scanner.skip(';'));
+		assertFalse(scanner.skip(';'));
+		assertEquals(2.25, scanner.nextDouble(), 0);
+		assertTrue(scanner.isAtEnd());
+	}
+
+	/**
+	 * Test scanning the special values allowed for XML Schema doubles.
+	 */
+	@Test
+	public void testSpecialValues() {
+		NumberScanner scanner = new NumberScanner("INF -INF NaN");
+
+		assertEquals(Double.POSITIVE_INFINITY, scanner.nextDouble(), 0);
+		scanner.skipWhitespace();
+		assertEquals(Double.NEGATIVE_INFINITY, scanner.nextDouble(), 0);
+		scanner.skipWhitespace();
+		assertTrue(Double.isNaN(scanner.nextDouble()));
+		assertTrue(scanner.isAtEnd());
+	}
+
+	/**
+	 * Test that invalid numbers are rejected.
+	 */
+	@Test(expected = NumberFormatException.class)
+	public void testInvalid() {
+		new NumberScanner("abc").nextDouble();
+	}
+
+	/**
+	 * Test that an exponent without digits is rejected.
+	 */
+	@Test(expected = NumberFormatException.class)
+	public void testInvalidExponent() {
+		new NumberScanner("1.5e").nextDouble();
+	}
+
+	/**
+	 * Test that scanned numbers are equal to the numbers parsed with
+	 * {@link Double#parseDouble(String)}.
+	 */
+	@Test
+	public void testParseDoubleEquivalence() {
+		Random random = new Random(42);
+		for (int i = 0; i < 100000; i++) {
+			String number;
+			switch (i % 3) {
+			case 0:
+				number = Double
+						.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+				break;
+			case 1:
+				number = String.format(Locale.US, "%.6f", (random.nextDouble() - 0.5) * 1e7);
+				break;
+			default:
+				number = String.format(Locale.US, "%.20f", random.nextDouble());
+				break;
+			}
+
+			NumberScanner scanner = new NumberScanner(number);
+			assertEquals(number, Double.doubleToLongBits(Double.parseDouble(number)),
+					Double.doubleToLongBits(scanner.nextDouble()));
+			assertTrue(scanner.isAtEnd());
+		}
+	}
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.util.geometry;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+
+/**
+ * Decimal format for patterns with a fixed number of fraction digits, like
+ * the patterns accepted by {@link NumberFormatter#getFormatter(String)}.
+ * {@link #appendTo(StringBuilder, double)} formats numbers with integer
+ * arithmetic, the result is the same as with {@link #format(double)}. If a
+ * number can't be formatted exactly that way, e.g. because it is very large
+ * or close to a rounding tie, the inherited implementation is used.
+ * 
+ * @author Simon Templer
+ */
+class FixedPrecisionFormat extends DecimalFormat {
+
+	private static final long serialVersionUID = -2599624327429300584L;
+
+	/**
+	 * Maximum number of fraction digits supported by the fast path.
+	 */
+	private static final int MAX_FRACTION_DIGITS = 15;
+
+	/**
+	 * Limit for the scaled numbers formatted by the fast path, so they can be
+	 * represented by a long and the fraction still is reasonably precise.
+	 */
+	private static final double MAX_SCALED = 1e15;
+
+	private static final long[] POW10 = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L,
+			10000000L, 100000000L, 1000000000L, 10000000000L, 100000000000L, 1000000000000L,
+			10000000000000L, 100000000000000L, 1000000000000000L };
+
+	private char decimalSeparator;
+
+	private char zeroDigit;
+
+	private String minusPrefix;
+
+	/**
+	 * Create a format for the given pattern.
+	 * 
+	 * @param pattern the pattern, e.g. <code>0.000</code>
+	 * @param symbols the format symbols
+	 */
+	public FixedPrecisionFormat(String pattern, DecimalFormatSymbols symbols) {
+		super(pattern, symbols);
+
+		updateSymbols(symbols);
+	}
+
+	@Override
+	public void setDecimalFormatSymbols(DecimalFormatSymbols newSymbols) {
+		super.setDecimalFormatSymbols(newSymbols);
+
+		updateSymbols(newSymbols);
+	}
+
+	private void updateSymbols(DecimalFormatSymbols symbols) {
+		decimalSeparator = symbols.getDecimalSeparator();
+		zeroDigit = symbols.getZeroDigit();
+		minusPrefix = String.valueOf(symbols.getMinusSign());
+	}
+
+	/**
+	 * Append a formatted number.
+	 * 
+	 * @param target the string builder to append the number to
+	 * @param number the number to format
+	 */
+	public void appendTo(StringBuilder target, double number) {
+		int fractionDigits = getMaximumFractionDigits();
+		if (!isFixedPrecision(fractionDigits) || Double.isNaN(number)
+				|| Double.isInfinite(number)) {
+			target.append(format(number));
+			return;
+		}
+
+		double scaled = Math.abs(number) * POW10[fractionDigits];
+		if (!(scaled < MAX_SCALED)) {
+			target.append(format(number));
+			return;
+		}
+
+		double floor = Math.floor(scaled);
+		double remainder = scaled - floor;
+		if (Math.abs(remainder - 0.5) <= Math.ulp(scaled)) {
+			// scaling may have changed the rounding direction
+			target.append(format(number));
+			return;
+		}
+
+		long digits = (long) floor + ((remainder > 0.5) ? (1) : (0));
+		boolean negative = number < 0 || (number == 0 && 1 / number < 0);
+		if (negative) {
+			if (digits == 0) {
+				// let the format decide on how to represent negative zero
+				target.append(format(number));
+				return;
+			}
+			target.append(minusPrefix);
+		}
+
+		appendDigits(target, digits / POW10[fractionDigits], getMinimumIntegerDigits());
+		if (fractionDigits > 0 || isDecimalSeparatorAlwaysShown()) {
+			target.append(decimalSeparator);
+		}
+		if (fractionDigits > 0) {
+			appendDigits(target, digits % POW10[fractionDigits], fractionDigits);
+		}
+	}
+
+	/**
+	 * Determines if the current configuration of the format is supported by
+	 * the fast path.
+	 * 
+	 * @param fractionDigits the maximum number of fraction digits
+	 * @return if numbers can be formatted with the fast path
+	 */
+	private boolean isFixedPrecision(int fractionDigits) {
+		return fractionDigits <= MAX_FRACTION_DIGITS
+				&& getMinimumFractionDigits() == fractionDigits && getMinimumIntegerDigits() > 0
+				&& getMaximumIntegerDigits() > MAX_FRACTION_DIGITS && !isGroupingUsed()
+				&& getMultiplier() == 1 && getRoundingMode() == RoundingMode.HALF_EVEN
+				&& getPositivePrefix().isEmpty() && getPositiveSuffix().isEmpty()
+				&& getNegativeSuffix().isEmpty()
+				&& getNegativePrefix().equals(minusPrefix);
+	}
+
+	private void appendDigits(StringBuilder target, long value, int minDigits) {
+		int length = 1;
+		for (long rest = value / 10; rest > 0; rest /= 10) {
+			length++;
+		}
+		for (int i = length; i < minDigits; i++) {
+			target.append(zeroDigit);
+		}
+
+		int start = target.length();
+		target.setLength(start + length);
+		for (int i = start + length - 1; i >= start; i--) {
+			target.setCharAt(i, (char) (zeroDigit + (value % 10)));
+			value /= 10;
+		}
+	}
+
+}
@@ -44,7 +44,7 @@ public class NumberFormatter {
 		}
 		DecimalFormatSymbols symbols = new DecimalFormatSymbols();
 		symbols.setDecimalSeparator('.');
-		return new DecimalFormat(format, symbols);
+		return new FixedPrecisionFormat(format, symbols);
 	}
 
 	/**
@@ -57,9 +57,36 @@ public class NumberFormatter {
 	public static String formatTo(double value, DecimalFormat formatter) {
 		if (formatter == null)
 			return String.valueOf(value);
+		if (formatter instanceof FixedPrecisionFormat) {
+			StringBuilder result = new StringBuilder();
+			((FixedPrecisionFormat) formatter).appendTo(result, value);
+			return result.toString();
+		}
 		return formatter.format(value);
 	}
 
+	/**
+	 * Append a number in the specified format to a string builder. This
+	 * avoids creating intermediate strings when formatting many numbers, e.g.
+	 * the coordinates of a geometry.
+	 * 
+	 * @param target the string builder to append the number to
+	 * @param value double value
+	 * @param formatter a number formatter, <code>null</code> for the shortest
+	 *            representation that uniquely identifies the value
+	 */
+	public static void appendTo(StringBuilder target, double value, DecimalFormat formatter) {
+		if (formatter == null) {
+			target.append(value);
+		}
+		else if (formatter instanceof FixedPrecisionFormat) {
+			((FixedPrecisionFormat) formatter).appendTo(target, value);
+		}
+		else {
+			target.append(formatter.format(value));
+		}
+	}
+
 	private static boolean validateFormat(String format) {
 		if (format == null || format.equals(""))
 			return false;
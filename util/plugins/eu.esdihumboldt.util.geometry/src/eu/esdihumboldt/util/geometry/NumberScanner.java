@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+package eu.esdihumboldt.util.geometry;
+
+/**
+ * Scans numbers from a character sequence, e.g. the text of a GML
+ * <code>posList</code> or <code>coordinates</code> element, without creating
+ * intermediate strings for the individual values.<br>
+ * <br>
+ * Numbers with up to 15 significant digits and a small exponent are converted
+ * directly, which yields the same correctly rounded result as
+ * {@link Double#parseDouble(String)}. Other numbers are delegated to
+ * {@link Double#parseDouble(String)}.
+ * 
+ * @author Simon Templer
+ */
+public class NumberScanner {
+
+	/**
+	 * Maximum number of significant digits that can be represented exactly
+	 * by a double.
+	 */
+	private static final int MAX_EXACT_DIGITS = 15;
+
+	/**
+	 * Maximum number of digits collected in the mantissa.
+	 */
+	private static final int MAX_MANTISSA_DIGITS = 18;
+
+	/**
+	 * Powers of ten that can be represented exactly by a double.
+	 */
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+			1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private final CharSequence text;
+
+	private final char decimalSeparator;
+
+	private final int end;
+
+	private int position = 0;
+
+	/**
+	 * Create a scanner for numbers using a dot as decimal separator.
+	 * 
+	 * @param text the text to scan
+	 */
+	public NumberScanner(CharSequence text) {
+		this(text, '.');
+	}
+
+	/**
+	 * Create a scanner for numbers.
+	 * 
+	 * @param text the text to scan
+	 * @param decimalSeparator the decimal separator
+	 */
+	public NumberScanner(CharSequence text, char decimalSeparator) {
+		super();
+		this.text = text;
+		this.decimalSeparator = decimalSeparator;
+		this.end = text.length();
+	}
+
+	/**
+	 * @return the current position in the text
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * @return if the end of the text was reached
+	 */
+	public boolean isAtEnd() {
+		return position >= end;
+	}
+
+	/**
+	 * Skip whitespace at the current position.
+	 * 
+	 * @return if any whitespace was skipped
+	 */
+	public boolean skipWhitespace() {
+		int start = position;
+		while (position < end && Character.isWhitespace(text.charAt(position))) {
+			position++;
+		}
+		return position > start;
+	}
+
+	/**
+	 * Skip the given character if it is located at the current position.
+	 * 
+	 * @param c the character
+	 * @return if the character was skipped
+	 */
+	public boolean skip(char c) {
+		if (position < end && text.charAt(position) == c) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Read the number at the current position. The number may be preceded by
+	 * a sign and may include a fraction and an exponent, also the special
+	 * values <code>INF</code>, <code>Infinity</code> and <code>NaN</code> are
+	 * accepted. Whitespace is not skipped.
+	 * 
+	 * @return the number
+	 * @throws NumberFormatException if there is no valid number at the
+	 *             current position
+	 */
+	public double nextDouble() throws NumberFormatException {
+		final int start = position;
+		int pos = position;
+
+		boolean negative = false;
+		if (pos < end) {
+			char c = text.charAt(pos);
+			if (c == '-' || c == '+') {
+				negative = c == '-';
+				pos++;
+			}
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean anyDigit = false;
+		boolean exact = true;
+
+		// integer part
+		while (pos < end) {
+			int digit = text.charAt(pos) - '0';
+			if (digit < 0 || digit > 9) {
+				break;
+			}
+			anyDigit = true;
+			if (digits < MAX_MANTISSA_DIGITS) {
+				mantissa = mantissa * 10 + digit;
+				if (mantissa != 0) {
+					digits++;
+				}
+			}
+			else {
+				exponent++;
+				exact &= digit == 0;
+			}
+			pos++;
+		}
+
+		// fraction
+		if (pos < end && text.charAt(pos) == decimalSeparator) {
+			pos++;
+			while (pos < end) {
+				int digit = text.charAt(pos) - '0';
+				if (digit < 0 || digit > 9) {
+					break;
+				}
+				anyDigit = true;
+				if (digits < MAX_MANTISSA_DIGITS) {
+					mantissa = mantissa * 10 + digit;
+					if (mantissa != 0) {
+						digits++;
+					}
+					exponent--;
+				}
+				else {
+					exact &= digit == 0;
+				}
+				pos++;
+			}
+		}
+
+		if (!anyDigit) {
+			return nextSpecial(start, pos, negative);
+		}
+
+		// exponent
+		if (pos < end && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+			pos++;
+			boolean negativeExponent = false;
+			if (pos < end) {
+				char c = text.charAt(pos);
+				if (c == '-' || c == '+') {
+					negativeExponent = c == '-';
+					pos++;
+				}
+			}
+			int value = 0;
+			boolean anyExponentDigit = false;
+			while (pos < end) {
+				int digit = text.charAt(pos) - '0';
+				if (digit < 0 || digit > 9) {
+					break;
+				}
+				anyExponentDigit = true;
+				if (value < 100000) {
+					value = value * 10 + digit;
+				}
+				pos++;
+			}
+			if (!anyExponentDigit) {
+				throw new NumberFormatException("Invalid exponent at position " + pos);
+			}
+			exponent += (negativeExponent) ? (-value) : (value);
+		}
+
+		position = pos;
+
+		if (mantissa == 0) {
+			return (negative) ? (-0.0) : (0.0);
+		}
+
+		if (exact && digits <= MAX_EXACT_DIGITS && exponent >= -22 && exponent <= 22) {
+			// mantissa and power of ten are exact, so the result is correctly
+			// rounded
+			double value = (exponent < 0) ? (mantissa / POW10[-exponent])
+					: (mantissa * POW10[exponent]);
+			return (negative) ? (-value) : (value);
+		}
+
+		return parseDouble(start, pos);
+	}
+
+	private double nextSpecial(int start, int pos, boolean negative) {
+		if (matches(pos, "INF")) {
+			position = pos + ((matches(pos, "Infinity")) ? (8) : (3));
+			return (negative) ? (Double.NEGATIVE_INFINITY) : (Double.POSITIVE_INFINITY);
+		}
+		if (pos == start && matches(pos, "NaN")) {
+			position = pos + 3;
+			return Double.NaN;
+		}
+		throw new NumberFormatException("Number expected at position " + start);
+	}
+
+	private boolean matches(int pos, String token) {
+		if (pos + token.length() > end) {
+			return false;
+		}
+		for (int i = 0; i < token.length(); i++) {
+			if (Character.toUpperCase(text.charAt(pos + i)) != Character
+					.toUpperCase(token.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private double parseDouble(int start, int pos) {
+		String number = text.subSequence(start, pos).toString();
+		if (decimalSeparator != '.') {
+			number = number.replace(decimalSeparator, '.');
+		}
+		return Double.parseDouble(number);
+	}
+
+}
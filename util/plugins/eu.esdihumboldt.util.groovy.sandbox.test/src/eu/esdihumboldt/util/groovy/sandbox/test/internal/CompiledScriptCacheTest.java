@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+
+package eu.esdihumboldt.util.groovy.sandbox.test.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.esdihumboldt.util.groovy.sandbox.internal.CompiledScriptCache;
+import eu.esdihumboldt.util.groovy.sandbox.internal.CompiledScriptCache.ScriptCompiler;
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+
+/**
+ * Tests for {@link CompiledScriptCache}.
+ * 
+ * @author Simon Templer
+ */
+public class CompiledScriptCacheTest {
+
+	private int compiled;
+
+	private ScriptCompiler compiler;
+
+	/**
+	 * Sets up the compiler counting the compiled scripts.
+	 */
+	@Before
+	public void setUp() {
+		compiled = 0;
+		compiler = new ScriptCompiler() {
+
+			@Override
+			public Class<?> compile(String script, boolean restricted) {
+				compiled++;
+				return new GroovyShell().getClassLoader().parseClass(script);
+			}
+		};
+	}
+
+	/**
+	 * Test if a script is compiled only once and can be instantiated multiple
+	 * times.
+	 */
+	@Test
+	public void testReuse() {
+		CompiledScriptCache cache = new CompiledScriptCache(10, compiler);
+
+		Class<?> first = cache.getScriptClass("a + 1", false);
+		Class<?> second = cache.getScriptClass("a + 1", false);
+		assertSame(first, second);
+		assertEquals(1, compiled);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		Binding binding = new Binding();
+		binding.setVariable("a", 1);
+		assertEquals(2, InvokerHelper.createScript(first, binding).run());
+		binding = new Binding();
+		binding.setVariable("a", 2);
+		assertEquals(3, InvokerHelper.createScript(second, binding).run());
+	}
+
+	/**
+	 * Test if scripts compiled with and without restrictions are cached
+	 * separately.
+	 */
+	@Test
+	public void testRestrictionMode() {
+		CompiledScriptCache cache = new CompiledScriptCache(10, compiler);
+
+		Class<?> unrestricted = cache.getScriptClass("1", false);
+		Class<?> restricted = cache.getScriptClass("1", true);
+		assertNotSame(unrestricted, restricted);
+		assertEquals(2, compiled);
+		assertSame(restricted, cache.getScriptClass("1", true));
+		assertEquals(2, cache.size());
+	}
+
+	/**
+	 * Test if the least recently used scripts are evicted.
+	 */
+	@Test
+	public void testEviction() {
+		CompiledScriptCache cache = new CompiledScriptCache(2, compiler);
+
+		cache.getScriptClass("1", false);
+		cache.getScriptClass("2", false);
+		// use the first script, so the second is evicted next
+		cache.getScriptClass("1", false);
+		cache.getScriptClass("3", false);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertEquals(3, compiled);
+
+		cache.getScriptClass("1", false);
+		assertEquals(3, compiled);
+		cache.getScriptClass("2", false);
+		assertEquals(4, compiled);
+		assertEquals(2, cache.getEvictions());
+		assertEquals(2, cache.getHits());
+		assertEquals(4, cache.getMisses());
+	}
+
+}
@@ -1,5 +1,6 @@
 package eu.esdihumboldt.util.groovy.sandbox.test.internal;
 
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.util.Collections;
@@ -121,4 +122,31 @@ public class GroovySandboxTest {
 		assertDisallowed("\"${new File('foo')}\".toString()");
 		interceptor.unregister();
 	}
+
+	/**
+	 * Tests activating and restoring the interceptor for the current thread,
+	 * with decisions on classes and methods being reused.
+	 */
+	@Test
+	public void activation() {
+		RestrictiveGroovyInterceptor previous = interceptor.activate();
+		try {
+			for (int i = 0; i < 2; i++) {
+				shell.evaluate("'foo'.toUpperCase() + new Integer(5).intValue()");
+				assertDisallowed("System.exit(0)");
+				assertDisallowed("''.getClass().forName('java.lang.System')");
+			}
+
+			// nested activation
+			RestrictiveGroovyInterceptor nested = interceptor.activate();
+			assertSame(interceptor, nested);
+			RestrictiveGroovyInterceptor.restore(nested);
+			assertDisallowed("System.exit(0)");
+		} finally {
+			RestrictiveGroovyInterceptor.restore(previous);
+		}
+
+		// not intercepted after restoring
+		shell.evaluate("System.getProperty('java.version')");
+	}
 }
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+
+package eu.esdihumboldt.util.groovy.sandbox.test.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.esdihumboldt.util.groovy.sandbox.internal.PersistentScriptStore;
+import eu.esdihumboldt.util.groovy.sandbox.internal.PersistentScriptStore.StoredScript;
+import eu.esdihumboldt.util.groovy.sandbox.internal.ScriptClassLoader;
+import groovy.lang.Binding;
+
+/**
+ * Tests for {@link PersistentScriptStore}.
+ * 
+ * @author Simon Templer
+ */
+public class PersistentScriptStoreTest {
+
+	private File directory;
+
+	/**
+	 * Create the store directory.
+	 * 
+	 * @throws IOException if creating the directory fails
+	 */
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("scripts").toFile();
+	}
+
+	/**
+	 * Delete the store directory.
+	 */
+	@After
+	public void tearDown() {
+		delete(directory);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Test if the key depends on the script, the restriction mode and the
+	 * configuration.
+	 */
+	@Test
+	public void testKey() {
+		PersistentScriptStore store = new PersistentScriptStore(directory, "a");
+
+		String key = store.getKey("1 + 1", true);
+		assertEquals(64, key.length());
+		assertEquals(key, store.getKey("1 + 1", true));
+		assertEquals(key, new PersistentScriptStore(directory, "a").getKey("1 + 1", true));
+		assertNotEquals(key, store.getKey("1 + 2", true));
+		assertNotEquals(key, store.getKey("1 + 1", false));
+		assertNotEquals(key, new PersistentScriptStore(directory, "b").getKey("1 + 1", true));
+	}
+
+	/**
+	 * Test storing and loading class bytes.
+	 */
+	@Test
+	public void testStoreLoad() {
+		PersistentScriptStore store = new PersistentScriptStore(directory, "test");
+		String key = store.getKey("script", false);
+
+		assertNull(store.load(key));
+
+		Map<String, byte[]> classes = new LinkedHashMap<>();
+		classes.put("Script_1", new byte[] { 1, 2, 3 });
+		classes.put("Script_1$_run_closure1", new byte[] { 4, 5 });
+		store.store(key, new StoredScript("Script_1", classes));
+
+		// a store with the same directory, as in a later run
+		PersistentScriptStore other = new PersistentScriptStore(directory, "test");
+		StoredScript loaded = other.load(key);
+		assertNotNull(loaded);
+		assertEquals("Script_1", loaded.getMainClassName());
+		assertEquals(classes.keySet(), loaded.getClasses().keySet());
+		assertArrayEquals(new byte[] { 4, 5 }, loaded.getClasses().get("Script_1$_run_closure1"));
+
+		assertEquals(1, store.getMisses());
+		assertEquals(0, store.getHits());
+		assertEquals(1, other.getHits());
+		assertEquals(0, other.getMisses());
+	}
+
+	/**
+	 * Test if an invalid file is treated as not present and removed.
+	 * 
+	 * @throws IOException if writing the invalid file fails
+	 */
+	@Test
+	public void testInvalidFile() throws IOException {
+		PersistentScriptStore store = new PersistentScriptStore(directory, "test");
+		String key = store.getKey("script", false);
+		Map<String, byte[]> classes = new LinkedHashMap<>();
+		classes.put("Script_1", new byte[] { 1, 2, 3 });
+		store.store(key, new StoredScript("Script_1", classes));
+
+		File file = new File(new File(directory, key.substring(0, 2)), key + ".classes");
+		assertTrue(file.isFile());
+		Files.write(file.toPath(), new byte[] { 0, 1, 2 });
+
+		assertNull(store.load(key));
+		assertFalse(file.exists());
+		assertEquals(1, store.getMisses());
+	}
+
+	/**
+	 * Test loading the classes of a compiled script, including a closure
+	 * class.
+	 * 
+	 * @throws Exception if compiling or loading the script fails
+	 */
+	@Test
+	public void testLoadCompiledScript() throws Exception {
+		CompilationUnit unit = new CompilationUnit();
+		unit.addSource("Script_test.groovy", "[1, 2, 3].collect { it * factor }.sum()");
+		unit.compile(Phases.CLASS_GENERATION);
+		Map<String, byte[]> classes = new LinkedHashMap<>();
+		for (Object generated : unit.getClasses()) {
+			GroovyClass groovyClass = (GroovyClass) generated;
+			classes.put(groovyClass.getName(), groovyClass.getBytes());
+		}
+		assertTrue(classes.size() > 1);
+
+		PersistentScriptStore store = new PersistentScriptStore(directory, "test");
+		String key = store.getKey("script", false);
+		store.store(key, new StoredScript("Script_test", classes));
+		StoredScript loaded = store.load(key);
+		assertNotNull(loaded);
+
+		ScriptClassLoader loader = new ScriptClassLoader(getClass().getClassLoader(),
+				loaded.getClasses());
+		Class<?> scriptClass = loader.loadClass(loaded.getMainClassName());
+		Binding binding = new Binding();
+		binding.setVariable("factor", 2);
+		assertEquals(12, InvokerHelper.createScript(scriptClass, binding).run());
+	}
+
+}
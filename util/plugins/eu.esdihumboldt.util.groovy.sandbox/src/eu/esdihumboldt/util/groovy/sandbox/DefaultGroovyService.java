@@ -1,25 +1,42 @@
 package eu.esdihumboldt.util.groovy.sandbox;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
 
+import org.codehaus.groovy.control.CompilationUnit;
 import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
 import org.codehaus.groovy.control.customizers.ImportCustomizer;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.codehaus.groovy.tools.GroovyClass;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.Platform;
 import org.kohsuke.groovy.sandbox.SandboxTransformer;
+import org.osgi.framework.Bundle;
 
 import de.fhg.igd.eclipse.util.extension.ExtensionUtil;
+import eu.esdihumboldt.util.groovy.sandbox.internal.CompiledScriptCache;
+import eu.esdihumboldt.util.groovy.sandbox.internal.CompiledScriptCache.ScriptCompiler;
+import eu.esdihumboldt.util.groovy.sandbox.internal.PersistentScriptStore;
+import eu.esdihumboldt.util.groovy.sandbox.internal.PersistentScriptStore.StoredScript;
 import eu.esdihumboldt.util.groovy.sandbox.internal.RestrictiveGroovyInterceptor;
 import eu.esdihumboldt.util.groovy.sandbox.internal.RestrictiveGroovyInterceptor.AllowedPrefix;
+import eu.esdihumboldt.util.groovy.sandbox.internal.ScriptClassLoader;
 import eu.esdihumboldt.util.groovy.sandbox.internal.SecureScript;
 import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyCodeSource;
 import groovy.lang.GroovyShell;
+import groovy.lang.GroovySystem;
 import groovy.lang.Script;
 
 /**
@@ -34,18 +51,92 @@ public class DefaultGroovyService implements GroovyService {
 	 */
 	private static final String ID = "eu.esdihumboldt.util.groovy.sandbox";
 
+	/**
+	 * Name of the system property specifying the maximum number of compiled
+	 * scripts to cache.
+	 */
+	public static final String SYSTEM_PROPERTY_SCRIPT_CACHE_SIZE = "hale.groovy.scriptCacheSize";
+
+	/**
+	 * The default maximum number of compiled scripts to cache.
+	 */
+	public static final int DEFAULT_SCRIPT_CACHE_SIZE = 1000;
+
+	private static final AtomicInteger scriptCounter = new AtomicInteger();
+
 	private final CopyOnWriteArraySet<GroovyServiceListener> listeners = new CopyOnWriteArraySet<GroovyServiceListener>();
 
 	private boolean restrictionActive = true;
 	private final RestrictiveGroovyInterceptor interceptor;
 
+	/**
+	 * Compiler configuration for scripts compiled with restrictions.
+	 */
+	private final CompilerConfiguration restrictedConfiguration;
+
+	/**
+	 * Compiler configuration for scripts compiled without restrictions.
+	 */
+	private final CompilerConfiguration unrestrictedConfiguration;
+
+	private final CompiledScriptCache scriptCache;
+
+	/**
+	 * Store for compiled scripts that persists across runs, may be
+	 * <code>null</code>.
+	 */
+	private final PersistentScriptStore persistentStore;
+
 	/**
 	 * Constructs a new groovy sandbox service. Use
 	 * eu.esdihumboldt.util.groovy.sandbox extension point for configuration
 	 * options.
 	 */
 	public DefaultGroovyService() {
+		this(null);
+	}
+
+	/**
+	 * Constructs a new groovy sandbox service that stores compiled scripts in
+	 * the given directory, so they can be reused in later runs. Use
+	 * eu.esdihumboldt.util.groovy.sandbox extension point for configuration
+	 * options.
+	 * 
+	 * @param scriptCacheDirectory the directory to store compiled scripts in,
+	 *            <code>null</code> if compiled scripts should not be stored
+	 */
+	public DefaultGroovyService(@Nullable File scriptCacheDirectory) {
 		interceptor = createInterceptorFromExtensions();
+
+		ImportCustomizer importCustomizer = new ImportCustomizer();
+		String imports = configureImportsFromExtensions(importCustomizer);
+		restrictedConfiguration = createCompilerConfiguration(importCustomizer, true);
+		unrestrictedConfiguration = createCompilerConfiguration(importCustomizer, false);
+
+		if (scriptCacheDirectory != null) {
+			/*
+			 * Everything that influences the compiled classes except the
+			 * script and the restriction mode.
+			 */
+			Bundle bundle = Platform.getBundle(ID);
+			String configuration = "groovy:" + GroovySystem.getVersion() + ";sandbox:"
+					+ ((bundle != null) ? (bundle.getVersion()) : ("unknown")) + ";imports:"
+					+ imports;
+			persistentStore = new PersistentScriptStore(scriptCacheDirectory, configuration);
+		}
+		else {
+			persistentStore = null;
+		}
+
+		scriptCache = new CompiledScriptCache(
+				Integer.getInteger(SYSTEM_PROPERTY_SCRIPT_CACHE_SIZE, DEFAULT_SCRIPT_CACHE_SIZE),
+				new ScriptCompiler() {
+
+					@Override
+					public Class<?> compile(String script, boolean restricted) {
+						return compileScript(script, restricted);
+					}
+				});
 	}
 
 	/**
@@ -77,25 +168,44 @@ public class DefaultGroovyService implements GroovyService {
 				additionalAllAllowedClasses, additionalAllowedPackages);
 	}
 
-	@Override
-	public GroovyShell createShell(Binding binding) {
-		// TODO use a specific classloader?
+	/**
+	 * Create a compiler configuration.
+	 * 
+	 * @param importCustomizer the customizer adding the extension-defined
+	 *            imports
+	 * @param restricted if the configuration should apply the restriction
+	 * @return the compiler configuration
+	 */
+	private static CompilerConfiguration createCompilerConfiguration(
+			ImportCustomizer importCustomizer, boolean restricted) {
 		CompilerConfiguration cc = new CompilerConfiguration();
 
-		// add pre-defined imports
-		ImportCustomizer importCustomizer = new ImportCustomizer();
-
-		// add extension-defined imports
-		configureImportsFromExtensions(importCustomizer);
-
 		cc.addCompilationCustomizers(importCustomizer);
 
-		if (isRestrictionActive()) {
+		if (restricted) {
 			// configure restriction
 			cc.addCompilationCustomizers(new SandboxTransformer());
 			cc.setScriptBaseClass(SecureScript.class.getName());
 		}
 
+		return cc;
+	}
+
+	/**
+	 * Get the compiler configuration for the current restriction mode.
+	 * 
+	 * @param restricted if the restriction is active
+	 * @return the compiler configuration, it must not be modified
+	 */
+	private CompilerConfiguration getCompilerConfiguration(boolean restricted) {
+		return (restricted) ? (restrictedConfiguration) : (unrestrictedConfiguration);
+	}
+
+	@Override
+	public GroovyShell createShell(Binding binding) {
+		// TODO use a specific classloader?
+		CompilerConfiguration cc = getCompilerConfiguration(isRestrictionActive());
+
 		if (binding != null)
 			return new GroovyShell(binding, cc);
 		else
@@ -106,8 +216,10 @@ public class DefaultGroovyService implements GroovyService {
 	 * Add imports defined as extensions.
 	 * 
 	 * @param importCustomizer the import customizer
+	 * @return a description of the added imports
 	 */
-	private static void configureImportsFromExtensions(ImportCustomizer importCustomizer) {
+	private static String configureImportsFromExtensions(ImportCustomizer importCustomizer) {
+		StringBuilder imports = new StringBuilder();
 		for (IConfigurationElement conf : Platform.getExtensionRegistry()
 				.getConfigurationElementsFor(ID)) {
 			if (conf.getName().equals("import")) {
@@ -132,6 +244,7 @@ public class DefaultGroovyService implements GroovyService {
 
 					if (alias != null) {
 						importCustomizer.addImport(alias, className);
+						imports.append(alias).append('=').append(className).append(',');
 					}
 				}
 			}
@@ -139,23 +252,113 @@ public class DefaultGroovyService implements GroovyService {
 			// TODO support also other kind of imports?
 			// e.g. star imports, static imports...
 		}
+		return imports.toString();
 	}
 
 	@Override
 	public Script parseScript(String script, Binding binding) {
-		return createShell(binding).parse(script);
+		Class<?> scriptClass = scriptCache.getScriptClass(script, isRestrictionActive());
+		return InvokerHelper.createScript(scriptClass,
+				(binding != null) ? (binding) : (new Binding()));
+	}
+
+	/**
+	 * Compile a script. Each script is compiled with its own class loader, so
+	 * the class can be unloaded when it is evicted from the cache.
+	 * 
+	 * @param script the script text
+	 * @param restricted if the script should be compiled with restrictions
+	 * @return the compiled script class
+	 */
+	private Class<?> compileScript(String script, boolean restricted) {
+		GroovyShell shell = new GroovyShell(getCompilerConfiguration(restricted));
+
+		if (persistentStore == null) {
+			GroovyCodeSource codeSource = new GroovyCodeSource(script,
+					"Script" + scriptCounter.incrementAndGet() + ".groovy",
+					GroovyShell.DEFAULT_CODE_BASE);
+			return shell.getClassLoader().parseClass(codeSource, false);
+		}
+
+		String key = persistentStore.getKey(script, restricted);
+		StoredScript stored = persistentStore.load(key);
+		if (stored == null) {
+			// the class name is derived from the key, so it is stable
+			stored = compileToBytes(script, "Script_" + key.substring(0, 16),
+					getCompilerConfiguration(restricted), shell.getClassLoader());
+			persistentStore.store(key, stored);
+		}
+
+		ScriptClassLoader loader = new ScriptClassLoader(shell.getClassLoader(),
+				stored.getClasses());
+		try {
+			return loader.loadClass(stored.getMainClassName());
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException("Failed to load compiled script class", e);
+		}
+	}
+
+	/**
+	 * Compile a script to class bytes.
+	 * 
+	 * @param script the script text
+	 * @param className the name of the script class
+	 * @param cc the compiler configuration
+	 * @param classLoader the class loader to resolve referenced classes
+	 * @return the compiled script
+	 */
+	private static StoredScript compileToBytes(String script, String className,
+			CompilerConfiguration cc, GroovyClassLoader classLoader) {
+		CompilationUnit unit = new CompilationUnit(cc, null, classLoader);
+		unit.addSource(className + ".groovy", script);
+		unit.compile(Phases.CLASS_GENERATION);
+
+		Map<String, byte[]> classes = new LinkedHashMap<>();
+		for (Object generated : unit.getClasses()) {
+			GroovyClass groovyClass = (GroovyClass) generated;
+			classes.put(groovyClass.getName(), groovyClass.getBytes());
+		}
+
+		String mainClassName = className;
+		if (!classes.containsKey(mainClassName)) {
+			// no script class, e.g. if the script only declares a class
+			mainClassName = classes.keySet().iterator().next();
+		}
+		return new StoredScript(mainClassName, classes);
+	}
+
+	/**
+	 * @return the cache of compiled scripts, e.g. to retrieve cache statistics
+	 */
+	public CompiledScriptCache getScriptCache() {
+		return scriptCache;
+	}
+
+	/**
+	 * @return the current statistics of the compiled script caches
+	 */
+	public ScriptCacheStatistics getScriptCacheStatistics() {
+		long persistentHits = 0;
+		long persistentMisses = 0;
+		if (persistentStore != null) {
+			persistentHits = persistentStore.getHits();
+			persistentMisses = persistentStore.getMisses();
+		}
+		return new ScriptCacheStatistics(scriptCache.getHits(), scriptCache.getMisses(),
+				scriptCache.getEvictions(), persistentHits, persistentMisses);
 	}
 
 	@Override
 	public <T> T evaluate(Script script, @Nullable ResultProcessor<T> processor) throws Exception {
-		boolean registered = false;
+		boolean activated = false;
+		RestrictiveGroovyInterceptor previous = null;
 		if (isRestrictionActive()) {
 			if (!(script instanceof SecureScript)) {
 				throw new GroovyRestrictionException(
 						"Supplied script was not parsed with active restriction.");
 			}
-			interceptor.register();
-			registered = true;
+			previous = interceptor.activate();
+			activated = true;
 		}
 		try {
 			Object returnValue = script.run();
@@ -166,8 +369,8 @@ public class DefaultGroovyService implements GroovyService {
 				return null;
 			}
 		} finally {
-			if (registered)
-				interceptor.unregister();
+			if (activated)
+				RestrictiveGroovyInterceptor.restore(previous);
 		}
 	}
 
@@ -41,7 +41,8 @@ public interface GroovyService {
 	public GroovyShell createShell(Binding binding);
 
 	/**
-	 * Parse a script using a customized shell.
+	 * Parse a script using a customized shell. Implementations may cache the
+	 * compiled script class, but each call returns a new script instance.
 	 * 
 	 * @param script the script string
 	 * @param binding binding the binding, may be <code>null</code>
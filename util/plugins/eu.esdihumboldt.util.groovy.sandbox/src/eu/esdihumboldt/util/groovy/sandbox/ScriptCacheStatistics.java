@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+
+package eu.esdihumboldt.util.groovy.sandbox;
+
+/**
+ * Statistics of the compiled script caches of a {@link DefaultGroovyService}.
+ * 
+ * @author Simon Templer
+ */
+public class ScriptCacheStatistics {
+
+	private final long hits;
+
+	private final long misses;
+
+	private final long evictions;
+
+	private final long persistentHits;
+
+	private final long persistentMisses;
+
+	/**
+	 * Create cache statistics.
+	 * 
+	 * @param hits how often a script class was found in the memory cache
+	 * @param misses how often a script was not found in the memory cache
+	 * @param evictions how many script classes were evicted from the memory
+	 *            cache
+	 * @param persistentHits how often a compiled script was loaded from the
+	 *            persistent cache
+	 * @param persistentMisses how often a script was not found in the
+	 *            persistent cache and had to be compiled
+	 */
+	public ScriptCacheStatistics(long hits, long misses, long evictions, long persistentHits,
+			long persistentMisses) {
+		super();
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.persistentHits = persistentHits;
+		this.persistentMisses = persistentMisses;
+	}
+
+	/**
+	 * Determine the difference to earlier statistics of the same caches.
+	 * 
+	 * @param earlier the earlier statistics
+	 * @return the statistics since the earlier statistics were retrieved
+	 */
+	public ScriptCacheStatistics since(ScriptCacheStatistics earlier) {
+		return new ScriptCacheStatistics(hits - earlier.hits, misses - earlier.misses,
+				evictions - earlier.evictions, persistentHits - earlier.persistentHits,
+				persistentMisses - earlier.persistentMisses);
+	}
+
+	/**
+	 * @return how often a script class was found in the memory cache
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return how often a script was not found in the memory cache
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return how many script classes were evicted from the memory cache
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return how often a compiled script was loaded from the persistent
+	 *         cache
+	 */
+	public long getPersistentHits() {
+		return persistentHits;
+	}
+
+	/**
+	 * @return how often a script was not found in the persistent cache and had
+	 *         to be compiled, <code>0</code> if there is no persistent cache
+	 */
+	public long getPersistentMisses() {
+		return persistentMisses;
+	}
+
+	/**
+	 * @return how often a script was compiled
+	 */
+	public long getCompiled() {
+		// w/o persistent cache every miss in the memory cache is compiled
+		return misses - persistentHits;
+	}
+
+	@Override
+	public String toString() {
+		return hits + " cache hits, " + misses + " cache misses, " + evictions + " evictions, "
+				+ persistentHits + " loaded from disk, " + getCompiled() + " compiled";
+	}
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+
+package eu.esdihumboldt.util.groovy.sandbox.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Cache for compiled script classes, so a script only has to be compiled once
+ * and can then be instantiated as often as needed, e.g. once per
+ * transformation thread. Script classes are identified by the script text and
+ * if they were compiled with restrictions. The cache holds a limited number of
+ * script classes, the least recently used classes are evicted first.
+ * 
+ * @author Simon Templer
+ */
+public class CompiledScriptCache {
+
+	/**
+	 * Compiles scripts that are not yet present in the cache.
+	 */
+	public interface ScriptCompiler {
+
+		/**
+		 * Compile a script.
+		 * 
+		 * @param script the script text
+		 * @param restricted if the script should be compiled with restrictions
+		 * @return the compiled class, usually a {@link groovy.lang.Script}
+		 *         class
+		 */
+		public Class<?> compile(String script, boolean restricted);
+
+	}
+
+	private static class ScriptKey {
+
+		private final String script;
+
+		private final boolean restricted;
+
+		public ScriptKey(String script, boolean restricted) {
+			super();
+			this.script = script;
+			this.restricted = restricted;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * script.hashCode() + ((restricted) ? (1231) : (1237));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ScriptKey)) {
+				return false;
+			}
+			ScriptKey other = (ScriptKey) obj;
+			return restricted == other.restricted && script.equals(other.script);
+		}
+
+	}
+
+	private final int maxSize;
+
+	private final ScriptCompiler compiler;
+
+	private final Map<ScriptKey, Class<?>> classes;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	/**
+	 * Create a compiled script cache.
+	 * 
+	 * @param maxSize the maximum number of script classes to hold
+	 * @param compiler the compiler for scripts not present in the cache
+	 */
+	public CompiledScriptCache(final int maxSize, ScriptCompiler compiler) {
+		super();
+		this.maxSize = maxSize;
+		this.compiler = compiler;
+		this.classes = new LinkedHashMap<ScriptKey, Class<?>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 4611453519327402218L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<ScriptKey, Class<?>> eldest) {
+				if (size() > maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+
+		};
+	}
+
+	/**
+	 * Get the compiled class for a script. If the script is not present in
+	 * the cache, it is compiled. Compilation is not synchronized, so the same
+	 * script may be compiled concurrently, in that case the class compiled
+	 * first is kept.
+	 * 
+	 * @param script the script text
+	 * @param restricted if the script should be compiled with restrictions
+	 * @return the compiled script class
+	 */
+	public Class<?> getScriptClass(String script, boolean restricted) {
+		ScriptKey key = new ScriptKey(script, restricted);
+		synchronized (classes) {
+			Class<?> scriptClass = classes.get(key);
+			if (scriptClass != null) {
+				hits++;
+				return scriptClass;
+			}
+			misses++;
+		}
+
+		Class<?> compiled = compiler.compile(script, restricted);
+
+		if (maxSize <= 0) {
+			return compiled;
+		}
+		synchronized (classes) {
+			Class<?> scriptClass = classes.get(key);
+			if (scriptClass != null) {
+				return scriptClass;
+			}
+			classes.put(key, compiled);
+			return compiled;
+		}
+	}
+
+	/**
+	 * Remove all script classes from the cache.
+	 */
+	public void clear() {
+		synchronized (classes) {
+			classes.clear();
+		}
+	}
+
+	/**
+	 * @return the number of script classes in the cache
+	 */
+	public int size() {
+		synchronized (classes) {
+			return classes.size();
+		}
+	}
+
+	/**
+	 * @return the maximum number of script classes held by the cache
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return how often a script class was found in the cache
+	 */
+	public long getHits() {
+		synchronized (classes) {
+			return hits;
+		}
+	}
+
+	/**
+	 * @return how often a script had to be compiled
+	 */
+	public long getMisses() {
+		synchronized (classes) {
+			return misses;
+		}
+	}
+
+	/**
+	 * @return how many script classes were evicted from the cache
+	 */
+	public long getEvictions() {
+		synchronized (classes) {
+			return evictions;
+		}
+	}
+
+	@Override
+	public String toString() {
+		synchronized (classes) {
+			return "Compiled scripts: " + classes.size() + " of " + maxSize + ", " + hits
+					+ " hits, " + misses + " misses, " + evictions + " evictions";
+		}
+	}
+
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+
+package eu.esdihumboldt.util.groovy.sandbox.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import de.fhg.igd.slf4jplus.ALogger;
+import de.fhg.igd.slf4jplus.ALoggerFactory;
+
+/**
+ * Stores the class bytes of compiled scripts in a directory, so they can be
+ * loaded instead of compiling the scripts again, e.g. in a later
+ * transformation run. Scripts are identified by a hash of the script text and
+ * of everything else that influences the compilation result, i.e. the
+ * restriction mode and the given configuration identifier, which should
+ * include the Groovy version and the compiler configuration.<br>
+ * <br>
+ * The class bytes are loaded as they are stored, so the directory must only
+ * be writable by the user running the scripts.
+ * 
+ * @author Simon Templer
+ */
+public class PersistentScriptStore {
+
+	/**
+	 * The class bytes of a compiled script.
+	 */
+	public static class StoredScript {
+
+		private final String mainClassName;
+
+		private final Map<String, byte[]> classes;
+
+		/**
+		 * Create a compiled script.
+		 * 
+		 * @param mainClassName the name of the script class
+		 * @param classes the names of all classes of the script mapped to
+		 *            their class bytes
+		 */
+		public StoredScript(String mainClassName, Map<String, byte[]> classes) {
+			super();
+			this.mainClassName = mainClassName;
+			this.classes = Collections.unmodifiableMap(new LinkedHashMap<>(classes));
+		}
+
+		/**
+		 * @return the name of the script class
+		 */
+		public String getMainClassName() {
+			return mainClassName;
+		}
+
+		/**
+		 * @return the names of all classes of the script mapped to their class
+		 *         bytes
+		 */
+		public Map<String, byte[]> getClasses() {
+			return classes;
+		}
+
+	}
+
+	private static final ALogger log = ALoggerFactory.getLogger(PersistentScriptStore.class);
+
+	private static final int MAGIC = 0x48475343;
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final String FILE_EXTENSION = ".classes";
+
+	private final File directory;
+
+	private final String configuration;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Create a store for compiled scripts.
+	 * 
+	 * @param directory the directory to store the compiled scripts in, it is
+	 *            created if it does not exist
+	 * @param configuration identifies the configuration the scripts are
+	 *            compiled with, scripts compiled with a different
+	 *            configuration are not loaded
+	 */
+	public PersistentScriptStore(File directory, String configuration) {
+		super();
+		this.directory = directory;
+		this.configuration = configuration;
+	}
+
+	/**
+	 * @return the directory the compiled scripts are stored in
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Determine the key identifying a compiled script in the store.
+	 * 
+	 * @param script the script text
+	 * @param restricted if the script is compiled with restrictions
+	 * @return the key, a hexadecimal hash value
+	 */
+	public String getKey(String script, boolean restricted) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		digest.update(configuration.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update((byte) ((restricted) ? (1) : (0)));
+		digest.update((byte) 0);
+		digest.update(script.getBytes(StandardCharsets.UTF_8));
+
+		StringBuilder key = new StringBuilder();
+		for (byte b : digest.digest()) {
+			key.append(Character.forDigit((b >> 4) & 0xf, 16));
+			key.append(Character.forDigit(b & 0xf, 16));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Load a compiled script.
+	 * 
+	 * @param key the key of the compiled script
+	 * @return the compiled script or <code>null</code> if it is not present
+	 *         in the store or could not be read
+	 */
+	@Nullable
+	public StoredScript load(String key) {
+		File file = getFile(key);
+		if (file.isFile()) {
+			try (DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(file)))) {
+				StoredScript script = read(in);
+				if (script != null) {
+					hits.incrementAndGet();
+					return script;
+				}
+			} catch (IOException e) {
+				log.warn("Failed to load compiled script from " + file, e);
+			}
+			// remove the invalid file, it is replaced when the script is stored
+			if (!file.delete()) {
+				log.warn("Failed to remove invalid compiled script " + file);
+			}
+		}
+
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Store a compiled script. Failing to store the script is only logged.
+	 * 
+	 * @param key the key of the compiled script
+	 * @param script the compiled script
+	 */
+	public void store(String key, StoredScript script) {
+		File file = getFile(key);
+		File dir = file.getParentFile();
+		File temp = null;
+		try {
+			if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+				throw new IOException("Could not create directory " + dir);
+			}
+
+			// write to a temporary file, so incomplete files are never loaded
+			temp = File.createTempFile(key, ".tmp", dir);
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)))) {
+				write(out, script);
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			temp = null;
+		} catch (IOException e) {
+			log.warn("Failed to store compiled script in " + file, e);
+		} finally {
+			if (temp != null && !temp.delete()) {
+				temp.deleteOnExit();
+			}
+		}
+	}
+
+	/**
+	 * @return how often a compiled script was loaded from the store
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return how often a compiled script was not present in the store
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	private File getFile(String key) {
+		return new File(new File(directory, key.substring(0, 2)), key + FILE_EXTENSION);
+	}
+
+	private static void write(DataOutputStream out, StoredScript script) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeUTF(script.getMainClassName());
+		out.writeInt(script.getClasses().size());
+		for (Entry<String, byte[]> entry : script.getClasses().entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeInt(entry.getValue().length);
+			out.write(entry.getValue());
+		}
+	}
+
+	@Nullable
+	private static StoredScript read(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+			return null;
+		}
+		String mainClassName = in.readUTF();
+		int count = in.readInt();
+		if (count <= 0) {
+			return null;
+		}
+		Map<String, byte[]> classes = new LinkedHashMap<>();
+		for (int i = 0; i < count; i++) {
+			String name = in.readUTF();
+			int length = in.readInt();
+			if (length < 0) {
+				return null;
+			}
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			classes.put(name, bytes);
+		}
+		if (!classes.containsKey(mainClassName)) {
+			return null;
+		}
+		return new StoredScript(mainClassName, classes);
+	}
+
+}
@@ -28,6 +28,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.codehaus.groovy.runtime.GStringImpl;
 import org.codehaus.groovy.runtime.InvokerHelper;
@@ -42,12 +44,116 @@ import groovy.lang.Script;
 
 /**
  * {@link GroovyInterceptor} which allows some basic classes but is pretty
- * restrictive. Constructor offers parameters to allow more classes.
+ * restrictive. Constructor offers parameters to allow more classes.<br>
+ * <br>
+ * Which classes are allowed and which methods of a class may be called is
+ * only determined once per class and method name. Instead of registering and
+ * unregistering the interceptor for each script evaluation, it can be
+ * activated for the current thread with {@link #activate()}.
  * 
  * @author Kai Schwierczek
  */
 public class RestrictiveGroovyInterceptor extends GroovyInterceptor {
 
+	/**
+	 * Interceptor registered once per thread that delegates to the
+	 * interceptor active for the thread.
+	 */
+	private static class DispatchingInterceptor extends GroovyInterceptor {
+
+		@Override
+		public Object onStaticCall(Invoker invoker, @SuppressWarnings("rawtypes") Class receiver,
+				String method, Object... args) throws Throwable {
+			RestrictiveGroovyInterceptor current = activeInterceptor.get();
+			if (current != null)
+				return current.onStaticCall(invoker, receiver, method, args);
+			return super.onStaticCall(invoker, receiver, method, args);
+		}
+
+		@Override
+		public Object onNewInstance(Invoker invoker, @SuppressWarnings("rawtypes") Class receiver,
+				Object... args) throws Throwable {
+			RestrictiveGroovyInterceptor current = activeInterceptor.get();
+			if (current != null)
+				return current.onNewInstance(invoker, receiver, args);
+			return super.onNewInstance(invoker, receiver, args);
+		}
+
+		@Override
+		public Object onMethodCall(Invoker invoker, Object receiver, String method,
+				Object... args) throws Throwable {
+			RestrictiveGroovyInterceptor current = activeInterceptor.get();
+			if (current != null)
+				return current.onMethodCall(invoker, receiver, method, args);
+			return super.onMethodCall(invoker, receiver, method, args);
+		}
+
+		@Override
+		public Object onGetProperty(Invoker invoker, Object receiver, String property)
+				throws Throwable {
+			RestrictiveGroovyInterceptor current = activeInterceptor.get();
+			if (current != null)
+				return current.onGetProperty(invoker, receiver, property);
+			return super.onGetProperty(invoker, receiver, property);
+		}
+
+		@Override
+		public Object onSetProperty(Invoker invoker, Object receiver, String property,
+				Object value) throws Throwable {
+			RestrictiveGroovyInterceptor current = activeInterceptor.get();
+			if (current != null)
+				return current.onSetProperty(invoker, receiver, property, value);
+			return super.onSetProperty(invoker, receiver, property, value);
+		}
+
+		@Override
+		public Object onGetAttribute(Invoker invoker, Object receiver, String attribute)
+				throws Throwable {
+			RestrictiveGroovyInterceptor current = activeInterceptor.get();
+			if (current != null)
+				return current.onGetAttribute(invoker, receiver, attribute);
+			return super.onGetAttribute(invoker, receiver, attribute);
+		}
+
+		@Override
+		public Object onSetAttribute(Invoker invoker, Object receiver, String attribute,
+				Object value) throws Throwable {
+			RestrictiveGroovyInterceptor current = activeInterceptor.get();
+			if (current != null)
+				return current.onSetAttribute(invoker, receiver, attribute, value);
+			return super.onSetAttribute(invoker, receiver, attribute, value);
+		}
+
+		@Override
+		public Object onGetArray(Invoker invoker, Object receiver, Object index)
+				throws Throwable {
+			RestrictiveGroovyInterceptor current = activeInterceptor.get();
+			if (current != null)
+				return current.onGetArray(invoker, receiver, index);
+			return super.onGetArray(invoker, receiver, index);
+		}
+
+		@Override
+		public Object onSetArray(Invoker invoker, Object receiver, Object index, Object value)
+				throws Throwable {
+			RestrictiveGroovyInterceptor current = activeInterceptor.get();
+			if (current != null)
+				return current.onSetArray(invoker, receiver, index, value);
+			return super.onSetArray(invoker, receiver, index, value);
+		}
+
+	}
+
+	/**
+	 * The interceptor active for the current thread.
+	 */
+	private static final ThreadLocal<RestrictiveGroovyInterceptor> activeInterceptor = new ThreadLocal<>();
+
+	/**
+	 * The dispatching interceptor registered for the current thread, if any.
+	 */
+	private static final ThreadLocal<DispatchingInterceptor> threadDispatcher = new ThreadLocal<>();
+
 	/**
 	 * Classes, which may be initialized, and all their methods may be used.
 	 */
@@ -195,6 +301,31 @@ public class RestrictiveGroovyInterceptor extends GroovyInterceptor {
 	private final Set<Class<?>> instanceAllAllowedClasses = new HashSet<>(allAllowedClasses);
 	private final List<AllowedPrefix> instanceAllowedPackages = new ArrayList<>(allowedPackages);
 
+	/**
+	 * Caches if a class is allowed. Other than a map, a {@link ClassValue}
+	 * does not prevent classes from being unloaded.
+	 */
+	private final ClassValue<Boolean> allowedClassCache = new ClassValue<Boolean>() {
+
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return determineAllowedClass(type);
+		}
+	};
+
+	/**
+	 * Caches the result of allowed method calls per receiver class and method
+	 * name, see {@link #checkMethodCall(Object, String)}. Disallowed calls are
+	 * not cached, as they abort the script anyway.
+	 */
+	private final ClassValue<ConcurrentMap<String, Boolean>> methodCallCache = new ClassValue<ConcurrentMap<String, Boolean>>() {
+
+		@Override
+		protected ConcurrentMap<String, Boolean> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
 	/**
 	 * Constructor using additional allowed classes.
 	 * 
@@ -214,6 +345,45 @@ public class RestrictiveGroovyInterceptor extends GroovyInterceptor {
 		instanceAllowedPackages.addAll(additionalAllowedPackages);
 	}
 
+	/**
+	 * Activate the interceptor for the current thread, until
+	 * {@link #restore(RestrictiveGroovyInterceptor)} is called. Other than
+	 * with {@link #register()}, a dispatching interceptor is registered only
+	 * once per thread, activating the interceptor only sets it for the
+	 * dispatcher.
+	 * 
+	 * @return the interceptor previously active for the current thread, to
+	 *         be restored once the interceptor is no longer needed, may be
+	 *         <code>null</code>
+	 */
+	public RestrictiveGroovyInterceptor activate() {
+		if (threadDispatcher.get() == null) {
+			DispatchingInterceptor dispatcher = new DispatchingInterceptor();
+			dispatcher.register();
+			threadDispatcher.set(dispatcher);
+		}
+
+		RestrictiveGroovyInterceptor previous = activeInterceptor.get();
+		activeInterceptor.set(this);
+		return previous;
+	}
+
+	/**
+	 * Restore the interceptor that was active for the current thread before
+	 * an interceptor was activated.
+	 * 
+	 * @param previous the previously active interceptor as returned by
+	 *            {@link #activate()}, may be <code>null</code>
+	 */
+	public static void restore(RestrictiveGroovyInterceptor previous) {
+		if (previous == null) {
+			activeInterceptor.remove();
+		}
+		else {
+			activeInterceptor.set(previous);
+		}
+	}
+
 	@Override
 	public Object onStaticCall(Invoker invoker, @SuppressWarnings("rawtypes") Class receiver,
 			String method, Object... args) throws Throwable {
@@ -279,7 +449,29 @@ public class RestrictiveGroovyInterceptor extends GroovyInterceptor {
 			// delegation to this closure.
 			return false;
 		}
-		else if (isAllowedClass(receiver.getClass())) {
+
+		ConcurrentMap<String, Boolean> decisions = methodCallCache.get(receiver.getClass());
+		Boolean handled = decisions.get(method);
+		if (handled == null) {
+			// throws an exception if the call is not allowed
+			handled = checkObjectMethodCall(receiver, method);
+			decisions.put(method, handled);
+		}
+		return handled;
+	}
+
+	/**
+	 * Check a method call on an object that is not a closure. The result only
+	 * depends on the class of the object and the method name.
+	 * 
+	 * @param receiver the receiver object
+	 * @param method the method name
+	 * @return if the object handles calls to the method
+	 * @throws GroovyRestrictionException if the call is not allowed
+	 */
+	private boolean checkObjectMethodCall(Object receiver, String method)
+			throws GroovyRestrictionException {
+		if (isAllowedClass(receiver.getClass())) {
 			checkExecute(receiver, method);
 			return instanceAllAllowedClasses.contains(receiver.getClass())
 					|| !InvokerHelper.getMetaClass(receiver).respondsTo(receiver, method).isEmpty();
@@ -431,11 +623,11 @@ public class RestrictiveGroovyInterceptor extends GroovyInterceptor {
 	}
 
 	private boolean isAllowedClass(Class<?> clazz) {
-		// instanceAllowedClasses.add needs to be synchronized, as internal
-		// state changes.
-		// .contains does not need to be synchronized, worst case would be that
-		// an element is added several times then, which doesn't matter.
+		return allowedClassCache.get(clazz);
+	}
 
+	private boolean determineAllowedClass(Class<?> clazz) {
+		// the allowed classes are not modified after construction
 		if (instanceAllowedClasses.contains(clazz))
 			return true;
 
@@ -451,10 +643,6 @@ public class RestrictiveGroovyInterceptor extends GroovyInterceptor {
 		}
 		if (topLevelClass != clazz) {
 			if (instanceAllowedClasses.contains(topLevelClass)) {
-				// cache result for nested class
-				synchronized (instanceAllowedClasses) {
-					instanceAllowedClasses.add(clazz);
-				}
 				return true;
 			}
 		}
@@ -462,10 +650,6 @@ public class RestrictiveGroovyInterceptor extends GroovyInterceptor {
 		// walk through prefixes
 		for (AllowedPrefix allowedPackage : instanceAllowedPackages) {
 			if (allowedPackage.checkAllowed(clazz)) {
-				// cache result for class within a allowed package
-				synchronized (instanceAllowedClasses) {
-					instanceAllowedClasses.add(clazz);
-				}
 				return true;
 			}
 		}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2017 Data Harmonisation Panel
+ * 
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contributors:
+ *     Data Harmonisation Panel <http://www.dhpanel.eu>
+ */
+
+
+package eu.esdihumboldt.util.groovy.sandbox.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class loader defining the classes of a compiled script from their class
+ * bytes.
+ * 
+ * @author Simon Templer
+ */
+public class ScriptClassLoader extends ClassLoader {
+
+	private final Map<String, byte[]> classes;
+
+	/**
+	 * Create a class loader for the classes of a compiled script.
+	 * 
+	 * @param parent the parent class loader, used to resolve the classes
+	 *            referenced by the script
+	 * @param classes the class names mapped to the class bytes
+	 */
+	public ScriptClassLoader(ClassLoader parent, Map<String, byte[]> classes) {
+		super(parent);
+		this.classes = new HashMap<>(classes);
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		byte[] bytes;
+		synchronized (classes) {
+			// the class is only defined once, the bytes are no longer needed
+			bytes = classes.remove(name);
+		}
+		if (bytes == null) {
+			throw new ClassNotFoundException(name);
+		}
+		return defineClass(name, bytes, 0, bytes.length);
+	}
+
+}